@@ -3,35 +3,79 @@
 -- =====================================================
 
 -- Drop existing tables if they exist
+DROP TABLE IF EXISTS change_events;
+DROP TABLE IF EXISTS holds;
+DROP TABLE IF EXISTS issued_books_archive;
 DROP TABLE IF EXISTS issued_books;
+DROP TABLE IF EXISTS book_copies;
 DROP TABLE IF EXISTS books;
+DROP TABLE IF EXISTS user_directory;
 DROP TABLE IF EXISTS users;
+DROP TABLE IF EXISTS branches;
+
+-- =====================================================
+-- Table: branches
+-- Campus libraries served by this deployment (branch.ids);
+-- every user, book and loan belongs to one, and every
+-- listing index leads with branch_id so a branch's
+-- queries only touch its own rows
+-- =====================================================
+CREATE TABLE branches (
+    branch_id INT PRIMARY KEY,
+    code VARCHAR(20) UNIQUE NOT NULL,
+    name VARCHAR(100) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- =====================================================
 -- Table: users
 -- Stores information about system users (Admin & Student)
+-- A routed branch keeps its users in its own database;
+-- user_directory keeps names unique across all of them
 -- =====================================================
 CREATE TABLE users (
     user_id INT PRIMARY KEY AUTO_INCREMENT,
+    branch_id INT NOT NULL DEFAULT 1,
     username VARCHAR(50) UNIQUE NOT NULL,
     password VARCHAR(100) NOT NULL,
     full_name VARCHAR(100) NOT NULL,
     email VARCHAR(100) UNIQUE NOT NULL,
     role ENUM('ADMIN', 'STUDENT') NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (branch_id) REFERENCES branches(branch_id),
     INDEX idx_username (username),
-    INDEX idx_role (role)
+    INDEX idx_branch_role_name (branch_id, role, full_name),
+    INDEX idx_branch_created (branch_id, created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- =====================================================
+-- Table: user_directory
+-- Every username and email with the branch that owns it,
+-- kept in the shared database only. Registration reserves
+-- names here first, so they are unique across branch
+-- databases, and login finds the user's branch here.
+-- When moving a branch to its own database, copy its
+-- users' rows here before switching.
+-- =====================================================
+CREATE TABLE user_directory (
+    username VARCHAR(50) PRIMARY KEY,
+    email VARCHAR(100) UNIQUE NOT NULL,
+    branch_id INT NOT NULL,
+    FOREIGN KEY (branch_id) REFERENCES branches(branch_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- =====================================================
 -- Table: books
 -- Stores information about library books
+-- An ISBN is unique within its branch; each branch
+-- catalogs its own copies of an edition
 -- =====================================================
 CREATE TABLE books (
     book_id INT PRIMARY KEY AUTO_INCREMENT,
+    branch_id INT NOT NULL DEFAULT 1,
     title VARCHAR(200) NOT NULL,
     author VARCHAR(100) NOT NULL,
-    isbn VARCHAR(20) UNIQUE NOT NULL,
+    isbn VARCHAR(20) NOT NULL,
     publisher VARCHAR(100),
     publication_year INT,
     category VARCHAR(50),
@@ -39,19 +83,44 @@ CREATE TABLE books (
     available_copies INT NOT NULL DEFAULT 1,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    INDEX idx_title (title),
-    INDEX idx_author (author),
-    INDEX idx_isbn (isbn),
+    FOREIGN KEY (branch_id) REFERENCES branches(branch_id),
+    UNIQUE KEY uk_branch_isbn (branch_id, isbn),
+    INDEX idx_branch_book (branch_id, book_id),
+    INDEX idx_branch_title (branch_id, title),
+    INDEX idx_branch_author (branch_id, author),
+    INDEX idx_branch_category (branch_id, category, title),
+    INDEX idx_branch_publication_year (branch_id, publication_year),
+    INDEX idx_branch_available (branch_id, available_copies),
     CHECK (available_copies >= 0),
     CHECK (available_copies <= total_copies)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- =====================================================
+-- Table: book_copies
+-- One row per physical copy, labelled by its barcode;
+-- books.available_copies is the fast counter, this is
+-- the inventory the copy reconciler checks it against
+-- =====================================================
+CREATE TABLE book_copies (
+    copy_id INT PRIMARY KEY AUTO_INCREMENT,
+    book_id INT NOT NULL,
+    copy_no INT NOT NULL,
+    barcode VARCHAR(32) UNIQUE NOT NULL,
+    status ENUM('AVAILABLE', 'ISSUED', 'LOST', 'WITHDRAWN') NOT NULL DEFAULT 'AVAILABLE',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (book_id) REFERENCES books(book_id) ON DELETE CASCADE,
+    UNIQUE KEY uk_book_copy_no (book_id, copy_no),
+    INDEX idx_book_status_copy (book_id, status, copy_no)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- =====================================================
 -- Table: issued_books
 -- Tracks book issuing and return information
 -- =====================================================
 CREATE TABLE issued_books (
     issue_id INT PRIMARY KEY AUTO_INCREMENT,
+    branch_id INT NOT NULL DEFAULT 1,
     book_id INT NOT NULL,
     user_id INT NOT NULL,
     issue_date DATE NOT NULL,
@@ -59,14 +128,93 @@ CREATE TABLE issued_books (
     return_date DATE DEFAULT NULL,
     status ENUM('ISSUED', 'RETURNED') NOT NULL DEFAULT 'ISSUED',
     fine_amount DECIMAL(10,2) DEFAULT 0.00,
+    copy_id INT DEFAULT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (book_id) REFERENCES books(book_id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    FOREIGN KEY (copy_id) REFERENCES book_copies(copy_id) ON DELETE SET NULL,
+    FOREIGN KEY (branch_id) REFERENCES branches(branch_id),
     INDEX idx_user_id (user_id),
+    INDEX idx_book_status (book_id, status),
+    INDEX idx_status (status),
+    INDEX idx_status_return_date (status, return_date),
+    INDEX idx_branch_status_issue_date (branch_id, status, issue_date),
+    INDEX idx_branch_status_due_date (branch_id, status, due_date),
+    INDEX idx_branch_issue (branch_id, issue_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- =====================================================
+-- Table: issued_books_archive
+-- Returned loans moved out of issued_books by the loan
+-- archiver (archive.after.days) so the hot table stays
+-- bounded by open loans; history queries read both
+-- =====================================================
+CREATE TABLE issued_books_archive (
+    issue_id INT PRIMARY KEY,
+    branch_id INT NOT NULL DEFAULT 1,
+    book_id INT NOT NULL,
+    user_id INT NOT NULL,
+    issue_date DATE NOT NULL,
+    due_date DATE NOT NULL,
+    return_date DATE DEFAULT NULL,
+    status ENUM('ISSUED', 'RETURNED') NOT NULL DEFAULT 'RETURNED',
+    fine_amount DECIMAL(10,2) DEFAULT 0.00,
+    copy_id INT DEFAULT NULL,
+    created_at TIMESTAMP NULL DEFAULT NULL,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (book_id) REFERENCES books(book_id) ON DELETE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    FOREIGN KEY (branch_id) REFERENCES branches(branch_id),
+    INDEX idx_user_issue_date (user_id, issue_date),
     INDEX idx_book_id (book_id),
-    INDEX idx_status (status)
+    INDEX idx_branch_issue_date (branch_id, issue_date),
+    INDEX idx_branch_issue (branch_id, issue_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- =====================================================
+-- Table: holds
+-- FIFO reservation queue per book; a returned copy is
+-- issued directly to the oldest WAITING hold
+-- =====================================================
+CREATE TABLE holds (
+    hold_id INT PRIMARY KEY AUTO_INCREMENT,
+    book_id INT NOT NULL,
+    user_id INT NOT NULL,
+    status ENUM('WAITING', 'FULFILLED', 'CANCELLED') NOT NULL DEFAULT 'WAITING',
+    issue_id INT DEFAULT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    fulfilled_at TIMESTAMP NULL DEFAULT NULL,
+    FOREIGN KEY (book_id) REFERENCES books(book_id) ON DELETE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    INDEX idx_book_queue (book_id, status, hold_id),
+    INDEX idx_user_status (user_id, status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- =====================================================
+-- Table: change_events
+-- Outbox used to broadcast cache invalidations between
+-- application nodes (library.events.transport=outbox)
+-- Rows are written in the transaction of the change they
+-- describe; a routed branch database keeps its own outbox
+-- =====================================================
+CREATE TABLE change_events (
+    event_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    origin_node VARCHAR(64) NOT NULL,
+    entity_type VARCHAR(20) NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    entity_id INT NOT NULL,
+    owner_id INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_created_at (created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- =====================================================
+-- Sample Data - Branches
+-- =====================================================
+INSERT INTO branches (branch_id, code, name) VALUES
+(1, 'MAIN', 'Main Campus Library'),
+(2, 'NORTH', 'North Campus Library');
+
 -- =====================================================
 -- Sample Data - Users
 -- Password: admin123 and student123 (plain text for demo)
@@ -78,6 +226,9 @@ INSERT INTO users (username, password, full_name, email, role) VALUES
 ('jane_smith', 'student123', 'Jane Smith', 'jane.smith@student.com', 'STUDENT'),
 ('mike_wilson', 'student123', 'Mike Wilson', 'mike.wilson@student.com', 'STUDENT');
 
+INSERT INTO user_directory (username, email, branch_id)
+SELECT username, email, branch_id FROM users;
+
 -- =====================================================
 -- Sample Data - Books
 -- =====================================================
@@ -93,15 +244,29 @@ INSERT INTO books (title, author, isbn, publisher, publication_year, category, t
 ('Operating System Concepts', 'Abraham Silberschatz', '978-1118063330', 'Wiley', 2012, 'Operating Systems', 3, 3),
 ('Artificial Intelligence', 'Stuart Russell', '978-0136042594', 'Pearson', 2009, 'AI', 2, 2);
 
+-- =====================================================
+-- Sample Data - Book Copies
+-- Copies 1..total_copies per book, barcode LIB<book>-<copy>
+-- =====================================================
+INSERT INTO book_copies (book_id, copy_no, barcode)
+WITH RECURSIVE seq (n) AS (
+    SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < 100
+)
+SELECT b.book_id, seq.n, CONCAT('LIB', LPAD(b.book_id, 6, '0'), '-', LPAD(seq.n, 3, '0'))
+FROM books b
+JOIN seq ON seq.n <= b.total_copies
+ORDER BY b.book_id, seq.n;
+
 -- =====================================================
 -- Sample Data - Issued Books
 -- =====================================================
-INSERT INTO issued_books (book_id, user_id, issue_date, due_date, status) VALUES
-(1, 2, '2024-12-15', '2024-12-29', 'ISSUED'),
-(3, 3, '2024-12-20', '2025-01-03', 'ISSUED');
+INSERT INTO issued_books (book_id, user_id, issue_date, due_date, status, copy_id) VALUES
+(1, 2, '2024-12-15', '2024-12-29', 'ISSUED', (SELECT copy_id FROM book_copies WHERE barcode = 'LIB000001-001')),
+(3, 3, '2024-12-20', '2025-01-03', 'ISSUED', (SELECT copy_id FROM book_copies WHERE barcode = 'LIB000003-001'));
 
 -- Update available copies for issued books
 UPDATE books SET available_copies = available_copies - 1 WHERE book_id IN (1, 3);
+UPDATE book_copies SET status = 'ISSUED' WHERE barcode IN ('LIB000001-001', 'LIB000003-001');
 
 -- =====================================================
 -- Verification Queries
@@ -115,6 +280,7 @@ SELECT * FROM books;
 -- View issued books with details
 SELECT 
     ib.issue_id,
+    bc.barcode,
     b.title,
     b.author,
     u.full_name,
@@ -123,7 +289,22 @@ SELECT
     ib.status
 FROM issued_books ib
 JOIN books b ON ib.book_id = b.book_id
-JOIN users u ON ib.user_id = u.user_id;
+JOIN users u ON ib.user_id = u.user_id
+LEFT JOIN book_copies bc ON ib.copy_id = bc.copy_id;
+
+-- Books, users and open loans per branch
+SELECT br.branch_id, br.name,
+    (SELECT COUNT(*) FROM books b WHERE b.branch_id = br.branch_id) AS books,
+    (SELECT COUNT(*) FROM users u WHERE u.branch_id = br.branch_id) AS users,
+    (SELECT COUNT(*) FROM issued_books ib WHERE ib.branch_id = br.branch_id AND ib.status = 'ISSUED') AS open_loans
+FROM branches br;
+
+-- Counters that disagree with the copies on the shelf (should be empty)
+SELECT b.book_id, b.available_copies, COUNT(bc.copy_id) AS copies_on_shelf
+FROM books b
+LEFT JOIN book_copies bc ON bc.book_id = b.book_id AND bc.status = 'AVAILABLE'
+GROUP BY b.book_id, b.available_copies
+HAVING b.available_copies <> COUNT(bc.copy_id);
 
 -- =====================================================
 -- End of Schema
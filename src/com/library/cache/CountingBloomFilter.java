@@ -0,0 +1,142 @@
+package com.library.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom Filter
+ * Set membership in a few bits per key: "no" is certain, "yes" is right except
+ * for the configured false positive rate. Each slot is a 4-bit counter rather
+ * than a bit so keys can also be removed; a counter that reaches 15 stays there,
+ * which only costs precision. Thread-safe without locks.
+ */
+public class CountingBloomFilter {
+    
+    private static final int COUNTERS_PER_WORD = 16;
+    private static final long COUNTER_MASK = 0xF;
+    private static final long MAX_COUNT = 15;
+    
+    private final AtomicLongArray words;
+    private final int counters;
+    private final int hashes;
+    
+    /**
+     * Size a filter for a number of keys and a false positive rate
+     * 
+     * @param expectedKeys Keys the filter should hold at that rate
+     * @param falsePositiveRate Target false positive rate, e.g. 0.01
+     */
+    public CountingBloomFilter(int expectedKeys, double falsePositiveRate) {
+        int keys = Math.max(1, expectedKeys);
+        double rate = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long slots = (long) Math.ceil(-keys * Math.log(rate) / (Math.log(2) * Math.log(2)));
+        this.counters = (int) Math.max(64, Math.min(Integer.MAX_VALUE - COUNTERS_PER_WORD, slots));
+        this.hashes = Math.max(1, (int) Math.round((double) counters / keys * Math.log(2)));
+        this.words = new AtomicLongArray((counters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+    
+    public void add(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashes; i++) {
+            increment(slot(hash, i));
+        }
+    }
+    
+    /**
+     * Remove a key that was added before
+     * Removing a key that was never added would corrupt other keys' counters, so
+     * keys the filter certainly does not hold are ignored
+     * 
+     * @param key Key
+     * @return true if the key's counters were decremented
+     */
+    public boolean remove(String key) {
+        if (!mightContain(key)) {
+            return false;
+        }
+        long hash = hash(key);
+        for (int i = 0; i < hashes; i++) {
+            decrement(slot(hash, i));
+        }
+        return true;
+    }
+    
+    /**
+     * Check membership
+     * 
+     * @param key Key
+     * @return false if the key was certainly never added (or was removed)
+     */
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashes; i++) {
+            if (count(slot(hash, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public int getHashCount() {
+        return hashes;
+    }
+    
+    public long estimateBytes() {
+        return 8L * words.length();
+    }
+    
+    private int slot(long hash, int i) {
+        // Double hashing: the i-th probe is h1 + i * h2
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return (combined & Integer.MAX_VALUE) % counters;
+    }
+    
+    private long count(int slot) {
+        return (words.get(slot / COUNTERS_PER_WORD) >>> shift(slot)) & COUNTER_MASK;
+    }
+    
+    private void increment(int slot) {
+        int word = slot / COUNTERS_PER_WORD;
+        int shift = shift(slot);
+        while (true) {
+            long current = words.get(word);
+            long count = (current >>> shift) & COUNTER_MASK;
+            if (count == MAX_COUNT || words.compareAndSet(word, current, current + (1L << shift))) {
+                return;
+            }
+        }
+    }
+    
+    private void decrement(int slot) {
+        int word = slot / COUNTERS_PER_WORD;
+        int shift = shift(slot);
+        while (true) {
+            long current = words.get(word);
+            long count = (current >>> shift) & COUNTER_MASK;
+            // Saturated counters no longer know their true count, so they stay
+            if (count == 0 || count == MAX_COUNT || words.compareAndSet(word, current, current - (1L << shift))) {
+                return;
+            }
+        }
+    }
+    
+    private static int shift(int slot) {
+        return (slot % COUNTERS_PER_WORD) * 4;
+    }
+    
+    /**
+     * 64-bit FNV-1a over the characters, finished with the MurmurHash3 mixer
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,297 @@
+package com.library.cache;
+
+import com.library.util.LibraryConfig;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Key Filter
+ * Pre-check for unique keys (usernames, emails, ISBNs) backed by a
+ * {@link CountingBloomFilter}, so registrations and new books with fresh keys
+ * skip the existence query. A "maybe" still goes to the database, and the
+ * unique constraints remain the final arbiter.
+ * Loaded in the background from the database and rebuilt every
+ * filter.rebuild.minutes, which drops deleted keys and resizes the filter;
+ * until the first load completes every key is checked in the database.
+ * Keys are compared case-insensitively, which can only add false positives.
+ */
+public class KeyFilter {
+    
+    private static final int DEFAULT_EXPECTED_KEYS = 100_000;
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    private static final long DEFAULT_REBUILD_MINUTES = 60;
+    
+    private static final List<KeyFilter> INSTANCES = new CopyOnWriteArrayList<>();
+    private static ScheduledExecutorService worker;
+    
+    /**
+     * Streams every existing key, as the DAO forEach methods do
+     */
+    public interface KeySource {
+        /**
+         * @param consumer Receives each key
+         * @return true if every key was read
+         */
+        boolean forEachKey(Consumer<String> consumer);
+    }
+    
+    private final String name;
+    private final KeySource source;
+    private final Object writeLock = new Object();
+    private volatile CountingBloomFilter filter;   // null until loaded
+    private CountingBloomFilter building;          // receives adds while a rebuild scans
+    private volatile long loadedKeys;
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    
+    public KeyFilter(String name, KeySource source) {
+        this.name = name;
+        this.source = source;
+        INSTANCES.add(this);
+    }
+    
+    /**
+     * Load the filter in the background and schedule its rebuilds
+     */
+    public void start() {
+        long minutes = Math.max(1, LibraryConfig.current().getLong("filter.rebuild.minutes", DEFAULT_REBUILD_MINUTES));
+        ScheduledExecutorService executor = worker();
+        executor.execute(this::reload);
+        executor.scheduleWithFixedDelay(this::reload, minutes, minutes, TimeUnit.MINUTES);
+    }
+    
+    /**
+     * Rebuild the filter in the background, e.g. after a bulk change made elsewhere
+     * Requests arriving before the queued rebuild starts share it
+     */
+    public void reloadLater() {
+        if (reloadQueued.compareAndSet(false, true)) {
+            worker().execute(() -> {
+                reloadQueued.set(false);
+                reload();
+            });
+        }
+    }
+    
+    /**
+     * Rebuild the filter from the database; the old one serves until the new one is ready
+     * 
+     * @return true if the filter was loaded
+     */
+    public boolean reload() {
+        LibraryConfig config = LibraryConfig.current();
+        if (!config.getBoolean("filter.enabled", true)) {
+            filter = null;
+            return false;
+        }
+        int expected = Math.max(config.getInt("filter.expected.keys", DEFAULT_EXPECTED_KEYS),
+                (int) Math.min(Integer.MAX_VALUE / 2, loadedKeys * 2));
+        CountingBloomFilter fresh = new CountingBloomFilter(expected,
+                config.getDouble("filter.false.positive.rate", DEFAULT_FALSE_POSITIVE_RATE));
+        synchronized (writeLock) {
+            building = fresh;
+        }
+        
+        long start = System.currentTimeMillis();
+        long[] count = new long[1];
+        boolean complete = source.forEachKey(key -> {
+            if (key != null) {
+                fresh.add(normalize(key));
+                count[0]++;
+            }
+        });
+        
+        synchronized (writeLock) {
+            building = null;
+            if (!complete) {
+                System.err.println("Key filter " + name + " load failed; checking keys in the database");
+                return false;
+            }
+            filter = fresh;
+            loadedKeys = count[0];
+        }
+        System.out.println("Key filter " + name + " loaded " + count[0] + " keys in "
+                + (System.currentTimeMillis() - start) + " ms, " + fresh.estimateBytes() / 1024 + " KB");
+        if (count[0] > expected) {
+            System.err.println("Key filter " + name + " holds more keys than it was sized for; "
+                    + "the next rebuild resizes it");
+        }
+        return true;
+    }
+    
+    /**
+     * Check whether a key exists, asking the database only when the filter cannot rule it out
+     * 
+     * @param key Key
+     * @param query Exact existence check in the database
+     * @return true if the key exists
+     */
+    public boolean exists(String key, Predicate<String> query) {
+        lookups.incrementAndGet();
+        CountingBloomFilter current = filter;
+        if (current != null && !current.mightContain(normalize(key))) {
+            skipped.incrementAndGet();
+            return false;
+        }
+        boolean exists = query.test(key);
+        if (current != null && !exists) {
+            falsePositives.incrementAndGet();
+        }
+        return exists;
+    }
+    
+    /**
+     * Find which of many keys exist with one set-based query, asking only about
+     * the keys the filter cannot rule out
+     * 
+     * @param keys Keys to check
+     * @param query Set-based existence check returning the keys found in the database
+     * @return Normalized forms of the keys that exist
+     */
+    public Set<String> existing(Collection<String> keys, Function<Collection<String>, Collection<String>> query) {
+        lookups.addAndGet(keys.size());
+        CountingBloomFilter current = filter;
+        List<String> candidates = new ArrayList<>();
+        for (String key : keys) {
+            if (current == null || current.mightContain(normalize(key))) {
+                candidates.add(key);
+            }
+        }
+        skipped.addAndGet(keys.size() - candidates.size());
+        
+        Set<String> found = new HashSet<>();
+        if (!candidates.isEmpty()) {
+            for (String key : query.apply(candidates)) {
+                found.add(normalize(key));
+            }
+        }
+        if (current != null) {
+            falsePositives.addAndGet(Math.max(0, candidates.size() - found.size()));
+        }
+        return found;
+    }
+    
+    /**
+     * Record a key that now exists, e.g. after an insert on this or another node
+     * 
+     * @param key Key
+     */
+    public void add(String key) {
+        if (key == null) {
+            return;
+        }
+        String normalized = normalize(key);
+        synchronized (writeLock) {
+            if (filter != null) {
+                filter.add(normalized);
+            }
+            if (building != null) {
+                building.add(normalized);
+            }
+        }
+    }
+    
+    /**
+     * Forget a key that no longer exists
+     * A rebuild in progress keeps it if its scan already read it, which only
+     * costs a false positive until the next rebuild
+     * 
+     * @param key Key known to have been added
+     */
+    public void remove(String key) {
+        if (key == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (filter != null) {
+                filter.remove(normalize(key));
+            }
+        }
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public boolean isLoaded() {
+        return filter != null;
+    }
+    
+    public long getLookups() {
+        return lookups.get();
+    }
+    
+    /**
+     * Lookups answered "absent" without a database query
+     * 
+     * @return Skipped queries
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+    
+    /**
+     * Lookups the filter passed to the database that turned out absent
+     * 
+     * @return False positives
+     */
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+    
+    public long getLoadedKeys() {
+        return loadedKeys;
+    }
+    
+    public long estimateBytes() {
+        CountingBloomFilter current = filter;
+        return current != null ? current.estimateBytes() : 0;
+    }
+    
+    /**
+     * Every key filter created, for diagnostics
+     * 
+     * @return Filters in creation order
+     */
+    public static List<KeyFilter> getAll() {
+        return Collections.unmodifiableList(INSTANCES);
+    }
+    
+    /**
+     * Form in which keys are compared, matching the case-insensitive unique columns
+     * 
+     * @param key Key
+     * @return Trimmed, lower-case key
+     */
+    public static String normalize(String key) {
+        return key.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private static synchronized ScheduledExecutorService worker() {
+        if (worker == null) {
+            worker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "key-filters");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return worker;
+    }
+}
\ No newline at end of file
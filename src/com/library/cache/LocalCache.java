@@ -0,0 +1,203 @@
+package com.library.cache;
+
+import com.library.util.LibraryConfig;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local Cache
+ * Small in-process cache with a time-to-live safety net.
+ * Entries are normally dropped by change events from {@link com.library.event.ChangeEventBus};
+ * the TTL only bounds staleness if an invalidation is ever lost.
+ * TTL and size are tunable at runtime with cache.ttl.ms, cache.NAME.ttl.ms and
+ * cache.NAME.max.entries in {@link LibraryConfig}.
+ * Caches that retain stale values keep invalidated and expired entries around
+ * as a fallback for when the database cannot be reached.
+ * 
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class LocalCache<K, V> {
+    
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    
+    private static final List<LocalCache<?, ?>> INSTANCES = new CopyOnWriteArrayList<>();
+    
+    private final String name;
+    private volatile long ttlMillis;
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+    private volatile boolean retainStale;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    // Bumped on every invalidation so a load racing with an invalidation is not cached
+    private final AtomicLong generation = new AtomicLong();
+    
+    public LocalCache(String name, long defaultTtlMillis) {
+        this.name = name;
+        this.ttlMillis = defaultTtlMillis;
+        LibraryConfig.addListener(config -> {
+            long sharedTtl = config.getLong("cache.ttl.ms", defaultTtlMillis);
+            this.ttlMillis = config.getLong("cache." + name + ".ttl.ms", sharedTtl);
+            this.maxEntries = config.getInt("cache." + name + ".max.entries", DEFAULT_MAX_ENTRIES);
+        });
+        INSTANCES.add(this);
+    }
+    
+    /**
+     * Get a value, loading it on a miss or after expiry
+     * Null values are not cached
+     * 
+     * @param key Key
+     * @param loader Loader called on a miss
+     * @return Cached or freshly loaded value
+     */
+    public V get(K key, Function<K, V> loader) {
+        Entry<V> entry = entries.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null && entry.expiresAt > now) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        long loadGeneration = generation.get();
+        V value = loader.apply(key);
+        if (value != null && generation.get() == loadGeneration) {
+            if (entries.size() >= maxEntries) {
+                evict(now);
+            }
+            entries.put(key, new Entry<>(value, now + ttlMillis));
+        }
+        return value;
+    }
+    
+    /**
+     * Get the last loaded value, even if it has expired or been invalidated
+     * Only meaningful for caches that retain stale values
+     * 
+     * @param key Key
+     * @return Last loaded value, or null if none is held
+     */
+    public V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        staleHits.incrementAndGet();
+        return entry.value;
+    }
+    
+    /**
+     * Keep invalidated entries as expired stale values instead of dropping them
+     * 
+     * @param retainStale true to retain stale values
+     */
+    public void setRetainStale(boolean retainStale) {
+        this.retainStale = retainStale;
+    }
+    
+    /**
+     * Make room for one entry: drop expired entries, then arbitrary ones if still full
+     * 
+     * @param now Current time
+     */
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        Iterator<K> keys = entries.keySet().iterator();
+        while (entries.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+    
+    /**
+     * Drop a single entry
+     * 
+     * @param key Key
+     */
+    public void invalidate(K key) {
+        generation.incrementAndGet();
+        if (retainStale) {
+            entries.computeIfPresent(key, (k, entry) -> entry.expired());
+        } else {
+            entries.remove(key);
+        }
+    }
+    
+    /**
+     * Drop all entries
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        if (retainStale) {
+            entries.replaceAll((k, entry) -> entry.expired());
+        } else {
+            entries.clear();
+        }
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+    
+    /**
+     * Share of lookups served from the cache
+     * 
+     * @return Hit rate between 0 and 1, 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+    
+    /**
+     * Every cache created, for diagnostics
+     * 
+     * @return Caches in creation order
+     */
+    public static List<LocalCache<?, ?>> getAll() {
+        return Collections.unmodifiableList(INSTANCES);
+    }
+    
+    /**
+     * Cached value with its expiry time
+     */
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+        
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+        
+        private Entry<V> expired() {
+            return new Entry<>(value, 0);
+        }
+    }
+}
\ No newline at end of file
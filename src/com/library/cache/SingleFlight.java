@@ -0,0 +1,139 @@
+package com.library.cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single Flight
+ * Coalesces identical concurrent loads: the first caller for a key runs the
+ * loader and every caller arriving while it runs waits for and shares its
+ * result (or its exception). Nothing is kept once the load finishes; pair it
+ * with {@link LocalCache} for that.
+ * Writes should call forget so callers arriving after a change start a fresh
+ * load instead of joining one that may have read the old data.
+ * Results are shared between threads and must not be modified.
+ * 
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class SingleFlight<K, V> {
+    
+    private static final List<SingleFlight<?, ?>> INSTANCES = new CopyOnWriteArrayList<>();
+    
+    private final String name;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    
+    public SingleFlight(String name) {
+        this.name = name;
+        INSTANCES.add(this);
+    }
+    
+    /**
+     * Load a value, sharing a load already running for the same key
+     * 
+     * @param key Key identifying the load
+     * @param loader Loader run by the first caller
+     * @return Loaded value
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            shared.incrementAndGet();
+            return await(running);
+        }
+        
+        executions.incrementAndGet();
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+    
+    /**
+     * Stop sharing the running load for a key; callers already waiting still get its result
+     * 
+     * @param key Key
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+    
+    /**
+     * Stop sharing every running load
+     */
+    public void forgetAll() {
+        inFlight.clear();
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Loads actually run
+     * 
+     * @return Loader executions
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+    
+    /**
+     * Callers served by another caller's load instead of running their own
+     * 
+     * @return Deduplicated calls
+     */
+    public long getShared() {
+        return shared.get();
+    }
+    
+    public int getInFlight() {
+        return inFlight.size();
+    }
+    
+    /**
+     * Every single-flight group created, for diagnostics
+     * 
+     * @return Groups in creation order
+     */
+    public static List<SingleFlight<?, ?>> getAll() {
+        return Collections.unmodifiableList(INSTANCES);
+    }
+    
+    @Override
+    public String toString() {
+        return name + "{executions=" + executions.get() + ", shared=" + shared.get()
+                + ", inFlight=" + inFlight.size() + "}";
+    }
+    
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
\ No newline at end of file
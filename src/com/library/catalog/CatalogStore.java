@@ -0,0 +1,692 @@
+package com.library.catalog;
+
+import com.library.dao.BookDAO;
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
+import com.library.model.Book;
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+import com.library.util.LibraryConfig;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Catalog Store
+ * Compact in-memory copy of the books table for very large catalogs.
+ * Each column is a primitive array indexed by row; authors, publishers and
+ * categories are dictionary-encoded, and titles and ISBNs live as UTF-8 in one
+ * off-heap buffer. {@link Book} objects are only built on demand for the rows a
+ * request returns, so the resident catalog costs roughly a tenth of a list of Books.
+ * 
+ * Rows are never moved: a book keeps its row for the life of the store and a
+ * deleted book leaves a tombstone, so indexes built on row numbers stay valid.
+ * The store follows BOOK change events, re-reading the changed row.
+ * Each branch has a store of its own, loaded from its branch's rows only, so
+ * a branch's memory and listing cost follow its own catalog size.
+ * Row accessors (titleAt, categoryCodeAt, ...) must be called inside
+ * {@link #read(Runnable)} or a {@link RowListener} callback.
+ */
+public class CatalogStore {
+    
+    private static final int INITIAL_ROWS = 1024;
+    private static final int INITIAL_STRING_BYTES = 64 * 1024;
+    private static final int NO_STRING = -1;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final long RETRY_INTERVAL_MS = 5000;
+    
+    private static final Map<Integer, CatalogStore> STORES = new ConcurrentHashMap<>();
+    
+    /**
+     * Told about every row change, under the store's write lock
+     */
+    public interface RowListener {
+        /**
+         * Called before a row changes; accessors still return the old values
+         * 
+         * @param row Row index
+         */
+        void beforeChange(int row);
+        
+        /**
+         * Called after a row was added or changed; accessors return the new values
+         * 
+         * @param row Row index
+         */
+        void afterChange(int row);
+        
+        /**
+         * Called after the whole store was reloaded; all row numbers may have changed
+         */
+        void onReload();
+    }
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<RowListener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Integer> pendingRefresh = ConcurrentHashMap.newKeySet();
+    private final BookDAO bookDAO = new BookDAO();
+    private final int branchId;
+    private volatile boolean loaded;
+    private volatile boolean reloading;
+    private boolean started;
+    
+    // Columns, guarded by lock
+    private int rowCount;
+    private int liveCount;
+    private int[] bookIds = new int[INITIAL_ROWS];
+    private int[] titles = new int[INITIAL_ROWS];
+    private int[] isbns = new int[INITIAL_ROWS];
+    private int[] authors = new int[INITIAL_ROWS];
+    private int[] publishers = new int[INITIAL_ROWS];
+    private int[] categories = new int[INITIAL_ROWS];
+    private short[] years = new short[INITIAL_ROWS];
+    private int[] totalCopies = new int[INITIAL_ROWS];
+    private int[] availableCopies = new int[INITIAL_ROWS];
+    private long[] createdAt = new long[INITIAL_ROWS];
+    private long[] updatedAt = new long[INITIAL_ROWS];
+    private BitSet deleted = new BitSet();
+    private IntIntHashMap rowsById = new IntIntHashMap(INITIAL_ROWS);
+    
+    private StringDictionary authorDictionary = new StringDictionary();
+    private StringDictionary publisherDictionary = new StringDictionary();
+    private StringDictionary categoryDictionary = new StringDictionary();
+    
+    // Length-prefixed UTF-8 strings; replaced strings become garbage until compaction
+    private ByteBuffer strings = ByteBuffer.allocateDirect(INITIAL_STRING_BYTES);
+    private int garbageBytes;
+    
+    // Live rows sorted by title, rebuilt lazily after titles or membership change
+    private volatile int[] titleOrder;
+    private int[] titleRanks; // Position of each row in titleOrder, built with it
+    
+    private CatalogStore(int branchId) {
+        this.branchId = branchId;
+    }
+    
+    /**
+     * Store of the current branch
+     * 
+     * @return CatalogStore of {@link BranchContext#current()}
+     */
+    public static CatalogStore getInstance() {
+        return forBranch(BranchContext.current());
+    }
+    
+    public static CatalogStore forBranch(int branchId) {
+        return STORES.computeIfAbsent(branchId, CatalogStore::new);
+    }
+    
+    /**
+     * Stores created so far, for diagnostics
+     * 
+     * @return Stores by branch ID
+     */
+    public static Map<Integer, CatalogStore> getStores() {
+        return Collections.unmodifiableMap(STORES);
+    }
+    
+    /**
+     * Load the catalog in the background and start following change events (once)
+     * Disabled with catalog.store.enabled=false
+     */
+    public synchronized void start() {
+        if (started || !LibraryConfig.current().getBoolean("catalog.store.enabled", true)) {
+            return;
+        }
+        started = true;
+        
+        // Subscribe first so changes made during the load are queued, not lost.
+        // BOOK events name the branch when the writer knew it; otherwise every store checks
+        ChangeEventBus.getInstance().addListener(event -> {
+            if (event.getEntityType() == ChangeEvent.EntityType.BOOK
+                    && (event.getOwnerId() <= 0 || event.getOwnerId() == branchId)) {
+                if (loaded && !reloading) {
+                    refresh(event.getEntityId(), event.getOperation() == ChangeEvent.Operation.DELETE);
+                } else {
+                    pendingRefresh.add(event.getEntityId());
+                }
+            }
+        });
+        
+        ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-store-" + branchId);
+            t.setDaemon(true);
+            return t;
+        });
+        worker.execute(this::reload);
+        worker.scheduleWithFixedDelay(this::retryPending, RETRY_INTERVAL_MS, RETRY_INTERVAL_MS,
+                                      TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Rebuild the store from the database
+     * The new copy is built aside and swapped in, so readers are not blocked meanwhile
+     * 
+     * @return true if the catalog was loaded
+     */
+    public boolean reload() {
+        long start = System.currentTimeMillis();
+        CatalogStore fresh = new CatalogStore(branchId);
+        // Changes racing with the load are queued and re-read after the swap
+        reloading = true;
+        boolean complete = BranchContext.callAs(branchId, () -> bookDAO.forEachBook(branchId, fresh::upsertRow));
+        if (!complete) {
+            reloading = false;
+            System.err.println("Catalog store load failed for branch " + branchId
+                    + "; serving catalog from the database");
+            return false;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            rowCount = fresh.rowCount;
+            liveCount = fresh.liveCount;
+            bookIds = fresh.bookIds;
+            titles = fresh.titles;
+            isbns = fresh.isbns;
+            authors = fresh.authors;
+            publishers = fresh.publishers;
+            categories = fresh.categories;
+            years = fresh.years;
+            totalCopies = fresh.totalCopies;
+            availableCopies = fresh.availableCopies;
+            createdAt = fresh.createdAt;
+            updatedAt = fresh.updatedAt;
+            deleted = fresh.deleted;
+            rowsById = fresh.rowsById;
+            authorDictionary = fresh.authorDictionary;
+            publisherDictionary = fresh.publisherDictionary;
+            categoryDictionary = fresh.categoryDictionary;
+            strings = fresh.strings;
+            garbageBytes = fresh.garbageBytes;
+            titleOrder = null;
+            loaded = true;
+            reloading = false;
+            for (RowListener listener : listeners) {
+                listener.onReload();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        System.out.println("Catalog store loaded " + liveCount + " books of branch " + branchId + " in "
+                + (System.currentTimeMillis() - start) + " ms, ~" + (estimateBytes() / 1024) + " KB");
+        retryPending();
+        return true;
+    }
+    
+    /**
+     * Re-read one book after a change event
+     * A book that cannot be read right now is retried in the background;
+     * a book of another branch is dropped if this store holds it
+     * 
+     * @param bookId Book ID
+     * @param isDelete true if the book was deleted
+     */
+    private void refresh(int bookId, boolean isDelete) {
+        if (isDelete) {
+            markDeleted(bookId);
+            return;
+        }
+        Book book = BranchContext.callAs(branchId, () -> bookDAO.getBookById(bookId));
+        if (book != null && book.getBranchId() == branchId) {
+            upsert(book);
+        } else if (book != null) {
+            markDeleted(bookId);
+        } else if (BranchContext.callAs(branchId, () -> DBConnection.isReadable(DBConnection.CATALOG_SCOPE))) {
+            // Gone by the time we looked; its delete event may still be on the way
+            markDeleted(bookId);
+        } else {
+            pendingRefresh.add(bookId);
+        }
+    }
+    
+    /**
+     * Re-read books whose refresh failed, or retry the initial load
+     */
+    private void retryPending() {
+        if (!loaded) {
+            reload();
+            return;
+        }
+        for (Integer bookId : pendingRefresh) {
+            pendingRefresh.remove(bookId);
+            refresh(bookId, false);
+        }
+    }
+    
+    /**
+     * Add or replace a book
+     * 
+     * @param book Book
+     */
+    public void upsert(Book book) {
+        lock.writeLock().lock();
+        try {
+            upsertRow(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Tombstone a book
+     * 
+     * @param bookId Book ID
+     */
+    public void markDeleted(int bookId) {
+        lock.writeLock().lock();
+        try {
+            int row = rowsById.get(bookId);
+            if (row < 0 || deleted.get(row)) {
+                return;
+            }
+            for (RowListener listener : listeners) {
+                listener.beforeChange(row);
+            }
+            deleted.set(row);
+            liveCount--;
+            garbageBytes += stringBytes(titles[row]) + stringBytes(isbns[row]);
+            titles[row] = NO_STRING;
+            isbns[row] = NO_STRING;
+            titleOrder = null;
+            for (RowListener listener : listeners) {
+                listener.afterChange(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void upsertRow(Book book) {
+        int row = rowsById.get(book.getBookId());
+        boolean isNew = row < 0;
+        if (isNew) {
+            ensureRowCapacity(rowCount + 1);
+            row = rowCount++;
+            rowsById.put(book.getBookId(), row);
+            bookIds[row] = book.getBookId();
+            titles[row] = NO_STRING;
+            isbns[row] = NO_STRING;
+            liveCount++;
+        } else {
+            for (RowListener listener : listeners) {
+                listener.beforeChange(row);
+            }
+            if (deleted.get(row)) {
+                deleted.clear(row);
+                liveCount++;
+            }
+        }
+        
+        String oldTitle = readString(titles[row]);
+        if (isNew || !book.getTitle().equals(oldTitle)) {
+            titleOrder = null;
+        }
+        titles[row] = replaceString(titles[row], book.getTitle());
+        isbns[row] = replaceString(isbns[row], book.getIsbn());
+        authors[row] = authorDictionary.encode(book.getAuthor());
+        publishers[row] = publisherDictionary.encode(book.getPublisher());
+        categories[row] = categoryDictionary.encode(book.getCategory());
+        years[row] = (short) book.getPublicationYear();
+        totalCopies[row] = book.getTotalCopies();
+        availableCopies[row] = book.getAvailableCopies();
+        createdAt[row] = book.getCreatedAt() != null ? book.getCreatedAt().getTime() : NO_TIME;
+        updatedAt[row] = book.getUpdatedAt() != null ? book.getUpdatedAt().getTime() : NO_TIME;
+        
+        for (RowListener listener : listeners) {
+            listener.afterChange(row);
+        }
+    }
+    
+    /**
+     * Get a book, built from its row
+     * 
+     * @param bookId Book ID
+     * @return Book, or null if absent or deleted
+     */
+    public Book getBook(int bookId) {
+        lock.readLock().lock();
+        try {
+            int row = rowsById.get(bookId);
+            return row < 0 || deleted.get(row) ? null : toBook(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get all books ordered by title, as the books listing does
+     * 
+     * @param availableOnly true to skip books with no available copies
+     * @return Books built from their rows
+     */
+    public List<Book> getBooks(boolean availableOnly) {
+        lock.readLock().lock();
+        try {
+            int[] order = getTitleOrder();
+            List<Book> books = new ArrayList<>(availableOnly ? Math.min(order.length, 256) : order.length);
+            for (int row : order) {
+                if (!availableOnly || availableCopies[row] > 0) {
+                    books.add(toBook(row));
+                }
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Build books for the given rows, in the given order
+     * 
+     * @param rows Row indexes
+     * @param limit Maximum number of books
+     * @return Books, skipping deleted rows
+     */
+    public List<Book> getBooks(int[] rows, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Book> books = new ArrayList<>(Math.min(rows.length, limit));
+            for (int i = 0; i < rows.length && books.size() < limit; i++) {
+                if (rows[i] < rowCount && !deleted.get(rows[i])) {
+                    books.add(toBook(rows[i]));
+                }
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Run an action under the read lock, so row accessors see a consistent store
+     * 
+     * @param action Action reading rows
+     */
+    public void read(Runnable action) {
+        lock.readLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public void addListener(RowListener listener) {
+        listeners.add(listener);
+    }
+    
+    public boolean isLoaded() {
+        return loaded;
+    }
+    
+    public int getBranchId() {
+        return branchId;
+    }
+    
+    public int getBookCount() {
+        return liveCount;
+    }
+    
+    // Row accessors; call inside read() or a RowListener callback
+    
+    public int rowCount() {
+        return rowCount;
+    }
+    
+    public boolean isLive(int row) {
+        return !deleted.get(row);
+    }
+    
+    public int rowOf(int bookId) {
+        return rowsById.get(bookId);
+    }
+    
+    public int bookIdAt(int row) {
+        return bookIds[row];
+    }
+    
+    public String titleAt(int row) {
+        return readString(titles[row]);
+    }
+    
+    public int titleBytesAt(int row) {
+        return stringBytes(titles[row]);
+    }
+    
+    public String authorAt(int row) {
+        return authorDictionary.decode(authors[row]);
+    }
+    
+    public int authorCodeAt(int row) {
+        return authors[row];
+    }
+    
+    public int publisherCodeAt(int row) {
+        return publishers[row];
+    }
+    
+    public int categoryCodeAt(int row) {
+        return categories[row];
+    }
+    
+    public int yearAt(int row) {
+        return years[row];
+    }
+    
+    public int availableCopiesAt(int row) {
+        return availableCopies[row];
+    }
+    
+    public StringDictionary getAuthorDictionary() {
+        return authorDictionary;
+    }
+    
+    public StringDictionary getPublisherDictionary() {
+        return publisherDictionary;
+    }
+    
+    public StringDictionary getCategoryDictionary() {
+        return categoryDictionary;
+    }
+    
+    /**
+     * Live rows ordered by title (case-insensitive), rebuilt after titles change
+     * 
+     * @return Row indexes; do not modify
+     */
+    public int[] getTitleOrder() {
+        int[] order = titleOrder;
+        if (order != null) {
+            return order;
+        }
+        synchronized (this) {
+            if (titleOrder == null) {
+                Integer[] rows = new Integer[liveCount];
+                String[] keys = new String[rowCount];
+                int n = 0;
+                for (int row = 0; row < rowCount; row++) {
+                    if (!deleted.get(row)) {
+                        rows[n++] = row;
+                        keys[row] = readString(titles[row]);
+                    }
+                }
+                Arrays.sort(rows, Comparator.comparing((Integer row) -> keys[row], String.CASE_INSENSITIVE_ORDER));
+                int[] sorted = new int[rows.length];
+                int[] ranks = new int[rowCount];
+                Arrays.fill(ranks, Integer.MAX_VALUE);
+                for (int i = 0; i < rows.length; i++) {
+                    sorted[i] = rows[i];
+                    ranks[rows[i]] = i;
+                }
+                titleRanks = ranks;
+                titleOrder = sorted;
+            }
+            return titleOrder;
+        }
+    }
+    
+    /**
+     * Title position of every row, so rows can be compared by title without
+     * decoding strings; call inside read()
+     * 
+     * @return Rank per row index, Integer.MAX_VALUE for deleted rows; do not modify
+     */
+    public int[] getTitleRanks() {
+        getTitleOrder();
+        synchronized (this) {
+            return titleRanks;
+        }
+    }
+    
+    /**
+     * Rough memory held by the store, heap and off-heap
+     * 
+     * @return Estimated bytes
+     */
+    public long estimateBytes() {
+        lock.readLock().lock();
+        try {
+            long perRow = 4L * 8 + 2 + 8L * 2; // eight int columns, year, two timestamps
+            return perRow * bookIds.length + strings.capacity() + rowsById.estimateBytes()
+                    + authorDictionary.estimateBytes() + publisherDictionary.estimateBytes()
+                    + categoryDictionary.estimateBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private Book toBook(int row) {
+        Book book = new Book(bookIds[row], readString(titles[row]), authorDictionary.decode(authors[row]),
+                readString(isbns[row]), publisherDictionary.decode(publishers[row]), years[row],
+                categoryDictionary.decode(categories[row]), totalCopies[row], availableCopies[row],
+                createdAt[row] == NO_TIME ? null : new Timestamp(createdAt[row]),
+                updatedAt[row] == NO_TIME ? null : new Timestamp(updatedAt[row]));
+        book.setBranchId(branchId);
+        return book;
+    }
+    
+    private void ensureRowCapacity(int rows) {
+        if (rows <= bookIds.length) {
+            return;
+        }
+        int capacity = Math.max(rows, bookIds.length * 2);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        isbns = Arrays.copyOf(isbns, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+        publishers = Arrays.copyOf(publishers, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        years = Arrays.copyOf(years, capacity);
+        totalCopies = Arrays.copyOf(totalCopies, capacity);
+        availableCopies = Arrays.copyOf(availableCopies, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        updatedAt = Arrays.copyOf(updatedAt, capacity);
+    }
+    
+    /**
+     * Store a string, reusing the old slot when the value is unchanged
+     * 
+     * @param offset Current offset, or NO_STRING
+     * @param value New value, may be null
+     * @return Offset of the stored value
+     */
+    private int replaceString(int offset, String value) {
+        if (offset != NO_STRING && value != null && value.equals(readString(offset))) {
+            return offset;
+        }
+        if (offset != NO_STRING) {
+            garbageBytes += stringBytes(offset);
+        }
+        return value == null ? NO_STRING : writeString(value.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private int writeString(byte[] bytes) {
+        // Two-byte length prefix; column widths keep values far below 64 KB
+        int length = Math.min(bytes.length, 0xFFFF);
+        if (strings.remaining() < length + 2) {
+            growStrings(length + 2);
+        }
+        int offset = strings.position();
+        strings.putShort((short) length);
+        strings.put(bytes, 0, length);
+        return offset;
+    }
+    
+    private String readString(int offset) {
+        if (offset == NO_STRING) {
+            return null;
+        }
+        int length = strings.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = strings.duplicate();
+        view.position(offset + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private int stringBytes(int offset) {
+        return offset == NO_STRING ? 0 : 2 + (strings.getShort(offset) & 0xFFFF);
+    }
+    
+    /**
+     * Make room for more string bytes, dropping replaced strings if they are
+     * at least half of the buffer
+     * 
+     * @param needed Bytes about to be written
+     */
+    private void growStrings(int needed) {
+        int used = strings.position();
+        boolean compact = garbageBytes * 2 >= used;
+        int live = compact ? used - garbageBytes : used;
+        int capacity = Math.max(strings.capacity(), INITIAL_STRING_BYTES);
+        while (capacity < live + needed) {
+            capacity *= 2;
+        }
+        if (!compact && capacity == strings.capacity()) {
+            capacity *= 2;
+        }
+        
+        ByteBuffer old = strings;
+        strings = ByteBuffer.allocateDirect(capacity);
+        if (compact) {
+            for (int row = 0; row < rowCount; row++) {
+                titles[row] = copyString(old, titles[row]);
+                isbns[row] = copyString(old, isbns[row]);
+            }
+            garbageBytes = 0;
+        } else {
+            ByteBuffer source = old.duplicate();
+            source.flip();
+            strings.put(source);
+        }
+    }
+    
+    private int copyString(ByteBuffer from, int offset) {
+        if (offset == NO_STRING) {
+            return NO_STRING;
+        }
+        int length = 2 + (from.getShort(offset) & 0xFFFF);
+        int newOffset = strings.position();
+        ByteBuffer source = from.duplicate();
+        source.limit(offset + length).position(offset);
+        strings.put(source);
+        return newOffset;
+    }
+}
\ No newline at end of file
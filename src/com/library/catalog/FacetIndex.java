@@ -0,0 +1,336 @@
+package com.library.catalog;
+
+import com.library.model.Book;
+import com.library.util.BranchContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Facet Index
+ * Live per-value counts and row sets for categories, authors and publishers,
+ * maintained from {@link CatalogStore} row changes. Sidebar counts and filtered
+ * listings are answered from memory with set intersections, never a table scan.
+ * Lock order is always store lock, then this index. There is one index per
+ * branch, over that branch's store.
+ */
+public class FacetIndex implements CatalogStore.RowListener {
+    
+    public enum Facet {
+        CATEGORY, AUTHOR, PUBLISHER
+    }
+    
+    /**
+     * Number of books carrying one facet value
+     */
+    public static class FacetCount {
+        private final String value;
+        private final int total;
+        private final int available;
+        
+        public FacetCount(String value, int total, int available) {
+            this.value = value;
+            this.total = total;
+            this.available = available;
+        }
+        
+        public String getValue() {
+            return value;
+        }
+        
+        public int getTotal() {
+            return total;
+        }
+        
+        public int getAvailable() {
+            return available;
+        }
+    }
+    
+    private static final Map<Integer, FacetIndex> INSTANCES = new ConcurrentHashMap<>();
+    
+    private final CatalogStore store;
+    // Per facet, indexed by dictionary code
+    private final Map<Facet, List<RowSet>> rowsByValue = new EnumMap<>(Facet.class);
+    private final Map<Facet, int[]> availableByValue = new EnumMap<>(Facet.class);
+    private RowSet availableRows = new RowSet();
+    
+    private FacetIndex(CatalogStore store) {
+        this.store = store;
+        store.addListener(this);
+        store.read(() -> {
+            synchronized (this) {
+                rebuild();
+            }
+        });
+    }
+    
+    /**
+     * Index of the current branch's catalog
+     * 
+     * @return FacetIndex of {@link BranchContext#current()}
+     */
+    public static FacetIndex getInstance() {
+        return forBranch(BranchContext.current());
+    }
+    
+    public static FacetIndex forBranch(int branchId) {
+        return INSTANCES.computeIfAbsent(branchId, id -> new FacetIndex(CatalogStore.forBranch(id)));
+    }
+    
+    /**
+     * Counts for every value of a facet, most common first
+     * 
+     * @param facet Facet
+     * @param limit Maximum number of values
+     * @return Value counts
+     */
+    public List<FacetCount> getCounts(Facet facet, int limit) {
+        List<FacetCount> counts = new ArrayList<>();
+        store.read(() -> {
+            synchronized (this) {
+                StringDictionary dictionary = dictionary(facet);
+                List<RowSet> sets = rowsByValue.get(facet);
+                int[] available = availableByValue.get(facet);
+                for (int code = 0; code < sets.size(); code++) {
+                    int total = sets.get(code).cardinality();
+                    if (total > 0) {
+                        counts.add(new FacetCount(dictionary.decode(code), total, available[code]));
+                    }
+                }
+            }
+        });
+        counts.sort(Comparator.comparingInt(FacetCount::getTotal).reversed()
+                .thenComparing(FacetCount::getValue, String.CASE_INSENSITIVE_ORDER));
+        return counts.size() > limit ? new ArrayList<>(counts.subList(0, limit)) : counts;
+    }
+    
+    /**
+     * Books matching every selected facet value, ordered by title
+     * 
+     * @param selections Selected value per facet; values must match exactly
+     * @param availableOnly true to keep only books with available copies
+     * @param limit Maximum number of books
+     * @return Matching books
+     */
+    public List<Book> filter(Map<Facet, String> selections, boolean availableOnly, int limit) {
+        List<Book> books = new ArrayList<>();
+        store.read(() -> {
+            int[] rows;
+            synchronized (this) {
+                rows = matchingRows(selections, availableOnly);
+            }
+            if (rows == null) {
+                rows = store.getTitleOrder();
+                if (availableOnly) {
+                    rows = keepAvailable(rows);
+                }
+            } else {
+                rows = sortByTitle(rows);
+            }
+            books.addAll(store.getBooks(rows, limit));
+        });
+        return books;
+    }
+    
+    /**
+     * Rows matching the selections; call under the store read lock and this monitor
+     * 
+     * @return Matching rows, or null if nothing narrows the catalog
+     */
+    int[] matchingRows(Map<Facet, String> selections, boolean availableOnly) {
+        List<RowSet> sets = new ArrayList<>();
+        for (Map.Entry<Facet, String> selection : selections.entrySet()) {
+            if (selection.getValue() == null) {
+                continue;
+            }
+            int code = dictionary(selection.getKey()).lookup(selection.getValue());
+            List<RowSet> facetSets = rowsByValue.get(selection.getKey());
+            if (code == StringDictionary.NULL_CODE || code >= facetSets.size()) {
+                return new int[0];
+            }
+            sets.add(facetSets.get(code));
+        }
+        if (availableOnly) {
+            sets.add(availableRows);
+        }
+        if (sets.isEmpty()) {
+            return null;
+        }
+        return RowSet.intersect(sets.toArray(new RowSet[0]));
+    }
+    
+    /**
+     * Row set for one facet value; call under the store read lock and this monitor
+     * 
+     * @return Rows, or null if the value is unknown
+     */
+    RowSet rowsFor(Facet facet, String value) {
+        int code = dictionary(facet).lookup(value);
+        List<RowSet> sets = rowsByValue.get(facet);
+        return code == StringDictionary.NULL_CODE || code >= sets.size() ? null : sets.get(code);
+    }
+    
+    /**
+     * Row set for one dictionary code; call under the store read lock and this monitor
+     * 
+     * @return Rows, or null if no live row has carried the code
+     */
+    RowSet rowsFor(Facet facet, int code) {
+        List<RowSet> sets = rowsByValue.get(facet);
+        return code < 0 || code >= sets.size() ? null : sets.get(code);
+    }
+    
+    RowSet availableRows() {
+        return availableRows;
+    }
+    
+    @Override
+    public synchronized void beforeChange(int row) {
+        if (!store.isLive(row)) {
+            return;
+        }
+        boolean available = store.availableCopiesAt(row) > 0;
+        for (Facet facet : Facet.values()) {
+            int code = code(facet, row);
+            if (code != StringDictionary.NULL_CODE) {
+                rowsByValue.get(facet).get(code).remove(row);
+                if (available) {
+                    availableByValue.get(facet)[code]--;
+                }
+            }
+        }
+        availableRows.remove(row);
+    }
+    
+    @Override
+    public synchronized void afterChange(int row) {
+        if (store.isLive(row)) {
+            index(row);
+        }
+    }
+    
+    @Override
+    public synchronized void onReload() {
+        rebuild();
+    }
+    
+    private void rebuild() {
+        for (Facet facet : Facet.values()) {
+            rowsByValue.put(facet, new ArrayList<>());
+            availableByValue.put(facet, new int[0]);
+        }
+        availableRows = new RowSet();
+        for (int row = 0; row < store.rowCount(); row++) {
+            if (store.isLive(row)) {
+                index(row);
+            }
+        }
+    }
+    
+    private void index(int row) {
+        boolean available = store.availableCopiesAt(row) > 0;
+        for (Facet facet : Facet.values()) {
+            int code = code(facet, row);
+            if (code == StringDictionary.NULL_CODE) {
+                continue;
+            }
+            List<RowSet> sets = rowsByValue.get(facet);
+            while (sets.size() <= code) {
+                sets.add(new RowSet());
+            }
+            int[] availableCounts = availableByValue.get(facet);
+            if (availableCounts.length <= code) {
+                int[] grown = new int[Math.max(code + 1, availableCounts.length * 2)];
+                System.arraycopy(availableCounts, 0, grown, 0, availableCounts.length);
+                availableByValue.put(facet, grown);
+                availableCounts = grown;
+            }
+            sets.get(code).add(row);
+            if (available) {
+                availableCounts[code]++;
+            }
+        }
+        if (available) {
+            availableRows.add(row);
+        }
+    }
+    
+    private int code(Facet facet, int row) {
+        switch (facet) {
+            case CATEGORY:
+                return store.categoryCodeAt(row);
+            case AUTHOR:
+                return store.authorCodeAt(row);
+            default:
+                return store.publisherCodeAt(row);
+        }
+    }
+    
+    private StringDictionary dictionary(Facet facet) {
+        switch (facet) {
+            case CATEGORY:
+                return store.getCategoryDictionary();
+            case AUTHOR:
+                return store.getAuthorDictionary();
+            default:
+                return store.getPublisherDictionary();
+        }
+    }
+    
+    private int[] keepAvailable(int[] rows) {
+        int[] kept = new int[rows.length];
+        int n = 0;
+        for (int row : rows) {
+            if (store.availableCopiesAt(row) > 0) {
+                kept[n++] = row;
+            }
+        }
+        return Arrays.copyOf(kept, n);
+    }
+    
+    /**
+     * Order rows by title the way the full listing is ordered
+     * 
+     * @param rows Rows
+     * @return Rows sorted by title
+     */
+    int[] sortByTitle(int[] rows) {
+        int[] titleOrder = store.getTitleOrder();
+        if (rows.length * 8L > titleOrder.length) {
+            // Large result: walk the prebuilt title order instead of sorting
+            BitSet members = new BitSet();
+            for (int row : rows) {
+                members.set(row);
+            }
+            int[] sorted = new int[rows.length];
+            int n = 0;
+            for (int row : titleOrder) {
+                if (members.get(row)) {
+                    sorted[n++] = row;
+                }
+            }
+            return Arrays.copyOf(sorted, n);
+        }
+        Map<Integer, String> titles = new HashMap<>();
+        List<Integer> ordered = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            titles.put(row, store.titleAt(row));
+            ordered.add(row);
+        }
+        Collections.sort(ordered, Comparator.comparing(titles::get, String.CASE_INSENSITIVE_ORDER));
+        int[] sorted = new int[ordered.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = ordered.get(i);
+        }
+        return sorted;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.library.catalog;
+
+/**
+ * Int-to-int hash map with open addressing
+ * Holds positive keys without boxing; used to find a catalog row by book ID.
+ * Entries are never removed. Not thread-safe.
+ */
+class IntIntHashMap {
+    
+    private static final int EMPTY = 0;
+    
+    private int[] keys;
+    private int[] values;
+    private int size;
+    
+    IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+    
+    /**
+     * Get the value for a key
+     * 
+     * @param key Positive key
+     * @return Value, or -1 if absent
+     */
+    int get(int key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            if (keys[i] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+    
+    /**
+     * Set the value for a key
+     * 
+     * @param key Positive key
+     * @param value Value
+     */
+    void put(int key, int value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Key must be positive: " + key);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            if (keys[i] == EMPTY) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    long estimateBytes() {
+        return 8L * keys.length;
+    }
+    
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+    
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,381 @@
+package com.library.catalog;
+
+import com.library.model.Book;
+import com.library.model.BookQuery;
+import com.library.util.BranchContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Query Planner
+ * Runs a combined catalog search against {@link CatalogStore} and {@link FacetIndex}.
+ * Predicates backed by a row set (category, author, availability) are costed by
+ * their set sizes; the smallest set drives the scan and every other predicate is
+ * checked per row, cheapest first. When the result is sorted by title and the
+ * predicates are not selective, the planner walks the prebuilt title order
+ * instead and stops once the limit is reached.
+ */
+public class QueryPlanner {
+    
+    // Guessed share of books passing predicates that have no row set
+    private static final double YEAR_SELECTIVITY = 0.3;
+    private static final double TITLE_SELECTIVITY = 0.1;
+    
+    /**
+     * Books found by a query and a short description of how they were found
+     */
+    public static class Result {
+        private final List<Book> books;
+        private final String plan;
+        
+        public Result(List<Book> books, String plan) {
+            this.books = books;
+            this.plan = plan;
+        }
+        
+        public List<Book> getBooks() {
+            return books;
+        }
+        
+        public String getPlan() {
+            return plan;
+        }
+    }
+    
+    /**
+     * One predicate of the query; set-backed ones can also drive the scan
+     */
+    private abstract static class Step {
+        final String description;
+        final int estimate;      // rows matching, or -1 when there is no row set
+        final double selectivity; // guessed share of books passing when there is no row set
+        final int cost;          // relative cost of one per-row check
+        
+        Step(String description, int estimate, double selectivity, int cost) {
+            this.description = description;
+            this.estimate = estimate;
+            this.selectivity = selectivity;
+            this.cost = cost;
+        }
+        
+        abstract boolean test(int row);
+        
+        int[] rows() {
+            throw new UnsupportedOperationException(description + " has no row set");
+        }
+    }
+    
+    private static final Map<Integer, QueryPlanner> INSTANCES = new ConcurrentHashMap<>();
+    
+    private final CatalogStore store;
+    private final FacetIndex index;
+    
+    private QueryPlanner(CatalogStore store, FacetIndex index) {
+        this.store = store;
+        this.index = index;
+    }
+    
+    /**
+     * Planner for the current branch's catalog
+     * 
+     * @return QueryPlanner of {@link BranchContext#current()}
+     */
+    public static QueryPlanner getInstance() {
+        return forBranch(BranchContext.current());
+    }
+    
+    public static QueryPlanner forBranch(int branchId) {
+        return INSTANCES.computeIfAbsent(branchId,
+                id -> new QueryPlanner(CatalogStore.forBranch(id), FacetIndex.forBranch(id)));
+    }
+    
+    /**
+     * Run a query against the loaded catalog store
+     * 
+     * @param query Search criteria, sort and limit
+     * @return Matching books in the requested order, with the plan used
+     */
+    public Result execute(BookQuery query) {
+        List<Book> books = new ArrayList<>();
+        StringBuilder plan = new StringBuilder();
+        store.read(() -> {
+            int[] rows;
+            synchronized (index) {
+                rows = run(query, plan);
+            }
+            books.addAll(store.getBooks(rows, query.getLimit()));
+        });
+        return new Result(books, plan.toString());
+    }
+    
+    /**
+     * Plan and run the query; call under the store read lock and the index monitor
+     * 
+     * @return Matching rows in result order, at most the query limit
+     */
+    private int[] run(BookQuery query, StringBuilder plan) {
+        List<Step> indexed = new ArrayList<>();
+        List<Step> checks = new ArrayList<>();
+        if (!addSteps(query, indexed, checks)) {
+            plan.append("no match: unknown category");
+            return new int[0];
+        }
+        indexed.sort(Comparator.comparingInt(step -> step.estimate));
+        
+        int liveCount = Math.max(1, store.getBookCount());
+        double selectivity = 1.0;
+        for (Step step : indexed) {
+            selectivity *= (double) step.estimate / liveCount;
+        }
+        for (Step step : checks) {
+            selectivity *= step.selectivity;
+        }
+        
+        int limit = query.getLimit();
+        boolean byTitle = BookQuery.SORT_TITLE.equals(query.getSortBy());
+        long driverRows = indexed.isEmpty() ? liveCount : indexed.get(0).estimate;
+        // Rows visited walking the title order until the limit is reached
+        double walkRows = selectivity > 0 ? Math.min(liveCount, limit / selectivity) : liveCount;
+        
+        if (!indexed.isEmpty() && driverRows == 0) {
+            plan.append(indexed.get(0).description).append(" [0 rows]");
+            return new int[0];
+        }
+        
+        List<Step> filters = new ArrayList<>(indexed);
+        filters.addAll(checks);
+        if (byTitle && walkRows < driverRows) {
+            filters.sort(Comparator.comparingInt(step -> step.cost));
+            describe(plan.append("walk title order").append(query.isDescending() ? " desc" : ""), filters);
+            plan.append(" -> first ").append(limit);
+            return walkTitleOrder(filters, query.isDescending(), limit);
+        }
+        
+        int[] candidates;
+        if (indexed.isEmpty()) {
+            candidates = liveRows();
+            plan.append("scan ").append(candidates.length).append(" rows");
+        } else {
+            Step driver = filters.remove(0);
+            candidates = driver.rows();
+            plan.append(driver.description).append(" [").append(candidates.length).append(" rows]");
+        }
+        filters.sort(Comparator.comparingInt((Step step) -> step.cost)
+                .thenComparingInt(step -> step.estimate));
+        describe(plan, filters);
+        
+        int matches = 0;
+        for (int row : candidates) {
+            if (passes(filters, row)) {
+                candidates[matches++] = row;
+            }
+        }
+        plan.append(" -> top ").append(limit).append(" of ").append(matches)
+                .append(" by ").append(query.getSortBy()).append(query.isDescending() ? " desc" : "");
+        return topRows(candidates, matches, comparator(query), limit);
+    }
+    
+    /**
+     * Build a step per criterion
+     * 
+     * @return false if a criterion can match nothing
+     */
+    private boolean addSteps(BookQuery query, List<Step> indexed, List<Step> checks) {
+        if (query.getCategory() != null) {
+            RowSet set = index.rowsFor(FacetIndex.Facet.CATEGORY, query.getCategory());
+            if (set == null) {
+                return false;
+            }
+            indexed.add(setStep("category='" + query.getCategory() + "'", set));
+        }
+        if (query.getAuthor() != null) {
+            indexed.add(authorStep(query.getAuthor()));
+        }
+        if (query.isAvailableOnly()) {
+            indexed.add(setStep("available", index.availableRows()));
+        }
+        if (query.getYearFrom() != null || query.getYearTo() != null) {
+            int from = query.getYearFrom() != null ? query.getYearFrom() : Integer.MIN_VALUE;
+            int to = query.getYearTo() != null ? query.getYearTo() : Integer.MAX_VALUE;
+            checks.add(new Step("year " + (query.getYearFrom() != null ? from : "") + ".."
+                    + (query.getYearTo() != null ? to : ""), -1, YEAR_SELECTIVITY, 1) {
+                @Override
+                boolean test(int row) {
+                    int year = store.yearAt(row);
+                    return year >= from && year <= to;
+                }
+            });
+        }
+        if (query.getTitle() != null) {
+            String needle = query.getTitle();
+            checks.add(new Step("title~'" + needle + "'", -1, TITLE_SELECTIVITY, 10) {
+                @Override
+                boolean test(int row) {
+                    return containsIgnoreCase(store.titleAt(row), needle);
+                }
+            });
+        }
+        return true;
+    }
+    
+    private Step setStep(String description, RowSet set) {
+        return new Step(description, set.cardinality(), 1.0, 2) {
+            @Override
+            boolean test(int row) {
+                return set.contains(row);
+            }
+            
+            @Override
+            int[] rows() {
+                return set.toArray();
+            }
+        };
+    }
+    
+    /**
+     * Partial author match: find the matching dictionary entries once, then
+     * use the union of their row sets
+     */
+    private Step authorStep(String needle) {
+        StringDictionary authors = store.getAuthorDictionary();
+        BitSet codes = new BitSet();
+        List<RowSet> sets = new ArrayList<>();
+        int estimate = 0;
+        for (int code = 0; code < authors.size(); code++) {
+            if (containsIgnoreCase(authors.decode(code), needle)) {
+                RowSet set = index.rowsFor(FacetIndex.Facet.AUTHOR, code);
+                if (set != null && set.cardinality() > 0) {
+                    codes.set(code);
+                    sets.add(set);
+                    estimate += set.cardinality();
+                }
+            }
+        }
+        return new Step("author~'" + needle + "' (" + sets.size() + " authors)", estimate, 1.0, 1) {
+            @Override
+            boolean test(int row) {
+                int code = store.authorCodeAt(row);
+                return code != StringDictionary.NULL_CODE && codes.get(code);
+            }
+            
+            @Override
+            int[] rows() {
+                BitSet union = new BitSet();
+                for (RowSet set : sets) {
+                    for (int row : set.toArray()) {
+                        union.set(row);
+                    }
+                }
+                return union.stream().toArray();
+            }
+        };
+    }
+    
+    private int[] walkTitleOrder(List<Step> filters, boolean descending, int limit) {
+        int[] order = store.getTitleOrder();
+        int[] rows = new int[Math.min(limit, order.length)];
+        int n = 0;
+        for (int i = 0; i < order.length && n < rows.length; i++) {
+            int row = order[descending ? order.length - 1 - i : i];
+            if (passes(filters, row)) {
+                rows[n++] = row;
+            }
+        }
+        return n == rows.length ? rows : Arrays.copyOf(rows, n);
+    }
+    
+    private int[] liveRows() {
+        int[] rows = new int[store.getBookCount()];
+        int n = 0;
+        for (int row = 0; row < store.rowCount() && n < rows.length; row++) {
+            if (store.isLive(row)) {
+                rows[n++] = row;
+            }
+        }
+        return n == rows.length ? rows : Arrays.copyOf(rows, n);
+    }
+    
+    /**
+     * Smallest rows under the comparator, in order, keeping only limit rows in a heap
+     */
+    private static int[] topRows(int[] rows, int count, Comparator<Integer> comparator, int limit) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, Math.min(limit, count)), comparator.reversed());
+        for (int i = 0; i < count; i++) {
+            heap.offer(rows[i]);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Integer> ordered = new ArrayList<>(heap);
+        Collections.sort(ordered, comparator);
+        int[] top = new int[ordered.size()];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = ordered.get(i);
+        }
+        return top;
+    }
+    
+    private Comparator<Integer> comparator(BookQuery query) {
+        int[] ranks = store.getTitleRanks();
+        Comparator<Integer> byTitle = Comparator.comparingInt(row -> ranks[row]);
+        Comparator<Integer> primary;
+        switch (query.getSortBy()) {
+            case BookQuery.SORT_AUTHOR:
+                StringDictionary authors = store.getAuthorDictionary();
+                primary = Comparator.comparing(row -> authors.decode(store.authorCodeAt(row)),
+                        Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+                break;
+            case BookQuery.SORT_YEAR:
+                primary = Comparator.comparingInt(store::yearAt);
+                break;
+            case BookQuery.SORT_AVAILABLE:
+                primary = Comparator.comparingInt(store::availableCopiesAt);
+                break;
+            default:
+                return query.isDescending() ? byTitle.reversed() : byTitle;
+        }
+        if (query.isDescending()) {
+            primary = primary.reversed();
+        }
+        return primary.thenComparing(byTitle);
+    }
+    
+    private static boolean passes(List<Step> filters, int row) {
+        for (Step step : filters) {
+            if (!step.test(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void describe(StringBuilder plan, List<Step> filters) {
+        for (Step step : filters) {
+            plan.append(" -> ").append(step.description);
+            if (step.estimate >= 0) {
+                plan.append(" [set ").append(step.estimate).append("]");
+            }
+        }
+    }
+    
+    private static boolean containsIgnoreCase(String haystack, String needle) {
+        if (haystack == null) {
+            return false;
+        }
+        int last = haystack.length() - needle.length();
+        for (int i = 0; i <= last; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.library.catalog;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Row Set
+ * Set of catalog row numbers that picks its representation by size, as
+ * Roaring bitmaps do per container: a sorted int array while small (most
+ * authors and publishers have a handful of books) and a bitmap once large
+ * (categories, availability). Not thread-safe.
+ */
+public class RowSet {
+    
+    private static final int ARRAY_LIMIT = 4096; // Above this a bitmap is smaller than 4 bytes per row
+    
+    private int[] array = new int[4];
+    private BitSet bits;
+    private int size;
+    
+    public void add(int row) {
+        if (bits != null) {
+            if (!bits.get(row)) {
+                bits.set(row);
+                size++;
+            }
+            return;
+        }
+        int index = Arrays.binarySearch(array, 0, size, row);
+        if (index >= 0) {
+            return;
+        }
+        if (size == ARRAY_LIMIT) {
+            toBitmap();
+            add(row);
+            return;
+        }
+        index = -index - 1;
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+        }
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = row;
+        size++;
+    }
+    
+    public void remove(int row) {
+        if (bits != null) {
+            if (bits.get(row)) {
+                bits.clear(row);
+                size--;
+            }
+            return;
+        }
+        int index = Arrays.binarySearch(array, 0, size, row);
+        if (index >= 0) {
+            System.arraycopy(array, index + 1, array, index, size - index - 1);
+            size--;
+        }
+    }
+    
+    public boolean contains(int row) {
+        return bits != null ? bits.get(row) : Arrays.binarySearch(array, 0, size, row) >= 0;
+    }
+    
+    public int cardinality() {
+        return size;
+    }
+    
+    /**
+     * Iterate without copying: for (int r = set.next(0); r >= 0; r = set.next(r + 1))
+     * 
+     * @param fromRow First row to consider
+     * @return Smallest row in the set not below fromRow, or -1 if none
+     */
+    public int next(int fromRow) {
+        if (bits != null) {
+            return bits.nextSetBit(fromRow);
+        }
+        int index = Arrays.binarySearch(array, 0, size, fromRow);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < size ? array[index] : -1;
+    }
+    
+    /**
+     * Rows in ascending order
+     * 
+     * @return New array of rows
+     */
+    public int[] toArray() {
+        if (bits == null) {
+            return Arrays.copyOf(array, size);
+        }
+        return bits.stream().toArray();
+    }
+    
+    /**
+     * Rows present in every set, smallest set first so the work is bounded by it
+     * 
+     * @param sets Sets to intersect; at least one
+     * @return Matching rows in ascending order
+     */
+    public static int[] intersect(RowSet... sets) {
+        RowSet[] ordered = sets.clone();
+        Arrays.sort(ordered, (a, b) -> Integer.compare(a.size, b.size));
+        int[] candidates = ordered[0].toArray();
+        int matches = 0;
+        for (int row : candidates) {
+            boolean inAll = true;
+            for (int i = 1; i < ordered.length && inAll; i++) {
+                inAll = ordered[i].contains(row);
+            }
+            if (inAll) {
+                candidates[matches++] = row;
+            }
+        }
+        return Arrays.copyOf(candidates, matches);
+    }
+    
+    private void toBitmap() {
+        bits = new BitSet();
+        for (int i = 0; i < size; i++) {
+            bits.set(array[i]);
+        }
+        array = null;
+    }
+}
\ No newline at end of file
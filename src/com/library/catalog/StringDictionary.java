@@ -0,0 +1,82 @@
+package com.library.catalog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * String Dictionary
+ * Maps repeated strings (authors, publishers, categories) to dense int codes,
+ * so each distinct value is stored once and rows hold a 4-byte code.
+ * Codes are never reused; not thread-safe, callers guard it with their own lock.
+ */
+public class StringDictionary {
+    
+    public static final int NULL_CODE = -1;
+    
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    
+    /**
+     * Get the code for a value, adding the value if it is new
+     * 
+     * @param value String value, may be null
+     * @return Code, or NULL_CODE for null
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+    
+    /**
+     * Get the code for a value without adding it
+     * 
+     * @param value String value
+     * @return Code, or NULL_CODE if the value is not in the dictionary
+     */
+    public int lookup(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? NULL_CODE : code;
+    }
+    
+    /**
+     * Get the value for a code
+     * 
+     * @param code Code
+     * @return Value, or null for NULL_CODE
+     */
+    public String decode(int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+    
+    /**
+     * Number of distinct values; codes run from 0 to size() - 1
+     * 
+     * @return Dictionary size
+     */
+    public int size() {
+        return values.size();
+    }
+    
+    /**
+     * Rough heap used by the dictionary
+     * 
+     * @return Estimated bytes
+     */
+    public long estimateBytes() {
+        long bytes = 0;
+        for (String value : values) {
+            bytes += 40 + 2L * value.length() + 48; // string, its array, map entry and boxed code
+        }
+        return bytes;
+    }
+}
\ No newline at end of file
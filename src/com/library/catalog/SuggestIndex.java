@@ -0,0 +1,281 @@
+package com.library.catalog;
+
+import com.library.util.BranchContext;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Suggest Index
+ * Autocomplete over title and author words for the search box. Words are
+ * normalized (case, accents, punctuation), the last word typed is matched as a
+ * prefix and every word tolerates typos in proportion to its length.
+ * Maintained from {@link CatalogStore} row changes, which arrive under the
+ * store's write lock; lookups run under its read lock, so they proceed in
+ * parallel and never see a half-applied change. There is one index per branch,
+ * over that branch's store.
+ */
+public class SuggestIndex implements CatalogStore.RowListener {
+    
+    public static final String TYPE_TITLE = "title";
+    public static final String TYPE_AUTHOR = "author";
+    
+    private static final int MAX_SCAN = 2000; // Candidates examined per lookup
+    private static final int LATENCY_SAMPLES = 1024;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    
+    /**
+     * One autocomplete entry
+     */
+    public static class Suggestion {
+        private final String type;
+        private final String text;
+        private final int bookId;    // titles only
+        private final int bookCount; // authors only
+        private final int score;     // 0 for an exact match, higher for completions and typos
+        
+        public Suggestion(String type, String text, int bookId, int bookCount, int score) {
+            this.type = type;
+            this.text = text;
+            this.bookId = bookId;
+            this.bookCount = bookCount;
+            this.score = score;
+        }
+        
+        public String getType() {
+            return type;
+        }
+        
+        public String getText() {
+            return text;
+        }
+        
+        public int getBookId() {
+            return bookId;
+        }
+        
+        public int getBookCount() {
+            return bookCount;
+        }
+        
+        public int getScore() {
+            return score;
+        }
+    }
+    
+    private static final Map<Integer, SuggestIndex> INSTANCES = new ConcurrentHashMap<>();
+    
+    private final CatalogStore store;
+    private TokenIndex titleWords = new TokenIndex();  // ids are catalog rows
+    private TokenIndex authorWords = new TokenIndex(); // ids are author codes
+    private int[] authorBooks = new int[0];            // live books per author code
+    
+    private final long[] latencyNanos = new long[LATENCY_SAMPLES];
+    private final AtomicLong lookups = new AtomicLong();
+    
+    private SuggestIndex(CatalogStore store) {
+        this.store = store;
+        store.addListener(this);
+        store.read(this::rebuild);
+    }
+    
+    /**
+     * Index of the current branch's catalog
+     * 
+     * @return SuggestIndex of {@link BranchContext#current()}
+     */
+    public static SuggestIndex getInstance() {
+        return forBranch(BranchContext.current());
+    }
+    
+    public static SuggestIndex forBranch(int branchId) {
+        return INSTANCES.computeIfAbsent(branchId, id -> new SuggestIndex(CatalogStore.forBranch(id)));
+    }
+    
+    /**
+     * Titles matching what has been typed so far
+     * 
+     * @param text Text typed; a trailing space marks the last word as complete
+     * @param limit Maximum number of suggestions
+     * @return Suggestions, closest first
+     */
+    public List<Suggestion> suggestTitles(String text, int limit) {
+        long start = System.nanoTime();
+        String[] tokens = words(text);
+        List<Suggestion> suggestions = new ArrayList<>();
+        if (tokens.length > 0) {
+            store.read(() -> {
+                // Among equal scores, shorter titles are closer to what was typed
+                for (int[] hit : titleWords.search(tokens, isPrefix(text), limit, MAX_SCAN, store::titleBytesAt)) {
+                    int row = hit[0];
+                    if (store.isLive(row)) {
+                        suggestions.add(new Suggestion(TYPE_TITLE, store.titleAt(row), store.bookIdAt(row), 1, hit[1]));
+                    }
+                }
+            });
+        }
+        recordLatency(start);
+        return suggestions;
+    }
+    
+    /**
+     * Authors matching what has been typed so far
+     * 
+     * @param text Text typed; a trailing space marks the last word as complete
+     * @param limit Maximum number of suggestions
+     * @return Suggestions, closest first, then authors with the most books
+     */
+    public List<Suggestion> suggestAuthors(String text, int limit) {
+        long start = System.nanoTime();
+        String[] tokens = words(text);
+        List<Suggestion> suggestions = new ArrayList<>();
+        if (tokens.length > 0) {
+            store.read(() -> {
+                StringDictionary authors = store.getAuthorDictionary();
+                for (int[] hit : authorWords.search(tokens, isPrefix(text), limit, MAX_SCAN,
+                        code -> -authorBooks[code])) {
+                    suggestions.add(new Suggestion(TYPE_AUTHOR, authors.decode(hit[0]), 0,
+                            authorBooks[hit[0]], hit[1]));
+                }
+            });
+        }
+        recordLatency(start);
+        return suggestions;
+    }
+    
+    /**
+     * Lookup latency percentile over the most recent lookups
+     * 
+     * @param percentile Percentile, e.g. 99
+     * @return Latency in microseconds, 0 before the first lookup
+     */
+    public long getLatencyMicros(double percentile) {
+        int samples = (int) Math.min(lookups.get(), LATENCY_SAMPLES);
+        if (samples == 0) {
+            return 0;
+        }
+        long[] sorted;
+        synchronized (latencyNanos) {
+            sorted = Arrays.copyOf(latencyNanos, samples);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * samples) - 1;
+        return sorted[Math.max(0, Math.min(samples - 1, index))] / 1000;
+    }
+    
+    public long getLookupCount() {
+        return lookups.get();
+    }
+    
+    /**
+     * Distinct title and author words indexed
+     * 
+     * @return Word count, including words no longer in any book
+     */
+    public int getWordCount() {
+        int[] count = new int[1];
+        store.read(() -> count[0] = titleWords.termCount() + authorWords.termCount());
+        return count[0];
+    }
+    
+    @Override
+    public void beforeChange(int row) {
+        if (!store.isLive(row)) {
+            return;
+        }
+        for (String word : words(store.titleAt(row))) {
+            titleWords.remove(word, row);
+        }
+        int code = store.authorCodeAt(row);
+        if (code != StringDictionary.NULL_CODE && --authorBooks[code] == 0) {
+            for (String word : words(store.getAuthorDictionary().decode(code))) {
+                authorWords.remove(word, code);
+            }
+        }
+    }
+    
+    @Override
+    public void afterChange(int row) {
+        if (store.isLive(row)) {
+            index(row);
+        }
+    }
+    
+    @Override
+    public void onReload() {
+        rebuild();
+    }
+    
+    private void rebuild() {
+        titleWords = new TokenIndex();
+        authorWords = new TokenIndex();
+        authorBooks = new int[0];
+        for (int row = 0; row < store.rowCount(); row++) {
+            if (store.isLive(row)) {
+                index(row);
+            }
+        }
+    }
+    
+    private void index(int row) {
+        for (String word : words(store.titleAt(row))) {
+            titleWords.add(word, row);
+        }
+        int code = store.authorCodeAt(row);
+        if (code == StringDictionary.NULL_CODE) {
+            return;
+        }
+        if (code >= authorBooks.length) {
+            authorBooks = Arrays.copyOf(authorBooks, Math.max(code + 1, authorBooks.length * 2));
+        }
+        if (authorBooks[code]++ == 0) {
+            for (String word : words(store.getAuthorDictionary().decode(code))) {
+                authorWords.add(word, code);
+            }
+        }
+    }
+    
+    private void recordLatency(long start) {
+        long elapsed = System.nanoTime() - start;
+        long n = lookups.getAndIncrement();
+        synchronized (latencyNanos) {
+            latencyNanos[(int) (n % LATENCY_SAMPLES)] = elapsed;
+        }
+    }
+    
+    private static boolean isPrefix(String text) {
+        return !text.isEmpty() && Character.isLetterOrDigit(text.charAt(text.length() - 1));
+    }
+    
+    /**
+     * Split text into distinct normalized words: lower case, accents removed,
+     * punctuation treated as a separator
+     * 
+     * @param text Title, author or query text
+     * @return Words in order of first appearance
+     */
+    static String[] words(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : SEPARATORS.split(folded)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,285 @@
+package com.library.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Token Index
+ * Prefix trie over normalized words, each word carrying the set of ids (catalog
+ * rows or author codes) it occurs in. Typos are matched by walking the trie with
+ * one edit-distance row per node, as a Levenshtein automaton would, and pruning
+ * every branch that can no longer come within the allowed edits.
+ * Not thread-safe; SuggestIndex guards it with the catalog store lock.
+ */
+class TokenIndex {
+    
+    private static final int MAX_EXPANSIONS = 64;  // Words tried per query token
+    private static final int COLLECT_LIMIT = 256;  // Words gathered before picking the expansions
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    
+    private static class Node {
+        char[] keys = NO_KEYS; // sorted
+        Node[] children = NO_CHILDREN;
+        int term = -1;
+        
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+        
+        Node addChild(char c) {
+            int index = -Arrays.binarySearch(keys, c) - 1;
+            char[] grownKeys = new char[keys.length + 1];
+            Node[] grownChildren = new Node[keys.length + 1];
+            System.arraycopy(keys, 0, grownKeys, 0, index);
+            System.arraycopy(children, 0, grownChildren, 0, index);
+            System.arraycopy(keys, index, grownKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, grownChildren, index + 1, keys.length - index);
+            Node node = new Node();
+            grownKeys[index] = c;
+            grownChildren[index] = node;
+            keys = grownKeys;
+            children = grownChildren;
+            return node;
+        }
+    }
+    
+    /**
+     * A word matching a query token; lower scores are closer matches
+     */
+    private static class Match {
+        final RowSet ids;
+        final int score;
+        
+        Match(RowSet ids, int score) {
+            this.ids = ids;
+            this.score = score;
+        }
+    }
+    
+    private final Node root = new Node();
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    private final List<RowSet> postings = new ArrayList<>();
+    
+    void add(String word, int id) {
+        Integer term = termIds.get(word);
+        if (term == null) {
+            term = terms.size();
+            termIds.put(word, term);
+            terms.add(word);
+            postings.add(new RowSet());
+            Node node = root;
+            for (int i = 0; i < word.length(); i++) {
+                Node next = node.child(word.charAt(i));
+                node = next != null ? next : node.addChild(word.charAt(i));
+            }
+            node.term = term;
+        }
+        postings.get(term).add(id);
+    }
+    
+    void remove(String word, int id) {
+        Integer term = termIds.get(word);
+        if (term != null) {
+            postings.get(term).remove(id);
+        }
+    }
+    
+    int termCount() {
+        return terms.size();
+    }
+    
+    /**
+     * Edits tolerated for a query token of the given length
+     * 
+     * @param length Token length
+     * @return 0 for short tokens, 1 up to seven characters, 2 beyond
+     */
+    static int allowedEdits(int length) {
+        return length <= 3 ? 0 : length <= 7 ? 1 : 2;
+    }
+    
+    /**
+     * Best ids containing a match for every query token
+     * Score per token is twice the edit distance, plus one when the word only
+     * starts with the token; an id's score is the sum over tokens.
+     * 
+     * @param tokens Normalized query tokens
+     * @param lastIsPrefix true if the last token may still be incomplete
+     * @param limit Maximum number of ids
+     * @param maxScan Maximum ids examined, bounding the work for common prefixes
+     * @param tieBreak Rank among equal scores; lower first
+     * @return Pairs of {id, score}, best first
+     */
+    List<int[]> search(String[] tokens, boolean lastIsPrefix, int limit, int maxScan, IntUnaryOperator tieBreak) {
+        List<List<Match>> matches = new ArrayList<>();
+        int driver = 0;
+        long driverSize = Long.MAX_VALUE;
+        for (int i = 0; i < tokens.length; i++) {
+            List<Match> expansions = expand(tokens[i], lastIsPrefix && i == tokens.length - 1);
+            if (expansions.isEmpty()) {
+                return new ArrayList<>();
+            }
+            long size = 0;
+            for (Match match : expansions) {
+                size += match.ids.cardinality();
+            }
+            if (size < driverSize) {
+                driver = i;
+                driverSize = size;
+            }
+            matches.add(expansions);
+        }
+        
+        Comparator<int[]> order = Comparator.<int[]>comparingInt(hit -> hit[1])
+                .thenComparingInt(hit -> tieBreak.applyAsInt(hit[0]));
+        PriorityQueue<int[]> best = new PriorityQueue<>(order.reversed());
+        IntIntHashMap seen = new IntIntHashMap(Math.min(maxScan, 1024)); // keys are id + 1
+        int scanned = 0;
+        // Driver words are ordered by score, so once the heap is full and the
+        // next word scores worse than everything kept, nothing better can follow
+        for (Match match : matches.get(driver)) {
+            if (best.size() == limit && match.score > best.peek()[1]) {
+                break;
+            }
+            for (int id = match.ids.next(0); id >= 0 && scanned < maxScan; id = match.ids.next(id + 1)) {
+                if (seen.get(id + 1) >= 0) {
+                    continue;
+                }
+                seen.put(id + 1, 0);
+                scanned++;
+                int score = match.score;
+                for (int i = 0; i < matches.size() && score >= 0; i++) {
+                    if (i != driver) {
+                        int tokenScore = bestScore(matches.get(i), id);
+                        score = tokenScore < 0 ? -1 : score + tokenScore;
+                    }
+                }
+                if (score >= 0) {
+                    best.offer(new int[] {id, score});
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+        List<int[]> hits = new ArrayList<>(best);
+        hits.sort(order);
+        return hits;
+    }
+    
+    private static int bestScore(List<Match> matches, int id) {
+        for (Match match : matches) {
+            if (match.ids.contains(id)) {
+                return match.score;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Words matching one query token, best first
+     */
+    private List<Match> expand(String token, boolean prefix) {
+        Map<Integer, Integer> found = new HashMap<>(); // term -> edits
+        if (prefix) {
+            Node node = root;
+            for (int i = 0; i < token.length() && node != null; i++) {
+                node = node.child(token.charAt(i));
+            }
+            if (node != null) {
+                collect(node, 0, found);
+            }
+        } else {
+            Integer term = termIds.get(token);
+            if (term != null) {
+                found.put(term, 0);
+            }
+        }
+        
+        int maxEdits = allowedEdits(token.length());
+        if (maxEdits > 0) {
+            int[] first = new int[token.length() + 1];
+            for (int i = 0; i < first.length; i++) {
+                first[i] = i;
+            }
+            for (int i = 0; i < root.keys.length; i++) {
+                walk(root.children[i], root.keys[i], (char) 0, token, null, first, maxEdits, prefix, found);
+            }
+        }
+        
+        List<int[]> scored = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : found.entrySet()) {
+            int term = entry.getKey();
+            int size = postings.get(term).cardinality();
+            if (size > 0) {
+                int score = entry.getValue() * 2 + (terms.get(term).length() > token.length() && prefix ? 1 : 0);
+                scored.add(new int[] {term, score, size});
+            }
+        }
+        // Closest first, then the words in the most books
+        scored.sort(Comparator.<int[]>comparingInt(s -> s[1]).thenComparingInt(s -> -s[2]));
+        List<Match> expansions = new ArrayList<>();
+        for (int i = 0; i < scored.size() && i < MAX_EXPANSIONS; i++) {
+            expansions.add(new Match(postings.get(scored.get(i)[0]), scored.get(i)[1]));
+        }
+        return expansions;
+    }
+    
+    /**
+     * Descend one trie edge, computing the next row of the optimal string
+     * alignment distance (Levenshtein plus adjacent transpositions)
+     */
+    private void walk(Node node, char c, char previousChar, String token, int[] previousPrevious,
+                      int[] previous, int maxEdits, boolean prefix, Map<Integer, Integer> found) {
+        int n = token.length();
+        int[] row = new int[n + 1];
+        row[0] = previous[0] + 1;
+        int rowMin = row[0];
+        for (int i = 1; i <= n; i++) {
+            char t = token.charAt(i - 1);
+            int edits = Math.min(Math.min(row[i - 1] + 1, previous[i] + 1), previous[i - 1] + (t == c ? 0 : 1));
+            if (previousPrevious != null && i > 1 && t == previousChar && token.charAt(i - 2) == c) {
+                edits = Math.min(edits, previousPrevious[i - 2] + 1);
+            }
+            row[i] = edits;
+            rowMin = Math.min(rowMin, edits);
+        }
+        
+        if (row[n] <= maxEdits) {
+            if (prefix) {
+                // The whole token is within reach here: every word below completes it
+                collect(node, row[n], found);
+                return;
+            }
+            if (node.term >= 0) {
+                found.merge(node.term, row[n], Math::min);
+            }
+        }
+        if (rowMin <= maxEdits) {
+            for (int i = 0; i < node.keys.length && found.size() < COLLECT_LIMIT; i++) {
+                walk(node.children[i], node.keys[i], c, token, previous, row, maxEdits, prefix, found);
+            }
+        }
+    }
+    
+    private void collect(Node node, int edits, Map<Integer, Integer> found) {
+        if (found.size() >= COLLECT_LIMIT) {
+            return;
+        }
+        if (node.term >= 0) {
+            found.merge(node.term, edits, Math::min);
+        }
+        for (Node child : node.children) {
+            collect(child, edits, found);
+        }
+    }
+}
\ No newline at end of file
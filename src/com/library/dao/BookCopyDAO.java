@@ -0,0 +1,318 @@
+package com.library.dao;
+
+import com.library.model.BookCopy;
+import com.library.model.InventoryDrift;
+import com.library.util.DBConnection;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * BookCopy Data Access Object
+ * Handles all database operations on the per-copy inventory in book_copies.
+ * Claims and releases take the caller's connection so they commit together
+ * with the loan they belong to.
+ */
+public class BookCopyDAO {
+    
+    // Copies still owned by the library; total_copies counts these
+    private static final String IN_CIRCULATION = "('AVAILABLE', 'ISSUED')";
+    
+    /**
+     * Take the lowest-numbered copy of a title off the shelf
+     * One indexed conditional UPDATE on (book_id, status, copy_no); the claimed
+     * copy_id comes back through LAST_INSERT_ID, so concurrent issues on any
+     * node always get different copies
+     * 
+     * @param conn Connection of the issuing transaction
+     * @param bookId Book ID
+     * @return Claimed copy ID, or 0 if no copy is on the shelf
+     * @throws SQLException if the update fails
+     */
+    int claimCopy(Connection conn, int bookId) throws SQLException {
+        String claimSql = "UPDATE book_copies SET status = 'ISSUED', copy_id = LAST_INSERT_ID(copy_id) " +
+                          "WHERE book_id = ? AND status = 'AVAILABLE' ORDER BY copy_no LIMIT 1";
+        
+        try (PreparedStatement claim = conn.prepareStatement(claimSql);
+             Statement idQuery = conn.createStatement()) {
+            
+            claim.setInt(1, bookId);
+            if (claim.executeUpdate() == 0) {
+                return 0;
+            }
+            ResultSet rs = idQuery.executeQuery("SELECT LAST_INSERT_ID()");
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
+    /**
+     * Check whether a title is tracked per copy
+     * 
+     * @param conn Connection of the issuing transaction
+     * @param bookId Book ID
+     * @return true if the title has any copy rows
+     * @throws SQLException if the query fails
+     */
+    boolean hasCopies(Connection conn, int bookId) throws SQLException {
+        String sql = "SELECT 1 FROM book_copies WHERE book_id = ? LIMIT 1";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, bookId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next();
+        }
+    }
+    
+    /**
+     * Put a copy back on the shelf
+     * 
+     * @param conn Connection of the returning transaction
+     * @param copyId Copy ID
+     * @return true if the copy was on loan and is now available
+     * @throws SQLException if the update fails
+     */
+    boolean releaseCopy(Connection conn, int copyId) throws SQLException {
+        String sql = "UPDATE book_copies SET status = 'AVAILABLE' WHERE copy_id = ? AND status = 'ISSUED'";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, copyId);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+    
+    /**
+     * Label and shelve new copies of a title, numbered after its existing copies
+     * 
+     * @param bookId Book ID
+     * @param available Copies to add on the shelf
+     * @param onLoan Copies to add as already on loan, e.g. a title entered with some copies out
+     * @return Number of copies added, or -1 if the insert failed
+     */
+    public int addCopies(int bookId, int available, int onLoan) {
+        String lastSql = "SELECT COALESCE(MAX(copy_no), 0) FROM book_copies WHERE book_id = ? FOR UPDATE";
+        String insertSql = "INSERT INTO book_copies (book_id, copy_no, barcode, status) VALUES (?, ?, ?, ?)";
+        int count = Math.max(0, available) + Math.max(0, onLoan);
+        if (count == 0) {
+            return 0;
+        }
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement last = conn.prepareStatement(lastSql);
+                 PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                
+                last.setInt(1, bookId);
+                ResultSet rs = last.executeQuery();
+                int copyNo = rs.next() ? rs.getInt(1) : 0;
+                
+                for (int i = 0; i < count; i++) {
+                    copyNo++;
+                    insert.setInt(1, bookId);
+                    insert.setInt(2, copyNo);
+                    insert.setString(3, BookCopy.barcodeFor(bookId, copyNo));
+                    insert.setString(4, i < available ? "AVAILABLE" : "ISSUED");
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                conn.commit();
+                return count;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error adding book copies: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    /**
+     * Withdraw copies from the shelf, highest copy number first
+     * 
+     * @param bookId Book ID
+     * @param count Copies to withdraw
+     * @return Number of copies withdrawn; fewer than asked if not enough were on the shelf
+     */
+    public int withdrawCopies(int bookId, int count) {
+        String sql = "UPDATE book_copies SET status = 'WITHDRAWN' " +
+                     "WHERE book_id = ? AND status = 'AVAILABLE' ORDER BY copy_no DESC LIMIT ?";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, bookId);
+            pstmt.setInt(2, count);
+            return pstmt.executeUpdate();
+            
+        } catch (SQLException e) {
+            System.err.println("Error withdrawing book copies: " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    /**
+     * Count the copies of a title still owned by the library
+     * 
+     * @param bookId Book ID
+     * @return Copies on the shelf or on loan, or -1 on error
+     */
+    public int getCirculatingCopyCount(int bookId) {
+        String sql = "SELECT COUNT(*) FROM book_copies WHERE book_id = ? AND status IN " + IN_CIRCULATION;
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, bookId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+            
+        } catch (SQLException e) {
+            System.err.println("Error counting book copies: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    /**
+     * Get every copy of a title
+     * 
+     * @param bookId Book ID
+     * @return List of copies by copy number
+     */
+    public List<BookCopy> getCopiesByBookId(int bookId) {
+        List<BookCopy> copies = new ArrayList<>();
+        String sql = "SELECT * FROM book_copies WHERE book_id = ? ORDER BY copy_no";
+        
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, bookId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                copies.add(extractCopyFromResultSet(rs));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error getting book copies: " + e.getMessage());
+        }
+        return copies;
+    }
+    
+    /**
+     * Get a copy by the barcode on its label
+     * 
+     * @param barcode Barcode
+     * @return BookCopy object if found, null otherwise
+     */
+    public BookCopy getCopyByBarcode(String barcode) {
+        String sql = "SELECT * FROM book_copies WHERE barcode = ?";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setString(1, barcode);
+            ResultSet rs = pstmt.executeQuery();
+            
+            if (rs.next()) {
+                return extractCopyFromResultSet(rs);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error getting book copy by barcode: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * Availability bitmap of a title: bit n-1 is set when copy n is on the shelf
+     * Read from the (book_id, status, copy_no) index alone
+     * 
+     * @param bookId Book ID
+     * @return Bitmap, or null if the query failed
+     */
+    public BitSet getAvailability(int bookId) {
+        String sql = "SELECT copy_no FROM book_copies WHERE book_id = ? AND status = 'AVAILABLE'";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, bookId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            BitSet available = new BitSet();
+            while (rs.next()) {
+                available.set(rs.getInt(1) - 1);
+            }
+            return available;
+            
+        } catch (SQLException e) {
+            System.err.println("Error getting copy availability: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Find titles in a book ID range whose counters disagree with their copies
+     * Titles without any copy rows are not tracked per copy and are skipped
+     * 
+     * @param fromBookId First book ID, inclusive
+     * @param toBookId Last book ID, inclusive
+     * @return Drifted titles by book ID, or null if the query failed
+     */
+    public List<InventoryDrift> findCounterDrift(int fromBookId, int toBookId) {
+        List<InventoryDrift> drift = new ArrayList<>();
+        String sql = "SELECT b.book_id, b.branch_id, b.title, b.total_copies, b.available_copies, " +
+                     "SUM(c.status IN " + IN_CIRCULATION + ") AS expected_total, " +
+                     "SUM(c.status = 'AVAILABLE') AS expected_available " +
+                     "FROM books b JOIN book_copies c ON c.book_id = b.book_id " +
+                     "WHERE b.book_id BETWEEN ? AND ? " +
+                     "GROUP BY b.book_id, b.branch_id, b.title, b.total_copies, b.available_copies " +
+                     "HAVING b.total_copies <> expected_total OR b.available_copies <> expected_available " +
+                     "ORDER BY b.book_id";
+        
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.LOANS_SCOPE);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, fromBookId);
+            pstmt.setInt(2, toBookId);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                InventoryDrift item = new InventoryDrift(rs.getInt("book_id"), rs.getString("title"),
+                        rs.getInt("total_copies"), rs.getInt("available_copies"),
+                        rs.getInt("expected_total"), rs.getInt("expected_available"));
+                item.setBranchId(rs.getInt("branch_id"));
+                drift.add(item);
+            }
+            return drift;
+            
+        } catch (SQLException e) {
+            System.err.println("Error checking copy counters: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Extract BookCopy object from ResultSet
+     * 
+     * @param rs ResultSet
+     * @return BookCopy object
+     * @throws SQLException if extraction fails
+     */
+    private BookCopy extractCopyFromResultSet(ResultSet rs) throws SQLException {
+        BookCopy copy = new BookCopy();
+        copy.setCopyId(rs.getInt("copy_id"));
+        copy.setBookId(rs.getInt("book_id"));
+        copy.setCopyNo(rs.getInt("copy_no"));
+        copy.setBarcode(rs.getString("barcode"));
+        copy.setStatus(rs.getString("status"));
+        copy.setCreatedAt(rs.getTimestamp("created_at"));
+        copy.setUpdatedAt(rs.getTimestamp("updated_at"));
+        return copy;
+    }
+}
\ No newline at end of file
@@ -1,11 +1,22 @@
 package com.library.dao;
 
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
 import com.library.model.Book;
+import com.library.model.BookQuery;
+import com.library.model.InventoryDrift;
+import com.library.util.BranchContext;
 import com.library.util.DBConnection;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Book Data Access Object
@@ -15,28 +26,54 @@ public class BookDAO {
     
     /**
      * Add a new book to the library
+     * The book joins the current branch unless it names one
      * 
      * @param book Book object
      * @return true if book added successfully, false otherwise
      */
     public boolean addBook(Book book) {
         String sql = "INSERT INTO books (title, author, isbn, publisher, publication_year, " +
-                     "category, total_copies, available_copies) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+                     "category, total_copies, available_copies, branch_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        if (book.getBranchId() == 0) {
+            book.setBranchId(BranchContext.current());
+        }
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, book.getTitle());
-            pstmt.setString(2, book.getAuthor());
-            pstmt.setString(3, book.getIsbn());
-            pstmt.setString(4, book.getPublisher());
-            pstmt.setInt(5, book.getPublicationYear());
-            pstmt.setString(6, book.getCategory());
-            pstmt.setInt(7, book.getTotalCopies());
-            pstmt.setInt(8, book.getAvailableCopies());
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                
+                pstmt.setString(1, book.getTitle());
+                pstmt.setString(2, book.getAuthor());
+                pstmt.setString(3, book.getIsbn());
+                pstmt.setString(4, book.getPublisher());
+                pstmt.setInt(5, book.getPublicationYear());
+                pstmt.setString(6, book.getCategory());
+                pstmt.setInt(7, book.getTotalCopies());
+                pstmt.setInt(8, book.getAvailableCopies());
+                pstmt.setInt(9, book.getBranchId());
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    ResultSet keys = pstmt.getGeneratedKeys();
+                    if (keys.next()) {
+                        book.setBookId(keys.getInt(1));
+                    }
+                    event = stageChange(conn, ChangeEvent.Operation.INSERT, book.getBookId());
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             
         } catch (SQLException e) {
             System.err.println("Error adding book: " + e.getMessage());
@@ -55,21 +92,38 @@ public class BookDAO {
                      "publication_year = ?, category = ?, total_copies = ?, available_copies = ? " +
                      "WHERE book_id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, book.getTitle());
-            pstmt.setString(2, book.getAuthor());
-            pstmt.setString(3, book.getIsbn());
-            pstmt.setString(4, book.getPublisher());
-            pstmt.setInt(5, book.getPublicationYear());
-            pstmt.setString(6, book.getCategory());
-            pstmt.setInt(7, book.getTotalCopies());
-            pstmt.setInt(8, book.getAvailableCopies());
-            pstmt.setInt(9, book.getBookId());
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                pstmt.setString(1, book.getTitle());
+                pstmt.setString(2, book.getAuthor());
+                pstmt.setString(3, book.getIsbn());
+                pstmt.setString(4, book.getPublisher());
+                pstmt.setInt(5, book.getPublicationYear());
+                pstmt.setString(6, book.getCategory());
+                pstmt.setInt(7, book.getTotalCopies());
+                pstmt.setInt(8, book.getAvailableCopies());
+                pstmt.setInt(9, book.getBookId());
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.UPDATE, book.getBookId());
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             
         } catch (SQLException e) {
             System.err.println("Error updating book: " + e.getMessage());
@@ -86,12 +140,29 @@ public class BookDAO {
     public boolean deleteBook(int bookId) {
         String sql = "DELETE FROM books WHERE book_id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, bookId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                pstmt.setInt(1, bookId);
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.DELETE, bookId);
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             
         } catch (SQLException e) {
             System.err.println("Error deleting book: " + e.getMessage());
@@ -125,17 +196,122 @@ public class BookDAO {
     }
     
     /**
-     * Get all books
+     * Get several books in one round-trip
+     * Reads the primary, since callers check availability before writing
+     * 
+     * @param bookIds Book IDs
+     * @return Map of book ID to Book; missing IDs are absent
+     */
+    public Map<Integer, Book> getBooksByIds(Collection<Integer> bookIds) {
+        Map<Integer, Book> books = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return books;
+        }
+        String sql = "SELECT * FROM books WHERE book_id IN (" +
+                     String.join(", ", Collections.nCopies(bookIds.size(), "?")) + ")";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int index = 1;
+            for (int bookId : bookIds) {
+                pstmt.setInt(index++, bookId);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                Book book = extractBookFromResultSet(rs);
+                books.put(book.getBookId(), book);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error fetching books: " + e.getMessage());
+        }
+        return books;
+    }
+    
+    /**
+     * Stream every book to a consumer without holding the whole table in memory
+     * Rows are fetched one at a time from the server (MySQL streaming result set).
+     * If the consumer throws, the query is cancelled so closing the result set
+     * does not have to read the rest of the table first.
+     * 
+     * @param branchId Branch whose books are streamed
+     * @param consumer Receives each book, ordered by book ID
+     * @return true if every row was read, false if the query failed part way
+     */
+    public boolean forEachBook(int branchId, Consumer<Book> consumer) {
+        String sql = "SELECT * FROM books WHERE branch_id = ? ORDER BY book_id";
+        
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                                                            ResultSet.CONCUR_READ_ONLY)) {
+            
+            stmt.setInt(1, branchId);
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            // A full scan may legitimately outlast the per-query timeout
+            stmt.setQueryTimeout(0);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Book book = extractBookFromResultSet(rs);
+                    try {
+                        consumer.accept(book);
+                    } catch (RuntimeException e) {
+                        stmt.cancel();
+                        throw e;
+                    }
+                }
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            System.err.println("Error streaming books: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Stream every ISBN without holding the table in memory
+     * ISBNs are unique per branch, so each comes with the branch holding it
+     * 
+     * @param consumer Receives each branch ID and ISBN
+     * @return true if every row was read, false if the query failed part way
+     */
+    public boolean forEachIsbn(BiConsumer<Integer, String> consumer) {
+        String sql = "SELECT branch_id, isbn FROM books";
+        
+        try (Connection conn = DBConnection.getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            stmt.setQueryTimeout(0);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    consumer.accept(rs.getInt(1), rs.getString(2));
+                }
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            System.err.println("Error streaming ISBNs: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Get all books of the current branch
      * 
      * @return List of all books
      */
     public List<Book> getAllBooks() {
         List<Book> books = new ArrayList<>();
-        String sql = "SELECT * FROM books ORDER BY title";
+        String sql = "SELECT * FROM books WHERE branch_id = ? ORDER BY title";
         
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, BranchContext.current());
+            ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
                 books.add(extractBookFromResultSet(rs));
@@ -155,12 +331,13 @@ public class BookDAO {
      */
     public List<Book> searchBooksByTitle(String title) {
         List<Book> books = new ArrayList<>();
-        String sql = "SELECT * FROM books WHERE title LIKE ? ORDER BY title";
+        String sql = "SELECT * FROM books WHERE branch_id = ? AND title LIKE ? ORDER BY title";
         
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            pstmt.setString(1, "%" + title + "%");
+            pstmt.setInt(1, BranchContext.current());
+            pstmt.setString(2, "%" + title + "%");
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
@@ -181,12 +358,13 @@ public class BookDAO {
      */
     public List<Book> searchBooksByAuthor(String author) {
         List<Book> books = new ArrayList<>();
-        String sql = "SELECT * FROM books WHERE author LIKE ? ORDER BY title";
+        String sql = "SELECT * FROM books WHERE branch_id = ? AND author LIKE ? ORDER BY title";
         
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            pstmt.setString(1, "%" + author + "%");
+            pstmt.setInt(1, BranchContext.current());
+            pstmt.setString(2, "%" + author + "%");
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
@@ -207,12 +385,13 @@ public class BookDAO {
      */
     public List<Book> getBooksByCategory(String category) {
         List<Book> books = new ArrayList<>();
-        String sql = "SELECT * FROM books WHERE category = ? ORDER BY title";
+        String sql = "SELECT * FROM books WHERE branch_id = ? AND category = ? ORDER BY title";
         
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            pstmt.setString(1, category);
+            pstmt.setInt(1, BranchContext.current());
+            pstmt.setString(2, category);
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
@@ -226,17 +405,100 @@ public class BookDAO {
     }
     
     /**
-     * Get available books only
+     * Run a combined catalog search as one indexed query
+     * Every criterion becomes a WHERE term after the branch, so MySQL can pick the
+     * most selective branch-leading index (category, publication year,
+     * availability) and stop at the limit
+     * 
+     * @param query Search criteria, sort and limit
+     * @return Matching books in the requested order
+     */
+    public List<Book> queryBooks(BookQuery query) {
+        List<Book> books = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM books WHERE branch_id = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(BranchContext.current());
+        
+        if (query.getTitle() != null) {
+            sql.append(" AND title LIKE ?");
+            params.add("%" + escapeLike(query.getTitle()) + "%");
+        }
+        if (query.getAuthor() != null) {
+            sql.append(" AND author LIKE ?");
+            params.add("%" + escapeLike(query.getAuthor()) + "%");
+        }
+        if (query.getCategory() != null) {
+            sql.append(" AND category = ?");
+            params.add(query.getCategory());
+        }
+        if (query.getYearFrom() != null) {
+            sql.append(" AND publication_year >= ?");
+            params.add(query.getYearFrom());
+        }
+        if (query.getYearTo() != null) {
+            sql.append(" AND publication_year <= ?");
+            params.add(query.getYearTo());
+        }
+        if (query.isAvailableOnly()) {
+            sql.append(" AND available_copies > 0");
+        }
+        
+        // Sort column comes from a fixed list, never from the request
+        String direction = query.isDescending() ? " DESC" : "";
+        String column;
+        switch (query.getSortBy()) {
+            case BookQuery.SORT_AUTHOR:
+                column = "author";
+                break;
+            case BookQuery.SORT_YEAR:
+                column = "publication_year";
+                break;
+            case BookQuery.SORT_AVAILABLE:
+                column = "available_copies";
+                break;
+            default:
+                column = "title";
+                break;
+        }
+        sql.append(" ORDER BY ").append(column).append(direction);
+        if (!"title".equals(column)) {
+            sql.append(", title");
+        }
+        sql.append(" LIMIT ?");
+        params.add(query.getLimit());
+        
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                books.add(extractBookFromResultSet(rs));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error querying books: " + e.getMessage());
+        }
+        return books;
+    }
+    
+    /**
+     * Get available books of the current branch only
      * 
      * @return List of available books
      */
     public List<Book> getAvailableBooks() {
         List<Book> books = new ArrayList<>();
-        String sql = "SELECT * FROM books WHERE available_copies > 0 ORDER BY title";
+        String sql = "SELECT * FROM books WHERE branch_id = ? AND available_copies > 0 ORDER BY title";
         
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, BranchContext.current());
+            ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
                 books.add(extractBookFromResultSet(rs));
@@ -258,34 +520,208 @@ public class BookDAO {
     public boolean updateAvailableCopies(int bookId, int change) {
         String sql = "UPDATE books SET available_copies = available_copies + ? WHERE book_id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                pstmt.setInt(1, change);
+                pstmt.setInt(2, bookId);
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.UPDATE, bookId);
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error updating available copies: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Take one copy off the shelf if any is available
+     * Conditional decrement, so concurrent callers can never drive the count negative
+     * 
+     * @param bookId Book ID
+     * @return true if a copy was taken, false if none was available
+     */
+    public boolean claimAvailableCopy(int bookId) {
+        String sql = "UPDATE books SET available_copies = available_copies - 1 " +
+                     "WHERE book_id = ? AND available_copies > 0";
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                pstmt.setInt(1, bookId);
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.UPDATE, bookId);
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error claiming available copy: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Lowest and highest book ID, for splitting the catalog into ranges
+     * 
+     * @return {min, max}, {0, -1} for an empty catalog, or null if the query failed
+     */
+    public int[] getBookIdRange() {
+        String sql = "SELECT MIN(book_id), MAX(book_id) FROM books";
+        
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
+             Statement stmt = conn.createStatement()) {
+            
+            ResultSet rs = stmt.executeQuery(sql);
+            if (rs.next() && rs.getObject(1) != null) {
+                return new int[] {rs.getInt(1), rs.getInt(2)};
+            }
+            return new int[] {0, -1};
+            
+        } catch (SQLException e) {
+            System.err.println("Error getting book ID range: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Find titles in a book ID range whose available_copies disagree with their open loans
+     * One grouped aggregate over the (book_id, status) index of issued_books
+     * 
+     * @param fromBookId First book ID, inclusive
+     * @param toBookId Last book ID, inclusive
+     * @return Drifted titles by book ID, or null if the query failed
+     */
+    public List<InventoryDrift> findLoanDrift(int fromBookId, int toBookId) {
+        List<InventoryDrift> drift = new ArrayList<>();
+        String sql = "SELECT b.book_id, b.branch_id, b.title, b.total_copies, b.available_copies, " +
+                     "COALESCE(l.open_loans, 0) AS open_loans FROM books b " +
+                     "LEFT JOIN (SELECT book_id, COUNT(*) AS open_loans FROM issued_books " +
+                     "WHERE book_id BETWEEN ? AND ? AND status = 'ISSUED' GROUP BY book_id) l " +
+                     "ON l.book_id = b.book_id " +
+                     "WHERE b.book_id BETWEEN ? AND ? " +
+                     "AND b.available_copies <> b.total_copies - COALESCE(l.open_loans, 0) " +
+                     "ORDER BY b.book_id";
+        
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.LOANS_SCOPE);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            pstmt.setInt(1, change);
-            pstmt.setInt(2, bookId);
+            pstmt.setInt(1, fromBookId);
+            pstmt.setInt(2, toBookId);
+            pstmt.setInt(3, fromBookId);
+            pstmt.setInt(4, toBookId);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                InventoryDrift item = new InventoryDrift(rs.getInt("book_id"), rs.getString("title"),
+                        rs.getInt("total_copies"), rs.getInt("available_copies"), rs.getInt("open_loans"));
+                item.setBranchId(rs.getInt("branch_id"));
+                drift.add(item);
+            }
+            return drift;
             
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        } catch (SQLException e) {
+            System.err.println("Error checking loan counters: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Set available_copies to what the open loans say, if nothing moved since the drift was seen
+     * Compare-and-set on both the counter and the loan count, so a loan issued or
+     * returned meanwhile makes this a no-op instead of a wrong correction
+     * 
+     * @param drift Drift found by findLoanDrift
+     * @return true if the counter was corrected
+     */
+    public boolean repairAvailableCopies(InventoryDrift drift) {
+        String sql = "UPDATE books SET available_copies = ? " +
+                     "WHERE book_id = ? AND available_copies = ? AND total_copies = ? " +
+                     "AND (SELECT COUNT(*) FROM issued_books WHERE book_id = ? AND status = 'ISSUED') = ?";
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                pstmt.setInt(1, drift.getExpectedAvailable());
+                pstmt.setInt(2, drift.getBookId());
+                pstmt.setInt(3, drift.getAvailableCopies());
+                pstmt.setInt(4, drift.getTotalCopies());
+                pstmt.setInt(5, drift.getBookId());
+                pstmt.setInt(6, drift.getOpenLoans());
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.UPDATE, drift.getBookId());
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             
         } catch (SQLException e) {
-            System.err.println("Error updating available copies: " + e.getMessage());
+            System.err.println("Error repairing available copies: " + e.getMessage());
             return false;
         }
     }
     
     /**
-     * Check if ISBN already exists
+     * Check if ISBN already exists in the current branch
+     * Each branch may hold its own record of the same edition
      * 
      * @param isbn ISBN to check
      * @return true if ISBN exists, false otherwise
      */
     public boolean isbnExists(String isbn) {
-        String sql = "SELECT COUNT(*) FROM books WHERE isbn = ?";
+        String sql = "SELECT COUNT(*) FROM books WHERE branch_id = ? AND isbn = ?";
         
         try (Connection conn = DBConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            pstmt.setString(1, isbn);
+            pstmt.setInt(1, BranchContext.current());
+            pstmt.setString(2, isbn);
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
@@ -299,16 +735,18 @@ public class BookDAO {
     }
     
     /**
-     * Get total number of books
+     * Get total number of books in the current branch
      * 
      * @return Total book count
      */
     public int getTotalBookCount() {
-        String sql = "SELECT COUNT(*) FROM books";
+        String sql = "SELECT COUNT(*) FROM books WHERE branch_id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.CATALOG_SCOPE);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, BranchContext.current());
+            ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
                 return rs.getInt(1);
@@ -320,6 +758,44 @@ public class BookDAO {
         return 0;
     }
     
+    /**
+     * Record a book change in the writing transaction
+     * Requests only touch books of their own branch, so the event names it;
+     * background jobs leave it 0 and every branch re-checks the book.
+     * 
+     * @param conn Connection of the writing transaction
+     * @param operation Operation performed
+     * @param bookId Book ID
+     * @return Staged event, to publish after commit
+     * @throws SQLException if the event cannot be recorded
+     */
+    private ChangeEvent stageChange(Connection conn, ChangeEvent.Operation operation, int bookId)
+            throws SQLException {
+        return ChangeEventBus.getInstance().stage(conn, ChangeEvent.EntityType.BOOK, operation, bookId,
+                                                  BranchContext.get());
+    }
+    
+    /**
+     * Notify caches on every node that a book row changed
+     * Also pins catalog reads to the primary until replicas have the change
+     * 
+     * @param event Event staged by the committed transaction
+     */
+    private void publishChange(ChangeEvent event) {
+        DBConnection.recordWrite(DBConnection.CATALOG_SCOPE);
+        ChangeEventBus.getInstance().publishCommitted(event);
+    }
+    
+    /**
+     * Escape LIKE wildcards so user input matches literally
+     * 
+     * @param value User input
+     * @return Value safe to embed in a LIKE pattern
+     */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+    
     /**
      * Extract Book object from ResultSet
      * Helper method to avoid code duplication
@@ -331,6 +807,7 @@ public class BookDAO {
     private Book extractBookFromResultSet(ResultSet rs) throws SQLException {
         Book book = new Book();
         book.setBookId(rs.getInt("book_id"));
+        book.setBranchId(rs.getInt("branch_id"));
         book.setTitle(rs.getString("title"));
         book.setAuthor(rs.getString("author"));
         book.setIsbn(rs.getString("isbn"));
@@ -0,0 +1,403 @@
+package com.library.dao;
+
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
+import com.library.model.Hold;
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hold Data Access Object
+ * Handles all database operations related to the reservation queue
+ */
+public class HoldDAO {
+    
+    /**
+     * Place a hold at the back of a book's queue
+     * The book row is locked as a return locks it. A copy still on the shelf
+     * (one returned while the caller checked availability) is taken off it in
+     * the same transaction, for the caller to hand to the queue.
+     * 
+     * @param hold Hold object
+     * @return Copies taken off the shelf for the queue, or -1 if the hold could not be placed
+     */
+    public int placeHold(Hold hold) {
+        String lockSql = "SELECT available_copies FROM books WHERE book_id = ? FOR UPDATE";
+        String sql = "INSERT INTO holds (book_id, user_id, status) VALUES (?, ?, 'WAITING')";
+        String waitingSql = "SELECT COUNT(*) FROM holds WHERE book_id = ? AND status = 'WAITING'";
+        String reserveSql = "UPDATE books SET available_copies = available_copies - ? WHERE book_id = ?";
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement lock = conn.prepareStatement(lockSql);
+                 PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement waiting = conn.prepareStatement(waitingSql);
+                 PreparedStatement reserve = conn.prepareStatement(reserveSql)) {
+                
+                lock.setInt(1, hold.getBookId());
+                ResultSet rs = lock.executeQuery();
+                if (!rs.next()) {
+                    conn.rollback();
+                    return -1;
+                }
+                int available = rs.getInt(1);
+                
+                pstmt.setInt(1, hold.getBookId());
+                pstmt.setInt(2, hold.getUserId());
+                
+                int rowsAffected = pstmt.executeUpdate();
+                List<ChangeEvent> events = new ArrayList<>();
+                int reserved = 0;
+                if (rowsAffected > 0) {
+                    ResultSet keys = pstmt.getGeneratedKeys();
+                    if (keys.next()) {
+                        hold.setHoldId(keys.getInt(1));
+                    }
+                    events.add(stageChange(conn, ChangeEvent.Operation.INSERT, hold.getHoldId(), hold.getUserId()));
+                    
+                    if (available > 0) {
+                        waiting.setInt(1, hold.getBookId());
+                        ResultSet queue = waiting.executeQuery();
+                        reserved = Math.min(available, queue.next() ? queue.getInt(1) : 0);
+                    }
+                    if (reserved > 0) {
+                        reserve.setInt(1, reserved);
+                        reserve.setInt(2, hold.getBookId());
+                        reserve.executeUpdate();
+                        events.add(ChangeEventBus.getInstance().stage(conn, ChangeEvent.EntityType.BOOK,
+                                ChangeEvent.Operation.UPDATE, hold.getBookId(), BranchContext.get()));
+                    }
+                }
+                conn.commit();
+                
+                for (ChangeEvent event : events) {
+                    if (event.getEntityType() == ChangeEvent.EntityType.BOOK) {
+                        DBConnection.recordWrite(DBConnection.CATALOG_SCOPE);
+                    }
+                    publishChange(event);
+                }
+                return rowsAffected > 0 ? reserved : -1;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error placing hold: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    /**
+     * Claim the oldest waiting hold for a book
+     * The claim is a conditional UPDATE, so concurrent returns on any node
+     * each get a different holder and no holder is served twice
+     * 
+     * @param bookId Book ID
+     * @return Claimed hold (status FULFILLED, no issue yet), or null if the queue is empty
+     */
+    public Hold claimNextHold(int bookId) {
+        String selectSql = "SELECT * FROM holds WHERE book_id = ? AND status = 'WAITING' " +
+                           "ORDER BY hold_id LIMIT 1";
+        String claimSql = "UPDATE holds SET status = 'FULFILLED', fulfilled_at = CURRENT_TIMESTAMP " +
+                          "WHERE hold_id = ? AND status = 'WAITING'";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement select = conn.prepareStatement(selectSql);
+             PreparedStatement claim = conn.prepareStatement(claimSql)) {
+            
+            while (true) {
+                select.setInt(1, bookId);
+                ResultSet rs = select.executeQuery();
+                if (!rs.next()) {
+                    return null;
+                }
+                Hold hold = extractHoldFromResultSet(rs);
+                
+                claim.setInt(1, hold.getHoldId());
+                if (claim.executeUpdate() > 0) {
+                    hold.setStatus("FULFILLED");
+                    return hold;
+                }
+                // Another thread or node claimed it first; try the next one
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error claiming hold: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * Attach the loan created for a claimed hold and notify the holder
+     * 
+     * @param holdId Hold ID
+     * @param userId Holder's user ID
+     * @param issueId Issue ID of the new loan
+     * @return true if update successful, false otherwise
+     */
+    public boolean markFulfilled(int holdId, int userId, int issueId) {
+        String sql = "UPDATE holds SET issue_id = ? WHERE hold_id = ?";
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                pstmt.setInt(1, issueId);
+                pstmt.setInt(2, holdId);
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.UPDATE, holdId, userId);
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error fulfilling hold: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Cancel a waiting hold
+     * 
+     * @param holdId Hold ID
+     * @param userId Holder's user ID
+     * @return true if cancellation successful, false otherwise
+     */
+    public boolean cancelHold(int holdId, int userId) {
+        return cancel(holdId, userId, "WAITING");
+    }
+    
+    /**
+     * Cancel a claimed hold that could not be turned into a loan
+     * (e.g. the holder reached the loan limit in the meantime)
+     * 
+     * @param holdId Hold ID
+     * @param userId Holder's user ID
+     * @return true if cancellation successful, false otherwise
+     */
+    public boolean expireClaimedHold(int holdId, int userId) {
+        return cancel(holdId, userId, "FULFILLED");
+    }
+    
+    /**
+     * Put a claimed hold back in the queue when its loan could not be written
+     * (e.g. the database was unreachable); it keeps its hold_id and so its place
+     * 
+     * @param holdId Hold ID
+     * @param userId Holder's user ID
+     * @return true if the hold is waiting again
+     */
+    public boolean requeueClaimedHold(int holdId, int userId) {
+        String sql = "UPDATE holds SET status = 'WAITING', fulfilled_at = NULL WHERE hold_id = ? AND user_id = ? " +
+                     "AND status = 'FULFILLED' AND issue_id IS NULL";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, holdId);
+            pstmt.setInt(2, userId);
+            return pstmt.executeUpdate() > 0;
+            
+        } catch (SQLException e) {
+            System.err.println("Error requeueing hold: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Move a hold from the expected status to CANCELLED
+     * 
+     * @param holdId Hold ID
+     * @param userId Holder's user ID
+     * @param expectedStatus Status the hold must currently have
+     * @return true if cancellation successful, false otherwise
+     */
+    private boolean cancel(int holdId, int userId, String expectedStatus) {
+        String sql = "UPDATE holds SET status = 'CANCELLED' WHERE hold_id = ? AND user_id = ? " +
+                     "AND status = ? AND issue_id IS NULL";
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                pstmt.setInt(1, holdId);
+                pstmt.setInt(2, userId);
+                pstmt.setString(3, expectedStatus);
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.DELETE, holdId, userId);
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error cancelling hold: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Get a user's waiting holds with their queue positions
+     * 
+     * @param userId User ID
+     * @return List of waiting holds
+     */
+    public List<Hold> getWaitingHoldsByUserId(int userId) {
+        List<Hold> holds = new ArrayList<>();
+        String sql = "SELECT h.*, b.title AS book_title, " +
+                     "(SELECT COUNT(*) FROM holds q WHERE q.book_id = h.book_id " +
+                     " AND q.status = 'WAITING' AND q.hold_id <= h.hold_id) AS position " +
+                     "FROM holds h JOIN books b ON h.book_id = b.book_id " +
+                     "WHERE h.user_id = ? AND h.status = 'WAITING' " +
+                     "ORDER BY h.created_at";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                Hold hold = extractHoldFromResultSet(rs);
+                hold.setBookTitle(rs.getString("book_title"));
+                hold.setPosition(rs.getInt("position"));
+                holds.add(hold);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error fetching holds: " + e.getMessage());
+        }
+        return holds;
+    }
+    
+    /**
+     * Check if user already waits for a book
+     * 
+     * @param userId User ID
+     * @param bookId Book ID
+     * @return true if a waiting hold exists, false otherwise
+     */
+    public boolean hasWaitingHold(int userId, int bookId) {
+        String sql = "SELECT COUNT(*) FROM holds WHERE user_id = ? AND book_id = ? AND status = 'WAITING'";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, bookId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            if (rs.next()) {
+                return rs.getInt(1) > 0;
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error checking hold: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    /**
+     * Get number of holds waiting for a book
+     * 
+     * @param bookId Book ID
+     * @return Queue length
+     */
+    public int getWaitingHoldCount(int bookId) {
+        String sql = "SELECT COUNT(*) FROM holds WHERE book_id = ? AND status = 'WAITING'";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, bookId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error counting holds: " + e.getMessage());
+        }
+        return 0;
+    }
+    
+    /**
+     * Record a hold change in the writing transaction
+     * UPDATE events tell the holder's node that a copy was assigned to them
+     * 
+     * @param conn Connection of the writing transaction
+     * @param operation Operation performed
+     * @param holdId Hold ID
+     * @param userId Holder's user ID
+     * @return Staged event, to publish after commit
+     * @throws SQLException if the event cannot be recorded
+     */
+    private ChangeEvent stageChange(Connection conn, ChangeEvent.Operation operation, int holdId, int userId)
+            throws SQLException {
+        return ChangeEventBus.getInstance().stage(conn, ChangeEvent.EntityType.HOLD, operation, holdId, userId);
+    }
+    
+    /**
+     * Notify every node of a committed hold or book change
+     * 
+     * @param event Event staged by the committed transaction
+     */
+    private void publishChange(ChangeEvent event) {
+        ChangeEventBus.getInstance().publishCommitted(event);
+    }
+    
+    /**
+     * Extract Hold object from ResultSet
+     * 
+     * @param rs ResultSet
+     * @return Hold object
+     * @throws SQLException if extraction fails
+     */
+    private Hold extractHoldFromResultSet(ResultSet rs) throws SQLException {
+        Hold hold = new Hold();
+        hold.setHoldId(rs.getInt("hold_id"));
+        hold.setBookId(rs.getInt("book_id"));
+        hold.setUserId(rs.getInt("user_id"));
+        hold.setStatus(rs.getString("status"));
+        hold.setIssueId(rs.getInt("issue_id"));
+        hold.setCreatedAt(rs.getTimestamp("created_at"));
+        hold.setFulfilledAt(rs.getTimestamp("fulfilled_at"));
+        return hold;
+    }
+}
\ No newline at end of file
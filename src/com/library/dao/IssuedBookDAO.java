@@ -1,11 +1,22 @@
 package com.library.dao;
 
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
 import com.library.model.IssuedBook;
+import com.library.util.BranchContext;
 import com.library.util.DBConnection;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * IssuedBook Data Access Object
@@ -13,55 +24,184 @@ import java.util.List;
  */
 public class IssuedBookDAO {
     
+    // Columns shared by issued_books and issued_books_archive, for history queries over both
+    private static final String LOAN_COLUMNS = "issue_id, branch_id, book_id, user_id, issue_date, due_date, " +
+                                               "return_date, status, fine_amount, copy_id, created_at";
+    
+    private final BookCopyDAO bookCopyDAO = new BookCopyDAO();
+    
     /**
      * Issue a book to a user
+     * Takes one from available_copies with a conditional UPDATE and claims a copy
+     * from book_copies in the same transaction as the loan insert; titles without
+     * copy rows are lent without one
+     * 
+     * @param issuedBook IssuedBook object
+     * @return Issue ID, 0 if no copy was available, or -1 if the transaction failed
+     */
+    public int issueBook(IssuedBook issuedBook) {
+        return insertLoan(issuedBook, true);
+    }
+    
+    /**
+     * Issue a copy already kept off the shelf for a hold
+     * available_copies is left alone; the copy itself is still claimed
+     * 
+     * @param issuedBook IssuedBook object
+     * @return Issue ID, 0 if no copy was available, or -1 if the transaction failed
+     */
+    public int issueReservedBook(IssuedBook issuedBook) {
+        return insertLoan(issuedBook, false);
+    }
+    
+    /**
+     * Claim the counter and a copy, then insert the loan, all in one transaction
      * 
      * @param issuedBook IssuedBook object
-     * @return true if book issued successfully, false otherwise
+     * @param claimCounter true to take the copy from available_copies
+     * @return Issue ID, 0 if no copy was available, or -1 if the transaction failed
      */
-    public boolean issueBook(IssuedBook issuedBook) {
-        String sql = "INSERT INTO issued_books (book_id, user_id, issue_date, due_date, status) " +
-                     "VALUES (?, ?, ?, ?, ?)";
+    private int insertLoan(IssuedBook issuedBook, boolean claimCounter) {
+        String claimSql = "UPDATE books SET available_copies = available_copies - 1 " +
+                          "WHERE book_id = ? AND available_copies > 0";
+        String sql = "INSERT INTO issued_books (book_id, user_id, issue_date, due_date, status, copy_id, branch_id) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        if (issuedBook.getBranchId() == 0) {
+            issuedBook.setBranchId(BranchContext.current());
+        }
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, issuedBook.getBookId());
-            pstmt.setInt(2, issuedBook.getUserId());
-            pstmt.setDate(3, issuedBook.getIssueDate());
-            pstmt.setDate(4, issuedBook.getDueDate());
-            pstmt.setString(5, "ISSUED");
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement claim = conn.prepareStatement(claimSql);
+                 PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                
+                if (claimCounter) {
+                    claim.setInt(1, issuedBook.getBookId());
+                    if (claim.executeUpdate() == 0) {
+                        conn.rollback();
+                        return 0;
+                    }
+                }
+                int copyId = bookCopyDAO.claimCopy(conn, issuedBook.getBookId());
+                if (copyId == 0 && bookCopyDAO.hasCopies(conn, issuedBook.getBookId())) {
+                    // Tracked per copy, and every copy is out: the counter was wrong
+                    conn.rollback();
+                    return 0;
+                }
+                pstmt.setInt(1, issuedBook.getBookId());
+                pstmt.setInt(2, issuedBook.getUserId());
+                pstmt.setDate(3, issuedBook.getIssueDate());
+                pstmt.setDate(4, issuedBook.getDueDate());
+                pstmt.setString(5, "ISSUED");
+                setCopyId(pstmt, 6, copyId);
+                pstmt.setInt(7, issuedBook.getBranchId());
+                
+                int rowsAffected = pstmt.executeUpdate();
+                List<ChangeEvent> events = new ArrayList<>();
+                if (rowsAffected > 0) {
+                    ResultSet keys = pstmt.getGeneratedKeys();
+                    if (keys.next()) {
+                        issuedBook.setIssueId(keys.getInt(1));
+                    }
+                    issuedBook.setCopyId(copyId);
+                    events.add(stageChange(conn, ChangeEvent.Operation.INSERT, issuedBook.getIssueId(),
+                                           issuedBook.getUserId()));
+                    if (claimCounter) {
+                        stageBookChanges(conn, Collections.singleton(issuedBook.getBookId()), events);
+                    }
+                }
+                conn.commit();
+                
+                publishChanges(events);
+                return rowsAffected > 0 ? issuedBook.getIssueId() : -1;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             
         } catch (SQLException e) {
             System.err.println("Error issuing book: " + e.getMessage());
-            return false;
+            return -1;
         }
     }
     
     /**
      * Return a book
+     * The copy on loan goes back to AVAILABLE in the same transaction. The book
+     * row is locked while the hold queue is checked, the same lock placing a
+     * hold takes, so a copy wanted by a waiting hold is kept off the shelf and
+     * one returned just before a hold is placed is seen by that hold.
      * 
      * @param issueId Issue ID
      * @param returnDate Return date
      * @param fineAmount Fine amount if any
+     * @param reservedCopies Receives the book ID with 1 if the copy was kept for a waiting hold
      * @return true if book returned successfully, false otherwise
      */
-    public boolean returnBook(int issueId, Date returnDate, double fineAmount) {
+    public boolean returnBook(int issueId, Date returnDate, double fineAmount, Map<Integer, Integer> reservedCopies) {
+        String lockSql = "SELECT copy_id, book_id FROM issued_books WHERE issue_id = ? AND status = 'ISSUED' FOR UPDATE";
+        String bookLockSql = "SELECT available_copies FROM books WHERE book_id = ? FOR UPDATE";
+        String waitingSql = "SELECT COUNT(*) FROM holds WHERE book_id = ? AND status = 'WAITING'";
+        String shelveSql = "UPDATE books SET available_copies = available_copies + 1 WHERE book_id = ?";
         String sql = "UPDATE issued_books SET return_date = ?, status = 'RETURNED', " +
                      "fine_amount = ? WHERE issue_id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setDate(1, returnDate);
-            pstmt.setDouble(2, fineAmount);
-            pstmt.setInt(3, issueId);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement lock = conn.prepareStatement(lockSql);
+                 PreparedStatement bookLock = conn.prepareStatement(bookLockSql);
+                 PreparedStatement waiting = conn.prepareStatement(waitingSql);
+                 PreparedStatement shelve = conn.prepareStatement(shelveSql);
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                lock.setInt(1, issueId);
+                ResultSet rs = lock.executeQuery();
+                if (!rs.next()) {
+                    conn.rollback();
+                    return false;
+                }
+                int copyId = rs.getInt("copy_id");
+                int bookId = rs.getInt("book_id");
+                bookLock.setInt(1, bookId);
+                bookLock.executeQuery();
+                
+                pstmt.setDate(1, returnDate);
+                pstmt.setDouble(2, fineAmount);
+                pstmt.setInt(3, issueId);
+                int rowsAffected = pstmt.executeUpdate();
+                if (copyId > 0) {
+                    bookCopyDAO.releaseCopy(conn, copyId);
+                }
+                waiting.setInt(1, bookId);
+                ResultSet queue = waiting.executeQuery();
+                boolean forHold = queue.next() && queue.getInt(1) > 0;
+                List<ChangeEvent> events = new ArrayList<>();
+                if (rowsAffected > 0) {
+                    events.add(stageChange(conn, ChangeEvent.Operation.UPDATE, issueId, 0));
+                    if (!forHold) {
+                        shelve.setInt(1, bookId);
+                        shelve.executeUpdate();
+                        stageBookChanges(conn, Collections.singleton(bookId), events);
+                    }
+                }
+                conn.commit();
+                
+                if (rowsAffected > 0 && forHold) {
+                    reservedCopies.put(bookId, 1);
+                }
+                
+                publishChanges(events);
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             
         } catch (SQLException e) {
             System.err.println("Error returning book: " + e.getMessage());
@@ -99,7 +239,7 @@ public class IssuedBookDAO {
     }
     
     /**
-     * Get all issued books (currently issued, not returned)
+     * Get all issued books of the current branch (currently issued, not returned)
      * 
      * @return List of currently issued books
      */
@@ -109,12 +249,14 @@ public class IssuedBookDAO {
                      "FROM issued_books ib " +
                      "JOIN books b ON ib.book_id = b.book_id " +
                      "JOIN users u ON ib.user_id = u.user_id " +
-                     "WHERE ib.status = 'ISSUED' " +
+                     "WHERE ib.branch_id = ? AND ib.status = 'ISSUED' " +
                      "ORDER BY ib.issue_date DESC";
         
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.LOANS_SCOPE);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, BranchContext.current());
+            ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
                 issuedBooks.add(extractIssuedBookFromResultSet(rs));
@@ -141,7 +283,7 @@ public class IssuedBookDAO {
                      "WHERE ib.user_id = ? AND ib.status = 'ISSUED' " +
                      "ORDER BY ib.issue_date DESC";
         
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.userScope(userId));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
@@ -159,6 +301,7 @@ public class IssuedBookDAO {
     
     /**
      * Get book history by user ID (including returned books)
+     * Reads both the active table and the archive
      * 
      * @param userId User ID
      * @return List of all books issued to the user (including returned)
@@ -166,16 +309,17 @@ public class IssuedBookDAO {
     public List<IssuedBook> getBookHistoryByUserId(int userId) {
         List<IssuedBook> issuedBooks = new ArrayList<>();
         String sql = "SELECT ib.*, b.title as book_title, b.author as book_author, u.full_name as user_name " +
-                     "FROM issued_books ib " +
+                     "FROM (SELECT " + LOAN_COLUMNS + " FROM issued_books WHERE user_id = ? " +
+                     "UNION ALL SELECT " + LOAN_COLUMNS + " FROM issued_books_archive WHERE user_id = ?) ib " +
                      "JOIN books b ON ib.book_id = b.book_id " +
                      "JOIN users u ON ib.user_id = u.user_id " +
-                     "WHERE ib.user_id = ? " +
                      "ORDER BY ib.issue_date DESC";
         
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.userScope(userId));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
@@ -189,7 +333,7 @@ public class IssuedBookDAO {
     }
     
     /**
-     * Get all overdue books
+     * Get all overdue books of the current branch
      * 
      * @return List of overdue books
      */
@@ -199,12 +343,14 @@ public class IssuedBookDAO {
                      "FROM issued_books ib " +
                      "JOIN books b ON ib.book_id = b.book_id " +
                      "JOIN users u ON ib.user_id = u.user_id " +
-                     "WHERE ib.status = 'ISSUED' AND ib.due_date < CURDATE() " +
+                     "WHERE ib.branch_id = ? AND ib.status = 'ISSUED' AND ib.due_date < CURDATE() " +
                      "ORDER BY ib.due_date";
         
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.LOANS_SCOPE);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, BranchContext.current());
+            ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
                 overdueBooks.add(extractIssuedBookFromResultSet(rs));
@@ -217,21 +363,25 @@ public class IssuedBookDAO {
     }
     
     /**
-     * Get complete issue history
+     * Get complete issue history of the current branch, active and archived
      * 
      * @return List of all issue records
      */
     public List<IssuedBook> getAllIssueHistory() {
         List<IssuedBook> history = new ArrayList<>();
         String sql = "SELECT ib.*, b.title as book_title, b.author as book_author, u.full_name as user_name " +
-                     "FROM issued_books ib " +
+                     "FROM (SELECT " + LOAN_COLUMNS + " FROM issued_books WHERE branch_id = ? " +
+                     "UNION ALL SELECT " + LOAN_COLUMNS + " FROM issued_books_archive WHERE branch_id = ?) ib " +
                      "JOIN books b ON ib.book_id = b.book_id " +
                      "JOIN users u ON ib.user_id = u.user_id " +
                      "ORDER BY ib.issue_date DESC";
         
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.LOANS_SCOPE);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, BranchContext.current());
+            pstmt.setInt(2, BranchContext.current());
+            ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
                 history.add(extractIssuedBookFromResultSet(rs));
@@ -243,6 +393,119 @@ public class IssuedBookDAO {
         return history;
     }
     
+    /**
+     * Stream the current branch's issue history without holding it in memory
+     * Archived records come first, then the active table, each ordered by issue ID;
+     * rows are fetched one at a time from the server (MySQL streaming result set).
+     * If the consumer throws, the query is cancelled so closing the result set
+     * does not have to read the remaining rows first.
+     * 
+     * @param consumer Receives each issue record with book and user names
+     * @return true if every row was read, false if the query failed part way
+     */
+    public boolean forEachIssueRecord(Consumer<IssuedBook> consumer) {
+        String sql = "SELECT ib.*, b.title as book_title, b.author as book_author, u.full_name as user_name " +
+                     "FROM %s ib " +
+                     "JOIN books b ON ib.book_id = b.book_id " +
+                     "JOIN users u ON ib.user_id = u.user_id " +
+                     "WHERE ib.branch_id = ? " +
+                     "ORDER BY ib.issue_id";
+        int branchId = BranchContext.current();
+        
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.LOANS_SCOPE)) {
+            for (String table : new String[] {"issued_books_archive", "issued_books"}) {
+                try (PreparedStatement stmt = conn.prepareStatement(String.format(sql, table),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setInt(1, branchId);
+                    stmt.setFetchSize(Integer.MIN_VALUE);
+                    // A full scan may legitimately outlast the per-query timeout
+                    stmt.setQueryTimeout(0);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            IssuedBook issuedBook = extractIssuedBookFromResultSet(rs);
+                            try {
+                                consumer.accept(issuedBook);
+                            } catch (RuntimeException e) {
+                                stmt.cancel();
+                                throw e;
+                            }
+                        }
+                    }
+                }
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            System.err.println("Error streaming issue history: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Move returned loans older than a cutoff into issued_books_archive
+     * One batch per transaction: the rows are locked (skipping any another node
+     * is already moving), copied and deleted, so readers of the combined history
+     * never see a loan twice or not at all.
+     * 
+     * @param cutoff Loans returned before this date are moved
+     * @param batchSize Maximum loans to move
+     * @return Number of loans moved, or -1 if the transaction failed
+     */
+    public int archiveReturnedLoans(Date cutoff, int batchSize) {
+        String selectSql = "SELECT issue_id FROM issued_books " +
+                           "WHERE status = 'RETURNED' AND return_date < ? " +
+                           "ORDER BY return_date LIMIT ? FOR UPDATE SKIP LOCKED";
+        List<Integer> issueIds = new ArrayList<>();
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement select = conn.prepareStatement(selectSql)) {
+                    select.setDate(1, cutoff);
+                    select.setInt(2, batchSize);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            issueIds.add(rs.getInt(1));
+                        }
+                    }
+                }
+                
+                if (!issueIds.isEmpty()) {
+                    String in = placeholders(issueIds.size());
+                    String copySql = "INSERT INTO issued_books_archive (" + LOAN_COLUMNS + ") " +
+                                     "SELECT " + LOAN_COLUMNS + " FROM issued_books WHERE issue_id IN (" + in + ")";
+                    String deleteSql = "DELETE FROM issued_books WHERE issue_id IN (" + in + ")";
+                    try (PreparedStatement copy = conn.prepareStatement(copySql);
+                         PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+                        for (int i = 0; i < issueIds.size(); i++) {
+                            copy.setInt(i + 1, issueIds.get(i));
+                            delete.setInt(i + 1, issueIds.get(i));
+                        }
+                        int copied = copy.executeUpdate();
+                        int deleted = delete.executeUpdate();
+                        if (copied != issueIds.size() || deleted != issueIds.size()) {
+                            throw new SQLException("Archived " + copied + " and deleted " + deleted
+                                    + " of " + issueIds.size() + " loans");
+                        }
+                    }
+                }
+                conn.commit();
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error archiving returned loans: " + e.getMessage());
+            return -1;
+        }
+        // No cache or replica routing change: the combined history reads the same before and after
+        return issueIds.size();
+    }
+    
     /**
      * Check if user has already issued a specific book
      * 
@@ -296,6 +559,335 @@ public class IssuedBookDAO {
         return 0;
     }
     
+    /**
+     * Issue several books in one transaction
+     * Copies are claimed with a batched conditional decrement, so an item whose
+     * book ran out meanwhile is skipped instead of driving availability negative;
+     * each issued item then takes a copy from book_copies
+     * 
+     * @param loans Loans to create, with book, user, issue and due dates set
+     * @return Per-item flags in input order, or null if the transaction failed
+     */
+    public boolean[] issueBooks(List<IssuedBook> loans) {
+        String claimSql = "UPDATE books SET available_copies = available_copies - 1 " +
+                          "WHERE book_id = ? AND available_copies > 0";
+        String insertSql = "INSERT INTO issued_books (book_id, user_id, issue_date, due_date, status, copy_id, " +
+                           "branch_id) VALUES (?, ?, ?, ?, 'ISSUED', ?, ?)";
+        boolean[] issued = new boolean[loans.size()];
+        List<IssuedBook> inserted = new ArrayList<>();
+        List<ChangeEvent> events = new ArrayList<>();
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement claim = conn.prepareStatement(claimSql);
+                 PreparedStatement insert = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+                
+                for (IssuedBook loan : loans) {
+                    claim.setInt(1, loan.getBookId());
+                    claim.addBatch();
+                }
+                int[] claimed = claim.executeBatch();
+                
+                for (int i = 0; i < loans.size(); i++) {
+                    if (claimed[i] > 0) {
+                        IssuedBook loan = loans.get(i);
+                        loan.setCopyId(bookCopyDAO.claimCopy(conn, loan.getBookId()));
+                        insert.setInt(1, loan.getBookId());
+                        insert.setInt(2, loan.getUserId());
+                        insert.setDate(3, loan.getIssueDate());
+                        insert.setDate(4, loan.getDueDate());
+                        setCopyId(insert, 5, loan.getCopyId());
+                        if (loan.getBranchId() == 0) {
+                            loan.setBranchId(BranchContext.current());
+                        }
+                        insert.setInt(6, loan.getBranchId());
+                        insert.addBatch();
+                        inserted.add(loan);
+                        issued[i] = true;
+                    }
+                }
+                
+                if (!inserted.isEmpty()) {
+                    insert.executeBatch();
+                    ResultSet keys = insert.getGeneratedKeys();
+                    Set<Integer> bookIds = new HashSet<>();
+                    for (IssuedBook loan : inserted) {
+                        if (keys.next()) {
+                            loan.setIssueId(keys.getInt(1));
+                        }
+                        events.add(stageChange(conn, ChangeEvent.Operation.INSERT, loan.getIssueId(),
+                                               loan.getUserId()));
+                        bookIds.add(loan.getBookId());
+                    }
+                    stageBookChanges(conn, bookIds, events);
+                }
+                conn.commit();
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error issuing books in bulk: " + e.getMessage());
+            return null;
+        }
+        
+        publishChanges(events);
+        return issued;
+    }
+    
+    /**
+     * Return several books in one transaction
+     * Loans are closed with one batched UPDATE and the copies go back to the
+     * shelf with one batched increment per title and one batched copy release.
+     * Copies wanted by waiting holds are kept off the shelf in the same
+     * transaction, so no walk-in issue can take them before the holders get them.
+     * 
+     * @param loans Loans to close, with return date and fine amount set
+     * @param reservedCopies Receives, per book ID, the returned copies kept for waiting holds
+     * @return Per-item flags in input order, or null if the transaction failed
+     */
+    public boolean[] returnBooks(List<IssuedBook> loans, Map<Integer, Integer> reservedCopies) {
+        String returnSql = "UPDATE issued_books SET return_date = ?, status = 'RETURNED', " +
+                           "fine_amount = ? WHERE issue_id = ? AND status = 'ISSUED'";
+        String shelveSql = "UPDATE books SET available_copies = available_copies + ? WHERE book_id = ?";
+        String releaseSql = "UPDATE book_copies SET status = 'AVAILABLE' WHERE status = 'ISSUED' " +
+                            "AND copy_id = (SELECT copy_id FROM issued_books WHERE issue_id = ?)";
+        String bookLockSql = "SELECT available_copies FROM books WHERE book_id = ? FOR UPDATE";
+        String waitingSql = "SELECT COUNT(*) FROM holds WHERE book_id = ? AND status = 'WAITING'";
+        boolean[] returned = new boolean[loans.size()];
+        Map<Integer, Integer> reserved = new HashMap<>();
+        Map<Integer, Integer> copiesByBook = new LinkedHashMap<>();
+        List<ChangeEvent> events = new ArrayList<>();
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement close = conn.prepareStatement(returnSql);
+                 PreparedStatement shelve = conn.prepareStatement(shelveSql);
+                 PreparedStatement release = conn.prepareStatement(releaseSql);
+                 PreparedStatement bookLock = conn.prepareStatement(bookLockSql);
+                 PreparedStatement waiting = conn.prepareStatement(waitingSql)) {
+                
+                for (IssuedBook loan : loans) {
+                    close.setDate(1, loan.getReturnDate());
+                    close.setDouble(2, loan.getFineAmount());
+                    close.setInt(3, loan.getIssueId());
+                    close.addBatch();
+                }
+                int[] closed = close.executeBatch();
+                
+                for (int i = 0; i < loans.size(); i++) {
+                    if (closed[i] > 0) {
+                        returned[i] = true;
+                        copiesByBook.merge(loans.get(i).getBookId(), 1, Integer::sum);
+                        release.setInt(1, loans.get(i).getIssueId());
+                        release.addBatch();
+                    }
+                }
+                
+                boolean shelving = false;
+                for (Map.Entry<Integer, Integer> entry : copiesByBook.entrySet()) {
+                    // Same lock as placing a hold, so no hold slips in between count and shelving
+                    bookLock.setInt(1, entry.getKey());
+                    bookLock.executeQuery();
+                    waiting.setInt(1, entry.getKey());
+                    ResultSet rs = waiting.executeQuery();
+                    int forHolds = Math.min(entry.getValue(), rs.next() ? rs.getInt(1) : 0);
+                    if (forHolds > 0) {
+                        reserved.put(entry.getKey(), forHolds);
+                    }
+                    if (entry.getValue() > forHolds) {
+                        shelve.setInt(1, entry.getValue() - forHolds);
+                        shelve.setInt(2, entry.getKey());
+                        shelve.addBatch();
+                        shelving = true;
+                    }
+                }
+                if (shelving) {
+                    shelve.executeBatch();
+                }
+                if (!copiesByBook.isEmpty()) {
+                    release.executeBatch();
+                }
+                for (int i = 0; i < loans.size(); i++) {
+                    if (returned[i]) {
+                        events.add(stageChange(conn, ChangeEvent.Operation.UPDATE, loans.get(i).getIssueId(),
+                                               loans.get(i).getUserId()));
+                    }
+                }
+                stageBookChanges(conn, copiesByBook.keySet(), events);
+                conn.commit();
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error returning books in bulk: " + e.getMessage());
+            return null;
+        }
+        
+        reservedCopies.putAll(reserved);
+        publishChanges(events);
+        return returned;
+    }
+    
+    /**
+     * Get several issue records in one round-trip
+     * 
+     * @param issueIds Issue IDs
+     * @return Map of issue ID to IssuedBook; missing IDs are absent
+     */
+    public Map<Integer, IssuedBook> getIssuedBooksByIds(Collection<Integer> issueIds) {
+        Map<Integer, IssuedBook> issuedBooks = new HashMap<>();
+        if (issueIds.isEmpty()) {
+            return issuedBooks;
+        }
+        String sql = "SELECT ib.*, b.title as book_title, b.author as book_author, u.full_name as user_name " +
+                     "FROM issued_books ib " +
+                     "JOIN books b ON ib.book_id = b.book_id " +
+                     "JOIN users u ON ib.user_id = u.user_id " +
+                     "WHERE ib.issue_id IN (" + placeholders(issueIds.size()) + ")";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int index = 1;
+            for (int issueId : issueIds) {
+                pstmt.setInt(index++, issueId);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                IssuedBook issuedBook = extractIssuedBookFromResultSet(rs);
+                issuedBooks.put(issuedBook.getIssueId(), issuedBook);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error fetching issued books: " + e.getMessage());
+        }
+        return issuedBooks;
+    }
+    
+    /**
+     * Get the books each user currently holds, for several users at once
+     * Covers both the duplicate-loan and the loan-limit checks of a bulk issue
+     * 
+     * @param userIds User IDs
+     * @return Map of user ID to IDs of books on loan; users without loans are absent
+     */
+    public Map<Integer, Set<Integer>> getActiveBookIdsByUsers(Collection<Integer> userIds) {
+        Map<Integer, Set<Integer>> activeBooks = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return activeBooks;
+        }
+        String sql = "SELECT user_id, book_id FROM issued_books " +
+                     "WHERE status = 'ISSUED' AND user_id IN (" + placeholders(userIds.size()) + ")";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int index = 1;
+            for (int userId : userIds) {
+                pstmt.setInt(index++, userId);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                activeBooks.computeIfAbsent(rs.getInt("user_id"), id -> new HashSet<>())
+                           .add(rs.getInt("book_id"));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error fetching active loans: " + e.getMessage());
+        }
+        return activeBooks;
+    }
+    
+    /**
+     * Record a loan change in the writing transaction
+     * 
+     * @param conn Connection of the writing transaction
+     * @param operation Operation performed
+     * @param issueId Issue ID
+     * @param userId Borrowing user ID, 0 if not known at the mutation point
+     * @return Staged event, to publish after commit
+     * @throws SQLException if the event cannot be recorded
+     */
+    private ChangeEvent stageChange(Connection conn, ChangeEvent.Operation operation, int issueId, int userId)
+            throws SQLException {
+        return ChangeEventBus.getInstance().stage(conn, ChangeEvent.EntityType.ISSUED_BOOK, operation, issueId,
+                                                  userId);
+    }
+    
+    /**
+     * Record that bulk circulation changed availability of these books
+     * 
+     * @param conn Connection of the writing transaction
+     * @param bookIds Book IDs
+     * @param events Receives the staged events
+     * @throws SQLException if an event cannot be recorded
+     */
+    private void stageBookChanges(Connection conn, Collection<Integer> bookIds, List<ChangeEvent> events)
+            throws SQLException {
+        for (int bookId : bookIds) {
+            events.add(ChangeEventBus.getInstance().stage(conn, ChangeEvent.EntityType.BOOK,
+                    ChangeEvent.Operation.UPDATE, bookId, BranchContext.get()));
+        }
+    }
+    
+    /**
+     * Notify caches on every node of committed loan and book changes
+     * Also pins loan and catalog reads to the primary until replicas have them
+     * 
+     * @param events Events staged by the committed transaction
+     */
+    private void publishChanges(List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            if (event.getEntityType() == ChangeEvent.EntityType.BOOK) {
+                DBConnection.recordWrite(DBConnection.CATALOG_SCOPE);
+            } else {
+                DBConnection.recordWrite(DBConnection.LOANS_SCOPE);
+                if (event.getOwnerId() > 0) {
+                    DBConnection.recordWrite(DBConnection.userScope(event.getOwnerId()));
+                }
+            }
+            ChangeEventBus.getInstance().publishCommitted(event);
+        }
+    }
+    
+    /**
+     * Build the placeholder list for an IN clause
+     * 
+     * @param count Number of placeholders
+     * @return "?, ?, ..." with count entries
+     */
+    private String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+    
+    /**
+     * Bind a loan's copy ID, or NULL when no copy was recorded
+     * 
+     * @param pstmt Statement
+     * @param index Parameter index
+     * @param copyId Copy ID, 0 for none
+     * @throws SQLException if binding fails
+     */
+    private static void setCopyId(PreparedStatement pstmt, int index, int copyId) throws SQLException {
+        if (copyId > 0) {
+            pstmt.setInt(index, copyId);
+        } else {
+            pstmt.setNull(index, Types.INTEGER);
+        }
+    }
+    
     /**
      * Extract IssuedBook object from ResultSet
      * Helper method to avoid code duplication
@@ -307,6 +899,7 @@ public class IssuedBookDAO {
     private IssuedBook extractIssuedBookFromResultSet(ResultSet rs) throws SQLException {
         IssuedBook issuedBook = new IssuedBook();
         issuedBook.setIssueId(rs.getInt("issue_id"));
+        issuedBook.setBranchId(rs.getInt("branch_id"));
         issuedBook.setBookId(rs.getInt("book_id"));
         issuedBook.setUserId(rs.getInt("user_id"));
         issuedBook.setIssueDate(rs.getDate("issue_date"));
@@ -314,6 +907,7 @@ public class IssuedBookDAO {
         issuedBook.setReturnDate(rs.getDate("return_date"));
         issuedBook.setStatus(rs.getString("status"));
         issuedBook.setFineAmount(rs.getDouble("fine_amount"));
+        issuedBook.setCopyId(rs.getInt("copy_id"));
         issuedBook.setCreatedAt(rs.getTimestamp("created_at"));
         
         // Additional fields from JOIN
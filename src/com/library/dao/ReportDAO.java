@@ -0,0 +1,75 @@
+package com.library.dao;
+
+import com.library.report.CirculationStats;
+import com.library.util.DBConnection;
+
+import java.sql.*;
+
+/**
+ * Report Data Access Object
+ * Loads the starting point for the incremental circulation aggregates.
+ * Runs a few grouped queries once at startup against each database; afterwards
+ * the aggregates follow change events and never rescan issued_books.
+ */
+public class ReportDAO {
+    
+    /**
+     * Seed circulation statistics from the database
+     * 
+     * @param stats Statistics to populate
+     * @return true if all aggregates were loaded, false otherwise
+     */
+    public boolean seed(CirculationStats stats) {
+        // Returned loans may have moved to the archive; the aggregates cover both tables
+        String loans = "(SELECT book_id, status, issue_date, return_date, fine_amount, created_at FROM issued_books " +
+                       "UNION ALL SELECT book_id, status, issue_date, return_date, fine_amount, created_at " +
+                       "FROM issued_books_archive)";
+        String booksSql = "SELECT b.book_id, b.title, b.category, b.total_copies, " +
+                          "COUNT(ib.book_id) AS borrows, " +
+                          "COALESCE(SUM(ib.status = 'ISSUED'), 0) AS active_loans " +
+                          "FROM books b LEFT JOIN " + loans + " ib ON ib.book_id = b.book_id " +
+                          "GROUP BY b.book_id, b.title, b.category, b.total_copies";
+        String durationSql = "SELECT COUNT(*), COALESCE(SUM(DATEDIFF(return_date, issue_date)), 0) " +
+                             "FROM " + loans + " ib WHERE status = 'RETURNED'";
+        String finesSql = "SELECT return_date, SUM(fine_amount) FROM " + loans + " ib " +
+                          "WHERE status = 'RETURNED' AND fine_amount > 0 GROUP BY return_date";
+        // Peak hours count loans by the hour they were issued, as the incremental updates do
+        String hoursSql = "SELECT HOUR(created_at), COUNT(*) FROM " + loans + " ib GROUP BY HOUR(created_at)";
+        
+        try (Connection conn = DBConnection.getReadConnection(DBConnection.LOANS_SCOPE);
+             Statement stmt = conn.createStatement()) {
+            
+            try (ResultSet rs = stmt.executeQuery(booksSql)) {
+                while (rs.next()) {
+                    int bookId = rs.getInt("book_id");
+                    stats.recordBook(bookId, rs.getString("title"), rs.getString("category"),
+                                     rs.getInt("total_copies"));
+                    stats.seedBorrows(bookId, rs.getLong("borrows"), rs.getLong("active_loans"));
+                }
+            }
+            
+            try (ResultSet rs = stmt.executeQuery(durationSql)) {
+                if (rs.next()) {
+                    stats.seedLoanDurations(rs.getLong(1), rs.getLong(2));
+                }
+            }
+            
+            try (ResultSet rs = stmt.executeQuery(finesSql)) {
+                while (rs.next()) {
+                    stats.recordFine(rs.getDate(1).toLocalDate(), rs.getDouble(2));
+                }
+            }
+            
+            try (ResultSet rs = stmt.executeQuery(hoursSql)) {
+                while (rs.next()) {
+                    stats.seedOperationsAtHour(rs.getInt(1), rs.getLong(2));
+                }
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            System.err.println("Error seeding circulation statistics: " + e.getMessage());
+            return false;
+        }
+    }
+}
\ No newline at end of file
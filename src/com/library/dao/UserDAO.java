@@ -1,47 +1,131 @@
 package com.library.dao;
 
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
 import com.library.model.User;
+import com.library.util.BranchContext;
 import com.library.util.DBConnection;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * User Data Access Object
  * Handles all database operations related to users
+ * Users live in their branch's database; usernames and emails are also kept in
+ * user_directory in the shared database, which makes them unique across branch
+ * databases and tells login which database holds a user.
  */
 public class UserDAO {
     
+    private static final int LOOKUP_CHUNK_SIZE = 1000; // Values per IN list
+    
     /**
      * Register a new user
+     * The user joins the current branch unless it names one. The username and
+     * email are reserved in the directory first and released if the insert fails.
      * 
      * @param user User object
      * @return true if registration successful, false otherwise
      */
     public boolean registerUser(User user) {
-        String sql = "INSERT INTO users (username, password, full_name, email, role) VALUES (?, ?, ?, ?, ?)";
+        if (user.getBranchId() == 0) {
+            user.setBranchId(BranchContext.current());
+        }
+        List<User> users = Collections.singletonList(user);
+        if (!reserveNames(users)) {
+            return false;
+        }
+        if (insertUser(user)) {
+            return true;
+        }
+        releaseNames(users);
+        return false;
+    }
+    
+    /**
+     * Insert a user row into the current branch's database
+     * 
+     * @param user User object with branch set
+     * @return true if inserted
+     */
+    private boolean insertUser(User user) {
+        String sql = "INSERT INTO users (username, password, full_name, email, role, branch_id) " +
+                     "VALUES (?, ?, ?, ?, ?, ?)";
         
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                
+                pstmt.setString(1, user.getUsername());
+                pstmt.setString(2, user.getPassword()); // In production, hash the password
+                pstmt.setString(3, user.getFullName());
+                pstmt.setString(4, user.getEmail());
+                pstmt.setString(5, user.getRole());
+                pstmt.setInt(6, user.getBranchId());
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    ResultSet keys = pstmt.getGeneratedKeys();
+                    if (keys.next()) {
+                        user.setUserId(keys.getInt(1));
+                    }
+                    event = stageChange(conn, ChangeEvent.Operation.INSERT, user.getUserId());
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error registering user: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Find the branch a username belongs to
+     * 
+     * @param username Username
+     * @return Branch ID, or {@link BranchContext#NONE} if the name is not in the directory
+     */
+    public int getBranchOfUsername(String username) {
+        String sql = "SELECT branch_id FROM user_directory WHERE username = ?";
+        
+        try (Connection conn = DBConnection.getSharedConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            pstmt.setString(1, user.getUsername());
-            pstmt.setString(2, user.getPassword()); // In production, hash the password
-            pstmt.setString(3, user.getFullName());
-            pstmt.setString(4, user.getEmail());
-            pstmt.setString(5, user.getRole());
+            pstmt.setString(1, username);
+            ResultSet rs = pstmt.executeQuery();
             
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
             
         } catch (SQLException e) {
-            System.err.println("Error registering user: " + e.getMessage());
-            return false;
+            System.err.println("Error looking up user branch: " + e.getMessage());
         }
+        return BranchContext.NONE;
     }
     
     /**
-     * Login user - validate credentials
+     * Login user - validate credentials in the current branch's database
      * 
      * @param username Username
      * @param password Password
@@ -119,17 +203,19 @@ public class UserDAO {
     }
     
     /**
-     * Get all users
+     * Get all users of the current branch
      * 
      * @return List of all users
      */
     public List<User> getAllUsers() {
         List<User> users = new ArrayList<>();
-        String sql = "SELECT * FROM users ORDER BY created_at DESC";
+        String sql = "SELECT * FROM users WHERE branch_id = ? ORDER BY created_at DESC";
         
         try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, BranchContext.current());
+            ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
                 users.add(extractUserFromResultSet(rs));
@@ -142,17 +228,19 @@ public class UserDAO {
     }
     
     /**
-     * Get all students
+     * Get all students of the current branch
      * 
      * @return List of all student users
      */
     public List<User> getAllStudents() {
         List<User> students = new ArrayList<>();
-        String sql = "SELECT * FROM users WHERE role = 'STUDENT' ORDER BY full_name";
+        String sql = "SELECT * FROM users WHERE branch_id = ? AND role = 'STUDENT' ORDER BY full_name";
         
         try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, BranchContext.current());
+            ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
                 students.add(extractUserFromResultSet(rs));
@@ -166,23 +254,65 @@ public class UserDAO {
     
     /**
      * Update user information
+     * A changed email is moved in the directory first and moved back if the update fails
      * 
      * @param user User object with updated information
      * @return true if update successful, false otherwise
      */
     public boolean updateUser(User user) {
+        User current = getUserById(user.getUserId());
+        if (current == null) {
+            return false;
+        }
+        boolean emailChanged = !current.getEmail().equals(user.getEmail());
+        if (emailChanged && !moveEmail(current.getUsername(), user.getEmail())) {
+            return false;
+        }
+        if (applyUpdate(user)) {
+            return true;
+        }
+        if (emailChanged) {
+            moveEmail(current.getUsername(), current.getEmail());
+        }
+        return false;
+    }
+    
+    /**
+     * Update a user row in the current branch's database
+     * 
+     * @param user User object with updated information
+     * @return true if updated
+     */
+    private boolean applyUpdate(User user) {
         String sql = "UPDATE users SET full_name = ?, email = ?, role = ? WHERE user_id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, user.getFullName());
-            pstmt.setString(2, user.getEmail());
-            pstmt.setString(3, user.getRole());
-            pstmt.setInt(4, user.getUserId());
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                pstmt.setString(1, user.getFullName());
+                pstmt.setString(2, user.getEmail());
+                pstmt.setString(3, user.getRole());
+                pstmt.setInt(4, user.getUserId());
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.UPDATE, user.getUserId());
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             
         } catch (SQLException e) {
             System.err.println("Error updating user: " + e.getMessage());
@@ -192,19 +322,52 @@ public class UserDAO {
     
     /**
      * Delete user
+     * The username and email are released from the directory once the row is gone
      * 
      * @param userId User ID
      * @return true if deletion successful, false otherwise
      */
     public boolean deleteUser(int userId) {
+        User user = getUserById(userId);
+        if (user == null || !removeUser(userId)) {
+            return false;
+        }
+        releaseNames(Collections.singletonList(user));
+        return true;
+    }
+    
+    /**
+     * Delete a user row from the current branch's database
+     * 
+     * @param userId User ID
+     * @return true if deleted
+     */
+    private boolean removeUser(int userId) {
         String sql = "DELETE FROM users WHERE user_id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, userId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                
+                pstmt.setInt(1, userId);
+                int rowsAffected = pstmt.executeUpdate();
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.DELETE, userId);
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected > 0;
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             
         } catch (SQLException e) {
             System.err.println("Error deleting user: " + e.getMessage());
@@ -213,15 +376,15 @@ public class UserDAO {
     }
     
     /**
-     * Check if username exists
+     * Check if username exists in any branch
      * 
      * @param username Username to check
      * @return true if username exists, false otherwise
      */
     public boolean usernameExists(String username) {
-        String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
+        String sql = "SELECT COUNT(*) FROM user_directory WHERE username = ?";
         
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getSharedConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, username);
@@ -238,15 +401,15 @@ public class UserDAO {
     }
     
     /**
-     * Check if email exists
+     * Check if email exists in any branch
      * 
      * @param email Email to check
      * @return true if email exists, false otherwise
      */
     public boolean emailExists(String email) {
-        String sql = "SELECT COUNT(*) FROM users WHERE email = ?";
+        String sql = "SELECT COUNT(*) FROM user_directory WHERE email = ?";
         
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getSharedConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, email);
@@ -262,6 +425,302 @@ public class UserDAO {
         return false;
     }
     
+    /**
+     * Register several users with one multi-row INSERT
+     * The statement succeeds or fails as a whole, so a duplicate key anywhere in
+     * the batch inserts nothing; callers then fall back to row by row inserts.
+     * A single change event with entity ID 0 stands for the whole batch.
+     * The batch's names are reserved in the directory the same way, all or nothing.
+     * 
+     * @param users Users to insert; user IDs are set on success
+     * @return true if every user was inserted, false otherwise
+     */
+    public boolean registerUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return true;
+        }
+        for (User user : users) {
+            if (user.getBranchId() == 0) {
+                user.setBranchId(BranchContext.current());
+            }
+        }
+        if (!reserveNames(users)) {
+            return false;
+        }
+        if (insertUsers(users)) {
+            return true;
+        }
+        releaseNames(users);
+        return false;
+    }
+    
+    /**
+     * Insert user rows into the current branch's database with one multi-row INSERT
+     * 
+     * @param users Users with branch set; user IDs are set on success
+     * @return true if every user was inserted
+     */
+    private boolean insertUsers(List<User> users) {
+        StringBuilder sql = new StringBuilder("INSERT INTO users (username, password, full_name, email, role, " +
+                                              "branch_id) VALUES ");
+        for (int i = 0; i < users.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+        }
+        
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS)) {
+                
+                int index = 1;
+                for (User user : users) {
+                    pstmt.setString(index++, user.getUsername());
+                    pstmt.setString(index++, user.getPassword()); // In production, hash the password
+                    pstmt.setString(index++, user.getFullName());
+                    pstmt.setString(index++, user.getEmail());
+                    pstmt.setString(index++, user.getRole());
+                    pstmt.setInt(index++, user.getBranchId());
+                }
+                
+                int rowsAffected = pstmt.executeUpdate();
+                ResultSet keys = pstmt.getGeneratedKeys();
+                for (User user : users) {
+                    if (keys.next()) {
+                        user.setUserId(keys.getInt(1));
+                    }
+                }
+                ChangeEvent event = null;
+                if (rowsAffected > 0) {
+                    event = stageChange(conn, ChangeEvent.Operation.INSERT, 0);
+                }
+                conn.commit();
+                
+                if (event != null) {
+                    publishChange(event);
+                }
+                return rowsAffected == users.size();
+                
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error registering users in bulk: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Find which of the given usernames are taken, in one query per 1000 names
+     * 
+     * @param usernames Usernames to check
+     * @return Usernames found, as stored
+     */
+    public Set<String> findExistingUsernames(Collection<String> usernames) {
+        return findExisting("username", usernames);
+    }
+    
+    /**
+     * Find which of the given emails are taken, in one query per 1000 emails
+     * 
+     * @param emails Emails to check
+     * @return Emails found, as stored
+     */
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        return findExisting("email", emails);
+    }
+    
+    /**
+     * Look up many values of a unique column with IN lists
+     * 
+     * @param column Column name (constant, never user input)
+     * @param values Values to look up
+     * @return Values found, as stored
+     */
+    private Set<String> findExisting(String column, Collection<String> values) {
+        Set<String> found = new HashSet<>();
+        List<String> pending = new ArrayList<>(values);
+        
+        try (Connection conn = DBConnection.getSharedConnection()) {
+            for (int start = 0; start < pending.size(); start += LOOKUP_CHUNK_SIZE) {
+                List<String> chunk = pending.subList(start, Math.min(pending.size(), start + LOOKUP_CHUNK_SIZE));
+                StringBuilder sql = new StringBuilder("SELECT ").append(column).append(" FROM user_directory WHERE ")
+                        .append(column).append(" IN (");
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append(i == 0 ? "?" : ", ?");
+                }
+                sql.append(")");
+                
+                try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setString(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            found.add(rs.getString(1));
+                        }
+                    }
+                }
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error checking " + column + "s: " + e.getMessage());
+        }
+        return found;
+    }
+    
+    /**
+     * Stream every username without holding the table in memory
+     * 
+     * @param consumer Receives each username
+     * @return true if every row was read, false if the query failed part way
+     */
+    public boolean forEachUsername(Consumer<String> consumer) {
+        return forEachValue("SELECT username FROM user_directory", consumer);
+    }
+    
+    /**
+     * Stream every email without holding the table in memory
+     * 
+     * @param consumer Receives each email
+     * @return true if every row was read, false if the query failed part way
+     */
+    public boolean forEachEmail(Consumer<String> consumer) {
+        return forEachValue("SELECT email FROM user_directory", consumer);
+    }
+    
+    /**
+     * Stream the first column of a query, one row at a time from the server
+     * (MySQL streaming result set)
+     * 
+     * @param sql Query selecting one string column
+     * @param consumer Receives each value
+     * @return true if every row was read
+     */
+    private boolean forEachValue(String sql, Consumer<String> consumer) {
+        try (Connection conn = DBConnection.getSharedConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            // A full scan may legitimately outlast the per-query timeout
+            stmt.setQueryTimeout(0);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    consumer.accept(rs.getString(1));
+                }
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            System.err.println("Error streaming users: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Reserve usernames and emails in the directory with one multi-row INSERT
+     * A name any branch already holds fails the whole statement
+     * 
+     * @param users Users with branch set
+     * @return true if every name was reserved
+     */
+    private boolean reserveNames(List<User> users) {
+        StringBuilder sql = new StringBuilder("INSERT INTO user_directory (username, email, branch_id) VALUES ");
+        for (int i = 0; i < users.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        
+        try (Connection conn = DBConnection.getSharedConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            
+            int index = 1;
+            for (User user : users) {
+                pstmt.setString(index++, user.getUsername());
+                pstmt.setString(index++, user.getEmail());
+                pstmt.setInt(index++, user.getBranchId());
+            }
+            return pstmt.executeUpdate() == users.size();
+            
+        } catch (SQLException e) {
+            System.err.println("Error reserving usernames: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Release names reserved for users that were not inserted or have been deleted
+     * 
+     * @param users Users whose names to release
+     */
+    private void releaseNames(List<User> users) {
+        StringBuilder sql = new StringBuilder("DELETE FROM user_directory WHERE username IN (");
+        for (int i = 0; i < users.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+        
+        try (Connection conn = DBConnection.getSharedConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            
+            for (int i = 0; i < users.size(); i++) {
+                pstmt.setString(i + 1, users.get(i).getUsername());
+            }
+            pstmt.executeUpdate();
+            
+        } catch (SQLException e) {
+            System.err.println("Error releasing usernames: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Point a username's directory entry at a new email
+     * 
+     * @param username Username
+     * @param email New email
+     * @return false if another user holds the email or the directory cannot be reached
+     */
+    private boolean moveEmail(String username, String email) {
+        String sql = "UPDATE user_directory SET email = ? WHERE username = ?";
+        
+        try (Connection conn = DBConnection.getSharedConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setString(1, email);
+            pstmt.setString(2, username);
+            pstmt.executeUpdate();
+            return true;
+            
+        } catch (SQLException e) {
+            System.err.println("Error updating user email: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Record a user change in the writing transaction
+     * 
+     * @param conn Connection of the writing transaction
+     * @param operation Operation performed
+     * @param userId User ID
+     * @return Staged event, to publish after commit
+     * @throws SQLException if the event cannot be recorded
+     */
+    private ChangeEvent stageChange(Connection conn, ChangeEvent.Operation operation, int userId)
+            throws SQLException {
+        return ChangeEventBus.getInstance().stage(conn, ChangeEvent.EntityType.USER, operation, userId, 0);
+    }
+    
+    /**
+     * Notify caches on every node that a user row changed
+     * 
+     * @param event Event staged by the committed transaction
+     */
+    private void publishChange(ChangeEvent event) {
+        ChangeEventBus.getInstance().publishCommitted(event);
+    }
+    
     /**
      * Extract User object from ResultSet
      * Helper method to avoid code duplication
@@ -273,6 +732,7 @@ public class UserDAO {
     private User extractUserFromResultSet(ResultSet rs) throws SQLException {
         User user = new User();
         user.setUserId(rs.getInt("user_id"));
+        user.setBranchId(rs.getInt("branch_id"));
         user.setUsername(rs.getString("username"));
         user.setPassword(rs.getString("password"));
         user.setFullName(rs.getString("full_name"));
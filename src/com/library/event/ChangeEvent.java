@@ -0,0 +1,104 @@
+package com.library.event;
+
+/**
+ * Change Event
+ * Fine-grained notification that a single row was inserted, updated or deleted.
+ * Events are published from the DAO mutation points and broadcast to every
+ * application node so in-process caches can drop exactly the affected entries.
+ */
+public class ChangeEvent {
+    
+    /**
+     * Kind of entity that changed
+     */
+    public enum EntityType {
+        BOOK, USER, ISSUED_BOOK, HOLD
+    }
+    
+    /**
+     * Kind of mutation
+     */
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+    
+    private final EntityType entityType;
+    private final Operation operation;
+    private final int entityId;
+    private final int ownerId; // user_id for ISSUED_BOOK and HOLD events, branch_id for BOOK, 0 when unknown
+    private final String originNode;
+    private final long timestamp;
+    
+    public ChangeEvent(EntityType entityType, Operation operation, int entityId, int ownerId,
+                       String originNode, long timestamp) {
+        this.entityType = entityType;
+        this.operation = operation;
+        this.entityId = entityId;
+        this.ownerId = ownerId;
+        this.originNode = originNode;
+        this.timestamp = timestamp;
+    }
+    
+    public EntityType getEntityType() {
+        return entityType;
+    }
+    
+    public Operation getOperation() {
+        return operation;
+    }
+    
+    public int getEntityId() {
+        return entityId;
+    }
+    
+    public int getOwnerId() {
+        return ownerId;
+    }
+    
+    public String getOriginNode() {
+        return originNode;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    /**
+     * Encode the event as a single line for transports
+     * Format: TYPE|OPERATION|entityId|ownerId|originNode|timestamp
+     * 
+     * @return Encoded event
+     */
+    public String encode() {
+        return entityType + "|" + operation + "|" + entityId + "|" + ownerId + "|" +
+               originNode + "|" + timestamp;
+    }
+    
+    /**
+     * Decode an event produced by {@link #encode()}
+     * 
+     * @param line Encoded event
+     * @return ChangeEvent object, or null if the line is malformed
+     */
+    public static ChangeEvent decode(String line) {
+        if (line == null) {
+            return null;
+        }
+        String[] parts = line.split("\\|");
+        if (parts.length != 6) {
+            return null;
+        }
+        try {
+            return new ChangeEvent(EntityType.valueOf(parts[0]), Operation.valueOf(parts[1]),
+                                   Integer.parseInt(parts[2]), Integer.parseInt(parts[3]),
+                                   parts[4], Long.parseLong(parts[5]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "ChangeEvent{" + encode() + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.library.event;
+
+import com.library.util.LibraryConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Change Event Bus
+ * Dispatches change events to local listeners and broadcasts them to the
+ * other application nodes through a pluggable {@link ChangeTransport}.
+ * Implements Singleton pattern; the transport is chosen with the
+ * events.transport setting (loopback or outbox) and the node id with node.id.
+ */
+public class ChangeEventBus {
+    
+    private static final ChangeEventBus INSTANCE = new ChangeEventBus(
+            LibraryConfig.current().getString("node.id", UUID.randomUUID().toString().substring(0, 8)),
+            createDefaultTransport());
+    
+    private final String nodeId;
+    private final ChangeTransport transport;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Create a bus for one node
+     * Public so tests can run several "nodes" in one JVM over a loopback transport
+     * 
+     * @param nodeId Unique id of this node
+     * @param transport Transport used to reach other nodes
+     */
+    public ChangeEventBus(String nodeId, ChangeTransport transport) {
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.transport.start(nodeId, this::dispatch);
+    }
+    
+    /**
+     * Get the shared bus instance
+     * 
+     * @return ChangeEventBus instance
+     */
+    public static ChangeEventBus getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Register a listener for all change events
+     * 
+     * @param listener Change listener
+     */
+    public void addListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove a previously registered listener
+     * 
+     * @param listener Change listener
+     */
+    public void removeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Publish a change made on this node
+     * 
+     * @param type Entity type
+     * @param operation Operation
+     * @param entityId Primary key of the changed row
+     */
+    public void publish(ChangeEvent.EntityType type, ChangeEvent.Operation operation, int entityId) {
+        publish(type, operation, entityId, 0);
+    }
+    
+    /**
+     * Publish a change made on this node
+     * 
+     * @param type Entity type
+     * @param operation Operation
+     * @param entityId Primary key of the changed row
+     * @param ownerId Owning user ID (for loans and holds) or branch ID (for books), 0 if unknown
+     */
+    public void publish(ChangeEvent.EntityType type, ChangeEvent.Operation operation, int entityId, int ownerId) {
+        ChangeEvent event = new ChangeEvent(type, operation, entityId, ownerId, nodeId, System.currentTimeMillis());
+        dispatch(event);
+        transport.broadcast(event);
+    }
+    
+    /**
+     * Record a change inside the transaction that makes it
+     * The transport may write the event on the same connection, so other nodes
+     * hear of the change exactly when it commits. Pass the result to
+     * {@link #publishCommitted} after the commit.
+     * 
+     * @param conn Connection of the writing transaction, before commit
+     * @param type Entity type
+     * @param operation Operation
+     * @param entityId Primary key of the changed row
+     * @param ownerId Owning user ID (for loans and holds) or branch ID (for books), 0 if unknown
+     * @return Staged event
+     * @throws SQLException if the event cannot be recorded; roll the change back
+     */
+    public ChangeEvent stage(Connection conn, ChangeEvent.EntityType type, ChangeEvent.Operation operation,
+                             int entityId, int ownerId) throws SQLException {
+        ChangeEvent event = new ChangeEvent(type, operation, entityId, ownerId, nodeId, System.currentTimeMillis());
+        transport.stage(conn, event);
+        return event;
+    }
+    
+    /**
+     * Deliver a staged event locally and to the other nodes once its transaction committed
+     * 
+     * @param event Event returned by {@link #stage}
+     */
+    public void publishCommitted(ChangeEvent event) {
+        dispatch(event);
+        transport.committed(event);
+    }
+    
+    /**
+     * Get the id of this node
+     * 
+     * @return Node id
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    /**
+     * Stop the transport
+     */
+    public void shutdown() {
+        transport.stop();
+    }
+    
+    /**
+     * Deliver an event to all local listeners
+     * 
+     * @param event Change event
+     */
+    private void dispatch(ChangeEvent event) {
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.onChange(event);
+            } catch (RuntimeException e) {
+                System.err.println("Change listener failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Create the transport selected in the configuration
+     * 
+     * @return Change transport
+     */
+    private static ChangeTransport createDefaultTransport() {
+        String name = LibraryConfig.current().getString("events.transport", "loopback");
+        if ("outbox".equalsIgnoreCase(name)) {
+            return new OutboxTransport();
+        }
+        return new LoopbackTransport();
+    }
+}
\ No newline at end of file
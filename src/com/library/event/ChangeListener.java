@@ -0,0 +1,17 @@
+package com.library.event;
+
+/**
+ * Change Listener
+ * Receives change events from the local node and from remote nodes
+ */
+public interface ChangeListener {
+    
+    /**
+     * Called once per change event
+     * Implementations must be fast and must not throw; they run on the
+     * publishing thread for local events and on the transport thread for remote ones
+     * 
+     * @param event Change event
+     */
+    void onChange(ChangeEvent event);
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.library.event;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Change Transport
+ * Pluggable channel used by {@link ChangeEventBus} to ship events between nodes
+ */
+public interface ChangeTransport {
+    
+    /**
+     * Start receiving events from other nodes
+     * 
+     * @param nodeId Id of the local node, used to skip our own events
+     * @param receiver Callback for events published by other nodes
+     */
+    void start(String nodeId, Consumer<ChangeEvent> receiver);
+    
+    /**
+     * Broadcast a locally published event to the other nodes
+     * 
+     * @param event Change event
+     */
+    void broadcast(ChangeEvent event);
+    
+    /**
+     * Record an event inside the transaction that makes the change
+     * Called on the writer's connection before it commits, so a transport that
+     * persists events commits or rolls them back together with the change.
+     * The default records nothing and ships the event once it has committed.
+     * 
+     * @param conn Connection of the writing transaction
+     * @param event Change event
+     * @throws SQLException if the event cannot be recorded; the writer rolls back
+     */
+    default void stage(Connection conn, ChangeEvent event) throws SQLException {
+    }
+    
+    /**
+     * Ship an event whose transaction has committed
+     * 
+     * @param event Change event passed to {@link #stage} earlier
+     */
+    default void committed(ChangeEvent event) {
+        broadcast(event);
+    }
+    
+    /**
+     * Stop receiving and release resources
+     */
+    void stop();
+}
\ No newline at end of file
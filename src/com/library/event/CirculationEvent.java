@@ -0,0 +1,181 @@
+package com.library.event;
+
+/**
+ * Circulation Event
+ * Immutable record of a circulation operation, appended to the {@link CirculationLog}.
+ * Carries enough denormalized data (title, category, dates, fine) for
+ * projections and reports to be rebuilt from the log alone.
+ */
+public class CirculationEvent {
+    
+    /**
+     * Kind of circulation operation
+     */
+    public enum Type {
+        ISSUE, RETURN, ADD_BOOK, REGISTER
+    }
+    
+    private Type type;
+    private long timestamp;
+    private int issueId;
+    private int bookId;
+    private int userId;
+    private String bookTitle;
+    private String category;
+    private long issueDate;  // epoch millis, ISSUE and RETURN
+    private long dueDate;    // epoch millis, ISSUE and RETURN
+    private long returnDate; // epoch millis, RETURN only
+    private double fineAmount;
+    private int copies;      // ADD_BOOK only
+    
+    // Default Constructor (used by Gson when replaying the log)
+    public CirculationEvent() {
+    }
+    
+    private CirculationEvent(Type type) {
+        this.type = type;
+        this.timestamp = System.currentTimeMillis();
+    }
+    
+    /**
+     * Create an ISSUE event
+     * 
+     * @param issueId Issue ID
+     * @param bookId Book ID
+     * @param userId User ID
+     * @param bookTitle Book title
+     * @param category Book category
+     * @param issueDate Issue date (epoch millis)
+     * @param dueDate Due date (epoch millis)
+     * @return CirculationEvent
+     */
+    public static CirculationEvent issue(int issueId, int bookId, int userId, String bookTitle,
+                                         String category, long issueDate, long dueDate) {
+        CirculationEvent event = new CirculationEvent(Type.ISSUE);
+        event.issueId = issueId;
+        event.bookId = bookId;
+        event.userId = userId;
+        event.bookTitle = bookTitle;
+        event.category = category;
+        event.issueDate = issueDate;
+        event.dueDate = dueDate;
+        return event;
+    }
+    
+    /**
+     * Create a RETURN event
+     * 
+     * @param issueId Issue ID
+     * @param bookId Book ID
+     * @param userId User ID
+     * @param bookTitle Book title
+     * @param issueDate Issue date (epoch millis)
+     * @param dueDate Due date (epoch millis)
+     * @param returnDate Return date (epoch millis)
+     * @param fineAmount Fine charged
+     * @return CirculationEvent
+     */
+    public static CirculationEvent returned(int issueId, int bookId, int userId, String bookTitle,
+                                            long issueDate, long dueDate, long returnDate, double fineAmount) {
+        CirculationEvent event = new CirculationEvent(Type.RETURN);
+        event.issueId = issueId;
+        event.bookId = bookId;
+        event.userId = userId;
+        event.bookTitle = bookTitle;
+        event.issueDate = issueDate;
+        event.dueDate = dueDate;
+        event.returnDate = returnDate;
+        event.fineAmount = fineAmount;
+        return event;
+    }
+    
+    /**
+     * Create an ADD_BOOK event
+     * 
+     * @param bookId Book ID
+     * @param bookTitle Book title
+     * @param category Book category
+     * @param copies Number of copies added
+     * @return CirculationEvent
+     */
+    public static CirculationEvent bookAdded(int bookId, String bookTitle, String category, int copies) {
+        CirculationEvent event = new CirculationEvent(Type.ADD_BOOK);
+        event.bookId = bookId;
+        event.bookTitle = bookTitle;
+        event.category = category;
+        event.copies = copies;
+        return event;
+    }
+    
+    /**
+     * Create a REGISTER event
+     * 
+     * @param userId User ID
+     * @return CirculationEvent
+     */
+    public static CirculationEvent registered(int userId) {
+        CirculationEvent event = new CirculationEvent(Type.REGISTER);
+        event.userId = userId;
+        return event;
+    }
+    
+    // Getters
+    public Type getType() {
+        return type;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public int getIssueId() {
+        return issueId;
+    }
+    
+    public int getBookId() {
+        return bookId;
+    }
+    
+    public int getUserId() {
+        return userId;
+    }
+    
+    public String getBookTitle() {
+        return bookTitle;
+    }
+    
+    public String getCategory() {
+        return category;
+    }
+    
+    public long getIssueDate() {
+        return issueDate;
+    }
+    
+    public long getDueDate() {
+        return dueDate;
+    }
+    
+    public long getReturnDate() {
+        return returnDate;
+    }
+    
+    public double getFineAmount() {
+        return fineAmount;
+    }
+    
+    public int getCopies() {
+        return copies;
+    }
+    
+    @Override
+    public String toString() {
+        return "CirculationEvent{" +
+                "type=" + type +
+                ", timestamp=" + timestamp +
+                ", issueId=" + issueId +
+                ", bookId=" + bookId +
+                ", userId=" + userId +
+                '}';
+    }
+}
\ No newline at end of file
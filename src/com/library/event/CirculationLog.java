@@ -0,0 +1,310 @@
+package com.library.event;
+
+import com.google.gson.Gson;
+import com.library.util.LibraryConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Circulation Log
+ * Append-only, write-behind log of issue, return, add-book and register events.
+ * Request threads only enqueue; a single writer thread drains the queue in batches,
+ * appends them as JSON lines through a FileChannel and forces them to disk once per
+ * batch (group commit). After each commit the batch is handed to in-process
+ * subscribers, so local projections can follow it without touching issued_books.
+ * A failed write closes the file, backs off and retries the same batch on a
+ * reopened channel; the writer's state is reported for diagnostics.
+ * Implements Singleton pattern; the file is set with events.log.path.
+ */
+public class CirculationLog {
+    
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int MAX_BATCH = 1024;
+    private static final long MIN_RETRY_MS = 100;
+    private static final long MAX_RETRY_MS = 30_000;
+    
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_RETRYING = "RETRYING";
+    public static final String STATE_STOPPED = "STOPPED";
+    
+    private static final CirculationLog INSTANCE = new CirculationLog(resolvePath());
+    
+    private final Path path;
+    private final BlockingQueue<CirculationEvent> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Consumer<CirculationEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final Gson gson = new Gson();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private volatile String writerState = STATE_RUNNING;
+    private volatile String lastError;
+    private final Thread writer;
+    private volatile boolean running = true;
+    
+    private CirculationLog(Path path) {
+        this.path = path;
+        this.writer = new Thread(this::writeLoop, "circulation-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "circulation-log-shutdown"));
+    }
+    
+    /**
+     * Get the shared log instance
+     * 
+     * @return CirculationLog instance
+     */
+    public static CirculationLog getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Queue an event for appending; never blocks the caller
+     * 
+     * @param event Circulation event
+     */
+    public void record(CirculationEvent event) {
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+            System.err.println("Circulation log queue full, dropped " + event);
+        }
+    }
+    
+    /**
+     * Subscribe to events after they have been committed to the log
+     * 
+     * @param subscriber Callback, invoked on the writer thread
+     */
+    public void subscribe(Consumer<CirculationEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+    
+    /**
+     * Get the log file location
+     * 
+     * @return Log file path
+     */
+    public Path getPath() {
+        return path;
+    }
+    
+    public long getWrittenCount() {
+        return written.get();
+    }
+    
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    public long getCommitCount() {
+        return commits.get();
+    }
+    
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    /**
+     * State of the writer thread
+     * 
+     * @return STATE_RUNNING, STATE_RETRYING while writes fail, or STATE_STOPPED after close
+     */
+    public String getWriterState() {
+        return writerState;
+    }
+    
+    public long getWriteFailureCount() {
+        return writeFailures.get();
+    }
+    
+    /**
+     * Message of the last failed write
+     * 
+     * @return Error message, or null if no write has failed
+     */
+    public String getLastError() {
+        return lastError;
+    }
+    
+    /**
+     * Stop the writer after flushing everything queued so far
+     */
+    public void close() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Writer loop: wait for an event, drain a batch, append, force, publish
+     * An I/O error keeps the batch, closes the channel and retries on a fresh one
+     * with exponential backoff, so a full disk or a rotated file does not end the writer
+     */
+    private void writeLoop() {
+        List<CirculationEvent> batch = new ArrayList<>(MAX_BATCH);
+        FileChannel channel = null;
+        long retryMs = MIN_RETRY_MS;
+        
+        try {
+            while (running || !queue.isEmpty() || !batch.isEmpty()) {
+                if (batch.isEmpty()) {
+                    try {
+                        CirculationEvent first = queue.poll(1, TimeUnit.SECONDS);
+                        if (first == null) {
+                            continue;
+                        }
+                        batch.add(first);
+                    } catch (InterruptedException e) {
+                        // close() interrupts us; fall through and flush what is queued
+                    }
+                    queue.drainTo(batch, MAX_BATCH - batch.size());
+                    if (batch.isEmpty()) {
+                        continue;
+                    }
+                }
+                
+                try {
+                    if (channel == null) {
+                        channel = open();
+                    }
+                    commit(channel, batch);
+                } catch (IOException e) {
+                    writeFailures.incrementAndGet();
+                    lastError = e.getMessage();
+                    writerState = STATE_RETRYING;
+                    closeQuietly(channel);
+                    channel = null;
+                    if (!running) {
+                        // Shutting down: give up rather than hold the JVM
+                        dropped.addAndGet(batch.size() + queue.size());
+                        System.err.println("Circulation log writer stopped with " + (batch.size() + queue.size())
+                                + " events unwritten: " + e.getMessage());
+                        return;
+                    }
+                    System.err.println("Circulation log write failed, retrying in " + retryMs + " ms: "
+                            + e.getMessage());
+                    try {
+                        Thread.sleep(retryMs);
+                    } catch (InterruptedException ie) {
+                        // close() interrupts us; retry once more before giving up
+                    }
+                    retryMs = Math.min(MAX_RETRY_MS, retryMs * 2);
+                    continue;
+                }
+                if (!STATE_RUNNING.equals(writerState)) {
+                    System.out.println("Circulation log writer recovered");
+                    writerState = STATE_RUNNING;
+                }
+                retryMs = MIN_RETRY_MS;
+                
+                for (CirculationEvent event : batch) {
+                    notifySubscribers(event);
+                }
+                batch.clear();
+            }
+        } finally {
+            closeQuietly(channel);
+            writerState = STATE_STOPPED;
+        }
+    }
+    
+    /**
+     * Open the log for appending, creating it and its directory if needed
+     * 
+     * @return Open log channel
+     * @throws IOException if the file cannot be opened
+     */
+    private FileChannel open() throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+    
+    private void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing circulation log: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Append a batch as JSON lines and force it to disk
+     * 
+     * @param channel Open log channel
+     * @param batch Events to append
+     * @throws IOException if the write fails
+     */
+    private void commit(FileChannel channel, List<CirculationEvent> batch) throws IOException {
+        StringBuilder sb = new StringBuilder(batch.size() * 160);
+        for (CirculationEvent event : batch) {
+            sb.append(gson.toJson(event)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        long size = channel.size();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Cut off the partial batch so the retry does not append it twice
+            try {
+                channel.truncate(size);
+            } catch (IOException ignored) {
+                // Replay skips a torn line
+            }
+            throw e;
+        }
+        written.addAndGet(batch.size());
+        commits.incrementAndGet();
+    }
+    
+    private void notifySubscribers(CirculationEvent event) {
+        for (Consumer<CirculationEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("Circulation subscriber failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Log file location from the configuration, without starting a writer
+     * 
+     * @return Configured log path
+     */
+    static Path resolvePath() {
+        String defaultDir = System.getProperty("catalina.base") != null
+                ? Paths.get(System.getProperty("catalina.base"), "logs").toString()
+                : ".";
+        return Paths.get(LibraryConfig.current().getString("events.log.path",
+                Paths.get(defaultDir, "circulation.log").toString())).toAbsolutePath();
+    }
+}
\ No newline at end of file
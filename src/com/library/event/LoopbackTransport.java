@@ -0,0 +1,41 @@
+package com.library.event;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Loopback Transport
+ * In-process transport that delivers events between buses living in the same JVM.
+ * Used for testing multi-node coherence without a network, and as the default
+ * transport for a single-node deployment (where it simply has no peers).
+ */
+public class LoopbackTransport implements ChangeTransport {
+    
+    // All started loopback "nodes" in this JVM, keyed by node id
+    private static final Map<String, Consumer<ChangeEvent>> NODES = new ConcurrentHashMap<>();
+    
+    private String nodeId;
+    
+    @Override
+    public void start(String nodeId, Consumer<ChangeEvent> receiver) {
+        this.nodeId = nodeId;
+        NODES.put(nodeId, receiver);
+    }
+    
+    @Override
+    public void broadcast(ChangeEvent event) {
+        for (Map.Entry<String, Consumer<ChangeEvent>> node : NODES.entrySet()) {
+            if (!node.getKey().equals(event.getOriginNode())) {
+                node.getValue().accept(event);
+            }
+        }
+    }
+    
+    @Override
+    public void stop() {
+        if (nodeId != null) {
+            NODES.remove(nodeId);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.library.event;
+
+/**
+ * Notification
+ * Message pushed to a single user, e.g. that a reserved copy was issued to them
+ */
+public class Notification {
+    
+    private final int userId;
+    private final String type;
+    private final String message;
+    private final int referenceId;
+    private final long timestamp;
+    
+    public Notification(int userId, String type, String message, int referenceId) {
+        this.userId = userId;
+        this.type = type;
+        this.message = message;
+        this.referenceId = referenceId;
+        this.timestamp = System.currentTimeMillis();
+    }
+    
+    public int getUserId() {
+        return userId;
+    }
+    
+    public String getType() {
+        return type;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public int getReferenceId() {
+        return referenceId;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.library.event;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Notification Center
+ * Turns hold change events into per-user notifications and pushes them to subscribers.
+ * Because hold events travel over the {@link ChangeEventBus}, a holder is notified
+ * on whichever node their dashboard is connected to.
+ * Implements Singleton pattern; keeps a small backlog per user for clients that reconnect.
+ */
+public class NotificationCenter {
+    
+    private static final int BACKLOG_PER_USER = 20;
+    private static final NotificationCenter INSTANCE = new NotificationCenter();
+    
+    private final Map<Integer, Deque<Notification>> backlog = new ConcurrentHashMap<>();
+    private final List<Consumer<Notification>> subscribers = new CopyOnWriteArrayList<>();
+    
+    private NotificationCenter() {
+        ChangeEventBus.getInstance().addListener(event -> {
+            if (event.getEntityType() == ChangeEvent.EntityType.HOLD
+                    && event.getOperation() == ChangeEvent.Operation.UPDATE
+                    && event.getOwnerId() > 0) {
+                notify(new Notification(event.getOwnerId(), "HOLD_READY",
+                        "A copy you reserved is now issued to you", event.getEntityId()));
+            }
+        });
+    }
+    
+    /**
+     * Get the shared notification center
+     * 
+     * @return NotificationCenter instance
+     */
+    public static NotificationCenter getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Deliver a notification to subscribers and keep it in the user's backlog
+     * 
+     * @param notification Notification
+     */
+    public void notify(Notification notification) {
+        Deque<Notification> queue = backlog.computeIfAbsent(notification.getUserId(), k -> new ArrayDeque<>());
+        synchronized (queue) {
+            if (queue.size() >= BACKLOG_PER_USER) {
+                queue.pollFirst();
+            }
+            queue.addLast(notification);
+        }
+        for (Consumer<Notification> subscriber : subscribers) {
+            try {
+                subscriber.accept(notification);
+            } catch (RuntimeException e) {
+                System.err.println("Notification subscriber failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Subscribe to all notifications
+     * 
+     * @param subscriber Callback
+     */
+    public void subscribe(Consumer<Notification> subscriber) {
+        subscribers.add(subscriber);
+    }
+    
+    /**
+     * Remove a subscriber
+     * 
+     * @param subscriber Callback
+     */
+    public void unsubscribe(Consumer<Notification> subscriber) {
+        subscribers.remove(subscriber);
+    }
+    
+    /**
+     * Get a user's recent notifications
+     * 
+     * @param userId User ID
+     * @return Notifications, oldest first
+     */
+    public List<Notification> getRecent(int userId) {
+        Deque<Notification> queue = backlog.get(userId);
+        if (queue == null) {
+            return new ArrayList<>();
+        }
+        synchronized (queue) {
+            return new ArrayList<>(queue);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,251 @@
+package com.library.event;
+
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Outbox Transport
+ * Ships change events between nodes through the change_events table.
+ * DAOs stage each event on their own connection before committing, so the
+ * outbox row commits or rolls back with the change it describes; the event
+ * lands in the database of the branch that was written. Every node polls the
+ * shared database and each routed branch database for rows written by other
+ * nodes. Old rows are pruned periodically.
+ */
+public class OutboxTransport implements ChangeTransport {
+    
+    private static final long POLL_INTERVAL_MS = 500;
+    // How long a missing event id may still turn up; its transaction may commit after later ones
+    private static final long GAP_WAIT_MS = 10_000;
+    private static final int RETENTION_MINUTES = 10;
+    private static final int PRUNE_EVERY_POLLS = 120;
+    
+    private String nodeId;
+    private Consumer<ChangeEvent> receiver;
+    private ScheduledExecutorService poller;
+    // Read position per database: BranchContext.NONE for the shared one, else the routed branch
+    private final Map<Integer, Cursor> cursors = new HashMap<>();
+    private int pollCount;
+    
+    @Override
+    public void start(String nodeId, Consumer<ChangeEvent> receiver) {
+        this.nodeId = nodeId;
+        this.receiver = receiver;
+        for (int database : DBConnection.getDatabases()) {
+            openCursor(database);
+        }
+        
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-outbox-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::poll, POLL_INTERVAL_MS, POLL_INTERVAL_MS,
+                                      TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public void stage(Connection conn, ChangeEvent event) throws SQLException {
+        insert(conn, event);
+    }
+    
+    @Override
+    public void committed(ChangeEvent event) {
+        // Already in the outbox, committed together with the change
+    }
+    
+    @Override
+    public void broadcast(ChangeEvent event) {
+        try (Connection conn = DBConnection.getConnection()) {
+            insert(conn, event);
+        } catch (SQLException e) {
+            System.err.println("Error writing change event to outbox: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+    
+    /**
+     * Append an event to the outbox of the database a connection belongs to
+     * 
+     * @param conn Connection
+     * @param event Change event
+     * @throws SQLException if the insert fails
+     */
+    private void insert(Connection conn, ChangeEvent event) throws SQLException {
+        String sql = "INSERT INTO change_events (origin_node, entity_type, operation, entity_id, owner_id) " +
+                     "VALUES (?, ?, ?, ?, ?)";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, event.getOriginNode());
+            pstmt.setString(2, event.getEntityType().name());
+            pstmt.setString(3, event.getOperation().name());
+            pstmt.setInt(4, event.getEntityId());
+            pstmt.setInt(5, event.getOwnerId());
+            pstmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Deliver events written by other nodes since the last poll, from every database
+     */
+    private void poll() {
+        long now = System.currentTimeMillis();
+        List<Integer> databases = DBConnection.getDatabases();
+        for (int database : databases) {
+            Cursor cursor = cursors.get(database);
+            if (cursor == null) {
+                // Branch routed since the last poll, or its database was down at startup
+                openCursor(database);
+            } else {
+                BranchContext.runAs(database, () -> poll(cursor, now));
+            }
+        }
+        
+        if (++pollCount % PRUNE_EVERY_POLLS == 0) {
+            for (int database : databases) {
+                BranchContext.runAs(database, this::prune);
+            }
+        }
+    }
+    
+    /**
+     * Deliver new events from the database of the current branch
+     * Re-reads every row above the cursor's floor and skips those already delivered,
+     * so an event whose transaction committed after a later one is still picked up
+     * 
+     * @param cursor Read position in that database
+     * @param now Poll time
+     */
+    private void poll(Cursor cursor, long now) {
+        String sql = "SELECT event_id, origin_node, entity_type, operation, entity_id, owner_id, created_at " +
+                     "FROM change_events WHERE event_id > ? ORDER BY event_id";
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setLong(1, cursor.floor);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                long eventId = rs.getLong("event_id");
+                if (cursor.delivered.putIfAbsent(eventId, now) != null) {
+                    continue;
+                }
+                String origin = rs.getString("origin_node");
+                if (nodeId.equals(origin)) {
+                    continue;
+                }
+                try {
+                    receiver.accept(new ChangeEvent(
+                            ChangeEvent.EntityType.valueOf(rs.getString("entity_type")),
+                            ChangeEvent.Operation.valueOf(rs.getString("operation")),
+                            rs.getInt("entity_id"),
+                            rs.getInt("owner_id"),
+                            origin,
+                            rs.getTimestamp("created_at").getTime()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping malformed change event " + eventId);
+                }
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error polling change events: " + e.getMessage());
+            return;
+        }
+        cursor.advance(now);
+    }
+    
+    /**
+     * Remove events older than the retention window from the current branch's database
+     */
+    private void prune() {
+        String sql = "DELETE FROM change_events WHERE created_at < NOW() - INTERVAL " + RETENTION_MINUTES + " MINUTE";
+        
+        try (Connection conn = DBConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        } catch (SQLException e) {
+            System.err.println("Error pruning change events: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Start reading a database's outbox at its newest event, so only future events are seen
+     * 
+     * @param database BranchContext.NONE for the shared database, else a routed branch ID
+     */
+    private void openCursor(int database) {
+        long maxEventId = BranchContext.callAs(database, this::fetchMaxEventId);
+        if (maxEventId >= 0) {
+            cursors.put(database, new Cursor(maxEventId));
+        }
+    }
+    
+    /**
+     * Get the newest event id in the current branch's database
+     * 
+     * @return Highest event id, 0 if the table is empty, or -1 if the query failed
+     */
+    private long fetchMaxEventId() {
+        String sql = "SELECT COALESCE(MAX(event_id), 0) FROM change_events";
+        
+        try (Connection conn = DBConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error reading change event position: " + e.getMessage());
+        }
+        return -1;
+    }
+    
+    /**
+     * Gap-aware read position in one outbox
+     * Ids are handed out at insert but rows become visible at commit, so id N+1
+     * can be read before id N. Every id up to the floor is settled; ids above it
+     * that were delivered are remembered until the floor passes them. A gap is
+     * given up once the id after it was read GAP_WAIT_MS ago: its transaction
+     * rolled back, or ids step by auto_increment_increment.
+     */
+    private static final class Cursor {
+        
+        private long floor;
+        // Delivered ids above the floor, with the time each was first read
+        private final TreeMap<Long, Long> delivered = new TreeMap<>();
+        
+        private Cursor(long floor) {
+            this.floor = floor;
+        }
+        
+        private void advance(long now) {
+            while (!delivered.isEmpty()) {
+                Map.Entry<Long, Long> first = delivered.firstEntry();
+                if (first.getKey() != floor + 1 && now - first.getValue() < GAP_WAIT_MS) {
+                    break;
+                }
+                floor = first.getKey();
+                delivered.pollFirstEntry();
+            }
+        }
+    }
+}
\ No newline at end of file
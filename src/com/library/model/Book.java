@@ -9,6 +9,7 @@ import java.sql.Timestamp;
 public class Book {
     
     private int bookId;
+    private int branchId; // campus library holding the book
     private String title;
     private String author;
     private String isbn;
@@ -63,6 +64,14 @@ public class Book {
         this.bookId = bookId;
     }
     
+    public int getBranchId() {
+        return branchId;
+    }
+    
+    public void setBranchId(int branchId) {
+        this.branchId = branchId;
+    }
+    
     public String getTitle() {
         return title;
     }
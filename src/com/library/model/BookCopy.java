@@ -0,0 +1,114 @@
+package com.library.model;
+
+import java.sql.Timestamp;
+
+/**
+ * BookCopy Model Class
+ * Represents one physical copy of a book, identified by the barcode on its label
+ */
+public class BookCopy {
+    
+    private int copyId;
+    private int bookId;
+    private int copyNo;     // 1-based number within the title
+    private String barcode;
+    private String status;  // AVAILABLE, ISSUED, LOST or WITHDRAWN
+    private Timestamp createdAt;
+    private Timestamp updatedAt;
+    
+    // Default Constructor
+    public BookCopy() {
+    }
+    
+    // Constructor for a new copy on the shelf
+    public BookCopy(int bookId, int copyNo, String barcode) {
+        this.bookId = bookId;
+        this.copyNo = copyNo;
+        this.barcode = barcode;
+        this.status = "AVAILABLE";
+    }
+    
+    // Getters and Setters
+    public int getCopyId() {
+        return copyId;
+    }
+    
+    public void setCopyId(int copyId) {
+        this.copyId = copyId;
+    }
+    
+    public int getBookId() {
+        return bookId;
+    }
+    
+    public void setBookId(int bookId) {
+        this.bookId = bookId;
+    }
+    
+    public int getCopyNo() {
+        return copyNo;
+    }
+    
+    public void setCopyNo(int copyNo) {
+        this.copyNo = copyNo;
+    }
+    
+    public String getBarcode() {
+        return barcode;
+    }
+    
+    public void setBarcode(String barcode) {
+        this.barcode = barcode;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+    
+    // Check if copy is on the shelf
+    public boolean isAvailable() {
+        return "AVAILABLE".equals(status);
+    }
+    
+    /**
+     * Barcode printed on the label of a new copy, e.g. LIB000042-003
+     * 
+     * @param bookId Book ID
+     * @param copyNo Copy number within the title
+     * @return Barcode
+     */
+    public static String barcodeFor(int bookId, int copyNo) {
+        return String.format("LIB%06d-%03d", bookId, copyNo);
+    }
+    
+    @Override
+    public String toString() {
+        return "BookCopy{" +
+                "copyId=" + copyId +
+                ", bookId=" + bookId +
+                ", copyNo=" + copyNo +
+                ", barcode='" + barcode + '\'' +
+                ", status='" + status + '\'' +
+                '}';
+    }
+}
\ No newline at end of file
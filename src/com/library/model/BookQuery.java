@@ -0,0 +1,115 @@
+package com.library.model;
+
+/**
+ * BookQuery Model Class
+ * Criteria for the combined catalog search; unset criteria match every book
+ */
+public class BookQuery {
+    
+    public static final String SORT_TITLE = "title";
+    public static final String SORT_AUTHOR = "author";
+    public static final String SORT_YEAR = "year";
+    public static final String SORT_AVAILABLE = "available";
+    
+    private String title;     // partial match, case-insensitive
+    private String author;    // partial match, case-insensitive
+    private String category;  // exact match
+    private Integer yearFrom; // inclusive
+    private Integer yearTo;   // inclusive
+    private boolean availableOnly;
+    private String sortBy = SORT_TITLE;
+    private boolean descending;
+    private int limit = 50;
+    
+    // Default Constructor
+    public BookQuery() {
+    }
+    
+    // Getters and Setters
+    public String getTitle() {
+        return title;
+    }
+    
+    public void setTitle(String title) {
+        this.title = title;
+    }
+    
+    public String getAuthor() {
+        return author;
+    }
+    
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+    
+    public String getCategory() {
+        return category;
+    }
+    
+    public void setCategory(String category) {
+        this.category = category;
+    }
+    
+    public Integer getYearFrom() {
+        return yearFrom;
+    }
+    
+    public void setYearFrom(Integer yearFrom) {
+        this.yearFrom = yearFrom;
+    }
+    
+    public Integer getYearTo() {
+        return yearTo;
+    }
+    
+    public void setYearTo(Integer yearTo) {
+        this.yearTo = yearTo;
+    }
+    
+    public boolean isAvailableOnly() {
+        return availableOnly;
+    }
+    
+    public void setAvailableOnly(boolean availableOnly) {
+        this.availableOnly = availableOnly;
+    }
+    
+    public String getSortBy() {
+        return sortBy;
+    }
+    
+    public void setSortBy(String sortBy) {
+        this.sortBy = sortBy;
+    }
+    
+    public boolean isDescending() {
+        return descending;
+    }
+    
+    public void setDescending(boolean descending) {
+        this.descending = descending;
+    }
+    
+    public int getLimit() {
+        return limit;
+    }
+    
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+    
+    @Override
+    public String toString() {
+        return "BookQuery{" +
+                "title='" + title + '\'' +
+                ", author='" + author + '\'' +
+                ", category='" + category + '\'' +
+                ", yearFrom=" + yearFrom +
+                ", yearTo=" + yearTo +
+                ", availableOnly=" + availableOnly +
+                ", sortBy='" + sortBy + '\'' +
+                ", descending=" + descending +
+                ", limit=" + limit +
+                '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.library.model;
+
+import java.sql.Timestamp;
+
+/**
+ * Hold Model Class
+ * Represents a reservation in the per-book FIFO queue for an unavailable book
+ */
+public class Hold {
+    
+    private int holdId;
+    private int bookId;
+    private int userId;
+    private String status; // WAITING, FULFILLED or CANCELLED
+    private int issueId;   // loan created when the hold was fulfilled
+    private Timestamp createdAt;
+    private Timestamp fulfilledAt;
+    
+    // Additional fields for display (not in DB)
+    private String bookTitle;
+    private int position; // 1-based place in the queue while WAITING
+    
+    // Default Constructor
+    public Hold() {
+    }
+    
+    // Constructor for placing a hold
+    public Hold(int bookId, int userId) {
+        this.bookId = bookId;
+        this.userId = userId;
+        this.status = "WAITING";
+    }
+    
+    // Getters and Setters
+    public int getHoldId() {
+        return holdId;
+    }
+    
+    public void setHoldId(int holdId) {
+        this.holdId = holdId;
+    }
+    
+    public int getBookId() {
+        return bookId;
+    }
+    
+    public void setBookId(int bookId) {
+        this.bookId = bookId;
+    }
+    
+    public int getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public int getIssueId() {
+        return issueId;
+    }
+    
+    public void setIssueId(int issueId) {
+        this.issueId = issueId;
+    }
+    
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public Timestamp getFulfilledAt() {
+        return fulfilledAt;
+    }
+    
+    public void setFulfilledAt(Timestamp fulfilledAt) {
+        this.fulfilledAt = fulfilledAt;
+    }
+    
+    public String getBookTitle() {
+        return bookTitle;
+    }
+    
+    public void setBookTitle(String bookTitle) {
+        this.bookTitle = bookTitle;
+    }
+    
+    public int getPosition() {
+        return position;
+    }
+    
+    public void setPosition(int position) {
+        this.position = position;
+    }
+    
+    // Check if hold is still waiting in the queue
+    public boolean isWaiting() {
+        return "WAITING".equals(status);
+    }
+    
+    @Override
+    public String toString() {
+        return "Hold{" +
+                "holdId=" + holdId +
+                ", bookId=" + bookId +
+                ", userId=" + userId +
+                ", status='" + status + '\'' +
+                ", issueId=" + issueId +
+                '}';
+    }
+}
\ No newline at end of file
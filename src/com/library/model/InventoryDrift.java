@@ -0,0 +1,138 @@
+package com.library.model;
+
+/**
+ * InventoryDrift Model Class
+ * A title whose copy counters in books disagree with what the inventory says they should be
+ */
+public class InventoryDrift {
+    
+    public static final String SOURCE_COPIES = "COPIES"; // checked against book_copies
+    public static final String SOURCE_LOANS = "LOANS";   // checked against open loans in issued_books
+    
+    private String source;
+    private int bookId;
+    private int branchId;
+    private String title;
+    private int totalCopies;       // books.total_copies as recorded
+    private int availableCopies;   // books.available_copies as recorded
+    private int expectedTotal;     // copies in circulation (on the shelf or on loan)
+    private int expectedAvailable; // copies on the shelf
+    private int openLoans;         // ISSUED loans, for SOURCE_LOANS
+    
+    // Default Constructor
+    public InventoryDrift() {
+    }
+    
+    // Constructor for a title checked against its copies
+    public InventoryDrift(int bookId, String title, int totalCopies, int availableCopies,
+                          int expectedTotal, int expectedAvailable) {
+        this.source = SOURCE_COPIES;
+        this.bookId = bookId;
+        this.title = title;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+        this.expectedTotal = expectedTotal;
+        this.expectedAvailable = expectedAvailable;
+    }
+    
+    // Constructor for a title checked against its open loans
+    public InventoryDrift(int bookId, String title, int totalCopies, int availableCopies, int openLoans) {
+        this.source = SOURCE_LOANS;
+        this.bookId = bookId;
+        this.title = title;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+        this.expectedTotal = totalCopies;
+        this.expectedAvailable = totalCopies - openLoans;
+        this.openLoans = openLoans;
+    }
+    
+    // Getters and Setters
+    public String getSource() {
+        return source;
+    }
+    
+    public void setSource(String source) {
+        this.source = source;
+    }
+    
+    public int getBookId() {
+        return bookId;
+    }
+    
+    public void setBookId(int bookId) {
+        this.bookId = bookId;
+    }
+    
+    public int getBranchId() {
+        return branchId;
+    }
+    
+    public void setBranchId(int branchId) {
+        this.branchId = branchId;
+    }
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    public void setTitle(String title) {
+        this.title = title;
+    }
+    
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+    
+    public void setTotalCopies(int totalCopies) {
+        this.totalCopies = totalCopies;
+    }
+    
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+    
+    public void setAvailableCopies(int availableCopies) {
+        this.availableCopies = availableCopies;
+    }
+    
+    public int getExpectedTotal() {
+        return expectedTotal;
+    }
+    
+    public void setExpectedTotal(int expectedTotal) {
+        this.expectedTotal = expectedTotal;
+    }
+    
+    public int getExpectedAvailable() {
+        return expectedAvailable;
+    }
+    
+    public void setExpectedAvailable(int expectedAvailable) {
+        this.expectedAvailable = expectedAvailable;
+    }
+    
+    public int getOpenLoans() {
+        return openLoans;
+    }
+    
+    public void setOpenLoans(int openLoans) {
+        this.openLoans = openLoans;
+    }
+    
+    // Copies the counter is off by; positive when it shows more than are on the shelf
+    public int getAvailableDelta() {
+        return availableCopies - expectedAvailable;
+    }
+    
+    @Override
+    public String toString() {
+        return "InventoryDrift{" +
+                "source=" + source +
+                ", bookId=" + bookId +
+                ", branchId=" + branchId +
+                ", totalCopies=" + totalCopies + "/" + expectedTotal +
+                ", availableCopies=" + availableCopies + "/" + expectedAvailable +
+                '}';
+    }
+}
\ No newline at end of file
@@ -10,6 +10,7 @@ import java.sql.Timestamp;
 public class IssuedBook {
     
     private int issueId;
+    private int branchId; // campus library that lent the book
     private int bookId;
     private int userId;
     private Date issueDate;
@@ -17,6 +18,7 @@ public class IssuedBook {
     private Date returnDate;
     private String status; // ISSUED or RETURNED
     private double fineAmount;
+    private int copyId; // physical copy lent out, 0 when not tracked
     private Timestamp createdAt;
     
     // Additional fields for display (not in DB)
@@ -62,6 +64,14 @@ public class IssuedBook {
         this.issueId = issueId;
     }
     
+    public int getBranchId() {
+        return branchId;
+    }
+    
+    public void setBranchId(int branchId) {
+        this.branchId = branchId;
+    }
+    
     public int getBookId() {
         return bookId;
     }
@@ -118,6 +128,14 @@ public class IssuedBook {
         this.fineAmount = fineAmount;
     }
     
+    public int getCopyId() {
+        return copyId;
+    }
+    
+    public void setCopyId(int copyId) {
+        this.copyId = copyId;
+    }
+    
     public Timestamp getCreatedAt() {
         return createdAt;
     }
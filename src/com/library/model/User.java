@@ -10,6 +10,7 @@ import java.sql.Timestamp;
 public class User {
     
     private int userId;
+    private int branchId; // home campus library
     private String username;
     private String password;
     private String fullName;
@@ -51,6 +52,14 @@ public class User {
         this.userId = userId;
     }
     
+    public int getBranchId() {
+        return branchId;
+    }
+    
+    public void setBranchId(int branchId) {
+        this.branchId = branchId;
+    }
+    
     public String getUsername() {
         return username;
     }
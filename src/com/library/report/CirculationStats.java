@@ -0,0 +1,335 @@
+package com.library.report;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circulation Statistics
+ * Incrementally maintained aggregates behind the /api/reports endpoints.
+ * Each issue, return or book change updates a handful of counters, so every
+ * report is read straight from memory instead of scanning issued_books.
+ * Updated from one thread at a time; reports may be read concurrently.
+ */
+public class CirculationStats {
+    
+    private static final int TOP_TITLES = 20;
+    private static final String UNCATEGORIZED = "Uncategorized";
+    
+    // Per-book state
+    private final Map<Integer, LongAdder> borrowsByBook = new ConcurrentHashMap<>();
+    private final Map<Integer, String> titleByBook = new ConcurrentHashMap<>();
+    private final Map<Integer, String> categoryByBook = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> copiesByBook = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> activeLoansByBook = new ConcurrentHashMap<>();
+    
+    // Per-category utilization
+    private final Map<String, LongAdder> copiesByCategory = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> activeLoansByCategory = new ConcurrentHashMap<>();
+    
+    // Loan duration
+    private final AtomicLong returnedLoans = new AtomicLong();
+    private final AtomicLong totalLoanDays = new AtomicLong();
+    
+    // Fines per day, kept sorted for period roll-ups
+    private final ConcurrentSkipListMap<LocalDate, DoubleAdder> finesByDay = new ConcurrentSkipListMap<>();
+    
+    // Loans issued by hour of day
+    private final AtomicLongArray operationsByHour = new AtomicLongArray(24);
+    
+    // Most borrowed titles, updated in place; readers see an immutable snapshot
+    private final List<TitleCount> topTitles = new ArrayList<>();
+    private volatile List<TitleCount> topTitlesSnapshot = Collections.emptyList();
+    
+    /**
+     * Register a book and its copies, or apply an edit to one already known
+     * A changed copy count or category replaces the book's previous contribution,
+     * and a new category takes the book's active loans with it
+     * 
+     * @param bookId Book ID
+     * @param title Book title
+     * @param category Book category
+     * @param copies Total copies
+     */
+    public void recordBook(int bookId, String title, String category, int copies) {
+        String cat = normalizeCategory(category);
+        titleByBook.put(bookId, title);
+        String previousCategory = categoryByBook.put(bookId, cat);
+        Integer previousCopies = copiesByBook.put(bookId, copies);
+        if (previousCategory != null && previousCopies != null) {
+            copiesByCategory.computeIfAbsent(previousCategory, k -> new LongAdder()).add(-previousCopies);
+        }
+        if (previousCategory != null && !previousCategory.equals(cat)) {
+            long loans = activeLoansOf(bookId);
+            activeLoansByCategory.computeIfAbsent(previousCategory, k -> new LongAdder()).add(-loans);
+            activeLoansByCategory.computeIfAbsent(cat, k -> new LongAdder()).add(loans);
+        }
+        copiesByCategory.computeIfAbsent(cat, k -> new LongAdder()).add(copies);
+    }
+    
+    /**
+     * Drop a deleted book's copies and active loans from its category
+     * Its borrow count stays in the most borrowed list as history
+     * 
+     * @param bookId Book ID
+     */
+    public void removeBook(int bookId) {
+        String cat = categoryByBook.remove(bookId);
+        Integer copies = copiesByBook.remove(bookId);
+        LongAdder loans = activeLoansByBook.remove(bookId);
+        if (cat == null) {
+            return;
+        }
+        if (copies != null) {
+            copiesByCategory.computeIfAbsent(cat, k -> new LongAdder()).add(-copies);
+        }
+        if (loans != null) {
+            activeLoansByCategory.computeIfAbsent(cat, k -> new LongAdder()).add(-loans.sum());
+        }
+    }
+    
+    /**
+     * Apply a loan being issued
+     * 
+     * @param bookId Book ID
+     * @param title Book title (may be null if already known)
+     * @param category Book category (may be null if already known)
+     * @param at Time the loan was created (epoch millis)
+     */
+    public void recordIssue(int bookId, String title, String category, long at) {
+        if (title != null) {
+            titleByBook.put(bookId, title);
+        }
+        if (category != null) {
+            categoryByBook.putIfAbsent(bookId, normalizeCategory(category));
+        }
+        LongAdder borrows = borrowsByBook.computeIfAbsent(bookId, k -> new LongAdder());
+        borrows.increment();
+        activeLoansByBook.computeIfAbsent(bookId, k -> new LongAdder()).increment();
+        activeLoansByCategory.computeIfAbsent(categoryOf(bookId), k -> new LongAdder()).increment();
+        operationsByHour.incrementAndGet(hourOf(at));
+        updateTopTitles(bookId, borrows.sum());
+    }
+    
+    /**
+     * Apply a loan being returned
+     * 
+     * @param bookId Book ID
+     * @param loanDays Days between issue and return
+     * @param fineAmount Fine charged
+     * @param at Return date (epoch millis); fines are totalled by its day
+     */
+    public void recordReturn(int bookId, long loanDays, double fineAmount, long at) {
+        activeLoansByBook.computeIfAbsent(bookId, k -> new LongAdder()).decrement();
+        activeLoansByCategory.computeIfAbsent(categoryOf(bookId), k -> new LongAdder()).decrement();
+        returnedLoans.incrementAndGet();
+        totalLoanDays.addAndGet(Math.max(0, loanDays));
+        if (fineAmount > 0) {
+            recordFine(toDate(at), fineAmount);
+        }
+    }
+    
+    // ---- Seeding helpers, used once at startup from grouped aggregate queries ----
+    
+    public void seedBorrows(int bookId, long borrows, long activeLoans) {
+        LongAdder counter = borrowsByBook.computeIfAbsent(bookId, k -> new LongAdder());
+        counter.add(borrows);
+        activeLoansByBook.computeIfAbsent(bookId, k -> new LongAdder()).add(activeLoans);
+        activeLoansByCategory.computeIfAbsent(categoryOf(bookId), k -> new LongAdder()).add(activeLoans);
+        updateTopTitles(bookId, counter.sum());
+    }
+    
+    public void seedLoanDurations(long loans, long days) {
+        returnedLoans.addAndGet(loans);
+        totalLoanDays.addAndGet(days);
+    }
+    
+    public void recordFine(LocalDate day, double amount) {
+        finesByDay.computeIfAbsent(day, k -> new DoubleAdder()).add(amount);
+    }
+    
+    public void seedOperationsAtHour(int hour, long count) {
+        operationsByHour.addAndGet(hour, count);
+    }
+    
+    // ---- Reports ----
+    
+    /**
+     * Most borrowed titles, highest first
+     * 
+     * @param limit Maximum entries (at most 20)
+     * @return Title counts
+     */
+    public List<TitleCount> getMostBorrowed(int limit) {
+        List<TitleCount> snapshot = topTitlesSnapshot;
+        return snapshot.subList(0, Math.min(Math.max(limit, 0), snapshot.size()));
+    }
+    
+    /**
+     * Utilization per category: active loans / total copies
+     * 
+     * @return Category name to {copies, activeLoans, utilization}
+     */
+    public Map<String, Map<String, Object>> getCategoryUtilization() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : copiesByCategory.entrySet()) {
+            long copies = entry.getValue().sum();
+            LongAdder active = activeLoansByCategory.get(entry.getKey());
+            long loans = active != null ? active.sum() : 0;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("copies", copies);
+            row.put("activeLoans", loans);
+            row.put("utilization", copies > 0 ? (double) loans / copies : 0.0);
+            result.put(entry.getKey(), row);
+        }
+        return result;
+    }
+    
+    /**
+     * Average loan duration of returned loans
+     * 
+     * @return Average days, 0 if nothing has been returned
+     */
+    public double getAverageLoanDays() {
+        long loans = returnedLoans.get();
+        return loans > 0 ? (double) totalLoanDays.get() / loans : 0.0;
+    }
+    
+    public long getReturnedLoanCount() {
+        return returnedLoans.get();
+    }
+    
+    /**
+     * Fine totals per day or per month, most recent first
+     * 
+     * @param monthly true to roll days up into months
+     * @param periods Maximum number of periods
+     * @return Period label (yyyy-MM-dd or yyyy-MM) to total fine
+     */
+    public Map<String, Double> getFineTotals(boolean monthly, int periods) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<LocalDate, DoubleAdder> entry : finesByDay.descendingMap().entrySet()) {
+            String label = monthly ? entry.getKey().toString().substring(0, 7) : entry.getKey().toString();
+            if (!result.containsKey(label) && result.size() >= periods) {
+                break;
+            }
+            result.merge(label, entry.getValue().sum(), Double::sum);
+        }
+        return result;
+    }
+    
+    /**
+     * Loans issued per hour of day, by the time each loan was created
+     * 
+     * @return 24 counts, index = hour
+     */
+    public long[] getOperationsByHour() {
+        long[] counts = new long[24];
+        for (int hour = 0; hour < 24; hour++) {
+            counts[hour] = operationsByHour.get(hour);
+        }
+        return counts;
+    }
+    
+    /**
+     * Hour of day with the most loans issued
+     * 
+     * @return Hour (0-23)
+     */
+    public int getPeakHour() {
+        int peak = 0;
+        for (int hour = 1; hour < 24; hour++) {
+            if (operationsByHour.get(hour) > operationsByHour.get(peak)) {
+                peak = hour;
+            }
+        }
+        return peak;
+    }
+    
+    /**
+     * Keep the top titles list exact: borrow counts only grow, so a book
+     * can only enter the list by overtaking its current minimum
+     * 
+     * @param bookId Book ID whose count changed
+     * @param count New borrow count
+     */
+    private synchronized void updateTopTitles(int bookId, long count) {
+        String title = titleByBook.getOrDefault(bookId, "Book #" + bookId);
+        TitleCount updated = new TitleCount(bookId, title, count);
+        
+        int existing = -1;
+        for (int i = 0; i < topTitles.size(); i++) {
+            if (topTitles.get(i).getBookId() == bookId) {
+                existing = i;
+                break;
+            }
+        }
+        if (existing >= 0) {
+            topTitles.set(existing, updated);
+        } else if (topTitles.size() < TOP_TITLES) {
+            topTitles.add(updated);
+        } else if (count > topTitles.get(topTitles.size() - 1).getCount()) {
+            topTitles.set(topTitles.size() - 1, updated);
+        } else {
+            return;
+        }
+        topTitles.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        topTitlesSnapshot = Collections.unmodifiableList(new ArrayList<>(topTitles));
+    }
+    
+    private long activeLoansOf(int bookId) {
+        LongAdder loans = activeLoansByBook.get(bookId);
+        return loans != null ? loans.sum() : 0;
+    }
+    
+    private String categoryOf(int bookId) {
+        return categoryByBook.getOrDefault(bookId, UNCATEGORIZED);
+    }
+    
+    private static String normalizeCategory(String category) {
+        return category == null || category.trim().isEmpty() ? UNCATEGORIZED : category.trim();
+    }
+    
+    private static int hourOf(long epochMillis) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()).getHour();
+    }
+    
+    private static LocalDate toDate(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+    
+    /**
+     * Borrow count for one title
+     */
+    public static class TitleCount {
+        private final int bookId;
+        private final String title;
+        private final long count;
+        
+        public TitleCount(int bookId, String title, long count) {
+            this.bookId = bookId;
+            this.title = title;
+            this.count = count;
+        }
+        
+        public int getBookId() {
+            return bookId;
+        }
+        
+        public String getTitle() {
+            return title;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+    }
+}
\ No newline at end of file
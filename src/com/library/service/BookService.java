@@ -1,9 +1,38 @@
 package com.library.service;
 
+import com.library.cache.KeyFilter;
+import com.library.cache.LocalCache;
+import com.library.cache.SingleFlight;
+import com.library.catalog.CatalogStore;
+import com.library.catalog.FacetIndex;
+import com.library.catalog.QueryPlanner;
+import com.library.catalog.SuggestIndex;
+import com.library.dao.BookCopyDAO;
 import com.library.dao.BookDAO;
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
+import com.library.event.CirculationEvent;
+import com.library.event.CirculationLog;
 import com.library.model.Book;
+import com.library.model.BookCopy;
+import com.library.model.BookQuery;
+import com.library.trace.Span;
+import com.library.trace.Tracer;
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+import com.library.util.LibraryConfig;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Book Service Layer
@@ -12,9 +41,68 @@ import java.util.List;
 public class BookService {
     
     private BookDAO bookDAO;
+    private BookCopyDAO bookCopyDAO;
+    
+    // Shared by every BookService instance; kept coherent by change events
+    private static final long CACHE_TTL_MS = 60_000;
+    private static final String ALL_BOOKS = "all";
+    private static final String AVAILABLE_BOOKS = "available";
+    private static final int QUERY_MAX_LIMIT = 500;
+    private static final int SUGGEST_MAX_LIMIT = 20;
+    private static final int FUZZY_SEARCH_LIMIT = 50;
+    private static final LocalCache<Integer, Book> BOOK_CACHE = new LocalCache<>("books", CACHE_TTL_MS);
+    // Listings per branch, so a change in one branch leaves the other branches' listings cached
+    private static final Map<Integer, LocalCache<String, List<Book>>> CATALOG_CACHES = new ConcurrentHashMap<>();
+    // Per-title copy bitmaps, dropped by the BOOK event every counter change publishes;
+    // a return handed straight to a holder moves no counter, but the copy stays out too
+    private static final LocalCache<Integer, BitSet> COPY_AVAILABILITY_CACHE =
+            new LocalCache<>("copyAvailability", CACHE_TTL_MS);
+    // Identical concurrent reads share one query, e.g. a class all searching the same title
+    private static final SingleFlight<Integer, Book> BOOK_LOADS = new SingleFlight<>("books");
+    private static final SingleFlight<String, List<Book>> BOOK_LISTS = new SingleFlight<>("bookLists");
+    // Rules out most new ISBNs without a query; the unique constraint has the final word.
+    // ISBNs are unique per branch, so keys are "branch:isbn"
+    private static final KeyFilter ISBN_FILTER = new KeyFilter("isbns", BookService::forEachIsbnKey);
+    
+    static {
+        // Serve the last known catalog while the database circuit is open
+        BOOK_CACHE.setRetainStale(true);
+        ChangeEventBus.getInstance().addListener(event -> {
+            if (event.getEntityType() == ChangeEvent.EntityType.BOOK) {
+                BOOK_CACHE.invalidate(event.getEntityId());
+                // BOOK events name the branch when the writer knew it
+                if (event.getOwnerId() > 0) {
+                    catalogCache(event.getOwnerId()).invalidateAll();
+                } else {
+                    for (LocalCache<String, List<Book>> cache : CATALOG_CACHES.values()) {
+                        cache.invalidateAll();
+                    }
+                }
+                COPY_AVAILABILITY_CACHE.invalidate(event.getEntityId());
+                BOOK_LOADS.forget(event.getEntityId());
+                BOOK_LISTS.forgetAll();
+                // Keys written here are recorded directly; titles added on other nodes are
+                // learned by a background rebuild, never by a query on this dispatch thread.
+                // ISBN edits elsewhere wait for the scheduled rebuild; until then the unique
+                // constraint catches the rare duplicate the filter lets through
+                if (event.getOperation() == ChangeEvent.Operation.INSERT
+                        && !ChangeEventBus.getInstance().getNodeId().equals(event.getOriginNode())) {
+                    ISBN_FILTER.reloadLater();
+                }
+            }
+        });
+        ISBN_FILTER.start();
+        // Compact catalog copy and its indexes per branch; the caches above serve until it has loaded
+        for (int branchId : BranchContext.getBranchIds()) {
+            FacetIndex.forBranch(branchId);
+            SuggestIndex.forBranch(branchId);
+            CatalogStore.forBranch(branchId).start();
+        }
+    }
     
     public BookService() {
         this.bookDAO = new BookDAO();
+        this.bookCopyDAO = new BookCopyDAO();
     }
     
     /**
@@ -49,8 +137,10 @@ public class BookService {
             return "Invalid publication year";
         }
         
-        // Check if ISBN already exists
-        if (bookDAO.isbnExists(book.getIsbn())) {
+        // Check if ISBN already exists in this branch
+        book.setBranchId(BranchContext.current());
+        String isbnKey = isbnKey(book.getBranchId(), book.getIsbn());
+        if (ISBN_FILTER.exists(isbnKey, key -> bookDAO.isbnExists(book.getIsbn()))) {
             return "ISBN already exists";
         }
         
@@ -58,7 +148,17 @@ public class BookService {
         boolean success = bookDAO.addBook(book);
         
         if (success) {
+            ISBN_FILTER.add(isbnKey);
+            // Copies beyond the available count are taken to be out already, as the counter says
+            bookCopyDAO.addCopies(book.getBookId(), book.getAvailableCopies(),
+                    book.getTotalCopies() - book.getAvailableCopies());
+            CirculationLog.getInstance().record(CirculationEvent.bookAdded(
+                    book.getBookId(), book.getTitle(), book.getCategory(), book.getTotalCopies()));
             return "SUCCESS";
+        } else if (bookDAO.isbnExists(book.getIsbn())) {
+            // Lost a race with another insert of the same ISBN
+            ISBN_FILTER.add(isbnKey);
+            return "ISBN already exists";
         } else {
             return "Failed to add book. Please try again";
         }
@@ -96,16 +196,49 @@ public class BookService {
             return "Available copies must be between 0 and total copies";
         }
         
+        // Books are edited in their own branch only
+        Book existing = bookDAO.getBookById(book.getBookId());
+        if (existing == null || existing.getBranchId() != BranchContext.current()) {
+            return "Book not found";
+        }
+        
         // Update book
         boolean success = bookDAO.updateBook(book);
         
         if (success) {
+            // A replaced ISBN stays in the filter as a false positive until the next rebuild
+            ISBN_FILTER.add(isbnKey(existing.getBranchId(), book.getIsbn()));
+            resizeCopies(book.getBookId(), book.getTotalCopies());
             return "SUCCESS";
         } else {
             return "Failed to update book. Please try again";
         }
     }
     
+    /**
+     * Bring a title's copies in line with a new total_copies
+     * New copies go on the shelf; a smaller total withdraws shelf copies, highest number first
+     * 
+     * @param bookId Book ID
+     * @param totalCopies Copies the library now owns
+     */
+    private void resizeCopies(int bookId, int totalCopies) {
+        int circulating = bookCopyDAO.getCirculatingCopyCount(bookId);
+        if (circulating < 0) {
+            return;
+        }
+        if (circulating < totalCopies) {
+            bookCopyDAO.addCopies(bookId, totalCopies - circulating, 0);
+        } else if (circulating > totalCopies) {
+            int withdrawn = bookCopyDAO.withdrawCopies(bookId, circulating - totalCopies);
+            if (withdrawn < circulating - totalCopies) {
+                System.err.println("Book " + bookId + ": only " + withdrawn + " of "
+                        + (circulating - totalCopies) + " copies were on the shelf to withdraw");
+            }
+        }
+        COPY_AVAILABILITY_CACHE.invalidate(bookId);
+    }
+    
     /**
      * Delete a book
      * 
@@ -119,13 +252,17 @@ public class BookService {
         
         // Check if book is currently issued
         Book book = bookDAO.getBookById(bookId);
-        if (book != null && book.getAvailableCopies() < book.getTotalCopies()) {
+        if (book == null || book.getBranchId() != BranchContext.current()) {
+            return "Book not found";
+        }
+        if (book.getAvailableCopies() < book.getTotalCopies()) {
             return "Cannot delete book. Some copies are currently issued";
         }
         
         boolean success = bookDAO.deleteBook(bookId);
         
         if (success) {
+            ISBN_FILTER.remove(isbnKey(book.getBranchId(), book.getIsbn()));
             return "SUCCESS";
         } else {
             return "Failed to delete book. Please try again";
@@ -136,10 +273,21 @@ public class BookService {
      * Get book by ID
      * 
      * @param bookId Book ID
-     * @return Book object if found, null otherwise
+     * @return Book object if found in the current branch, null otherwise
      */
     public Book getBookById(int bookId) {
-        return bookDAO.getBookById(bookId);
+        CatalogStore store = CatalogStore.getInstance();
+        if (store.isLoaded()) {
+            return store.getBook(bookId);
+        }
+        Book book = null;
+        if (!DBConnection.isReadable(DBConnection.CATALOG_SCOPE)) {
+            book = BOOK_CACHE.getStale(bookId);
+        }
+        if (book == null) {
+            book = BOOK_CACHE.get(bookId, this::loadBook);
+        }
+        return book != null && book.getBranchId() == BranchContext.current() ? book : null;
     }
     
     /**
@@ -148,7 +296,21 @@ public class BookService {
      * @return List of all books
      */
     public List<Book> getAllBooks() {
-        return bookDAO.getAllBooks();
+        CatalogStore store = CatalogStore.getInstance();
+        if (store.isLoaded()) {
+            return store.getBooks(false);
+        }
+        return readCatalog(ALL_BOOKS, bookDAO::getAllBooks);
+    }
+    
+    /**
+     * Stream every book from the database, e.g. for an export, in constant memory
+     * 
+     * @param consumer Receives each book, ordered by book ID
+     * @return true if every book was read
+     */
+    public boolean exportBooks(Consumer<Book> consumer) {
+        return bookDAO.forEachBook(BranchContext.current(), consumer);
     }
     
     /**
@@ -161,7 +323,23 @@ public class BookService {
         if (title == null || title.trim().isEmpty()) {
             return getAllBooks();
         }
-        return bookDAO.searchBooksByTitle(title);
+        try (Span span = Tracer.getInstance().startSpan("BookService.searchBooksByTitle")) {
+            List<Book> books = loadList("title:" + title, () -> bookDAO.searchBooksByTitle(title));
+            if (books.isEmpty() && CatalogStore.getInstance().isLoaded()) {
+                books = new ArrayList<>();
+                // Nothing contains the text as typed: try it as misspelled words
+                for (SuggestIndex.Suggestion suggestion
+                        : SuggestIndex.getInstance().suggestTitles(title.trim(), FUZZY_SEARCH_LIMIT)) {
+                    Book book = CatalogStore.getInstance().getBook(suggestion.getBookId());
+                    if (book != null) {
+                        books.add(book);
+                    }
+                }
+                span.setAttribute("fuzzy", true);
+            }
+            span.setAttribute("rows", books.size());
+            return books;
+        }
     }
     
     /**
@@ -174,7 +352,39 @@ public class BookService {
         if (author == null || author.trim().isEmpty()) {
             return getAllBooks();
         }
-        return bookDAO.searchBooksByAuthor(author);
+        List<Book> books = loadList("author:" + author, () -> bookDAO.searchBooksByAuthor(author));
+        if (books.isEmpty() && CatalogStore.getInstance().isLoaded()) {
+            // Nothing contains the text as typed: list the books of the closest author
+            List<SuggestIndex.Suggestion> authors = SuggestIndex.getInstance().suggestAuthors(author.trim(), 1);
+            if (!authors.isEmpty()) {
+                return filterBooks(null, authors.get(0).getText(), null, false, Integer.MAX_VALUE);
+            }
+        }
+        return books;
+    }
+    
+    /**
+     * Autocomplete for the search box, tolerant of typos
+     * 
+     * @param text Text typed so far
+     * @param type "title", "author", or null for both
+     * @param limit Maximum suggestions per type
+     * @return Suggestions keyed by "titles" and "authors"; empty until the catalog store has loaded
+     */
+    public Map<String, List<SuggestIndex.Suggestion>> suggest(String text, String type, int limit) {
+        Map<String, List<SuggestIndex.Suggestion>> suggestions = new LinkedHashMap<>();
+        int cappedLimit = Math.max(1, Math.min(limit, SUGGEST_MAX_LIMIT));
+        boolean ready = text != null && CatalogStore.getInstance().isLoaded();
+        SuggestIndex index = SuggestIndex.getInstance();
+        if (!SuggestIndex.TYPE_AUTHOR.equals(type)) {
+            suggestions.put("titles", ready ? index.suggestTitles(text, cappedLimit)
+                    : Collections.<SuggestIndex.Suggestion>emptyList());
+        }
+        if (!SuggestIndex.TYPE_TITLE.equals(type)) {
+            suggestions.put("authors", ready ? index.suggestAuthors(text, cappedLimit)
+                    : Collections.<SuggestIndex.Suggestion>emptyList());
+        }
+        return suggestions;
     }
     
     /**
@@ -184,7 +394,154 @@ public class BookService {
      * @return List of matching books
      */
     public List<Book> getBooksByCategory(String category) {
-        return bookDAO.getBooksByCategory(category);
+        if (CatalogStore.getInstance().isLoaded()) {
+            return filterBooks(category, null, null, false, Integer.MAX_VALUE);
+        }
+        return loadList("category:" + category, () -> bookDAO.getBooksByCategory(category));
+    }
+    
+    /**
+     * Get facet counts for the catalog sidebar
+     * 
+     * @param limit Maximum number of values per facet
+     * @return Counts keyed by "categories", "authors" and "publishers", most common first
+     */
+    public Map<String, List<FacetIndex.FacetCount>> getFacets(int limit) {
+        Map<String, List<FacetIndex.FacetCount>> facets = new LinkedHashMap<>();
+        if (CatalogStore.getInstance().isLoaded()) {
+            FacetIndex index = FacetIndex.getInstance();
+            facets.put("categories", index.getCounts(FacetIndex.Facet.CATEGORY, limit));
+            facets.put("authors", index.getCounts(FacetIndex.Facet.AUTHOR, limit));
+            facets.put("publishers", index.getCounts(FacetIndex.Facet.PUBLISHER, limit));
+            return facets;
+        }
+        
+        // Catalog store still loading: count over the cached listing
+        List<Book> books = getAllBooks();
+        facets.put("categories", countValues(books, FacetIndex.Facet.CATEGORY, limit));
+        facets.put("authors", countValues(books, FacetIndex.Facet.AUTHOR, limit));
+        facets.put("publishers", countValues(books, FacetIndex.Facet.PUBLISHER, limit));
+        return facets;
+    }
+    
+    /**
+     * Get books matching the selected facet values, ordered by title
+     * 
+     * @param category Category, or null for any
+     * @param author Author, or null for any
+     * @param publisher Publisher, or null for any
+     * @param availableOnly true to keep only books with available copies
+     * @param limit Maximum number of books
+     * @return Matching books
+     */
+    public List<Book> filterBooks(String category, String author, String publisher,
+                                  boolean availableOnly, int limit) {
+        if (CatalogStore.getInstance().isLoaded()) {
+            Map<FacetIndex.Facet, String> selections = new EnumMap<>(FacetIndex.Facet.class);
+            selections.put(FacetIndex.Facet.CATEGORY, category);
+            selections.put(FacetIndex.Facet.AUTHOR, author);
+            selections.put(FacetIndex.Facet.PUBLISHER, publisher);
+            return FacetIndex.getInstance().filter(selections, availableOnly, limit);
+        }
+        
+        List<Book> matches = new ArrayList<>();
+        for (Book book : availableOnly ? getAvailableBooks() : getAllBooks()) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            if ((category == null || category.equals(book.getCategory()))
+                    && (author == null || author.equals(book.getAuthor()))
+                    && (publisher == null || publisher.equals(book.getPublisher()))) {
+                matches.add(book);
+            }
+        }
+        return matches;
+    }
+    
+    /**
+     * Validate and normalize a combined search before running it
+     * 
+     * @param query Search criteria; blank strings are cleared and the limit is capped
+     * @return "SUCCESS" or an error message
+     */
+    public String validateQuery(BookQuery query) {
+        query.setTitle(emptyToNull(query.getTitle()));
+        query.setAuthor(emptyToNull(query.getAuthor()));
+        query.setCategory(emptyToNull(query.getCategory()));
+        
+        if (query.getYearFrom() != null && query.getYearTo() != null
+                && query.getYearFrom() > query.getYearTo()) {
+            return "Year from must not be after year to";
+        }
+        
+        if (query.getSortBy() == null) {
+            query.setSortBy(BookQuery.SORT_TITLE);
+        }
+        String sortBy = query.getSortBy();
+        if (!BookQuery.SORT_TITLE.equals(sortBy) && !BookQuery.SORT_AUTHOR.equals(sortBy)
+                && !BookQuery.SORT_YEAR.equals(sortBy) && !BookQuery.SORT_AVAILABLE.equals(sortBy)) {
+            return "Sort must be title, author, year or available";
+        }
+        
+        int maxLimit = LibraryConfig.current().getInt("catalog.query.max.limit", QUERY_MAX_LIMIT);
+        query.setLimit(Math.max(1, Math.min(query.getLimit(), maxLimit)));
+        return "SUCCESS";
+    }
+    
+    /**
+     * Combined search over title, author, category, year range and availability
+     * Runs against the in-memory catalog with the query planner once it has loaded,
+     * and as a single indexed SQL query before that
+     * 
+     * @param query Search criteria, sort and limit, checked with validateQuery
+     * @return Matching books and the plan used
+     */
+    public QueryPlanner.Result queryBooks(BookQuery query) {
+        try (Span span = Tracer.getInstance().startSpan("BookService.queryBooks")) {
+            QueryPlanner.Result result;
+            if (CatalogStore.getInstance().isLoaded()) {
+                result = QueryPlanner.getInstance().execute(query);
+            } else {
+                result = new QueryPlanner.Result(loadList("query:" + query, () -> bookDAO.queryBooks(query)), "sql");
+            }
+            span.setAttribute("plan", result.getPlan());
+            span.setAttribute("rows", result.getBooks().size());
+            return result;
+        }
+    }
+    
+    /**
+     * Count facet values over a list of books
+     * 
+     * @param books Books
+     * @param facet Facet to count
+     * @param limit Maximum number of values
+     * @return Value counts, most common first
+     */
+    private static List<FacetIndex.FacetCount> countValues(List<Book> books, FacetIndex.Facet facet, int limit) {
+        Map<String, int[]> counts = new HashMap<>();
+        for (Book book : books) {
+            String value = facet == FacetIndex.Facet.CATEGORY ? book.getCategory()
+                    : facet == FacetIndex.Facet.AUTHOR ? book.getAuthor() : book.getPublisher();
+            if (value != null) {
+                int[] count = counts.computeIfAbsent(value, v -> new int[2]);
+                count[0]++;
+                if (book.getAvailableCopies() > 0) {
+                    count[1]++;
+                }
+            }
+        }
+        List<FacetIndex.FacetCount> result = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            result.add(new FacetIndex.FacetCount(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        result.sort((a, b) -> b.getTotal() != a.getTotal() ? Integer.compare(b.getTotal(), a.getTotal())
+                : String.CASE_INSENSITIVE_ORDER.compare(a.getValue(), b.getValue()));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+    
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
     }
     
     /**
@@ -193,7 +550,99 @@ public class BookService {
      * @return List of available books
      */
     public List<Book> getAvailableBooks() {
-        return bookDAO.getAvailableBooks();
+        CatalogStore store = CatalogStore.getInstance();
+        if (store.isLoaded()) {
+            return store.getBooks(true);
+        }
+        return readCatalog(AVAILABLE_BOOKS, bookDAO::getAvailableBooks);
+    }
+    
+    /**
+     * Read a catalog listing through the cache
+     * While the database cannot be reached the last loaded listing is served
+     * instead, and a listing loaded during an outage (empty after the DAO
+     * swallowed the error) is not cached
+     * 
+     * @param key Catalog cache key
+     * @param query DAO query for the listing
+     * @return Book listing, possibly stale during an outage
+     */
+    private List<Book> readCatalog(String key, Supplier<List<Book>> query) {
+        LocalCache<String, List<Book>> cache = catalogCache(BranchContext.current());
+        if (!DBConnection.isReadable(DBConnection.CATALOG_SCOPE)) {
+            List<Book> stale = cache.getStale(key);
+            if (stale != null) {
+                return stale;
+            }
+        }
+        List<Book> books = cache.get(key, k -> {
+            List<Book> loaded = loadList(key, query);
+            return DBConnection.isReadable(DBConnection.CATALOG_SCOPE) ? loaded : null;
+        });
+        if (books == null) {
+            List<Book> stale = cache.getStale(key);
+            return stale != null ? stale : Collections.emptyList();
+        }
+        return books;
+    }
+    
+    /**
+     * Read one book from the database, sharing the query with concurrent callers
+     * 
+     * @param bookId Book ID
+     * @return Book, or null if not found
+     */
+    private Book loadBook(int bookId) {
+        return BOOK_LOADS.execute(bookId, () -> bookDAO.getBookById(bookId));
+    }
+    
+    /**
+     * Run a listing query, sharing it with concurrent callers asking for the same key
+     * 
+     * @param key Identifies the query and its parameters
+     * @param query DAO query
+     * @return Unmodifiable listing, possibly shared with other callers
+     */
+    private List<Book> loadList(String key, Supplier<List<Book>> query) {
+        return BOOK_LISTS.execute(BranchContext.current() + ":" + key,
+                () -> Collections.unmodifiableList(query.get()));
+    }
+    
+    /**
+     * Listing cache of one branch, created on first use
+     * 
+     * @param branchId Branch ID
+     * @return Cache of book listings by key
+     */
+    private static LocalCache<String, List<Book>> catalogCache(int branchId) {
+        return CATALOG_CACHES.computeIfAbsent(branchId, id -> {
+            LocalCache<String, List<Book>> cache = new LocalCache<>("catalog." + id, CACHE_TTL_MS);
+            // Serve the last known listing while the database circuit is open
+            cache.setRetainStale(true);
+            return cache;
+        });
+    }
+    
+    private static String isbnKey(int branchId, String isbn) {
+        return branchId + ":" + isbn;
+    }
+    
+    /**
+     * Feed every ISBN key to the ISBN filter: the shared database first, then
+     * each branch routed to a database of its own
+     * 
+     * @param consumer Receives "branch:isbn" keys
+     * @return true if every database was read completely
+     */
+    private static boolean forEachIsbnKey(Consumer<String> consumer) {
+        BookDAO dao = new BookDAO();
+        boolean complete = BranchContext.callAs(BranchContext.NONE,
+                () -> dao.forEachIsbn((branchId, isbn) -> consumer.accept(isbnKey(branchId, isbn))));
+        for (int routed : DBConnection.getRoutedBranches()) {
+            complete &= BranchContext.callAs(routed,
+                    () -> dao.forEachIsbn((branchId, isbn) -> consumer.accept(isbnKey(branchId, isbn))));
+        }
+        return complete;
     }
     
     /**
@@ -203,7 +652,7 @@ public class BookService {
      * @return true if available, false otherwise
      */
     public boolean isBookAvailable(int bookId) {
-        Book book = bookDAO.getBookById(bookId);
+        Book book = loadBook(bookId);
         return book != null && book.getAvailableCopies() > 0;
     }
     
@@ -226,4 +675,38 @@ public class BookService {
     public boolean updateAvailableCopies(int bookId, int change) {
         return bookDAO.updateAvailableCopies(bookId, change);
     }
+    
+    /**
+     * Get every copy of a title with its barcode and status
+     * 
+     * @param bookId Book ID
+     * @return List of copies by copy number
+     */
+    public List<BookCopy> getCopies(int bookId) {
+        return bookCopyDAO.getCopiesByBookId(bookId);
+    }
+    
+    /**
+     * Look up a copy by the barcode scanned at the desk
+     * 
+     * @param barcode Barcode
+     * @return BookCopy object if found, null otherwise
+     */
+    public BookCopy getCopyByBarcode(String barcode) {
+        if (barcode == null || barcode.trim().isEmpty()) {
+            return null;
+        }
+        return bookCopyDAO.getCopyByBarcode(barcode.trim());
+    }
+    
+    /**
+     * Which copies of a title are on the shelf
+     * 
+     * @param bookId Book ID
+     * @return Bitmap with bit n-1 set when copy n is available; empty if unknown
+     */
+    public BitSet getCopyAvailability(int bookId) {
+        BitSet available = COPY_AVAILABILITY_CACHE.get(bookId, bookCopyDAO::getAvailability);
+        return available != null ? (BitSet) available.clone() : new BitSet();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,325 @@
+package com.library.service;
+
+import com.library.cache.KeyFilter;
+import com.library.cache.LocalCache;
+import com.library.cache.SingleFlight;
+import com.library.catalog.CatalogStore;
+import com.library.catalog.SuggestIndex;
+import com.library.event.ChangeEventBus;
+import com.library.event.CirculationLog;
+import com.library.trace.Tracer;
+import com.library.util.CircuitBreaker;
+import com.library.util.ConnectionPool;
+import com.library.util.DBConnection;
+import com.library.util.LibraryConfig;
+import com.library.util.RateLimiter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Health Service
+ * Answers the load balancer's liveness and readiness probes and builds the
+ * diagnostics snapshot. Everything here reads counters already kept by the
+ * pools, caches and limiters; the only database call is the readiness probe,
+ * which runs at most once per health.db.check.ms on one thread while every
+ * other caller reuses its last result. That keeps all three endpoints cheap
+ * enough to poll every second from several balancers.
+ * Implements Singleton pattern.
+ */
+public class HealthService {
+    
+    private static final long DEFAULT_DB_CHECK_MS = 1000;
+    
+    private static final HealthService INSTANCE = new HealthService();
+    
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile boolean databaseReachable;
+    private volatile long databaseCheckedAt;
+    private volatile long databaseCheckMs;
+    
+    private HealthService() {
+    }
+    
+    public static HealthService getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Liveness: the JVM is up and serving requests; never touches the database
+     * 
+     * @return Status, node id and uptime
+     */
+    public Map<String, Object> getLiveness() {
+        Map<String, Object> liveness = new LinkedHashMap<>();
+        liveness.put("status", "UP");
+        liveness.put("node", ChangeEventBus.getInstance().getNodeId());
+        liveness.put("uptimeMs", System.currentTimeMillis() - startedAt);
+        return liveness;
+    }
+    
+    /**
+     * Readiness: warm-up finished, the primary database answers and its pool
+     * is not exhausted
+     * 
+     * @return "ready" flag, the result of each check and the failing reasons
+     */
+    public Map<String, Object> getReadiness() {
+        List<String> reasons = new ArrayList<>();
+        
+        WarmUp warmUp = WarmUp.getInstance();
+        if (!warmUp.isReady()) {
+            reasons.add("Warming up (" + warmUp.getPhase() + ")");
+        }
+        
+        List<ConnectionPool> pools = DBConnection.getPools();
+        boolean poolExhausted = !pools.isEmpty() && isExhausted(pools.get(0));
+        if (poolExhausted) {
+            reasons.add("Connection pool exhausted");
+        }
+        
+        boolean circuitOpen = DBConnection.getPrimaryBreaker().getState() == CircuitBreaker.State.OPEN;
+        boolean reachable;
+        if (circuitOpen) {
+            reachable = false;
+            reasons.add("Database circuit open");
+        } else {
+            // An exhausted pool would hold the probe for the whole borrow timeout
+            reachable = poolExhausted ? databaseReachable : checkDatabase();
+            if (!reachable) {
+                reasons.add("Database unreachable");
+            }
+        }
+        
+        Map<String, Object> checks = new LinkedHashMap<>();
+        checks.put("warmUp", warmUp.isReady());
+        checks.put("database", reachable);
+        checks.put("databaseCheckedAt", databaseCheckedAt);
+        checks.put("databaseCheckMs", databaseCheckMs);
+        checks.put("pool", !poolExhausted);
+        
+        Map<String, Object> readiness = new LinkedHashMap<>();
+        readiness.put("ready", reasons.isEmpty());
+        readiness.put("node", ChangeEventBus.getInstance().getNodeId());
+        readiness.put("phase", warmUp.getPhase());
+        readiness.put("checks", checks);
+        readiness.put("reasons", reasons);
+        return readiness;
+    }
+    
+    /**
+     * Probe the primary database, or reuse the last probe if it is recent
+     * or another caller is already probing
+     * 
+     * @return true if the last probe reached the database
+     */
+    private boolean checkDatabase() {
+        long interval = LibraryConfig.current().getLong("health.db.check.ms", DEFAULT_DB_CHECK_MS);
+        if (System.currentTimeMillis() - databaseCheckedAt < interval || !probing.compareAndSet(false, true)) {
+            return databaseReachable;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            databaseReachable = DBConnection.testConnection();
+            databaseCheckMs = System.currentTimeMillis() - start;
+            databaseCheckedAt = System.currentTimeMillis();
+        } finally {
+            probing.set(false);
+        }
+        return databaseReachable;
+    }
+    
+    private boolean isExhausted(ConnectionPool pool) {
+        return pool.getActiveCount() >= pool.getMaxSize() && pool.getWaitingCount() > 0;
+    }
+    
+    /**
+     * Diagnostics snapshot: pools, breakers, caches, request admission,
+     * catalog, background jobs and JVM memory, GC and threads
+     * 
+     * @return Nested map ready for JSON
+     */
+    public Map<String, Object> getDiagnostics() {
+        Map<String, Object> diag = new LinkedHashMap<>();
+        diag.put("node", ChangeEventBus.getInstance().getNodeId());
+        diag.put("time", System.currentTimeMillis());
+        diag.put("uptimeMs", System.currentTimeMillis() - startedAt);
+        
+        WarmUp warmUp = WarmUp.getInstance();
+        Map<String, Object> warm = new LinkedHashMap<>();
+        warm.put("ready", warmUp.isReady());
+        warm.put("phase", warmUp.getPhase());
+        warm.put("steps", warmUp.getStepMillis());
+        diag.put("warmUp", warm);
+        
+        Map<String, Object> database = new LinkedHashMap<>();
+        List<Map<String, Object>> pools = new ArrayList<>();
+        for (ConnectionPool pool : DBConnection.getPools()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", pool.getName());
+            stats.put("max", pool.getMaxSize());
+            stats.put("active", pool.getActiveCount());
+            stats.put("idle", pool.getIdleCount());
+            stats.put("waiting", pool.getWaitingCount());
+            stats.put("borrowTimeouts", pool.getBorrowTimeouts());
+            pools.add(stats);
+        }
+        database.put("pools", pools);
+        List<Map<String, Object>> breakers = new ArrayList<>();
+        for (CircuitBreaker breaker : DBConnection.getBreakers()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", breaker.getName());
+            stats.put("state", breaker.getState().name());
+            stats.put("rejected", breaker.getRejectedCount());
+            stats.put("timesOpened", breaker.getTimesOpened());
+            breakers.add(stats);
+        }
+        database.put("breakers", breakers);
+        database.put("replicaLagMs", DBConnection.getReplicaLagMs());
+        database.put("reachable", databaseReachable);
+        database.put("checkedAt", databaseCheckedAt);
+        diag.put("database", database);
+        
+        List<Map<String, Object>> caches = new ArrayList<>();
+        for (LocalCache<?, ?> cache : LocalCache.getAll()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", cache.getName());
+            stats.put("size", cache.size());
+            stats.put("hits", cache.getHits());
+            stats.put("misses", cache.getMisses());
+            stats.put("hitRate", Math.round(cache.getHitRate() * 1000) / 1000.0);
+            stats.put("staleHits", cache.getStaleHits());
+            caches.add(stats);
+        }
+        diag.put("caches", caches);
+        
+        List<Map<String, Object>> flights = new ArrayList<>();
+        for (SingleFlight<?, ?> flight : SingleFlight.getAll()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", flight.getName());
+            stats.put("executions", flight.getExecutions());
+            stats.put("shared", flight.getShared());
+            stats.put("inFlight", flight.getInFlight());
+            flights.add(stats);
+        }
+        diag.put("singleFlight", flights);
+        
+        List<Map<String, Object>> filters = new ArrayList<>();
+        for (KeyFilter filter : KeyFilter.getAll()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", filter.getName());
+            stats.put("loaded", filter.isLoaded());
+            stats.put("keys", filter.getLoadedKeys());
+            stats.put("lookups", filter.getLookups());
+            stats.put("skipped", filter.getSkipped());
+            stats.put("falsePositives", filter.getFalsePositives());
+            stats.put("bytes", filter.estimateBytes());
+            filters.add(stats);
+        }
+        diag.put("keyFilters", filters);
+        
+        RateLimiter limiter = RateLimiter.getInstance();
+        Map<String, Object> requests = new LinkedHashMap<>();
+        requests.put("inFlight", limiter.getInFlight());
+        requests.put("rejectedByRate", limiter.getRejectedByRate());
+        requests.put("rejectedByConcurrency", limiter.getRejectedByConcurrency());
+        requests.put("clientBuckets", limiter.getBucketCount());
+        diag.put("requests", requests);
+        
+        // One catalog store and suggest index per branch
+        Map<String, Object> catalogs = new LinkedHashMap<>();
+        for (CatalogStore store : CatalogStore.getStores().values()) {
+            SuggestIndex suggestions = SuggestIndex.forBranch(store.getBranchId());
+            Map<String, Object> catalog = new LinkedHashMap<>();
+            catalog.put("loaded", store.isLoaded());
+            catalog.put("books", store.getBookCount());
+            catalog.put("bytes", store.isLoaded() ? store.estimateBytes() : 0);
+            catalog.put("suggestLookups", suggestions.getLookupCount());
+            catalog.put("suggestP50Micros", suggestions.getLatencyMicros(50));
+            catalog.put("suggestP99Micros", suggestions.getLatencyMicros(99));
+            catalogs.put(String.valueOf(store.getBranchId()), catalog);
+        }
+        diag.put("catalog", catalogs);
+        
+        CirculationLog log = CirculationLog.getInstance();
+        LoanArchiver archiver = LoanArchiver.getInstance();
+        Map<String, Object> jobs = new LinkedHashMap<>();
+        jobs.put("circulationLogWritten", log.getWrittenCount());
+        jobs.put("circulationLogDropped", log.getDroppedCount());
+        jobs.put("circulationLogQueue", log.getQueueDepth());
+        jobs.put("circulationLogWriter", log.getWriterState());
+        jobs.put("circulationLogWriteFailures", log.getWriteFailureCount());
+        jobs.put("circulationLogLastError", log.getLastError());
+        jobs.put("archivedLoans", archiver.getArchivedCount());
+        jobs.put("archiveLastRunAt", archiver.getLastRunAt());
+        jobs.put("archiveLastRunMs", archiver.getLastRunMs());
+        jobs.put("archiveLastRunCount", archiver.getLastRunCount());
+        InventoryReconciler reconciler = InventoryReconciler.getInstance();
+        jobs.put("inventoryCheckLastRunAt", reconciler.getLastRunAt());
+        jobs.put("inventoryCheckLastRunMs", reconciler.getLastRunMs());
+        jobs.put("inventoryCheckPartitions", reconciler.getLastRunPartitions());
+        jobs.put("inventoryCheckFailedPartitions", reconciler.getLastRunFailedPartitions());
+        jobs.put("inventoryRepaired", reconciler.getRepairedCount());
+        jobs.put("inventoryLastRunRepaired", reconciler.getLastRunRepaired());
+        jobs.put("inventoryDrift", reconciler.getLastDrift());
+        diag.put("jobs", jobs);
+
+        Tracer tracer = Tracer.getInstance();
+        Map<String, Object> tracing = new LinkedHashMap<>();
+        tracing.put("enabled", tracer.isEnabled());
+        tracing.put("exported", tracer.getExportedCount());
+        tracing.put("dropped", tracer.getDroppedCount());
+        tracing.put("queued", tracer.getQueueDepth());
+        diag.put("tracing", tracing);
+        
+        diag.put("jvm", getJvmStats());
+        return diag;
+    }
+    
+    /**
+     * Heap, GC and thread figures from the platform MXBeans
+     * 
+     * @return JVM statistics
+     */
+    private Map<String, Object> getJvmStats() {
+        Map<String, Object> jvm = new LinkedHashMap<>();
+        
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        Map<String, Object> memory = new LinkedHashMap<>();
+        memory.put("heapUsed", heap.getUsed());
+        memory.put("heapCommitted", heap.getCommitted());
+        memory.put("heapMax", heap.getMax());
+        memory.put("nonHeapUsed", nonHeap.getUsed());
+        jvm.put("memory", memory);
+        
+        List<Map<String, Object>> collectors = new ArrayList<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", gc.getName());
+            stats.put("count", gc.getCollectionCount());
+            stats.put("timeMs", gc.getCollectionTime());
+            collectors.add(stats);
+        }
+        jvm.put("gc", collectors);
+        
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Map<String, Object> threadStats = new LinkedHashMap<>();
+        threadStats.put("live", threads.getThreadCount());
+        threadStats.put("daemon", threads.getDaemonThreadCount());
+        threadStats.put("peak", threads.getPeakThreadCount());
+        jvm.put("threads", threadStats);
+        
+        jvm.put("processors", Runtime.getRuntime().availableProcessors());
+        jvm.put("systemLoad", ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage());
+        return jvm;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.library.service;
+
+import com.library.dao.BookDAO;
+import com.library.dao.HoldDAO;
+import com.library.dao.IssuedBookDAO;
+import com.library.event.Notification;
+import com.library.event.NotificationCenter;
+import com.library.model.Book;
+import com.library.model.Hold;
+import com.library.util.BranchContext;
+
+import java.util.List;
+
+/**
+ * Hold Service Layer
+ * Contains business logic for the reservation queue of unavailable books.
+ * Returned copies are assigned to the queue in {@link IssueBookService#returnBook(int)}.
+ */
+public class HoldService {
+    
+    private HoldDAO holdDAO;
+    private BookDAO bookDAO;
+    private IssuedBookDAO issuedBookDAO;
+    private IssueBookService issueBookService;
+    
+    public HoldService() {
+        this.holdDAO = new HoldDAO();
+        this.bookDAO = new BookDAO();
+        this.issuedBookDAO = new IssuedBookDAO();
+        this.issueBookService = new IssueBookService();
+        // Start listening for hold events so holders on this node get pushed notifications
+        NotificationCenter.getInstance();
+    }
+    
+    /**
+     * Place a hold on an unavailable book
+     * 
+     * @param bookId Book ID
+     * @param userId User ID
+     * @return Result message
+     */
+    public String placeHold(int bookId, int userId) {
+        if (bookId <= 0 || userId <= 0) {
+            return "Invalid book or user ID";
+        }
+        
+        Book book = bookDAO.getBookById(bookId);
+        if (book == null) {
+            return "Book not found";
+        }
+        if (book.getBranchId() != BranchContext.current()) {
+            return "Book belongs to another branch";
+        }
+        
+        if (book.getAvailableCopies() > 0 && holdDAO.getWaitingHoldCount(bookId) == 0) {
+            return "Book is available. Issue it instead of placing a hold";
+        }
+        
+        if (issuedBookDAO.hasUserIssuedBook(userId, bookId)) {
+            return "You already have this book";
+        }
+        
+        if (holdDAO.hasWaitingHold(userId, bookId)) {
+            return "You already have a hold on this book";
+        }
+        
+        Hold hold = new Hold(bookId, userId);
+        int reserved = holdDAO.placeHold(hold);
+        if (reserved < 0) {
+            return "Failed to place hold. Please try again";
+        }
+        
+        // A copy came back between the availability check and the insert; it was set aside for the queue
+        if (reserved > 0) {
+            issueBookService.assignReservedCopies(bookId, reserved);
+        }
+        
+        return "SUCCESS";
+    }
+    
+    /**
+     * Cancel a waiting hold
+     * 
+     * @param holdId Hold ID
+     * @param userId User ID (must own the hold)
+     * @return Result message
+     */
+    public String cancelHold(int holdId, int userId) {
+        if (holdId <= 0 || userId <= 0) {
+            return "Invalid hold or user ID";
+        }
+        
+        if (holdDAO.cancelHold(holdId, userId)) {
+            return "SUCCESS";
+        } else {
+            return "Hold not found or already fulfilled";
+        }
+    }
+    
+    /**
+     * Get a user's waiting holds with queue positions
+     * 
+     * @param userId User ID
+     * @return List of waiting holds
+     */
+    public List<Hold> getWaitingHoldsByUserId(int userId) {
+        return holdDAO.getWaitingHoldsByUserId(userId);
+    }
+    
+    /**
+     * Get number of users waiting for a book
+     * 
+     * @param bookId Book ID
+     * @return Queue length
+     */
+    public int getQueueLength(int bookId) {
+        return holdDAO.getWaitingHoldCount(bookId);
+    }
+    
+    /**
+     * Get a user's recent notifications
+     * 
+     * @param userId User ID
+     * @return Notifications, oldest first
+     */
+    public List<Notification> getNotifications(int userId) {
+        return NotificationCenter.getInstance().getRecent(userId);
+    }
+}
\ No newline at end of file
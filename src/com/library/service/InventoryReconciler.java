@@ -0,0 +1,319 @@
+package com.library.service;
+
+import com.library.dao.BookCopyDAO;
+import com.library.dao.BookDAO;
+import com.library.model.InventoryDrift;
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+import com.library.util.LibraryConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inventory Reconciler
+ * Every inventory.check.interval.minutes, checks the copy counters in books
+ * against what they are derived from. The catalog is split into book ID ranges
+ * of inventory.partition.size, checked inventory.check.threads at a time, each
+ * with two grouped queries read from the replica when it is fresh:
+ * available_copies against total_copies minus open loans in issued_books, and
+ * both counters against the copies in book_copies.
+ * Drifted titles are logged and kept for the diagnostics endpoint. With
+ * inventory.repair.enabled, loan drift seen unchanged by two consecutive runs
+ * is corrected, at most inventory.repair.rate titles per second, so a loan
+ * caught between its insert and its counter update is never "fixed". Copy
+ * drift is only reported, since either side may be the one that is wrong.
+ * Branches routed to a database of their own are partitioned and checked
+ * alongside the shared database.
+ * Implements Singleton pattern.
+ */
+public class InventoryReconciler {
+    
+    private static final long DEFAULT_INTERVAL_MINUTES = 30;
+    private static final int DEFAULT_PARTITION_SIZE = 5000;
+    private static final int DEFAULT_THREADS = 4;
+    private static final double DEFAULT_REPAIR_RATE = 5.0;
+    private static final int DEFAULT_REPAIR_MAX = 200;
+    private static final int MAX_LOGGED = 20;
+    
+    private static final InventoryReconciler INSTANCE = new InventoryReconciler();
+    
+    private final BookDAO bookDAO = new BookDAO();
+    private final BookCopyDAO bookCopyDAO = new BookCopyDAO();
+    private final Object runLock = new Object();
+    private final AtomicLong repaired = new AtomicLong();
+    // Loan drift of the last run by book ID; only drift seen again unchanged is repaired
+    private Map<Integer, InventoryDrift> pendingRepairs = Collections.emptyMap();
+    private volatile List<InventoryDrift> lastDrift = Collections.emptyList();
+    private volatile long lastRunAt;
+    private volatile long lastRunMs;
+    private volatile int lastRunPartitions;
+    private volatile int lastRunFailedPartitions;
+    private volatile int lastRunRepaired;
+    private ScheduledExecutorService worker;
+    
+    private InventoryReconciler() {
+    }
+    
+    public static InventoryReconciler getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Schedule the checks; later calls do nothing
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        long minutes = Math.max(1, LibraryConfig.current().getLong("inventory.check.interval.minutes",
+                DEFAULT_INTERVAL_MINUTES));
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventory-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        // First check shortly after startup, away from the warm-up queries
+        worker.scheduleWithFixedDelay(this::run, 10, minutes * 60, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Check every title now, and repair confirmed loan drift if enabled
+     * 
+     * @return Titles whose counters disagree with their loans or copies
+     */
+    public List<InventoryDrift> run() {
+        LibraryConfig config = LibraryConfig.current();
+        if (!config.getBoolean("inventory.check.enabled", true)) {
+            return Collections.emptyList();
+        }
+        synchronized (runLock) {
+            long start = System.currentTimeMillis();
+            int partitionSize = Math.max(1, config.getInt("inventory.partition.size", DEFAULT_PARTITION_SIZE));
+            List<int[]> partitions = new ArrayList<>();
+            List<Integer> databases = new ArrayList<>();
+            databases.add(BranchContext.NONE);
+            databases.addAll(DBConnection.getRoutedBranches());
+            for (int database : databases) {
+                int[] range = BranchContext.callAs(database, bookDAO::getBookIdRange);
+                if (range == null) {
+                    lastRunAt = start;
+                    lastRunFailedPartitions = 1;
+                    return Collections.emptyList();
+                }
+                for (long from = range[0]; from <= range[1]; from += partitionSize) {
+                    partitions.add(new int[] {database, (int) from,
+                            (int) Math.min(range[1], from + partitionSize - 1)});
+                }
+            }
+            int threads = Math.max(1, Math.min(partitions.size(),
+                    config.getInt("inventory.check.threads", DEFAULT_THREADS)));
+            
+            List<InventoryDrift> drift = new ArrayList<>();
+            int failed = checkPartitions(partitions, threads, drift);
+            drift.sort(Comparator.comparingInt(InventoryDrift::getBookId));
+            
+            int fixed = 0;
+            try {
+                fixed = repair(drift, config);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // A failed partition hides its drift, so this run confirms nothing
+            Map<Integer, InventoryDrift> seen = new HashMap<>();
+            if (failed == 0) {
+                for (InventoryDrift item : drift) {
+                    if (InventoryDrift.SOURCE_LOANS.equals(item.getSource())) {
+                        seen.put(item.getBookId(), item);
+                    }
+                }
+            }
+            pendingRepairs = seen;
+            
+            lastDrift = Collections.unmodifiableList(drift);
+            lastRunAt = start;
+            lastRunMs = System.currentTimeMillis() - start;
+            lastRunPartitions = partitions.size();
+            lastRunFailedPartitions = failed;
+            lastRunRepaired = fixed;
+            if (!drift.isEmpty() || failed > 0) {
+                System.err.println("Inventory check of " + partitions.size() + " partitions found " + drift.size()
+                        + " drifted counters, repaired " + fixed + ", " + failed + " partitions failed, in "
+                        + lastRunMs + " ms");
+                for (InventoryDrift item : drift.subList(0, Math.min(drift.size(), MAX_LOGGED))) {
+                    System.err.println("  " + item);
+                }
+            }
+            return lastDrift;
+        }
+    }
+    
+    /**
+     * Check book ID ranges in parallel
+     * 
+     * @param partitions Ranges as {database, from, to}, inclusive; database is a routed
+     *                   branch ID, or BranchContext.NONE for the shared database
+     * @param threads Ranges checked at once
+     * @param drift Receives the drift found
+     * @return Number of ranges whose check failed
+     */
+    private int checkPartitions(List<int[]> partitions, int threads, List<InventoryDrift> drift) {
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "inventory-check-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        int failed = 0;
+        try {
+            List<Future<List<InventoryDrift>>> results = new ArrayList<>();
+            for (int[] partition : partitions) {
+                results.add(pool.submit(() -> BranchContext.callAs(partition[0],
+                        () -> checkPartition(partition[1], partition[2]))));
+            }
+            for (Future<List<InventoryDrift>> result : results) {
+                List<InventoryDrift> found = result.get();
+                if (found != null) {
+                    drift.addAll(found);
+                } else {
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = partitions.size();
+        } catch (ExecutionException e) {
+            System.err.println("Inventory check failed: " + e.getCause());
+            failed = partitions.size();
+        } finally {
+            pool.shutdownNow();
+        }
+        return failed;
+    }
+    
+    /**
+     * Check one book ID range against loans and copies
+     * 
+     * @param fromBookId First book ID, inclusive
+     * @param toBookId Last book ID, inclusive
+     * @return Drift found, or null if either query failed
+     */
+    private List<InventoryDrift> checkPartition(int fromBookId, int toBookId) {
+        List<InventoryDrift> loanDrift = bookDAO.findLoanDrift(fromBookId, toBookId);
+        List<InventoryDrift> copyDrift = bookCopyDAO.findCounterDrift(fromBookId, toBookId);
+        if (loanDrift == null || copyDrift == null) {
+            return null;
+        }
+        List<InventoryDrift> drift = new ArrayList<>(loanDrift);
+        drift.addAll(copyDrift);
+        return drift;
+    }
+    
+    /**
+     * Correct loan drift that the previous run saw with the same counter and loan count
+     * 
+     * @param drift Drift found by this run
+     * @param config Configuration
+     * @return Number of counters corrected
+     * @throws InterruptedException if interrupted while pacing
+     */
+    private int repair(List<InventoryDrift> drift, LibraryConfig config) throws InterruptedException {
+        if (!config.getBoolean("inventory.repair.enabled", false)) {
+            return 0;
+        }
+        double rate = Math.max(0.1, config.getDouble("inventory.repair.rate", DEFAULT_REPAIR_RATE));
+        int max = Math.max(1, config.getInt("inventory.repair.max.per.run", DEFAULT_REPAIR_MAX));
+        long pauseMs = (long) (1000 / rate);
+        
+        int fixed = 0;
+        for (InventoryDrift item : drift) {
+            if (fixed >= max) {
+                break;
+            }
+            InventoryDrift earlier = pendingRepairs.get(item.getBookId());
+            if (!InventoryDrift.SOURCE_LOANS.equals(item.getSource()) || earlier == null
+                    || earlier.getAvailableCopies() != item.getAvailableCopies()
+                    || earlier.getOpenLoans() != item.getOpenLoans()) {
+                continue;
+            }
+            if (item.getExpectedAvailable() < 0) {
+                // More open loans than copies; no counter value is right, so leave it to a person
+                continue;
+            }
+            // The book's branch leads to the database it was read from
+            if (BranchContext.callAs(item.getBranchId(), () -> bookDAO.repairAvailableCopies(item))) {
+                fixed++;
+                repaired.incrementAndGet();
+                System.err.println("Inventory repair: book " + item.getBookId() + " available_copies "
+                        + item.getAvailableCopies() + " -> " + item.getExpectedAvailable());
+            }
+            Thread.sleep(pauseMs);
+        }
+        return fixed;
+    }
+    
+    /**
+     * Titles found drifted by the last run
+     * 
+     * @return Drifted titles by book ID
+     */
+    public List<InventoryDrift> getLastDrift() {
+        return lastDrift;
+    }
+    
+    /**
+     * Counters corrected by this node since startup
+     * 
+     * @return Repaired counter count
+     */
+    public long getRepairedCount() {
+        return repaired.get();
+    }
+    
+    /**
+     * Start time of the last run
+     * 
+     * @return Epoch milliseconds, 0 before the first run
+     */
+    public long getLastRunAt() {
+        return lastRunAt;
+    }
+    
+    public long getLastRunMs() {
+        return lastRunMs;
+    }
+    
+    public int getLastRunPartitions() {
+        return lastRunPartitions;
+    }
+    
+    public int getLastRunFailedPartitions() {
+        return lastRunFailedPartitions;
+    }
+    
+    public int getLastRunRepaired() {
+        return lastRunRepaired;
+    }
+    
+    /**
+     * Stop the scheduled checks
+     */
+    public synchronized void shutdown() {
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+    }
+}
\ No newline at end of file
@@ -1,13 +1,35 @@
 package com.library.service;
 
+import com.library.cache.LocalCache;
+import com.library.cache.SingleFlight;
 import com.library.dao.BookDAO;
+import com.library.dao.HoldDAO;
 import com.library.dao.IssuedBookDAO;
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
+import com.library.event.CirculationEvent;
+import com.library.event.CirculationLog;
 import com.library.model.Book;
+import com.library.model.Hold;
 import com.library.model.IssuedBook;
+import com.library.trace.Span;
+import com.library.trace.Tracer;
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+import com.library.util.LibraryConfig;
 
 import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * IssueBook Service Layer
@@ -17,15 +39,57 @@ public class IssueBookService {
     
     private IssuedBookDAO issuedBookDAO;
     private BookDAO bookDAO;
+    private HoldDAO holdDAO;
     
-    // Configuration constants
+    // Loan policy defaults; override with loan.issue.days, loan.max.books and loan.fine.per.day
     private static final int ISSUE_DAYS = 14; // Default issue period: 14 days
     private static final int MAX_BOOKS_PER_USER = 3; // Maximum books a user can issue
     private static final double FINE_PER_DAY = 5.0; // Fine amount per day of delay (in Rupees)
+    private static final int BULK_MAX_ITEMS = 200; // Maximum items in one bulk request
+    private static final int BULK_CHUNK_SIZE = 50; // Items committed per transaction
+    private static final String RESERVED_ISSUE_FAILED = "Failed to issue reserved copy"; // Not the holder's fault
+    
+    // Active loans per user, shared by every instance; kept coherent by change events
+    private static final LocalCache<Integer, List<IssuedBook>> ACTIVE_LOAN_CACHE =
+            new LocalCache<>("activeLoans", 60_000);
+    // Identical concurrent reads share one query
+    private static final SingleFlight<Integer, IssuedBook> LOAN_LOADS = new SingleFlight<>("loans");
+    private static final SingleFlight<String, List<IssuedBook>> LOAN_LISTS = new SingleFlight<>("loanLists");
+    
+    static {
+        ChangeEventBus.getInstance().addListener(event -> {
+            switch (event.getEntityType()) {
+                case ISSUED_BOOK:
+                    LOAN_LOADS.forget(event.getEntityId());
+                    LOAN_LISTS.forgetAll();
+                    // Returns are published by issue ID only, so drop everything when the owner is unknown
+                    if (event.getOwnerId() > 0) {
+                        ACTIVE_LOAN_CACHE.invalidate(event.getOwnerId());
+                    } else {
+                        ACTIVE_LOAN_CACHE.invalidateAll();
+                    }
+                    break;
+                case USER:
+                    ACTIVE_LOAN_CACHE.invalidate(event.getEntityId());
+                    LOAN_LISTS.forgetAll();
+                    break;
+                case BOOK:
+                    // Deleting a book cascades to its loans
+                    if (event.getOperation() == ChangeEvent.Operation.DELETE) {
+                        ACTIVE_LOAN_CACHE.invalidateAll();
+                        LOAN_LISTS.forgetAll();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        });
+    }
     
     public IssueBookService() {
         this.issuedBookDAO = new IssuedBookDAO();
         this.bookDAO = new BookDAO();
+        this.holdDAO = new HoldDAO();
     }
     
     /**
@@ -36,6 +100,15 @@ public class IssueBookService {
      * @return Result message
      */
     public String issueBook(int bookId, int userId) {
+        try (Span span = Tracer.getInstance().startSpan("IssueBookService.issueBook")) {
+            span.setAttribute("book.id", bookId).setAttribute("user.id", userId);
+            String result = issueBookChecked(bookId, userId);
+            span.setAttribute("result", result);
+            return result;
+        }
+    }
+    
+    private String issueBookChecked(int bookId, int userId) {
         // Validate IDs
         if (bookId <= 0 || userId <= 0) {
             return "Invalid book or user ID";
@@ -47,9 +120,14 @@ public class IssueBookService {
             return "Book not found";
         }
         
+        // Loans are made by the branch holding the book
+        if (book.getBranchId() != BranchContext.current()) {
+            return "Book belongs to another branch";
+        }
+        
         // Check if book is available
         if (book.getAvailableCopies() <= 0) {
-            return "Book is not available. All copies are issued";
+            return "Book is not available. All copies are issued. Place a hold to join the queue";
         }
         
         // Check if user has already issued this book
@@ -58,9 +136,10 @@ public class IssueBookService {
         }
         
         // Check if user has reached maximum book limit
+        int maxBooks = getMaxBooksPerUser();
         int currentIssueCount = issuedBookDAO.getIssuedBookCountByUser(userId);
-        if (currentIssueCount >= MAX_BOOKS_PER_USER) {
-            return "You have reached the maximum limit of " + MAX_BOOKS_PER_USER + " books";
+        if (currentIssueCount >= maxBooks) {
+            return "You have reached the maximum limit of " + maxBooks + " books";
         }
         
         // Calculate dates
@@ -69,20 +148,22 @@ public class IssueBookService {
         
         // Create IssuedBook object
         IssuedBook issuedBook = new IssuedBook(bookId, userId, issueDate, dueDate);
+        issuedBook.setBranchId(book.getBranchId());
         
-        // Issue the book
-        boolean issueSuccess = issuedBookDAO.issueBook(issuedBook);
+        // Claim the counter and a copy and record the loan in one transaction
+        int issueId = issuedBookDAO.issueBook(issuedBook);
         
-        if (!issueSuccess) {
+        if (issueId == 0) {
+            // Another issue took the last copy since the check above
+            return "Book is not available. All copies are issued. Place a hold to join the queue";
+        }
+        if (issueId < 0) {
             return "Failed to issue book. Please try again";
         }
         
-        // Update available copies
-        boolean updateSuccess = bookDAO.updateAvailableCopies(bookId, -1);
-        
-        if (!updateSuccess) {
-            return "Book issued but failed to update inventory. Contact administrator";
-        }
+        CirculationLog.getInstance().record(CirculationEvent.issue(
+                issuedBook.getIssueId(), bookId, userId, book.getTitle(), book.getCategory(),
+                issueDate.getTime(), dueDate.getTime()));
         
         return "SUCCESS";
     }
@@ -94,6 +175,15 @@ public class IssueBookService {
      * @return Result message with fine details
      */
     public String returnBook(int issueId) {
+        try (Span span = Tracer.getInstance().startSpan("IssueBookService.returnBook")) {
+            span.setAttribute("issue.id", issueId);
+            String result = returnBookChecked(issueId);
+            span.setAttribute("result", result.startsWith("SUCCESS") ? "SUCCESS" : result);
+            return result;
+        }
+    }
+    
+    private String returnBookChecked(int issueId) {
         // Validate issue ID
         if (issueId <= 0) {
             return "Invalid issue ID";
@@ -114,25 +204,303 @@ public class IssueBookService {
         Date returnDate = new Date(System.currentTimeMillis());
         double fineAmount = calculateFine(issuedBook.getDueDate(), returnDate);
         
-        // Return the book
-        boolean returnSuccess = issuedBookDAO.returnBook(issueId, returnDate, fineAmount);
+        // Return the book; a copy wanted by a waiting hold is kept off the shelf
+        Map<Integer, Integer> reservedCopies = new HashMap<>();
+        boolean returnSuccess = issuedBookDAO.returnBook(issueId, returnDate, fineAmount, reservedCopies);
         
         if (!returnSuccess) {
             return "Failed to return book. Please try again";
         }
         
-        // Update available copies
-        boolean updateSuccess = bookDAO.updateAvailableCopies(issuedBook.getBookId(), 1);
+        // The user's next look at their loans must not hit a lagging replica
+        DBConnection.recordWrite(DBConnection.userScope(issuedBook.getUserId()));
         
-        if (!updateSuccess) {
-            return "Book returned but failed to update inventory. Contact administrator";
-        }
+        CirculationLog.getInstance().record(CirculationEvent.returned(
+                issueId, issuedBook.getBookId(), issuedBook.getUserId(), issuedBook.getBookTitle(),
+                issuedBook.getIssueDate().getTime(), issuedBook.getDueDate().getTime(),
+                returnDate.getTime(), fineAmount));
         
+        // Hand a kept copy straight to the next holder; it goes on the shelf if nobody can take it
+        boolean assignedToHold = reservedCopies.containsKey(issuedBook.getBookId())
+                && assignReservedCopies(issuedBook.getBookId(), 1) > 0;
+        
+        String holdNote = assignedToHold ? " Copy issued to the next reservation" : "";
         if (fineAmount > 0) {
-            return "SUCCESS|Book returned successfully. Fine: Rs " + String.format("%.2f", fineAmount);
+            return "SUCCESS|Book returned successfully. Fine: Rs " + String.format("%.2f", fineAmount) + "." + holdNote;
         } else {
-            return "SUCCESS|Book returned successfully. No fine";
+            return "SUCCESS|Book returned successfully. No fine." + holdNote;
+        }
+    }
+    
+    /**
+     * Issue a batch of books, e.g. a stack scanned at the circulation desk
+     * Applies the same checks as issueBook, but loads books and current loans
+     * for a whole chunk at once and commits each chunk in one transaction
+     * 
+     * @param requests Loans to create, with book and user IDs set
+     * @return Result message per request, in input order
+     */
+    public List<String> issueBooks(List<IssuedBook> requests) {
+        try (Span span = Tracer.getInstance().startSpan("IssueBookService.issueBooks")) {
+            List<String> results = new ArrayList<>();
+            int chunkSize = getBulkChunkSize();
+            for (int from = 0; from < requests.size(); from += chunkSize) {
+                results.addAll(issueChunk(requests.subList(from, Math.min(from + chunkSize, requests.size()))));
+            }
+            span.setAttribute("items", requests.size());
+            span.setAttribute("issued", Collections.frequency(results, "SUCCESS"));
+            return results;
+        }
+    }
+    
+    /**
+     * Return a batch of books with fine calculation
+     * Each chunk of loans is closed in one transaction that keeps copies wanted
+     * by waiting holds off the shelf; those copies then go to the holders, as
+     * with a single return
+     * 
+     * @param issueIds Issue IDs
+     * @return Result message per issue ID, in input order
+     */
+    public List<String> returnBooks(List<Integer> issueIds) {
+        try (Span span = Tracer.getInstance().startSpan("IssueBookService.returnBooks")) {
+            List<String> results = new ArrayList<>();
+            int[] toHolds = new int[1];
+            int chunkSize = getBulkChunkSize();
+            for (int from = 0; from < issueIds.size(); from += chunkSize) {
+                results.addAll(returnChunk(issueIds.subList(from, Math.min(from + chunkSize, issueIds.size())),
+                        toHolds));
+            }
+            span.setAttribute("items", issueIds.size());
+            span.setAttribute("toHolds", toHolds[0]);
+            return results;
+        }
+    }
+    
+    /**
+     * Validate and issue one chunk of a bulk issue
+     * 
+     * @param requests Chunk of loan requests
+     * @return Result message per request
+     */
+    private List<String> issueChunk(List<IssuedBook> requests) {
+        Set<Integer> bookIds = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
+        for (IssuedBook request : requests) {
+            bookIds.add(request.getBookId());
+            userIds.add(request.getUserId());
+        }
+        Map<Integer, Book> books = bookDAO.getBooksByIds(bookIds);
+        Map<Integer, Set<Integer>> activeBooks = issuedBookDAO.getActiveBookIdsByUsers(userIds);
+        
+        // Track copies and loans taken by earlier items of the same chunk
+        Map<Integer, Integer> availableCopies = new HashMap<>();
+        for (Book book : books.values()) {
+            availableCopies.put(book.getBookId(), book.getAvailableCopies());
         }
+        
+        int maxBooks = getMaxBooksPerUser();
+        Date issueDate = new Date(System.currentTimeMillis());
+        Date dueDate = calculateDueDate(issueDate);
+        int branchId = BranchContext.current();
+        String[] results = new String[requests.size()];
+        List<IssuedBook> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        
+        for (int i = 0; i < requests.size(); i++) {
+            int bookId = requests.get(i).getBookId();
+            int userId = requests.get(i).getUserId();
+            Set<Integer> userBooks = activeBooks.computeIfAbsent(userId, id -> new HashSet<>());
+            
+            if (bookId <= 0 || userId <= 0) {
+                results[i] = "Invalid book or user ID";
+            } else if (!books.containsKey(bookId)) {
+                results[i] = "Book not found";
+            } else if (books.get(bookId).getBranchId() != branchId) {
+                results[i] = "Book belongs to another branch";
+            } else if (availableCopies.get(bookId) <= 0) {
+                results[i] = "Book is not available. All copies are issued. Place a hold to join the queue";
+            } else if (userBooks.contains(bookId)) {
+                results[i] = "You have already issued this book. Return it before issuing again";
+            } else if (userBooks.size() >= maxBooks) {
+                results[i] = "You have reached the maximum limit of " + maxBooks + " books";
+            } else {
+                availableCopies.merge(bookId, -1, Integer::sum);
+                userBooks.add(bookId);
+                IssuedBook loan = new IssuedBook(bookId, userId, issueDate, dueDate);
+                loan.setBranchId(branchId);
+                accepted.add(loan);
+                acceptedIndexes.add(i);
+            }
+        }
+        
+        if (!accepted.isEmpty()) {
+            boolean[] issued = issuedBookDAO.issueBooks(accepted);
+            for (int j = 0; j < accepted.size(); j++) {
+                int index = acceptedIndexes.get(j);
+                if (issued == null) {
+                    results[index] = "Failed to issue book. Please try again";
+                } else if (!issued[j]) {
+                    // Another desk or a hold took the last copy after validation
+                    results[index] = "Book is not available. All copies are issued. Place a hold to join the queue";
+                } else {
+                    IssuedBook loan = accepted.get(j);
+                    Book book = books.get(loan.getBookId());
+                    CirculationLog.getInstance().record(CirculationEvent.issue(
+                            loan.getIssueId(), loan.getBookId(), loan.getUserId(), book.getTitle(),
+                            book.getCategory(), issueDate.getTime(), dueDate.getTime()));
+                    results[index] = "SUCCESS";
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Validate and return one chunk of a bulk return
+     * 
+     * @param issueIds Chunk of issue IDs
+     * @param toHolds Counts the copies issued to waiting holders
+     * @return Result message per issue ID
+     */
+    private List<String> returnChunk(List<Integer> issueIds, int[] toHolds) {
+        Map<Integer, IssuedBook> loans = issuedBookDAO.getIssuedBooksByIds(new HashSet<>(issueIds));
+        Date returnDate = new Date(System.currentTimeMillis());
+        String[] results = new String[issueIds.size()];
+        Set<Integer> seen = new HashSet<>();
+        List<IssuedBook> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        
+        for (int i = 0; i < issueIds.size(); i++) {
+            int issueId = issueIds.get(i);
+            IssuedBook loan = loans.get(issueId);
+            
+            if (issueId <= 0) {
+                results[i] = "Invalid issue ID";
+            } else if (loan == null) {
+                results[i] = "Issue record not found";
+            } else if ("RETURNED".equals(loan.getStatus()) || !seen.add(issueId)) {
+                results[i] = "Book has already been returned";
+            } else {
+                loan.setReturnDate(returnDate);
+                loan.setFineAmount(calculateFine(loan.getDueDate(), returnDate));
+                accepted.add(loan);
+                acceptedIndexes.add(i);
+            }
+        }
+        
+        if (!accepted.isEmpty()) {
+            Map<Integer, Integer> reservedCopies = new HashMap<>();
+            boolean[] returned = issuedBookDAO.returnBooks(accepted, reservedCopies);
+            for (int j = 0; j < accepted.size(); j++) {
+                int index = acceptedIndexes.get(j);
+                IssuedBook loan = accepted.get(j);
+                if (returned == null) {
+                    results[index] = "Failed to return book. Please try again";
+                } else if (!returned[j]) {
+                    results[index] = "Book has already been returned";
+                } else {
+                    CirculationLog.getInstance().record(CirculationEvent.returned(
+                            loan.getIssueId(), loan.getBookId(), loan.getUserId(), loan.getBookTitle(),
+                            loan.getIssueDate().getTime(), loan.getDueDate().getTime(),
+                            returnDate.getTime(), loan.getFineAmount()));
+                    results[index] = loan.getFineAmount() > 0
+                            ? "SUCCESS|Book returned successfully. Fine: Rs " + String.format("%.2f", loan.getFineAmount()) + "."
+                            : "SUCCESS|Book returned successfully. No fine.";
+                }
+            }
+            
+            // Copies kept off the shelf go to the queue; any a holder cannot take go back on the shelf
+            for (Map.Entry<Integer, Integer> entry : reservedCopies.entrySet()) {
+                toHolds[0] += assignReservedCopies(entry.getKey(), entry.getValue());
+            }
+        }
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Hand copies already kept off the shelf to waiting holders
+     * Returns and new holds set copies aside under the book row lock; this issues
+     * them in queue order and shelves any that no holder can take
+     * 
+     * @param bookId Book ID
+     * @param copies Copies kept off the shelf
+     * @return Number of copies assigned to holders
+     */
+    public int assignReservedCopies(int bookId, int copies) {
+        int assigned = 0;
+        while (assigned < copies && assignCopyToNextHolder(bookId)) {
+            assigned++;
+        }
+        if (assigned < copies) {
+            // Queue emptied meanwhile; put the rest back
+            bookDAO.updateAvailableCopies(bookId, copies - assigned);
+        }
+        return assigned;
+    }
+    
+    /**
+     * Issue a copy that is already off the shelf to the oldest waiting holder
+     * Holders who can no longer take the book (loan limit, already borrowed) are
+     * skipped and their holds expire. If the loan cannot be written at all, the
+     * hold goes back to the queue in its old place and the copy is not assigned.
+     * 
+     * @param bookId Book ID
+     * @return true if the copy was issued to a holder, false if nobody could take it
+     */
+    private boolean assignCopyToNextHolder(int bookId) {
+        Hold hold;
+        while ((hold = holdDAO.claimNextHold(bookId)) != null) {
+            String result = issueReservedCopy(hold);
+            if ("SUCCESS".equals(result)) {
+                return true;
+            }
+            if (RESERVED_ISSUE_FAILED.equals(result)) {
+                holdDAO.requeueClaimedHold(hold.getHoldId(), hold.getUserId());
+                System.err.println("Could not issue book " + bookId + " for hold " + hold.getHoldId()
+                        + "; hold is waiting again");
+                return false;
+            }
+            holdDAO.expireClaimedHold(hold.getHoldId(), hold.getUserId());
+        }
+        return false;
+    }
+    
+    /**
+     * Create the loan for a claimed hold; the copy is not taken from available_copies
+     * 
+     * @param hold Claimed hold
+     * @return Result message
+     */
+    private String issueReservedCopy(Hold hold) {
+        int bookId = hold.getBookId();
+        int userId = hold.getUserId();
+        
+        if (issuedBookDAO.hasUserIssuedBook(userId, bookId)) {
+            return "User already has this book";
+        }
+        if (issuedBookDAO.getIssuedBookCountByUser(userId) >= getMaxBooksPerUser()) {
+            return "User has reached the maximum number of books";
+        }
+        
+        Book book = bookDAO.getBookById(bookId);
+        Date issueDate = new Date(System.currentTimeMillis());
+        Date dueDate = calculateDueDate(issueDate);
+        IssuedBook issuedBook = new IssuedBook(bookId, userId, issueDate, dueDate);
+        if (book != null) {
+            issuedBook.setBranchId(book.getBranchId());
+        }
+        
+        if (issuedBookDAO.issueReservedBook(issuedBook) <= 0) {
+            return RESERVED_ISSUE_FAILED;
+        }
+        
+        holdDAO.markFulfilled(hold.getHoldId(), userId, issuedBook.getIssueId());
+        CirculationLog.getInstance().record(CirculationEvent.issue(
+                issuedBook.getIssueId(), bookId, userId,
+                book != null ? book.getTitle() : null, book != null ? book.getCategory() : null,
+                issueDate.getTime(), dueDate.getTime()));
+        return "SUCCESS";
     }
     
     /**
@@ -141,7 +509,26 @@ public class IssueBookService {
      * @return List of issued books
      */
     public List<IssuedBook> getAllIssuedBooks() {
-        return issuedBookDAO.getAllIssuedBooks();
+        return loadList("issued", issuedBookDAO::getAllIssuedBooks);
+    }
+    
+    /**
+     * Fill the active-loan cache for every current borrower with one query, e.g. at startup
+     * A loan changed while the query runs may be served stale until the entry expires
+     * 
+     * @return Number of borrowers cached
+     */
+    public int preloadActiveLoans() {
+        Map<Integer, List<IssuedBook>> loansByUser = new HashMap<>();
+        for (IssuedBook loan : issuedBookDAO.getAllIssuedBooks()) {
+            loansByUser.computeIfAbsent(loan.getUserId(), id -> new ArrayList<>()).add(loan);
+        }
+        for (Map.Entry<Integer, List<IssuedBook>> entry : loansByUser.entrySet()) {
+            // Same order as getIssuedBooksByUserId: newest issue first
+            List<IssuedBook> loans = Collections.unmodifiableList(entry.getValue());
+            ACTIVE_LOAN_CACHE.get(entry.getKey(), id -> loans);
+        }
+        return loansByUser.size();
     }
     
     /**
@@ -151,7 +538,8 @@ public class IssueBookService {
      * @return List of books issued to the user
      */
     public List<IssuedBook> getIssuedBooksByUserId(int userId) {
-        return issuedBookDAO.getIssuedBooksByUserId(userId);
+        return ACTIVE_LOAN_CACHE.get(userId,
+                id -> loadList("active:" + id, () -> issuedBookDAO.getIssuedBooksByUserId(id)));
     }
     
     /**
@@ -161,7 +549,7 @@ public class IssueBookService {
      * @return List of all books issued to the user (including returned)
      */
     public List<IssuedBook> getBookHistoryByUserId(int userId) {
-        return issuedBookDAO.getBookHistoryByUserId(userId);
+        return loadList("history:" + userId, () -> issuedBookDAO.getBookHistoryByUserId(userId));
     }
     
     /**
@@ -170,7 +558,7 @@ public class IssueBookService {
      * @return List of overdue books
      */
     public List<IssuedBook> getOverdueBooks() {
-        return issuedBookDAO.getOverdueBooks();
+        return loadList("overdue", issuedBookDAO::getOverdueBooks);
     }
     
     /**
@@ -179,7 +567,17 @@ public class IssueBookService {
      * @return List of all issue records
      */
     public List<IssuedBook> getAllIssueHistory() {
-        return issuedBookDAO.getAllIssueHistory();
+        return loadList("allHistory", issuedBookDAO::getAllIssueHistory);
+    }
+    
+    /**
+     * Stream the complete issue history, e.g. for an export, in constant memory
+     * 
+     * @param consumer Receives each issue record, ordered by issue ID
+     * @return true if every record was read
+     */
+    public boolean exportIssueHistory(Consumer<IssuedBook> consumer) {
+        return issuedBookDAO.forEachIssueRecord(consumer);
     }
     
     /**
@@ -189,7 +587,19 @@ public class IssueBookService {
      * @return IssuedBook object if found, null otherwise
      */
     public IssuedBook getIssuedBookById(int issueId) {
-        return issuedBookDAO.getIssuedBookById(issueId);
+        return LOAN_LOADS.execute(issueId, () -> issuedBookDAO.getIssuedBookById(issueId));
+    }
+    
+    /**
+     * Run a loan listing query, sharing it with concurrent callers asking for the same key
+     * 
+     * @param key Identifies the query and its parameters
+     * @param query DAO query
+     * @return Unmodifiable listing, possibly shared with other callers
+     */
+    private List<IssuedBook> loadList(String key, Supplier<List<IssuedBook>> query) {
+        return LOAN_LISTS.execute(BranchContext.current() + ":" + key,
+                () -> Collections.unmodifiableList(query.get()));
     }
     
     /**
@@ -201,7 +611,7 @@ public class IssueBookService {
     private Date calculateDueDate(Date issueDate) {
         Calendar calendar = Calendar.getInstance();
         calendar.setTime(issueDate);
-        calendar.add(Calendar.DAY_OF_MONTH, ISSUE_DAYS);
+        calendar.add(Calendar.DAY_OF_MONTH, getIssueDays());
         return new Date(calendar.getTimeInMillis());
     }
     
@@ -223,7 +633,7 @@ public class IssueBookService {
         long daysOverdue = diffInMillis / (1000 * 60 * 60 * 24);
         
         // Calculate fine
-        return daysOverdue * FINE_PER_DAY;
+        return daysOverdue * getFinePerDay();
     }
     
     /**
@@ -232,7 +642,25 @@ public class IssueBookService {
      * @return Maximum books per user
      */
     public int getMaxBooksPerUser() {
-        return MAX_BOOKS_PER_USER;
+        return LibraryConfig.current().getInt("loan.max.books", MAX_BOOKS_PER_USER);
+    }
+    
+    /**
+     * Get maximum items accepted in one bulk issue or return request
+     * 
+     * @return Maximum bulk items
+     */
+    public int getBulkMaxItems() {
+        return LibraryConfig.current().getInt("loan.bulk.max.items", BULK_MAX_ITEMS);
+    }
+    
+    /**
+     * Get number of bulk items committed per transaction
+     * 
+     * @return Bulk chunk size
+     */
+    public int getBulkChunkSize() {
+        return Math.max(1, LibraryConfig.current().getInt("loan.bulk.chunk.size", BULK_CHUNK_SIZE));
     }
     
     /**
@@ -241,7 +669,7 @@ public class IssueBookService {
      * @return Issue period
      */
     public int getIssueDays() {
-        return ISSUE_DAYS;
+        return LibraryConfig.current().getInt("loan.issue.days", ISSUE_DAYS);
     }
     
     /**
@@ -250,6 +678,6 @@ public class IssueBookService {
      * @return Fine per day
      */
     public double getFinePerDay() {
-        return FINE_PER_DAY;
+        return LibraryConfig.current().getDouble("loan.fine.per.day", FINE_PER_DAY);
     }
 }
\ No newline at end of file
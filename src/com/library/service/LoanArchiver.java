@@ -0,0 +1,161 @@
+package com.library.service;
+
+import com.library.dao.IssuedBookDAO;
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+import com.library.util.LibraryConfig;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loan Archiver
+ * Keeps issued_books bounded by open loans: every archive.interval.minutes it
+ * moves loans returned more than archive.after.days ago into issued_books_archive,
+ * a batch per transaction with a short pause in between so live issues and
+ * returns are never held up for long. History queries read both tables.
+ * Safe to run on every node; each batch skips rows another node has locked.
+ * Implements Singleton pattern.
+ */
+public class LoanArchiver {
+    
+    private static final int DEFAULT_AFTER_DAYS = 90;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final long DEFAULT_INTERVAL_MINUTES = 60;
+    private static final long PAUSE_BETWEEN_BATCHES_MS = 100;
+    
+    private static final LoanArchiver INSTANCE = new LoanArchiver();
+    
+    private final IssuedBookDAO issuedBookDAO = new IssuedBookDAO();
+    private final AtomicLong archived = new AtomicLong();
+    private volatile long lastRunAt;
+    private volatile long lastRunMs;
+    private volatile int lastRunCount;
+    private ScheduledExecutorService worker;
+    
+    private LoanArchiver() {
+    }
+    
+    public static LoanArchiver getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Schedule the archiving runs; later calls do nothing
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        long minutes = Math.max(1, LibraryConfig.current().getLong("archive.interval.minutes", DEFAULT_INTERVAL_MINUTES));
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loan-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        // First run shortly after startup, away from the warm-up queries
+        worker.scheduleWithFixedDelay(this::run, 5, minutes, TimeUnit.MINUTES);
+    }
+    
+    /**
+     * Archive every eligible loan now, in the shared database and then in
+     * each branch database of its own
+     * 
+     * @return Number of loans moved
+     */
+    public int run() {
+        LibraryConfig config = LibraryConfig.current();
+        if (!config.getBoolean("archive.enabled", true)) {
+            return 0;
+        }
+        int afterDays = Math.max(1, config.getInt("archive.after.days", DEFAULT_AFTER_DAYS));
+        int batchSize = Math.max(1, config.getInt("archive.batch.size", DEFAULT_BATCH_SIZE));
+        Date cutoff = Date.valueOf(LocalDate.now().minusDays(afterDays));
+        
+        long start = System.currentTimeMillis();
+        int total = BranchContext.callAs(BranchContext.NONE, () -> archive(cutoff, batchSize));
+        for (int branchId : DBConnection.getRoutedBranches()) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            total += BranchContext.callAs(branchId, () -> archive(cutoff, batchSize));
+        }
+        
+        lastRunAt = start;
+        lastRunMs = System.currentTimeMillis() - start;
+        lastRunCount = total;
+        if (total > 0) {
+            System.out.println("Loan archiver moved " + total + " loans returned before " + cutoff
+                    + " in " + lastRunMs + " ms");
+        }
+        return total;
+    }
+    
+    /**
+     * Move eligible loans of the database the current branch reads, batch by batch
+     * 
+     * @param cutoff Loans returned before this date are moved
+     * @param batchSize Loans per transaction
+     * @return Number of loans moved
+     */
+    private int archive(Date cutoff, int batchSize) {
+        int total = 0;
+        try {
+            while (true) {
+                int moved = issuedBookDAO.archiveReturnedLoans(cutoff, batchSize);
+                if (moved <= 0) {
+                    break;
+                }
+                total += moved;
+                archived.addAndGet(moved);
+                if (moved < batchSize) {
+                    break;
+                }
+                Thread.sleep(PAUSE_BETWEEN_BATCHES_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return total;
+    }
+    
+    /**
+     * Loans archived by this node since startup
+     * 
+     * @return Archived loan count
+     */
+    public long getArchivedCount() {
+        return archived.get();
+    }
+    
+    /**
+     * Start time of the last run
+     * 
+     * @return Epoch milliseconds, 0 before the first run
+     */
+    public long getLastRunAt() {
+        return lastRunAt;
+    }
+    
+    public long getLastRunMs() {
+        return lastRunMs;
+    }
+    
+    public int getLastRunCount() {
+        return lastRunCount;
+    }
+    
+    /**
+     * Stop the scheduled runs
+     */
+    public synchronized void shutdown() {
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,262 @@
+package com.library.service;
+
+import com.library.dao.BookDAO;
+import com.library.dao.IssuedBookDAO;
+import com.library.dao.ReportDAO;
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
+import com.library.model.Book;
+import com.library.model.IssuedBook;
+import com.library.report.CirculationStats;
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report Service Layer
+ * Serves circulation reports from incrementally maintained aggregates.
+ * The aggregates are seeded once from every database and then follow the
+ * change events of all nodes: loans issued and returned and books added,
+ * edited or deleted anywhere are collected and applied once a second from
+ * their committed rows, so each report is answered from memory.
+ */
+public class ReportService {
+    
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final long APPLY_INTERVAL_MS = 1000;
+    
+    // Shared by every ReportService instance
+    private static final CirculationStats STATS = new CirculationStats();
+    private static volatile boolean initialized = false;
+    
+    // Changes heard from the bus, waiting to be applied by the stats thread
+    private static final Set<Integer> PENDING_ISSUES = ConcurrentHashMap.newKeySet();
+    private static final Set<Integer> PENDING_RETURNS = ConcurrentHashMap.newKeySet();
+    private static final Set<Integer> PENDING_BOOKS = ConcurrentHashMap.newKeySet();
+    private static final Set<Integer> PENDING_DELETES = ConcurrentHashMap.newKeySet();
+    
+    private static final BookDAO BOOK_DAO = new BookDAO();
+    private static final IssuedBookDAO ISSUED_BOOK_DAO = new IssuedBookDAO();
+    
+    public ReportService() {
+        ensureInitialized();
+    }
+    
+    /**
+     * Start following change events and seed the aggregates (once per JVM)
+     * Changes committed while the seed queries run may be counted twice;
+     * that window only exists at startup
+     */
+    private static synchronized void ensureInitialized() {
+        if (initialized) {
+            return;
+        }
+        ChangeEventBus.getInstance().addListener(ReportService::collect);
+        ReportDAO reportDAO = new ReportDAO();
+        for (int database : DBConnection.getDatabases()) {
+            BranchContext.runAs(database, () -> reportDAO.seed(STATS));
+        }
+        
+        ScheduledExecutorService applier = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "report-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        applier.scheduleWithFixedDelay(ReportService::applyPending, APPLY_INTERVAL_MS, APPLY_INTERVAL_MS,
+                                       TimeUnit.MILLISECONDS);
+        initialized = true;
+        System.out.println("Circulation statistics initialized");
+    }
+    
+    /**
+     * Note a change for the next apply; runs on the publishing or polling thread, so no queries here
+     * 
+     * @param event Change event from this or another node
+     */
+    private static void collect(ChangeEvent event) {
+        switch (event.getEntityType()) {
+            case ISSUED_BOOK:
+                // Loans are only ever inserted by an issue and updated by their return
+                if (event.getOperation() == ChangeEvent.Operation.INSERT) {
+                    PENDING_ISSUES.add(event.getEntityId());
+                } else if (event.getOperation() == ChangeEvent.Operation.UPDATE) {
+                    PENDING_RETURNS.add(event.getEntityId());
+                }
+                break;
+            case BOOK:
+                if (event.getOperation() == ChangeEvent.Operation.DELETE) {
+                    PENDING_DELETES.add(event.getEntityId());
+                } else {
+                    PENDING_BOOKS.add(event.getEntityId());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Apply collected changes from their committed rows
+     * Books first, so new loans land in the right category; issues before returns,
+     * so a loan issued and returned within one interval nets out
+     */
+    private static void applyPending() {
+        try {
+            List<Integer> bookIds = drain(PENDING_BOOKS);
+            for (Book book : loadBooks(bookIds).values()) {
+                STATS.recordBook(book.getBookId(), book.getTitle(), book.getCategory(), book.getTotalCopies());
+            }
+            for (int bookId : drain(PENDING_DELETES)) {
+                STATS.removeBook(bookId);
+            }
+            
+            List<Integer> issueIds = drain(PENDING_ISSUES);
+            List<Integer> returnIds = drain(PENDING_RETURNS);
+            Set<Integer> loanIds = new HashSet<>(issueIds);
+            loanIds.addAll(returnIds);
+            Map<Integer, IssuedBook> loans = loadLoans(loanIds);
+            for (int issueId : issueIds) {
+                IssuedBook loan = loans.get(issueId);
+                if (loan != null) {
+                    STATS.recordIssue(loan.getBookId(), loan.getBookTitle(), null, loan.getCreatedAt().getTime());
+                }
+            }
+            for (int issueId : returnIds) {
+                IssuedBook loan = loans.get(issueId);
+                if (loan != null && "RETURNED".equals(loan.getStatus()) && loan.getReturnDate() != null) {
+                    long loanDays = (loan.getReturnDate().getTime() - loan.getIssueDate().getTime()) / MILLIS_PER_DAY;
+                    STATS.recordReturn(loan.getBookId(), loanDays, loan.getFineAmount(),
+                                       loan.getReturnDate().getTime());
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error applying circulation statistics: " + e.getMessage());
+        }
+    }
+    
+    private static List<Integer> drain(Set<Integer> pending) {
+        List<Integer> ids = new ArrayList<>();
+        for (Iterator<Integer> it = pending.iterator(); it.hasNext(); ) {
+            ids.add(it.next());
+            it.remove();
+        }
+        return ids;
+    }
+    
+    /**
+     * Load books from whichever database holds them; IDs never collide across databases
+     * 
+     * @param bookIds Book IDs
+     * @return Books found by ID; deleted ones are absent
+     */
+    private static Map<Integer, Book> loadBooks(List<Integer> bookIds) {
+        Map<Integer, Book> books = new HashMap<>();
+        for (int database : DBConnection.getDatabases()) {
+            Set<Integer> missing = new HashSet<>(bookIds);
+            missing.removeAll(books.keySet());
+            if (missing.isEmpty()) {
+                break;
+            }
+            books.putAll(BranchContext.callAs(database, () -> BOOK_DAO.getBooksByIds(missing)));
+        }
+        return books;
+    }
+    
+    /**
+     * Load loans from whichever database holds them
+     * 
+     * @param issueIds Issue IDs
+     * @return Loans found by issue ID
+     */
+    private static Map<Integer, IssuedBook> loadLoans(Set<Integer> issueIds) {
+        Map<Integer, IssuedBook> loans = new HashMap<>();
+        for (int database : DBConnection.getDatabases()) {
+            Set<Integer> missing = new HashSet<>(issueIds);
+            missing.removeAll(loans.keySet());
+            if (missing.isEmpty()) {
+                break;
+            }
+            loans.putAll(BranchContext.callAs(database, () -> ISSUED_BOOK_DAO.getIssuedBooksByIds(missing)));
+        }
+        return loans;
+    }
+    
+    /**
+     * Get most borrowed titles
+     * 
+     * @param limit Maximum number of titles
+     * @return Titles with borrow counts, highest first
+     */
+    public List<CirculationStats.TitleCount> getMostBorrowed(int limit) {
+        return STATS.getMostBorrowed(limit);
+    }
+    
+    /**
+     * Get utilization per category
+     * 
+     * @return Category to copies, active loans and utilization
+     */
+    public Map<String, Map<String, Object>> getCategoryUtilization() {
+        return STATS.getCategoryUtilization();
+    }
+    
+    /**
+     * Get average loan duration
+     * 
+     * @return Average days for returned loans
+     */
+    public double getAverageLoanDays() {
+        return STATS.getAverageLoanDays();
+    }
+    
+    /**
+     * Get fine totals per period
+     * 
+     * @param period "day" or "month"
+     * @param periods Number of most recent periods
+     * @return Period label to total fine
+     */
+    public Map<String, Double> getFineTotals(String period, int periods) {
+        return STATS.getFineTotals("month".equals(period), periods);
+    }
+    
+    /**
+     * Get load by hour of day
+     * 
+     * @return Peak hour and the per-hour counts
+     */
+    public Map<String, Object> getPeakHours() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("peakHour", STATS.getPeakHour());
+        result.put("operationsByHour", STATS.getOperationsByHour());
+        return result;
+    }
+    
+    /**
+     * Get all reports in one response
+     * 
+     * @return Summary of every report
+     */
+    public Map<String, Object> getSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("mostBorrowed", getMostBorrowed(10));
+        summary.put("categories", getCategoryUtilization());
+        summary.put("averageLoanDays", getAverageLoanDays());
+        summary.put("returnedLoans", STATS.getReturnedLoanCount());
+        summary.put("finesByMonth", getFineTotals("month", 12));
+        summary.put("peakHours", getPeakHours());
+        return summary;
+    }
+}
\ No newline at end of file
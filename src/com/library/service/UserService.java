@@ -1,9 +1,27 @@
 package com.library.service;
 
+import com.library.cache.KeyFilter;
+import com.library.cache.LocalCache;
 import com.library.dao.UserDAO;
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
+import com.library.event.CirculationEvent;
+import com.library.event.CirculationLog;
 import com.library.model.User;
+import com.library.trace.Span;
+import com.library.trace.Tracer;
+import com.library.util.BranchContext;
+import com.library.util.LibraryConfig;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 /**
  * User Service Layer
@@ -11,8 +29,44 @@ import java.util.List;
  */
 public class UserService {
 
+    private static final int IMPORT_MAX_ROWS = 50_000;   // Maximum rows in one roster import
+    private static final int IMPORT_BATCH_SIZE = 500;    // Users per multi-row INSERT
+    // Compiled once; registration and imports validate every email against it
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
+
     private UserDAO userDAO;
 
+    // Shared by every UserService instance; kept coherent by change events
+    private static final LocalCache<Integer, User> USER_CACHE = new LocalCache<>("users", 60_000);
+    // Rule out most new usernames and emails without a query; the unique constraints have the final word
+    private static final KeyFilter USERNAME_FILTER = new KeyFilter("usernames", new UserDAO()::forEachUsername);
+    private static final KeyFilter EMAIL_FILTER = new KeyFilter("emails", new UserDAO()::forEachEmail);
+
+    static {
+        ChangeEventBus.getInstance().addListener(event -> {
+            if (event.getEntityType() == ChangeEvent.EntityType.USER) {
+                USER_CACHE.invalidate(event.getEntityId());
+                // Keys written here are recorded directly; learn those written on other nodes
+                if (event.getOperation() != ChangeEvent.Operation.DELETE
+                        && !ChangeEventBus.getInstance().getNodeId().equals(event.getOriginNode())) {
+                    // A roster import publishes one event without an ID for the whole batch
+                    if (event.getEntityId() == 0) {
+                        USERNAME_FILTER.reloadLater();
+                        EMAIL_FILTER.reloadLater();
+                        return;
+                    }
+                    User user = new UserDAO().getUserById(event.getEntityId());
+                    if (user != null) {
+                        USERNAME_FILTER.add(user.getUsername());
+                        EMAIL_FILTER.add(user.getEmail());
+                    }
+                }
+            }
+        });
+        USERNAME_FILTER.start();
+        EMAIL_FILTER.start();
+    }
+
     public UserService() {
         this.userDAO = new UserDAO();
     }
@@ -24,45 +78,146 @@ public class UserService {
      * @return Result message
      */
     public String registerUser(User user) {
-        // Validate input
-        if (user.getUsername() == null || user.getUsername().trim().isEmpty()) {
-            return "Username cannot be empty";
+        String validation = validateUser(user);
+        if (!"SUCCESS".equals(validation)) {
+            return validation;
         }
 
-        if (user.getPassword() == null || user.getPassword().length() < 6) {
-            return "Password must be at least 6 characters long";
+        // Check if username already exists
+        if (usernameExists(user.getUsername())) {
+            return "Username already exists";
         }
 
-        if (user.getFullName() == null || user.getFullName().trim().isEmpty()) {
-            return "Full name cannot be empty";
+        // Check if email already exists
+        if (emailExists(user.getEmail())) {
+            return "Email already exists";
         }
 
-        if (user.getEmail() == null || !isValidEmail(user.getEmail())) {
-            return "Invalid email format";
-        }
+        // Register user
+        boolean success = userDAO.registerUser(user);
 
-        if (user.getRole() == null || (!user.getRole().equals("ADMIN") && !user.getRole().equals("STUDENT"))) {
-            return "Invalid role. Must be ADMIN or STUDENT";
+        if (success) {
+            USERNAME_FILTER.add(user.getUsername());
+            EMAIL_FILTER.add(user.getEmail());
+            CirculationLog.getInstance().record(CirculationEvent.registered(user.getUserId()));
+            return "SUCCESS";
         }
 
-        // Check if username already exists
+        // Lost a race with another registration: the unique constraints rejected the insert
         if (userDAO.usernameExists(user.getUsername())) {
+            USERNAME_FILTER.add(user.getUsername());
             return "Username already exists";
         }
-
-        // Check if email already exists
         if (userDAO.emailExists(user.getEmail())) {
+            EMAIL_FILTER.add(user.getEmail());
             return "Email already exists";
         }
+        return "Registration failed. Please try again";
+    }
 
-        // Register user
-        boolean success = userDAO.registerUser(user);
+    /**
+     * Import a roster of users in bulk
+     * Rows are validated in parallel, checked for duplicates within the roster
+     * and against existing usernames and emails with set-based queries, then
+     * inserted in multi-row batches. A batch the database rejects, e.g. because
+     * another registration took a name meanwhile, is retried row by row.
+     * 
+     * @param users Users in roster order
+     * @return Per-row results in input order, "SUCCESS" or an error message
+     */
+    public List<String> importUsers(List<User> users) {
+        try (Span span = Tracer.getInstance().startSpan("UserService.importUsers")) {
+            List<String> results = importRoster(users);
+            span.setAttribute("rows", users.size());
+            span.setAttribute("imported", Collections.frequency(results, "SUCCESS"));
+            return results;
+        }
+    }
 
-        if (success) {
-            return "SUCCESS";
-        } else {
-            return "Registration failed. Please try again";
+    private List<String> importRoster(List<User> users) {
+        String[] results = new String[users.size()];
+        IntStream.range(0, users.size()).parallel()
+                .forEach(i -> results[i] = validateUser(users.get(i)));
+
+        // Duplicates within the roster: the first occurrence wins
+        Map<String, Integer> rowByUsername = new HashMap<>();
+        Map<String, Integer> rowByEmail = new HashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            if (!"SUCCESS".equals(results[i])) {
+                continue;
+            }
+            if (rowByUsername.putIfAbsent(KeyFilter.normalize(users.get(i).getUsername()), i) != null) {
+                results[i] = "Duplicate username in roster";
+                continue;
+            }
+            if (rowByEmail.putIfAbsent(KeyFilter.normalize(users.get(i).getEmail()), i) != null) {
+                results[i] = "Duplicate email in roster";
+            }
+        }
+
+        List<String> usernames = new ArrayList<>();
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            if ("SUCCESS".equals(results[i])) {
+                usernames.add(users.get(i).getUsername());
+                emails.add(users.get(i).getEmail());
+            }
         }
+        Set<String> takenUsernames = USERNAME_FILTER.existing(usernames, userDAO::findExistingUsernames);
+        Set<String> takenEmails = EMAIL_FILTER.existing(emails, userDAO::findExistingEmails);
+
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            if (!"SUCCESS".equals(results[i])) {
+                continue;
+            }
+            if (takenUsernames.contains(KeyFilter.normalize(users.get(i).getUsername()))) {
+                results[i] = "Username already exists";
+            } else if (takenEmails.contains(KeyFilter.normalize(users.get(i).getEmail()))) {
+                results[i] = "Email already exists";
+            } else {
+                pending.add(i);
+            }
+        }
+
+        int batchSize = getImportBatchSize();
+        for (int start = 0; start < pending.size(); start += batchSize) {
+            List<Integer> rows = pending.subList(start, Math.min(pending.size(), start + batchSize));
+            List<User> batch = new ArrayList<>();
+            for (int row : rows) {
+                batch.add(users.get(row));
+            }
+            if (userDAO.registerUsers(batch)) {
+                for (User user : batch) {
+                    USERNAME_FILTER.add(user.getUsername());
+                    EMAIL_FILTER.add(user.getEmail());
+                    CirculationLog.getInstance().record(CirculationEvent.registered(user.getUserId()));
+                }
+            } else {
+                for (int row : rows) {
+                    results[row] = registerUser(users.get(row));
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Get maximum rows accepted in one roster import
+     * 
+     * @return Maximum import rows
+     */
+    public int getImportMaxRows() {
+        return LibraryConfig.current().getInt("roster.import.max.rows", IMPORT_MAX_ROWS);
+    }
+
+    /**
+     * Get number of users inserted per statement during a roster import
+     * 
+     * @return Import batch size
+     */
+    public int getImportBatchSize() {
+        return Math.max(1, LibraryConfig.current().getInt("roster.import.batch.size", IMPORT_BATCH_SIZE));
     }
 
     /**
@@ -82,8 +237,15 @@ public class UserService {
             return null;
         }
 
-        // Attempt login
-        return userDAO.loginUser(username, password);
+        // Attempt login in the database of the user's branch; the login request names none
+        try (Span span = Tracer.getInstance().startSpan("UserService.loginUser")) {
+            int branchId = userDAO.getBranchOfUsername(username);
+            User user = branchId != BranchContext.NONE
+                    ? BranchContext.callAs(branchId, () -> userDAO.loginUser(username, password))
+                    : userDAO.loginUser(username, password);
+            span.setAttribute("authenticated", user != null);
+            return user;
+        }
     }
 
     /**
@@ -93,7 +255,7 @@ public class UserService {
      * @return User object if found, null otherwise
      */
     public User getUserById(int userId) {
-        return userDAO.getUserById(userId);
+        return USER_CACHE.get(userId, userDAO::getUserById);
     }
 
     /**
@@ -138,6 +300,8 @@ public class UserService {
         boolean success = userDAO.updateUser(user);
 
         if (success) {
+            // A replaced email stays in the filter as a false positive until the next rebuild
+            EMAIL_FILTER.add(user.getEmail());
             return "SUCCESS";
         } else {
             return "Update failed. Please try again";
@@ -155,15 +319,50 @@ public class UserService {
             return "Invalid user ID";
         }
 
+        User user = userDAO.getUserById(userId);
         boolean success = userDAO.deleteUser(userId);
 
         if (success) {
+            if (user != null) {
+                USERNAME_FILTER.remove(user.getUsername());
+                EMAIL_FILTER.remove(user.getEmail());
+            }
             return "SUCCESS";
         } else {
             return "Deletion failed. User may have issued books";
         }
     }
 
+    /**
+     * Validate the fields of a new user
+     * 
+     * @param user User object
+     * @return "SUCCESS" or the first problem found
+     */
+    private String validateUser(User user) {
+        if (user.getUsername() == null || user.getUsername().trim().isEmpty()) {
+            return "Username cannot be empty";
+        }
+
+        if (user.getPassword() == null || user.getPassword().length() < 6) {
+            return "Password must be at least 6 characters long";
+        }
+
+        if (user.getFullName() == null || user.getFullName().trim().isEmpty()) {
+            return "Full name cannot be empty";
+        }
+
+        if (user.getEmail() == null || !isValidEmail(user.getEmail())) {
+            return "Invalid email format";
+        }
+
+        if (user.getRole() == null || (!user.getRole().equals("ADMIN") && !user.getRole().equals("STUDENT"))) {
+            return "Invalid role. Must be ADMIN or STUDENT";
+        }
+
+        return "SUCCESS";
+    }
+
     /**
      * Validate email format
      * Simple email validation
@@ -172,8 +371,7 @@ public class UserService {
      * @return true if valid, false otherwise
      */
     private boolean isValidEmail(String email) {
-        String emailRegex = "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$";
-        return email.matches(emailRegex);
+        return EMAIL_PATTERN.matcher(email).matches();
     }
 
     /**
@@ -183,7 +381,7 @@ public class UserService {
      * @return true if exists, false otherwise
      */
     public boolean usernameExists(String username) {
-        return userDAO.usernameExists(username);
+        return USERNAME_FILTER.exists(username, userDAO::usernameExists);
     }
 
     /**
@@ -193,6 +391,6 @@ public class UserService {
      * @return true if exists, false otherwise
      */
     public boolean emailExists(String email) {
-        return userDAO.emailExists(email);
+        return EMAIL_FILTER.exists(email, userDAO::emailExists);
     }
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+package com.library.service;
+
+import com.library.cache.KeyFilter;
+import com.library.catalog.CatalogStore;
+import com.library.catalog.SuggestIndex;
+import com.library.model.Book;
+import com.library.model.BookQuery;
+import com.library.model.IssuedBook;
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+import com.library.util.LibraryConfig;
+import com.google.gson.Gson;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Warm-Up
+ * Brings a freshly deployed node up to speed before it takes traffic: opens
+ * pool connections, loads the catalog store, key filters and caches, and runs
+ * the in-memory hot paths (catalog queries, suggestions, JSON serialization)
+ * enough times for the JIT to compile them. The readiness endpoint reports
+ * ready only once this has finished, so the load balancer skips cold nodes.
+ * Runs once per JVM on its own thread; a step that fails is logged and skipped.
+ * Implements Singleton pattern.
+ */
+public class WarmUp {
+    
+    private static final int DEFAULT_CONNECTIONS = 5;     // Idle connections opened per pool
+    private static final int DEFAULT_ITERATIONS = 300;    // Runs of each in-memory hot path
+    private static final long DEFAULT_TIMEOUT_SECONDS = 120;
+    private static final long POLL_INTERVAL_MS = 100;
+    
+    private static final WarmUp INSTANCE = new WarmUp();
+    
+    private volatile boolean ready;
+    private volatile String phase = "not started";
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private final Map<String, Long> stepMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+    private Thread thread;
+    
+    private WarmUp() {
+    }
+    
+    public static WarmUp getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Start warming up in the background (once); disabled with warmup.enabled=false,
+     * in which case the node is ready at once
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        if (!LibraryConfig.current().getBoolean("warmup.enabled", true)) {
+            phase = "disabled";
+            ready = true;
+            return;
+        }
+        thread = new Thread(this::run, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void run() {
+        LibraryConfig config = LibraryConfig.current();
+        int iterations = Math.max(1, config.getInt("warmup.iterations", DEFAULT_ITERATIONS));
+        long deadline = System.currentTimeMillis()
+                + config.getLong("warmup.timeout.seconds", DEFAULT_TIMEOUT_SECONDS) * 1000;
+        startedAt = System.currentTimeMillis();
+        System.out.println("Warm-up started");
+        
+        step("connections", () -> DBConnection.prefill(config.getInt("warmup.connections", DEFAULT_CONNECTIONS)));
+        
+        // Loading the service classes starts the catalog store and key filters
+        BookService bookService = new BookService();
+        UserService userService = new UserService();
+        IssueBookService issueBookService = new IssueBookService();
+        step("services", () -> {
+            new HoldService();
+            new ReportService();
+        });
+        
+        step("catalog", () -> {
+            for (int branchId : BranchContext.getBranchIds()) {
+                CatalogStore store = CatalogStore.forBranch(branchId);
+                while (!store.isLoaded() && System.currentTimeMillis() < deadline) {
+                    pause();
+                }
+                if (!store.isLoaded()) {
+                    System.err.println("Warm-up: catalog store of branch " + branchId
+                            + " not loaded in time; its listings read the database");
+                }
+            }
+        });
+        step("keyFilters", () -> {
+            for (KeyFilter filter : KeyFilter.getAll()) {
+                while (!filter.isLoaded() && System.currentTimeMillis() < deadline) {
+                    pause();
+                }
+            }
+        });
+        
+        step("caches", () -> {
+            // Listings are cached per branch
+            for (int branchId : BranchContext.getBranchIds()) {
+                BranchContext.runAs(branchId, () -> {
+                    bookService.getAllBooks();
+                    bookService.getAvailableBooks();
+                    bookService.getFacets(10);
+                    issueBookService.getAllIssuedBooks();
+                    issueBookService.getOverdueBooks();
+                    // Active loans are read per branch, from the branch's own database when it has one
+                    issueBookService.preloadActiveLoans();
+                });
+            }
+        });
+        
+        step("daoPaths", () -> {
+            List<Book> books = bookService.getAllBooks();
+            if (!books.isEmpty()) {
+                bookService.getBookById(books.get(0).getBookId());
+                bookService.searchBooksByTitle(books.get(0).getTitle());
+            }
+            userService.usernameExists("warm-up");
+            userService.getUserById(1);
+        });
+        
+        step("hotPaths", () -> {
+            if (!CatalogStore.getInstance().isLoaded()) {
+                return;
+            }
+            BookQuery query = new BookQuery();
+            query.setAvailableOnly(true);
+            query.setSortBy(BookQuery.SORT_TITLE);
+            query.setLimit(20);
+            String[] prefixes = {"a", "the", "intro", "jav", "dat", "progr"};
+            for (int i = 0; i < iterations; i++) {
+                String prefix = prefixes[i % prefixes.length];
+                query.setTitle(i % 2 == 0 ? prefix : null);
+                bookService.queryBooks(query);
+                bookService.suggest(prefix, SuggestIndex.TYPE_TITLE, 8);
+                bookService.suggest(prefix, SuggestIndex.TYPE_AUTHOR, 8);
+            }
+        });
+        
+        step("serialization", () -> {
+            // Gson caches adapters per instance; this primes reflection metadata and the JIT
+            Gson gson = new Gson();
+            List<Book> books = bookService.getAllBooks();
+            List<IssuedBook> loans = issueBookService.getAllIssuedBooks();
+            List<Book> sample = books.subList(0, Math.min(books.size(), 50));
+            for (int i = 0; i < iterations; i++) {
+                gson.toJson(sample);
+                gson.toJson(loans.subList(0, Math.min(loans.size(), 50)));
+                gson.fromJson("{\"action\":\"issue\",\"bookId\":1,\"userId\":2}", Map.class);
+            }
+        });
+        
+        finishedAt = System.currentTimeMillis();
+        phase = "done";
+        ready = true;
+        System.out.println("Warm-up finished in " + (finishedAt - startedAt) + " ms " + stepMillis);
+    }
+    
+    /**
+     * Run one named step, recording how long it took
+     */
+    private void step(String name, Runnable action) {
+        phase = name;
+        long start = System.currentTimeMillis();
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            System.err.println("Warm-up step " + name + " failed: " + e.getMessage());
+        }
+        stepMillis.put(name, System.currentTimeMillis() - start);
+    }
+    
+    private void pause() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Warm-up interrupted");
+        }
+    }
+    
+    /**
+     * Check whether warm-up has finished and the node may take traffic
+     * 
+     * @return true once warm
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Step currently running, "done" when finished
+     * 
+     * @return Phase name
+     */
+    public String getPhase() {
+        return phase;
+    }
+    
+    public long getStartedAt() {
+        return startedAt;
+    }
+    
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+    
+    /**
+     * Duration of each step run so far
+     * 
+     * @return Step name to milliseconds, in run order
+     */
+    public Map<String, Long> getStepMillis() {
+        synchronized (stepMillis) {
+            return new LinkedHashMap<>(stepMillis);
+        }
+    }
+}
\ No newline at end of file
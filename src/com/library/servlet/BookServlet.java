@@ -1,6 +1,9 @@
 package com.library.servlet;
 
+import com.library.catalog.QueryPlanner;
 import com.library.model.Book;
+import com.library.model.BookCopy;
+import com.library.model.BookQuery;
 import com.library.service.BookService;
 import com.google.gson.Gson;
 
@@ -12,6 +15,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +66,88 @@ public class BookServlet extends HttpServlet {
             } else if ("available".equals(action)) {
                 List<Book> books = bookService.getAvailableBooks();
                 out.print(gson.toJson(books));
+            } else if ("facets".equals(action)) {
+                // Sidebar counts per category, author and publisher
+                String limitParam = request.getParameter("limit");
+                int limit = limitParam != null ? Integer.parseInt(limitParam) : 50;
+                out.print(gson.toJson(bookService.getFacets(limit)));
+            } else if ("filter".equals(action)) {
+                // Sidebar selection, e.g. ?action=filter&category=Science&available=true
+                String limitParam = request.getParameter("limit");
+                List<Book> books = bookService.filterBooks(
+                        emptyToNull(request.getParameter("category")),
+                        emptyToNull(request.getParameter("author")),
+                        emptyToNull(request.getParameter("publisher")),
+                        "true".equals(request.getParameter("available")),
+                        limitParam != null ? Integer.parseInt(limitParam) : Integer.MAX_VALUE);
+                out.print(gson.toJson(books));
+            } else if ("suggest".equals(action)) {
+                // Search box autocomplete, e.g. ?action=suggest&query=harry pot&type=title&limit=8
+                String limitParam = request.getParameter("limit");
+                int limit = limitParam != null ? Integer.parseInt(limitParam) : 8;
+                out.print(gson.toJson(bookService.suggest(request.getParameter("query"),
+                        emptyToNull(request.getParameter("type")), limit)));
+            } else if ("query".equals(action)) {
+                // Combined search, e.g. ?action=query&author=king&yearFrom=1980&available=true&sort=year&order=desc
+                BookQuery query = new BookQuery();
+                query.setTitle(request.getParameter("title"));
+                query.setAuthor(request.getParameter("author"));
+                query.setCategory(request.getParameter("category"));
+                String yearFrom = emptyToNull(request.getParameter("yearFrom"));
+                String yearTo = emptyToNull(request.getParameter("yearTo"));
+                query.setYearFrom(yearFrom != null ? Integer.valueOf(yearFrom) : null);
+                query.setYearTo(yearTo != null ? Integer.valueOf(yearTo) : null);
+                query.setAvailableOnly("true".equals(request.getParameter("available")));
+                query.setSortBy(emptyToNull(request.getParameter("sort")));
+                query.setDescending("desc".equals(request.getParameter("order")));
+                String limitParam = request.getParameter("limit");
+                if (limitParam != null) {
+                    query.setLimit(Integer.parseInt(limitParam));
+                }
+                
+                Map<String, Object> jsonResponse = new HashMap<>();
+                String result = bookService.validateQuery(query);
+                if ("SUCCESS".equals(result)) {
+                    QueryPlanner.Result found = bookService.queryBooks(query);
+                    jsonResponse.put("success", true);
+                    jsonResponse.put("books", found.getBooks());
+                    jsonResponse.put("count", found.getBooks().size());
+                    jsonResponse.put("plan", found.getPlan());
+                } else {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("message", result);
+                }
+                out.print(gson.toJson(jsonResponse));
+            } else if ("copies".equals(action)) {
+                // Per-copy inventory, e.g. ?action=copies&bookId=3; availability has one
+                // character per copy number, 1 when that copy is on the shelf
+                int bookId = Integer.parseInt(request.getParameter("bookId"));
+                List<BookCopy> copies = bookService.getCopies(bookId);
+                BitSet available = bookService.getCopyAvailability(bookId);
+                int highestCopyNo = copies.isEmpty() ? 0 : copies.get(copies.size() - 1).getCopyNo();
+                StringBuilder bitmap = new StringBuilder(highestCopyNo);
+                for (int i = 0; i < highestCopyNo; i++) {
+                    bitmap.append(available.get(i) ? '1' : '0');
+                }
+                
+                Map<String, Object> jsonResponse = new HashMap<>();
+                jsonResponse.put("success", true);
+                jsonResponse.put("copies", copies);
+                jsonResponse.put("availability", bitmap.toString());
+                jsonResponse.put("availableCount", available.cardinality());
+                out.print(gson.toJson(jsonResponse));
+            } else if ("copy".equals(action)) {
+                // Barcode scan at the desk, e.g. ?action=copy&barcode=LIB000003-002
+                BookCopy copy = bookService.getCopyByBarcode(request.getParameter("barcode"));
+                Map<String, Object> jsonResponse = new HashMap<>();
+                jsonResponse.put("success", copy != null);
+                if (copy != null) {
+                    jsonResponse.put("copy", copy);
+                    jsonResponse.put("book", bookService.getBookById(copy.getBookId()));
+                } else {
+                    jsonResponse.put("message", "No copy with this barcode");
+                }
+                out.print(gson.toJson(jsonResponse));
             } else {
                 // Get all books
                 List<Book> books = bookService.getAllBooks();
@@ -139,11 +225,15 @@ public class BookServlet extends HttpServlet {
         out.flush();
     }
     
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+    
     @Override
     protected void doOptions(HttpServletRequest request, HttpServletResponse response) {
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "POST, GET, OPTIONS, DELETE, PUT");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, X-Branch-Id");
         response.setStatus(HttpServletResponse.SC_OK);
     }
 }
\ No newline at end of file
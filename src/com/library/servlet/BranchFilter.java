@@ -0,0 +1,110 @@
+package com.library.servlet;
+
+import com.library.util.BranchContext;
+import com.google.gson.Gson;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Branch Filter - Binds every API request to one campus library
+ * Students always work in the branch they registered at. Admins may pick a branch
+ * with the X-Branch-Id header or a branch parameter and otherwise get their own;
+ * requests without a session get the header, parameter or default branch.
+ * Unknown branches are refused with 400 before any query runs.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class BranchFilter implements Filter {
+    
+    private Gson gson;
+    
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        gson = new Gson();
+        System.out.println("BranchFilter initialized");
+    }
+    
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        
+        if ("OPTIONS".equals(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        int branchId;
+        try {
+            branchId = resolveBranch(request);
+        } catch (NumberFormatException e) {
+            reject(response, "Invalid branch");
+            return;
+        }
+        if (!BranchContext.isKnown(branchId)) {
+            reject(response, "Unknown branch: " + branchId);
+            return;
+        }
+        
+        BranchContext.set(branchId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            BranchContext.clear();
+        }
+    }
+    
+    @Override
+    public void destroy() {
+    }
+    
+    /**
+     * Work out the branch of a request
+     * 
+     * @param request Request
+     * @return Branch ID
+     * @throws NumberFormatException if the requested branch is not a number
+     */
+    private int resolveBranch(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        Object sessionBranch = session != null ? session.getAttribute("branchId") : null;
+        if (sessionBranch instanceof Integer && !"ADMIN".equals(session.getAttribute("role"))) {
+            return (Integer) sessionBranch;
+        }
+        
+        String requested = request.getHeader("X-Branch-Id");
+        if (requested == null || requested.trim().isEmpty()) {
+            requested = request.getParameter("branch");
+        }
+        if (requested != null && !requested.trim().isEmpty()) {
+            return Integer.parseInt(requested.trim());
+        }
+        return sessionBranch instanceof Integer ? (Integer) sessionBranch : BranchContext.getDefaultBranch();
+    }
+    
+    private void reject(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        
+        Map<String, Object> jsonResponse = new HashMap<>();
+        jsonResponse.put("success", false);
+        jsonResponse.put("message", message);
+        response.getWriter().print(gson.toJson(jsonResponse));
+        response.getWriter().flush();
+    }
+}
\ No newline at end of file
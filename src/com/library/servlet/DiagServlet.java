@@ -0,0 +1,61 @@
+package com.library.servlet;
+
+import com.library.service.HealthService;
+import com.google.gson.Gson;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Diag Servlet - Runtime diagnostics for dashboards
+ * GET /api/diag
+ * Pool, breaker, cache, admission, catalog, background job and JVM figures,
+ * read from in-memory counters only, so it is safe to poll every second.
+ */
+@WebServlet("/api/diag")
+public class DiagServlet extends HttpServlet {
+    
+    private HealthService healthService;
+    private Gson gson;
+    
+    @Override
+    public void init() throws ServletException {
+        healthService = HealthService.getInstance();
+        gson = new Gson();
+        System.out.println("DiagServlet initialized");
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Cache-Control", "no-store");
+        
+        PrintWriter out = response.getWriter();
+        
+        try {
+            Map<String, Object> diag = healthService.getDiagnostics();
+            diag.put("sseClients", SseHub.getInstance().getClientCount());
+            out.print(gson.toJson(diag));
+            
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Error: " + e.getMessage());
+            out.print(gson.toJson(errorResponse));
+            e.printStackTrace();
+        }
+        
+        out.flush();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.library.servlet;
+
+import com.library.util.BranchContext;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Event Stream Servlet - Pushes live updates to dashboards over Server-Sent Events
+ * GET /api/events?userId=..&role=ADMIN|STUDENT
+ * Events: availability, loan, return, notification, resync; books and loans of the request's branch only
+ */
+@WebServlet(urlPatterns = "/api/events", asyncSupported = true)
+public class EventStreamServlet extends HttpServlet {
+    
+    // Streams are recycled after this long; EventSource reconnects automatically
+    private static final long STREAM_TIMEOUT_MS = 30 * 60 * 1000;
+    
+    @Override
+    public void init() throws ServletException {
+        SseHub.getInstance();
+        System.out.println("EventStreamServlet initialized");
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        
+        int userId = 0;
+        String userIdParam = request.getParameter("userId");
+        if (userIdParam != null) {
+            try {
+                userId = Integer.parseInt(userIdParam);
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid userId");
+                return;
+            }
+        }
+        boolean admin = "ADMIN".equals(request.getParameter("role"));
+        
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(STREAM_TIMEOUT_MS);
+        SseHub.getInstance().register(asyncContext, userId, admin, BranchContext.current());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,307 @@
+package com.library.servlet;
+
+import com.library.model.Book;
+import com.library.model.IssuedBook;
+import com.library.service.BookService;
+import com.library.service.IssueBookService;
+import com.library.util.LibraryConfig;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export Servlet - Streams full table dumps for auditors
+ * GET /api/export?table=books|loans&format=csv|ndjson[&gzip=true]
+ * Rows go from a streaming result set straight to the response, so memory use
+ * does not grow with the table. Each export holds a database connection until
+ * it finishes, so only export.max.concurrent run at once.
+ */
+@WebServlet("/api/export")
+public class ExportServlet extends HttpServlet {
+    
+    private static final int MAX_CONCURRENT = 2;      // Exports running at once
+    private static final int BUFFER_SIZE = 64 * 1024; // Bytes buffered before writing to the client
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private static final String[] BOOK_COLUMNS = {
+        "book_id", "title", "author", "isbn", "publisher", "publication_year", "category",
+        "total_copies", "available_copies", "created_at", "updated_at"
+    };
+    private static final String[] LOAN_COLUMNS = {
+        "issue_id", "book_id", "book_title", "book_author", "user_id", "user_name", "issue_date",
+        "due_date", "return_date", "status", "fine_amount", "created_at"
+    };
+    
+    private static final AtomicInteger RUNNING = new AtomicInteger();
+    
+    private BookService bookService;
+    private IssueBookService issueBookService;
+    private Gson gson;
+    
+    @Override
+    public void init() throws ServletException {
+        bookService = new BookService();
+        issueBookService = new IssueBookService();
+        gson = new Gson();
+        System.out.println("ExportServlet initialized");
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        
+        String table = request.getParameter("table");
+        String format = request.getParameter("format") != null ? request.getParameter("format") : "csv";
+        boolean gzip = "true".equalsIgnoreCase(request.getParameter("gzip"));
+        
+        if (!"books".equals(table) && !"loans".equals(table)) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "table must be books or loans");
+            return;
+        }
+        if (!"csv".equals(format) && !"ndjson".equals(format)) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "format must be csv or ndjson");
+            return;
+        }
+        
+        int maxConcurrent = LibraryConfig.current().getInt("export.max.concurrent", MAX_CONCURRENT);
+        if (RUNNING.incrementAndGet() > maxConcurrent) {
+            RUNNING.decrementAndGet();
+            response.setHeader("Retry-After", "30");
+            sendError(response, 429, "Too many exports running. Please try again shortly");
+            return;
+        }
+        
+        try {
+            export(response, table, format, gzip);
+        } finally {
+            RUNNING.decrementAndGet();
+        }
+    }
+    
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, X-Branch-Id");
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+    
+    /**
+     * Stream one table to the response
+     * 
+     * @param response Response
+     * @param table books or loans
+     * @param format csv or ndjson
+     * @param gzip true to compress the download
+     * @throws ServletException if the database failed after rows were sent
+     * @throws IOException if writing fails
+     */
+    private void export(HttpServletResponse response, String table, String format, boolean gzip)
+            throws ServletException, IOException {
+        
+        String fileName = table + "-" + LocalDate.now() + "." + format + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : "csv".equals(format) ? "text/csv" : "application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        
+        long start = System.currentTimeMillis();
+        OutputStream stream = response.getOutputStream();
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(stream, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(compressed != null ? compressed : stream,
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+        String[] columns = "books".equals(table) ? BOOK_COLUMNS : LOAN_COLUMNS;
+        RowFormat rows = "csv".equals(format) ? new CsvFormat(writer, columns) : new NdjsonFormat(writer, columns);
+        
+        boolean complete;
+        try {
+            rows.begin();
+            if ("books".equals(table)) {
+                complete = bookService.exportBooks(book -> rows.write(bookValues(book)));
+            } else {
+                complete = issueBookService.exportIssueHistory(loan -> rows.write(loanValues(loan)));
+            }
+        } catch (UncheckedIOException e) {
+            System.out.println("Export of " + table + " abandoned by the client after " + rows.count + " rows");
+            return;
+        }
+        
+        if (!complete) {
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setHeader("Access-Control-Allow-Origin", "*");
+                sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Export failed. Please try again");
+                return;
+            }
+            // Rows are already on the wire; end without the closing bytes so the download shows as broken
+            throw new ServletException("Export of " + table + " failed after " + rows.count + " rows");
+        }
+        
+        writer.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        stream.flush();
+        System.out.println("Export of " + table + " - " + rows.count + " rows as " + format
+                + (gzip ? ".gz" : "") + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+    
+    private Object[] bookValues(Book book) {
+        return new Object[] {
+            book.getBookId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getPublisher(),
+            book.getPublicationYear(), book.getCategory(), book.getTotalCopies(), book.getAvailableCopies(),
+            book.getCreatedAt(), book.getUpdatedAt()
+        };
+    }
+    
+    private Object[] loanValues(IssuedBook loan) {
+        return new Object[] {
+            loan.getIssueId(), loan.getBookId(), loan.getBookTitle(), loan.getBookAuthor(), loan.getUserId(),
+            loan.getUserName(), loan.getIssueDate(), loan.getDueDate(), loan.getReturnDate(), loan.getStatus(),
+            loan.getFineAmount(), loan.getCreatedAt()
+        };
+    }
+    
+    private void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        
+        Map<String, Object> jsonResponse = new HashMap<>();
+        jsonResponse.put("success", false);
+        jsonResponse.put("message", message);
+        response.getWriter().print(gson.toJson(jsonResponse));
+        response.getWriter().flush();
+    }
+    
+    /**
+     * Text form of a column value: dates as yyyy-MM-dd, timestamps to the second
+     * 
+     * @param value Column value
+     * @return Text, or null for SQL NULL
+     */
+    private static String text(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().format(TIMESTAMP_FORMAT);
+        }
+        return value != null ? value.toString() : null;
+    }
+    
+    /**
+     * Output format for a stream of rows
+     * Writes go through the response; an IOException (usually the client
+     * disconnecting) is rethrown unchecked so it can leave the DAO callback.
+     */
+    private abstract static class RowFormat {
+        final Writer writer;
+        final String[] columns;
+        long count;
+        
+        RowFormat(Writer writer, String[] columns) {
+            this.writer = writer;
+            this.columns = columns;
+        }
+        
+        void begin() {
+        }
+        
+        void write(Object[] values) {
+            try {
+                writeRow(values);
+                count++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        abstract void writeRow(Object[] values) throws IOException;
+    }
+    
+    /**
+     * RFC 4180 CSV with a header row; NULL is an empty field
+     */
+    private static class CsvFormat extends RowFormat {
+        
+        CsvFormat(Writer writer, String[] columns) {
+            super(writer, columns);
+        }
+        
+        @Override
+        void begin() {
+            write(columns);
+            count = 0;
+        }
+        
+        @Override
+        void writeRow(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String field = text(values[i]);
+                if (field == null) {
+                    continue;
+                }
+                if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                        || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                    writer.write('"');
+                    writer.write(field.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(field);
+                }
+            }
+            writer.write("\r\n");
+        }
+    }
+    
+    /**
+     * One JSON object per line, keyed by column name; numbers stay numbers
+     */
+    private static class NdjsonFormat extends RowFormat {
+        private final JsonWriter json;
+        
+        NdjsonFormat(Writer writer, String[] columns) {
+            super(writer, columns);
+            this.json = new JsonWriter(writer);
+            // Lenient so one writer can emit a top-level value per line
+            this.json.setLenient(true);
+            this.json.setSerializeNulls(true);
+        }
+        
+        @Override
+        void writeRow(Object[] values) throws IOException {
+            json.beginObject();
+            for (int i = 0; i < values.length; i++) {
+                json.name(columns[i]);
+                if (values[i] instanceof Number) {
+                    json.value((Number) values[i]);
+                } else {
+                    json.value(text(values[i]));
+                }
+            }
+            json.endObject();
+            writer.write('\n');
+        }
+    }
+}
\ No newline at end of file
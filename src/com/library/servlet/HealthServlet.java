@@ -0,0 +1,47 @@
+package com.library.servlet;
+
+import com.library.service.HealthService;
+import com.google.gson.Gson;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Health Servlet - Liveness probe
+ * GET /api/health
+ * Always 200 while the application is deployed; does not touch the database,
+ * so a database outage takes the node out of rotation (/api/ready) without
+ * getting it restarted.
+ */
+@WebServlet("/api/health")
+public class HealthServlet extends HttpServlet {
+    
+    private HealthService healthService;
+    private Gson gson;
+    
+    @Override
+    public void init() throws ServletException {
+        healthService = HealthService.getInstance();
+        gson = new Gson();
+        System.out.println("HealthServlet initialized");
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Cache-Control", "no-store");
+        
+        PrintWriter out = response.getWriter();
+        out.print(gson.toJson(healthService.getLiveness()));
+        out.flush();
+    }
+}
\ No newline at end of file
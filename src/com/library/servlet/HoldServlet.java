@@ -0,0 +1,140 @@
+package com.library.servlet;
+
+import com.library.model.Hold;
+import com.library.service.HoldService;
+import com.google.gson.Gson;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hold Servlet - Handles reservations for unavailable books
+ */
+@WebServlet("/api/holds")
+public class HoldServlet extends HttpServlet {
+    
+    private HoldService holdService;
+    private Gson gson;
+    
+    @Override
+    public void init() throws ServletException {
+        holdService = new HoldService();
+        gson = new Gson();
+        System.out.println("HoldServlet initialized");
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        
+        PrintWriter out = response.getWriter();
+        
+        try {
+            String action = request.getParameter("action");
+            String userIdParam = request.getParameter("userId");
+            String bookIdParam = request.getParameter("bookId");
+            
+            if ("queue".equals(action) && bookIdParam != null) {
+                Map<String, Object> queue = new HashMap<>();
+                queue.put("bookId", Integer.parseInt(bookIdParam));
+                queue.put("waiting", holdService.getQueueLength(Integer.parseInt(bookIdParam)));
+                out.print(gson.toJson(queue));
+            } else if ("notifications".equals(action) && userIdParam != null) {
+                out.print(gson.toJson(holdService.getNotifications(Integer.parseInt(userIdParam))));
+            } else if (userIdParam != null) {
+                List<Hold> holds = holdService.getWaitingHoldsByUserId(Integer.parseInt(userIdParam));
+                out.print(gson.toJson(holds));
+            } else {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "userId or bookId is required");
+                out.print(gson.toJson(errorResponse));
+            }
+            
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Error: " + e.getMessage());
+            out.print(gson.toJson(errorResponse));
+            e.printStackTrace();
+        }
+        
+        out.flush();
+    }
+    
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        
+        PrintWriter out = response.getWriter();
+        Map<String, Object> jsonResponse = new HashMap<>();
+        
+        try {
+            // Read JSON from request body
+            StringBuilder sb = new StringBuilder();
+            BufferedReader reader = request.getReader();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line);
+            }
+            
+            // Parse JSON
+            @SuppressWarnings("unchecked")
+            Map<String, Object> holdData = gson.fromJson(sb.toString(), Map.class);
+            
+            String action = (String) holdData.get("action");
+            int userId = ((Double) holdData.get("userId")).intValue();
+            
+            String result;
+            if ("cancel".equals(action)) {
+                int holdId = ((Double) holdData.get("holdId")).intValue();
+                result = holdService.cancelHold(holdId, userId);
+            } else {
+                int bookId = ((Double) holdData.get("bookId")).intValue();
+                result = holdService.placeHold(bookId, userId);
+            }
+            
+            if ("SUCCESS".equals(result)) {
+                jsonResponse.put("success", true);
+                jsonResponse.put("message", "cancel".equals(action) ? "Hold cancelled" : "Hold placed successfully");
+                System.out.println("Hold " + ("cancel".equals(action) ? "cancelled" : "placed") + " - UserID: " + userId);
+            } else {
+                jsonResponse.put("success", false);
+                jsonResponse.put("message", result);
+            }
+            
+        } catch (Exception e) {
+            jsonResponse.put("success", false);
+            jsonResponse.put("message", "Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        out.print(gson.toJson(jsonResponse));
+        out.flush();
+    }
+    
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "POST, GET, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, X-Branch-Id");
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+}
\ No newline at end of file
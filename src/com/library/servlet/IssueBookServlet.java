@@ -2,6 +2,8 @@ package com.library.servlet;
 
 import com.library.model.IssuedBook;
 import com.library.service.IssueBookService;
+import com.library.trace.Span;
+import com.library.trace.Tracer;
 import com.google.gson.Gson;
 
 import javax.servlet.ServletException;
@@ -12,6 +14,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -60,7 +63,10 @@ public class IssueBookServlet extends HttpServlet {
                 issuedBooks = issueBookService.getAllIssuedBooks();
             }
             
-            out.print(gson.toJson(issuedBooks));
+            try (Span span = Tracer.getInstance().startSpan("json.write")) {
+                span.setAttribute("rows", issuedBooks.size());
+                out.print(gson.toJson(issuedBooks));
+            }
             System.out.println("Issued books fetched successfully");
             
         } catch (Exception e) {
@@ -84,21 +90,29 @@ public class IssueBookServlet extends HttpServlet {
         
         PrintWriter out = response.getWriter();
         Map<String, Object> jsonResponse = new HashMap<>();
+        Tracer tracer = Tracer.getInstance();
+        Span actionSpan = null;
         
         try {
-            // Read JSON from request body
-            StringBuilder sb = new StringBuilder();
-            BufferedReader reader = request.getReader();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
+            Map<String, Object> issueData;
+            try (Span parseSpan = tracer.startSpan("json.parse")) {
+                // Read JSON from request body
+                StringBuilder sb = new StringBuilder();
+                BufferedReader reader = request.getReader();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    sb.append(line);
+                }
+                parseSpan.setAttribute("bytes", sb.length());
+                
+                // Parse JSON
+                @SuppressWarnings("unchecked")
+                Map<String, Object> parsed = gson.fromJson(sb.toString(), Map.class);
+                issueData = parsed;
             }
             
-            // Parse JSON
-            @SuppressWarnings("unchecked")
-            Map<String, Object> issueData = gson.fromJson(sb.toString(), Map.class);
-            
             String action = (String) issueData.get("action");
+            actionSpan = tracer.startSpan("IssueBookServlet." + action);
             
             if ("issue".equals(action)) {
                 int bookId = ((Double) issueData.get("bookId")).intValue();
@@ -129,12 +143,103 @@ public class IssueBookServlet extends HttpServlet {
                     jsonResponse.put("success", false);
                     jsonResponse.put("message", result);
                 }
+                
+            } else if ("bulkIssue".equals(action)) {
+                // Scanner batch: items = [{bookId, userId}, ...]
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> items = (List<Map<String, Object>>) issueData.get("items");
+                
+                if (items == null || items.isEmpty()) {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("message", "No items to issue");
+                } else if (items.size() > issueBookService.getBulkMaxItems()) {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("message", "At most " + issueBookService.getBulkMaxItems() + " items per request");
+                } else {
+                    List<IssuedBook> requests = new ArrayList<>();
+                    for (Map<String, Object> item : items) {
+                        IssuedBook issuedBook = new IssuedBook();
+                        issuedBook.setBookId(((Double) item.get("bookId")).intValue());
+                        issuedBook.setUserId(((Double) item.get("userId")).intValue());
+                        requests.add(issuedBook);
+                    }
+                    
+                    List<String> results = issueBookService.issueBooks(requests);
+                    
+                    List<Map<String, Object>> itemResults = new ArrayList<>();
+                    int issuedCount = 0;
+                    for (int i = 0; i < requests.size(); i++) {
+                        boolean itemSuccess = "SUCCESS".equals(results.get(i));
+                        Map<String, Object> itemResult = new HashMap<>();
+                        itemResult.put("bookId", requests.get(i).getBookId());
+                        itemResult.put("userId", requests.get(i).getUserId());
+                        itemResult.put("success", itemSuccess);
+                        itemResult.put("message", itemSuccess ? "Book issued successfully" : results.get(i));
+                        itemResults.add(itemResult);
+                        if (itemSuccess) {
+                            issuedCount++;
+                        }
+                    }
+                    
+                    jsonResponse.put("success", true);
+                    jsonResponse.put("message", issuedCount + " of " + requests.size() + " books issued");
+                    jsonResponse.put("results", itemResults);
+                    System.out.println("Bulk issue - " + issuedCount + "/" + requests.size() + " issued");
+                }
+                
+            } else if ("bulkReturn".equals(action)) {
+                // Scanner batch: issueIds = [id, ...]
+                @SuppressWarnings("unchecked")
+                List<Double> ids = (List<Double>) issueData.get("issueIds");
+                
+                if (ids == null || ids.isEmpty()) {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("message", "No items to return");
+                } else if (ids.size() > issueBookService.getBulkMaxItems()) {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("message", "At most " + issueBookService.getBulkMaxItems() + " items per request");
+                } else {
+                    List<Integer> issueIds = new ArrayList<>();
+                    for (Double id : ids) {
+                        issueIds.add(id.intValue());
+                    }
+                    
+                    List<String> results = issueBookService.returnBooks(issueIds);
+                    
+                    List<Map<String, Object>> itemResults = new ArrayList<>();
+                    int returnedCount = 0;
+                    for (int i = 0; i < issueIds.size(); i++) {
+                        String result = results.get(i);
+                        boolean itemSuccess = result.startsWith("SUCCESS");
+                        Map<String, Object> itemResult = new HashMap<>();
+                        itemResult.put("issueId", issueIds.get(i));
+                        itemResult.put("success", itemSuccess);
+                        itemResult.put("message", itemSuccess ? result.split("\\|")[1] : result);
+                        itemResults.add(itemResult);
+                        if (itemSuccess) {
+                            returnedCount++;
+                        }
+                    }
+                    
+                    jsonResponse.put("success", true);
+                    jsonResponse.put("message", returnedCount + " of " + issueIds.size() + " books returned");
+                    jsonResponse.put("results", itemResults);
+                    System.out.println("Bulk return - " + returnedCount + "/" + issueIds.size() + " returned");
+                }
             }
             
         } catch (Exception e) {
+            if (actionSpan != null) {
+                actionSpan.recordException(e);
+            }
             jsonResponse.put("success", false);
             jsonResponse.put("message", "Error: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            if (actionSpan != null) {
+                actionSpan.setAttribute("success", jsonResponse.get("success"));
+                actionSpan.end();
+            }
         }
         
         out.print(gson.toJson(jsonResponse));
@@ -145,7 +250,7 @@ public class IssueBookServlet extends HttpServlet {
     protected void doOptions(HttpServletRequest request, HttpServletResponse response) {
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "POST, GET, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, X-Branch-Id");
         response.setStatus(HttpServletResponse.SC_OK);
     }
 }
\ No newline at end of file
@@ -77,6 +77,7 @@ public class LoginServlet extends HttpServlet {
                 session.setAttribute("user", user);
                 session.setAttribute("userId", user.getUserId());
                 session.setAttribute("role", user.getRole());
+                session.setAttribute("branchId", user.getBranchId());
                 
                 // Success response
                 jsonResponse.put("success", true);
@@ -86,6 +87,7 @@ public class LoginServlet extends HttpServlet {
                 jsonResponse.put("fullName", user.getFullName());
                 jsonResponse.put("role", user.getRole());
                 jsonResponse.put("email", user.getEmail());
+                jsonResponse.put("branchId", user.getBranchId());
                 
                 System.out.println("User logged in: " + username);
             } else {
@@ -107,7 +109,7 @@ public class LoginServlet extends HttpServlet {
     protected void doOptions(HttpServletRequest request, HttpServletResponse response) {
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "POST, GET, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, X-Branch-Id");
         response.setStatus(HttpServletResponse.SC_OK);
     }
 }
\ No newline at end of file
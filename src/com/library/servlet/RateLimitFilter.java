@@ -0,0 +1,267 @@
+package com.library.servlet;
+
+import com.library.util.LibraryConfig;
+import com.library.util.RateLimiter;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rate Limit Filter - Admission control for every API servlet
+ * Each request takes a token from its IP bucket and, once logged in, its session
+ * bucket for the endpoint/action rule, then a slot under the global in-flight cap.
+ * Anything over the limits is refused at once with 429 and Retry-After, so a looping
+ * client cannot queue up behind the connection pool and starve everyone else.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class RateLimitFilter implements Filter {
+    
+    private static final int MAX_BODY_BYTES = 1024 * 1024; // Larger or unsized bodies are limited by endpoint only
+    
+    private RateLimiter limiter;
+    private Gson gson;
+    
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        limiter = RateLimiter.getInstance();
+        gson = new Gson();
+        System.out.println("RateLimitFilter initialized");
+    }
+    
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        
+        if ("OPTIONS".equals(request.getMethod()) || isProbe(request)
+                || !LibraryConfig.current().getBoolean("ratelimit.enabled", true)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        // Small JSON bodies carry the action; buffer them so the servlet can still read them.
+        // Anything else (uploads, streamed imports) passes through untouched
+        if (isSmallJsonPost(request)) {
+            request = new CachedBodyRequest(request);
+        }
+        String rule = ruleFor(request);
+        
+        String ipKey = "ip:" + clientAddress(request);
+        long waitMs = limiter.tryAcquire(ipKey, rule);
+        HttpSession session = request.getSession(false);
+        if (waitMs == 0 && session != null) {
+            waitMs = limiter.tryAcquire("session:" + session.getId(), rule);
+            if (waitMs > 0) {
+                limiter.refund(ipKey, rule);
+            }
+        }
+        if (waitMs > 0) {
+            reject(response, waitMs, "Too many requests. Please slow down");
+            return;
+        }
+        
+        if (!limiter.tryEnter()) {
+            reject(response, 1000, "Server is busy. Please try again shortly");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limiter.exit();
+        }
+    }
+    
+    @Override
+    public void destroy() {
+    }
+    
+    /**
+     * Load balancer probes must answer even when the node is saturated;
+     * a 429 from them would read as a dead node
+     * 
+     * @param request Request
+     * @return true for /api/health and /api/ready
+     */
+    private boolean isProbe(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return "/api/health".equals(path) || "/api/ready".equals(path);
+    }
+    
+    /**
+     * Whether a request is a POST with a declared JSON body small enough to buffer
+     * 
+     * @param request Request
+     * @return true if the body may be read ahead of the servlet
+     */
+    private boolean isSmallJsonPost(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return false;
+        }
+        long length = request.getContentLengthLong();
+        String contentType = request.getContentType();
+        return length > 0 && length <= MAX_BODY_BYTES
+                && contentType != null && contentType.toLowerCase().contains("json");
+    }
+    
+    /**
+     * Work out the rule name: endpoint, plus the action when one is given
+     * 
+     * @param request Request
+     * @return Rule name such as "books" or "books.search"
+     */
+    private String ruleFor(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String endpoint = path.startsWith("/api/") ? path.substring(5) : path;
+        int slash = endpoint.indexOf('/');
+        if (slash >= 0) {
+            endpoint = endpoint.substring(0, slash);
+        }
+        
+        String action = request.getParameter("action");
+        if (action == null && request instanceof CachedBodyRequest) {
+            action = ((CachedBodyRequest) request).getBodyAction();
+        }
+        return action == null || action.isEmpty() ? endpoint : endpoint + "." + action;
+    }
+    
+    /**
+     * Client address, taking X-Forwarded-For only when ratelimit.trust.forwarded is set
+     * 
+     * @param request Request
+     * @return Client IP
+     */
+    private String clientAddress(HttpServletRequest request) {
+        if (LibraryConfig.current().getBoolean("ratelimit.trust.forwarded", false)) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isEmpty()) {
+                int comma = forwarded.indexOf(',');
+                return (comma >= 0 ? forwarded.substring(0, comma) : forwarded).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+    
+    /**
+     * Send 429 with a Retry-After header in whole seconds
+     * 
+     * @param response Response
+     * @param waitMs Suggested wait in milliseconds
+     * @param message Message for the client
+     * @throws IOException if writing fails
+     */
+    private void reject(HttpServletResponse response, long waitMs, String message) throws IOException {
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, (waitMs + 999) / 1000)));
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        
+        Map<String, Object> jsonResponse = new HashMap<>();
+        jsonResponse.put("success", false);
+        jsonResponse.put("message", message);
+        response.getWriter().print(gson.toJson(jsonResponse));
+        response.getWriter().flush();
+    }
+    
+    /**
+     * Request whose body has been read once and can be read again by the servlet
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+        
+        private CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) request.getContentLengthLong());
+            try (InputStream in = request.getInputStream()) {
+                byte[] chunk = new byte[8192];
+                int read;
+                while (buffer.size() <= MAX_BODY_BYTES && (read = in.read(chunk)) != -1) {
+                    buffer.write(chunk, 0, read);
+                }
+            }
+            this.body = buffer.toByteArray();
+        }
+        
+        /**
+         * Get the "action" field of a JSON body
+         * 
+         * @return Action, or null if absent or the body is not a JSON object
+         */
+        private String getBodyAction() {
+            if (body.length == 0) {
+                return null;
+            }
+            try {
+                JsonObject json = JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+                return json.has("action") && json.get("action").isJsonPrimitive()
+                        ? json.get("action").getAsString() : null;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+                
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+                
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+                
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+                
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("Body is already buffered");
+                }
+            };
+        }
+        
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+}
\ No newline at end of file
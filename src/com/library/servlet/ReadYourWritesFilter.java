@@ -0,0 +1,108 @@
+package com.library.servlet;
+
+import com.library.util.DBConnection;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Read-Your-Writes Filter - Carries a client's last write between nodes
+ * A request that writes gets the write time back in a short-lived cookie; the
+ * next request, on whichever node the load balancer picks, hands it to
+ * {@link DBConnection} so its reads stay on the primary until the replica has
+ * caught up with that write.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class ReadYourWritesFilter implements Filter {
+    
+    private static final String COOKIE_NAME = "LIB_LAST_WRITE";
+    // Well past any replica lag the router still accepts (db.replica.max.lag.ms)
+    private static final int COOKIE_MAX_AGE_SECONDS = 60;
+    
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        System.out.println("ReadYourWritesFilter initialized");
+    }
+    
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        
+        // Latest write of this request, and the one the client was last told of
+        long[] written = new long[] {0, 0};
+        DBConnection.bindClient(readLastWrite(request), time -> {
+            written[0] = time;
+            if (written[1] == 0) {
+                written[1] = sendLastWrite(request, response, time);
+            }
+        });
+        try {
+            chain.doFilter(request, response);
+            // A bulk request writes many times; report the last one if headers are still open
+            if (written[0] > written[1]) {
+                sendLastWrite(request, response, written[0]);
+            }
+        } finally {
+            DBConnection.unbindClient();
+        }
+    }
+    
+    @Override
+    public void destroy() {
+    }
+    
+    /**
+     * Read the client's last write time from its cookie
+     * 
+     * @param request Request
+     * @return Epoch milliseconds, 0 if none or unreadable
+     */
+    private long readLastWrite(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Hand a write time back to the client
+     * 
+     * @param request Request
+     * @param response Response
+     * @param time Epoch milliseconds of the write
+     * @return Time sent, or 0 if the response was already committed
+     */
+    private long sendLastWrite(HttpServletRequest request, HttpServletResponse response, long time) {
+        if (response.isCommitted()) {
+            return 0;
+        }
+        Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(time));
+        cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+        cookie.setMaxAge(COOKIE_MAX_AGE_SECONDS);
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+        return time;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.library.servlet;
+
+import com.library.service.HealthService;
+import com.google.gson.Gson;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * Ready Servlet - Readiness probe for the load balancer
+ * GET /api/ready
+ * 200 once the node has warmed up, reaches the database and has pool
+ * connections to spare; 503 with the failing checks otherwise.
+ */
+@WebServlet("/api/ready")
+public class ReadyServlet extends HttpServlet {
+    
+    private HealthService healthService;
+    private Gson gson;
+    
+    @Override
+    public void init() throws ServletException {
+        healthService = HealthService.getInstance();
+        gson = new Gson();
+        System.out.println("ReadyServlet initialized");
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Cache-Control", "no-store");
+        
+        Map<String, Object> readiness = healthService.getReadiness();
+        boolean ready = Boolean.TRUE.equals(readiness.get("ready"));
+        
+        response.setStatus(ready ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        PrintWriter out = response.getWriter();
+        out.print(gson.toJson(readiness));
+        out.flush();
+    }
+}
\ No newline at end of file
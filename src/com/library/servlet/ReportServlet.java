@@ -0,0 +1,97 @@
+package com.library.servlet;
+
+import com.library.service.ReportService;
+import com.google.gson.Gson;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Report Servlet - Serves circulation statistics
+ * GET /api/reports?type=summary|mostBorrowed|categories|loanDuration|fines|peakHours
+ */
+@WebServlet("/api/reports")
+public class ReportServlet extends HttpServlet {
+    
+    private ReportService reportService;
+    private Gson gson;
+    
+    @Override
+    public void init() throws ServletException {
+        reportService = new ReportService();
+        gson = new Gson();
+        System.out.println("ReportServlet initialized");
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        
+        PrintWriter out = response.getWriter();
+        
+        try {
+            String type = request.getParameter("type");
+            
+            Object report;
+            if ("mostBorrowed".equals(type)) {
+                report = reportService.getMostBorrowed(getIntParameter(request, "limit", 10));
+            } else if ("categories".equals(type)) {
+                report = reportService.getCategoryUtilization();
+            } else if ("loanDuration".equals(type)) {
+                Map<String, Object> duration = new HashMap<>();
+                duration.put("averageLoanDays", reportService.getAverageLoanDays());
+                report = duration;
+            } else if ("fines".equals(type)) {
+                String period = request.getParameter("period");
+                report = reportService.getFineTotals(period != null ? period : "day",
+                                                     getIntParameter(request, "periods", 30));
+            } else if ("peakHours".equals(type)) {
+                report = reportService.getPeakHours();
+            } else {
+                report = reportService.getSummary();
+            }
+            
+            out.print(gson.toJson(report));
+            
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Error: " + e.getMessage());
+            out.print(gson.toJson(errorResponse));
+            e.printStackTrace();
+        }
+        
+        out.flush();
+    }
+    
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, X-Branch-Id");
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+    
+    private int getIntParameter(HttpServletRequest request, String name, int defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,334 @@
+package com.library.servlet;
+
+import com.library.model.User;
+import com.library.service.UserService;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Roster Import Servlet - Registers a whole student roster in one request
+ * POST /api/roster with a CSV body (header row: username,password,fullName,email[,role])
+ * or a JSON array of {username, password, fullName, email, role} objects.
+ * The body is parsed row by row as it is read; role defaults to STUDENT.
+ * Responds with counts and one error entry per rejected row.
+ */
+@WebServlet("/api/roster")
+public class RosterImportServlet extends HttpServlet {
+    
+    private UserService userService;
+    private Gson gson;
+    
+    /**
+     * Parse failures and rows collected so far
+     */
+    private static class Roster {
+        final List<User> users = new ArrayList<>();
+        final List<Integer> rowNumbers = new ArrayList<>();   // roster row of each user
+        final List<Map<String, Object>> errors = new ArrayList<>();
+        int rows;
+        boolean truncated;
+        
+        void addError(int row, String username, String email, String message) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("row", row);
+            error.put("username", username);
+            error.put("email", email);
+            error.put("message", message);
+            errors.add(error);
+        }
+    }
+    
+    @Override
+    public void init() throws ServletException {
+        userService = new UserService();
+        gson = new Gson();
+        System.out.println("RosterImportServlet initialized");
+    }
+    
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        
+        PrintWriter out = response.getWriter();
+        Map<String, Object> jsonResponse = new HashMap<>();
+        
+        try {
+            long start = System.currentTimeMillis();
+            int maxRows = userService.getImportMaxRows();
+            Roster roster = new Roster();
+            BufferedReader reader = request.getReader();
+            if (isJson(request)) {
+                readJson(reader, maxRows, roster);
+            } else {
+                readCsv(reader, maxRows, roster);
+            }
+            
+            if (roster.truncated) {
+                jsonResponse.put("success", false);
+                jsonResponse.put("message", "At most " + maxRows + " rows per import");
+            } else if (roster.rows == 0) {
+                jsonResponse.put("success", false);
+                jsonResponse.put("message", "No rows to import");
+            } else {
+                List<String> results = userService.importUsers(roster.users);
+                
+                int importedCount = 0;
+                for (int i = 0; i < results.size(); i++) {
+                    User user = roster.users.get(i);
+                    if ("SUCCESS".equals(results.get(i))) {
+                        importedCount++;
+                    } else {
+                        roster.addError(roster.rowNumbers.get(i), user.getUsername(), user.getEmail(), results.get(i));
+                    }
+                }
+                roster.errors.sort((a, b) -> Integer.compare((Integer) a.get("row"), (Integer) b.get("row")));
+                
+                long elapsed = System.currentTimeMillis() - start;
+                jsonResponse.put("success", true);
+                jsonResponse.put("message", importedCount + " of " + roster.rows + " users imported");
+                jsonResponse.put("total", roster.rows);
+                jsonResponse.put("imported", importedCount);
+                jsonResponse.put("failed", roster.rows - importedCount);
+                jsonResponse.put("errors", roster.errors);
+                jsonResponse.put("elapsedMs", elapsed);
+                System.out.println("Roster import - " + importedCount + "/" + roster.rows + " imported in " + elapsed + " ms");
+            }
+            
+        } catch (Exception e) {
+            jsonResponse.put("success", false);
+            jsonResponse.put("message", "Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        out.print(gson.toJson(jsonResponse));
+        out.flush();
+    }
+    
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "POST, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, X-Branch-Id");
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+    
+    /**
+     * Decide the body format from ?format=csv|json, else from the content type
+     * 
+     * @param request Request
+     * @return true for JSON, false for CSV
+     */
+    private boolean isJson(HttpServletRequest request) {
+        String format = request.getParameter("format");
+        if (format != null) {
+            return "json".equalsIgnoreCase(format);
+        }
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json");
+    }
+    
+    /**
+     * Read a JSON array of user objects one element at a time
+     * 
+     * @param reader Request body
+     * @param maxRows Maximum rows accepted
+     * @param roster Roster to fill
+     * @throws IOException if the body cannot be read or is not a JSON array
+     */
+    private void readJson(Reader reader, int maxRows, Roster roster) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            throw new IOException("Expected a JSON array of users");
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            if (++roster.rows > maxRows) {
+                roster.truncated = true;
+                return;
+            }
+            JsonElement element;
+            try {
+                element = JsonParser.parseReader(json);
+            } catch (JsonParseException e) {
+                throw new IOException("Malformed JSON at row " + roster.rows);
+            }
+            if (!element.isJsonObject()) {
+                roster.addError(roster.rows, null, null, "Row is not an object");
+                continue;
+            }
+            JsonObject object = element.getAsJsonObject();
+            addUser(roster, field(object, "username"), field(object, "password"),
+                    field(object, "fullName") != null ? field(object, "fullName") : field(object, "full_name"),
+                    field(object, "email"), field(object, "role"));
+        }
+        json.endArray();
+    }
+    
+    private String field(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+    
+    /**
+     * Read CSV records one at a time; the first record names the columns
+     * 
+     * @param reader Request body
+     * @param maxRows Maximum rows accepted
+     * @param roster Roster to fill
+     * @throws IOException if the body cannot be read or the header is incomplete
+     */
+    private void readCsv(Reader reader, int maxRows, Roster roster) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            // "Full Name", "full_name" and "fullName" all name the same column
+            String name = header.get(i).replace("\uFEFF", "").replaceAll("[^A-Za-z]", "").toLowerCase(Locale.ROOT);
+            columns.putIfAbsent(name, i);
+        }
+        for (String required : new String[] {"username", "password", "fullname", "email"}) {
+            if (!columns.containsKey(required)) {
+                throw new IOException("CSV header must include username, password, fullName and email");
+            }
+        }
+        
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            if (++roster.rows > maxRows) {
+                roster.truncated = true;
+                return;
+            }
+            if (record.size() < header.size()) {
+                roster.addError(roster.rows, column(record, columns, "username"), column(record, columns, "email"),
+                        "Expected " + header.size() + " columns, found " + record.size());
+                continue;
+            }
+            addUser(roster, column(record, columns, "username"), column(record, columns, "password"),
+                    column(record, columns, "fullname"), column(record, columns, "email"),
+                    column(record, columns, "role"));
+        }
+    }
+    
+    private String column(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index != null && index < record.size() ? record.get(index) : null;
+    }
+    
+    private void addUser(Roster roster, String username, String password, String fullName, String email, String role) {
+        String trimmedRole = role != null ? role.trim() : "";
+        User user = new User(trim(username), password, trim(fullName), trim(email),
+                trimmedRole.isEmpty() ? "STUDENT" : trimmedRole.toUpperCase(Locale.ROOT));
+        roster.users.add(user);
+        roster.rowNumbers.add(roster.rows);
+    }
+    
+    private String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+    
+    /**
+     * Minimal RFC 4180 reader: quoted fields may hold commas, doubled quotes and line breaks
+     */
+    private static class CsvReader {
+        private final Reader reader;
+        private int pushedBack = -2;
+        
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+        
+        /**
+         * Read the next non-empty record
+         * 
+         * @return Fields, or null at the end of the input
+         * @throws IOException if reading fails
+         */
+        List<String> next() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = read()) != -1) {
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        int following = read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            unread(following);
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        int following = read();
+                        if (following != '\n') {
+                            unread(following);
+                        }
+                    }
+                    if (fields.isEmpty() && field.length() == 0) {
+                        any = false; // blank line
+                        continue;
+                    }
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+            }
+            if (!any && fields.isEmpty() && field.length() == 0) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+        
+        private int read() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            return reader.read();
+        }
+        
+        private void unread(int c) {
+            pushedBack = c;
+        }
+    }
+}
\ No newline at end of file
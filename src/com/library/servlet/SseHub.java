@@ -0,0 +1,335 @@
+package com.library.servlet;
+
+import com.google.gson.Gson;
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
+import com.library.event.Notification;
+import com.library.event.NotificationCenter;
+import com.library.model.Book;
+import com.library.model.IssuedBook;
+import com.library.service.BookService;
+import com.library.service.IssueBookService;
+import com.library.util.BranchContext;
+import com.library.util.DBConnection;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-Sent Events Hub
+ * Fans out availability changes, new loans, returns and hold notifications to
+ * connected dashboards. Changes are collected for a short window and resolved
+ * once per window (one lookup per changed book or loan, not per client).
+ * Each client has a bounded, coalescing buffer: a newer update for the same
+ * book or loan replaces the pending one, and a client that falls too far
+ * behind gets a single "resync" event instead of an unbounded backlog.
+ * Books and loans are resolved in their own branch (and so its database and
+ * catalog) and only sent to dashboards of that branch.
+ */
+public class SseHub {
+    
+    private static final long FLUSH_INTERVAL_MS = 250;
+    private static final long HEARTBEAT_INTERVAL_MS = 15_000;
+    private static final int MAX_PENDING_PER_CLIENT = 256;
+    
+    private static final SseHub INSTANCE = new SseHub();
+    
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Integer> dirtyBooks = new ConcurrentHashMap<>(); // book ID -> branch ID
+    private final Set<Integer> dirtyIssues = ConcurrentHashMap.newKeySet();
+    private final BookService bookService = new BookService();
+    private final IssueBookService issueBookService = new IssueBookService();
+    private final Gson gson = new Gson();
+    private final ScheduledExecutorService flusher;
+    private long lastHeartbeat = System.currentTimeMillis();
+    
+    private SseHub() {
+        ChangeEventBus.getInstance().addListener(event -> {
+            if (event.getEntityType() == ChangeEvent.EntityType.BOOK) {
+                dirtyBooks.put(event.getEntityId(), event.getOwnerId());
+            } else if (event.getEntityType() == ChangeEvent.EntityType.ISSUED_BOOK) {
+                dirtyIssues.add(event.getEntityId());
+            }
+        });
+        NotificationCenter.getInstance().subscribe(this::pushNotification);
+        
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::tick, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Get the shared hub
+     * 
+     * @return SseHub instance
+     */
+    public static SseHub getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Register an open event stream
+     * 
+     * @param asyncContext Async context of the request
+     * @param userId Connected user ID (0 if anonymous)
+     * @param admin true if the user sees every loan and return of the branch
+     * @param branchId Branch the dashboard belongs to
+     * @throws IOException if the stream cannot be set up
+     */
+    public void register(AsyncContext asyncContext, int userId, boolean admin, int branchId) throws IOException {
+        Client client = new Client(asyncContext, userId, admin, branchId);
+        clients.add(client);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                clients.remove(client);
+            }
+            
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                remove(client);
+            }
+            
+            @Override
+            public void onError(AsyncEvent event) {
+                remove(client);
+            }
+            
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        client.out.setWriteListener(new WriteListener() {
+            @Override
+            public void onWritePossible() {
+                client.flush();
+            }
+            
+            @Override
+            public void onError(Throwable t) {
+                remove(client);
+            }
+        });
+        client.enqueue("hello", "connected", "{\"userId\":" + userId + "}");
+    }
+    
+    /**
+     * Get number of open streams
+     * 
+     * @return Client count
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+    
+    /**
+     * Drop a client and complete its async request
+     * 
+     * @param client Client
+     */
+    void remove(Client client) {
+        if (clients.remove(client)) {
+            try {
+                client.asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // already completed or timed out
+            }
+        }
+    }
+    
+    /**
+     * One flush window: resolve changed rows, enqueue deltas, write to clients
+     */
+    private void tick() {
+        try {
+            resolveBooks();
+            resolveIssues();
+            
+            long now = System.currentTimeMillis();
+            boolean heartbeat = now - lastHeartbeat >= HEARTBEAT_INTERVAL_MS;
+            if (heartbeat) {
+                lastHeartbeat = now;
+            }
+            for (Client client : clients) {
+                if (heartbeat) {
+                    client.heartbeat();
+                }
+                client.flush();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("SSE flush failed: " + e.getMessage());
+        }
+    }
+    
+    private void resolveBooks() {
+        if (dirtyBooks.isEmpty() || clients.isEmpty()) {
+            dirtyBooks.clear();
+            return;
+        }
+        for (Map.Entry<Integer, Integer> entry : drain(dirtyBooks).entrySet()) {
+            int bookId = entry.getKey();
+            int branchId = entry.getValue();
+            Book book = null;
+            if (branchId != BranchContext.NONE) {
+                book = BranchContext.callAs(branchId, () -> bookService.getBookById(bookId));
+            } else {
+                // Written by a background job with no branch; look in each branch's catalog
+                for (int branch : BranchContext.getBranchIds()) {
+                    book = BranchContext.callAs(branch, () -> bookService.getBookById(bookId));
+                    if (book != null) {
+                        branchId = branch;
+                        break;
+                    }
+                }
+            }
+            Map<String, Object> delta = new LinkedHashMap<>();
+            delta.put("bookId", bookId);
+            delta.put("deleted", book == null);
+            if (book != null) {
+                delta.put("availableCopies", book.getAvailableCopies());
+                delta.put("totalCopies", book.getTotalCopies());
+            }
+            String data = gson.toJson(delta);
+            for (Client client : clients) {
+                if (branchId == BranchContext.NONE || client.branchId == branchId) {
+                    client.enqueue("availability", "book:" + bookId, data);
+                }
+            }
+        }
+    }
+    
+    private void resolveIssues() {
+        if (dirtyIssues.isEmpty() || clients.isEmpty()) {
+            dirtyIssues.clear();
+            return;
+        }
+        for (Integer issueId : drain(dirtyIssues)) {
+            IssuedBook loan = findLoan(issueId);
+            if (loan == null) {
+                continue;
+            }
+            String type = "RETURNED".equals(loan.getStatus()) ? "return" : "loan";
+            String data = gson.toJson(loan);
+            for (Client client : clients) {
+                if (client.branchId == loan.getBranchId() && (client.admin || client.userId == loan.getUserId())) {
+                    client.enqueue(type, "issue:" + issueId, data);
+                }
+            }
+        }
+    }
+    
+    private void pushNotification(Notification notification) {
+        String data = gson.toJson(notification);
+        for (Client client : clients) {
+            if (client.userId == notification.getUserId()) {
+                client.enqueue("notification", "notify:" + notification.getTimestamp() + ":" + notification.getReferenceId(), data);
+            }
+        }
+    }
+    
+    /**
+     * Look a loan up in the shared database, then in each routed branch database
+     * 
+     * @param issueId Issue ID
+     * @return Loan, or null if no database has it
+     */
+    private IssuedBook findLoan(int issueId) {
+        for (int database : DBConnection.getDatabases()) {
+            IssuedBook loan = BranchContext.callAs(database, () -> issueBookService.getIssuedBookById(issueId));
+            if (loan != null) {
+                return loan;
+            }
+        }
+        return null;
+    }
+    
+    private static Map<Integer, Integer> drain(Map<Integer, Integer> ids) {
+        Map<Integer, Integer> drained = new HashMap<>(ids);
+        drained.forEach(ids::remove);
+        return drained;
+    }
+    
+    private static List<Integer> drain(Set<Integer> ids) {
+        List<Integer> drained = new ArrayList<>(ids);
+        ids.removeAll(drained);
+        return drained;
+    }
+    
+    /**
+     * One open event stream with its pending events
+     */
+    class Client {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream out;
+        private final int userId;
+        private final boolean admin;
+        private final int branchId;
+        // Pending events by coalescing key, in first-enqueued order
+        private final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+        private boolean overflowed;
+        
+        Client(AsyncContext asyncContext, int userId, boolean admin, int branchId) throws IOException {
+            this.asyncContext = asyncContext;
+            this.out = asyncContext.getResponse().getOutputStream();
+            this.userId = userId;
+            this.admin = admin;
+            this.branchId = branchId;
+        }
+        
+        synchronized void enqueue(String event, String key, String data) {
+            if (overflowed) {
+                return;
+            }
+            if (!pending.containsKey(key) && pending.size() >= MAX_PENDING_PER_CLIENT) {
+                // Too far behind: replace the backlog with one full-refresh hint
+                pending.clear();
+                overflowed = true;
+                return;
+            }
+            pending.put(key, "event: " + event + "\ndata: " + data + "\n\n");
+        }
+        
+        synchronized void heartbeat() {
+            pending.putIfAbsent("heartbeat", ": keep-alive\n\n");
+        }
+        
+        synchronized void flush() {
+            if (pending.isEmpty() && !overflowed) {
+                return;
+            }
+            try {
+                if (!out.isReady()) {
+                    return; // the write listener calls us again when the client drains
+                }
+                StringBuilder sb = new StringBuilder();
+                if (overflowed) {
+                    sb.append("event: resync\ndata: {}\n\n");
+                    overflowed = false;
+                }
+                for (String frame : pending.values()) {
+                    sb.append(frame);
+                }
+                pending.clear();
+                out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                if (out.isReady()) {
+                    out.flush();
+                }
+            } catch (IOException | IllegalStateException e) {
+                remove(this);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.library.servlet;
+
+import com.library.service.InventoryReconciler;
+import com.library.service.LoanArchiver;
+import com.library.service.WarmUp;
+import com.library.trace.Tracer;
+import com.library.util.DBConnection;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Startup Listener - Starts the warm-up and background jobs when the application
+ * is deployed and releases them and pooled connections when it is undeployed.
+ * Deployment is not held up: the warm-up runs on its own thread and
+ * /api/ready reports 503 until it finishes.
+ */
+@WebListener
+public class StartupListener implements ServletContextListener {
+    
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        WarmUp.getInstance().start();
+        // Keep issued_books down to open and recently returned loans
+        LoanArchiver.getInstance().start();
+        // Check the copy counters against the per-copy inventory
+        InventoryReconciler.getInstance().start();
+        System.out.println("StartupListener initialized");
+    }
+    
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        LoanArchiver.getInstance().shutdown();
+        InventoryReconciler.getInstance().shutdown();
+        Tracer.getInstance().shutdown();
+        DBConnection.closeConnection();
+        System.out.println("StartupListener destroyed");
+    }
+}
\ No newline at end of file
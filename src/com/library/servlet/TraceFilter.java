@@ -0,0 +1,74 @@
+package com.library.servlet;
+
+import com.library.trace.Span;
+import com.library.trace.Tracer;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Trace Filter - Opens the root span of every API request
+ * Continues the caller's trace when a W3C traceparent header is sent; otherwise
+ * the tracer decides by sample ratio. Sampled requests get their trace id back in
+ * the X-Trace-Id header so a slow call can be looked up in the span file.
+ * Load balancer probes are not traced.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class TraceFilter implements Filter {
+    
+    private Tracer tracer;
+    
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        tracer = Tracer.getInstance();
+        System.out.println("TraceFilter initialized");
+    }
+    
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        
+        if (!tracer.isEnabled() || "/api/health".equals(path) || "/api/ready".equals(path)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        Span span = tracer.startSpan(request.getMethod() + " " + path, Span.KIND_SERVER,
+                request.getHeader("traceparent"));
+        try {
+            if (span.isSampled()) {
+                span.setAttribute("http.method", request.getMethod());
+                span.setAttribute("http.route", path);
+                span.setAttribute("http.action", request.getParameter("action"));
+                response.setHeader("X-Trace-Id", span.getTraceId());
+            }
+            chain.doFilter(request, response);
+            span.setAttribute("http.status_code", response.getStatus());
+            if (response.getStatus() >= 500) {
+                span.setError("HTTP " + response.getStatus());
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+            tracer.clearScope();
+        }
+    }
+    
+    @Override
+    public void destroy() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,216 @@
+package com.library.test;
+
+import com.library.event.ChangeEvent;
+import com.library.event.ChangeEventBus;
+import com.library.event.LoopbackTransport;
+import com.library.event.OutboxTransport;
+import com.library.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Change Event Delivery Checks
+ * Runs two bus "nodes" in one JVM and checks what each of them hears.
+ * The loopback checks need nothing else; the outbox checks need the database
+ * from the configuration and are skipped when it cannot be reached.
+ * Run with: java com.library.test.TestChangeEvents
+ */
+public class TestChangeEvents {
+    
+    // How long a node may take to pick up an outbox row; the poller runs every 500 ms
+    private static final long OUTBOX_WAIT_MS = 5000;
+    
+    public static void main(String[] args) throws Exception {
+        testLoopbackDelivery();
+        testLoopbackStagedDelivery();
+        testLoopbackStoppedNode();
+        
+        if (DBConnection.testConnection()) {
+            testOutboxCommittedDelivery();
+            testOutboxRolledBackEvent();
+        } else {
+            System.out.println("SKIP outbox checks: database not reachable");
+        }
+        
+        DBConnection.closeConnection();
+        System.out.println("All change event checks passed");
+    }
+    
+    /**
+     * A published event reaches local listeners once and every other node once
+     */
+    private static void testLoopbackDelivery() {
+        ChangeEventBus nodeA = new ChangeEventBus("loopback-a", new LoopbackTransport());
+        ChangeEventBus nodeB = new ChangeEventBus("loopback-b", new LoopbackTransport());
+        List<ChangeEvent> heardByA = listen(nodeA);
+        List<ChangeEvent> heardByB = listen(nodeB);
+        
+        try {
+            nodeA.publish(ChangeEvent.EntityType.BOOK, ChangeEvent.Operation.UPDATE, 42, 3);
+            
+            check(heardByA.size() == 1, "origin node hears its own event once, heard " + heardByA.size());
+            check(heardByB.size() == 1, "other node hears the event once, heard " + heardByB.size());
+            ChangeEvent event = heardByB.get(0);
+            check(event.getEntityType() == ChangeEvent.EntityType.BOOK, "entity type survives delivery");
+            check(event.getOperation() == ChangeEvent.Operation.UPDATE, "operation survives delivery");
+            check(event.getEntityId() == 42, "entity id survives delivery");
+            check(event.getOwnerId() == 3, "owner id survives delivery");
+            check("loopback-a".equals(event.getOriginNode()), "origin node is the publisher");
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+        System.out.println("PASS loopback delivery");
+    }
+    
+    /**
+     * A staged event reaches no one until it is published as committed
+     */
+    private static void testLoopbackStagedDelivery() throws SQLException {
+        ChangeEventBus nodeA = new ChangeEventBus("loopback-a", new LoopbackTransport());
+        ChangeEventBus nodeB = new ChangeEventBus("loopback-b", new LoopbackTransport());
+        List<ChangeEvent> heardByA = listen(nodeA);
+        List<ChangeEvent> heardByB = listen(nodeB);
+        
+        try {
+            // The loopback transport keeps nothing in the database, so no connection is needed
+            ChangeEvent event = nodeA.stage(null, ChangeEvent.EntityType.HOLD,
+                                            ChangeEvent.Operation.INSERT, 7, 11);
+            check(heardByA.isEmpty() && heardByB.isEmpty(), "staged event is not delivered before commit");
+            
+            nodeA.publishCommitted(event);
+            check(heardByA.size() == 1, "origin node hears the committed event once, heard " + heardByA.size());
+            check(heardByB.size() == 1, "other node hears the committed event once, heard " + heardByB.size());
+            check(heardByB.get(0) == event, "other node receives the staged event");
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+        System.out.println("PASS loopback staged delivery");
+    }
+    
+    /**
+     * A node that shut down hears nothing more
+     */
+    private static void testLoopbackStoppedNode() {
+        ChangeEventBus nodeA = new ChangeEventBus("loopback-a", new LoopbackTransport());
+        ChangeEventBus nodeB = new ChangeEventBus("loopback-b", new LoopbackTransport());
+        List<ChangeEvent> heardByB = listen(nodeB);
+        
+        try {
+            nodeB.shutdown();
+            nodeA.publish(ChangeEvent.EntityType.USER, ChangeEvent.Operation.DELETE, 5);
+            check(heardByB.isEmpty(), "stopped node hears nothing, heard " + heardByB.size());
+        } finally {
+            nodeA.shutdown();
+        }
+        System.out.println("PASS loopback stopped node");
+    }
+    
+    /**
+     * An event staged in a committed transaction reaches the other node through
+     * the outbox, and the origin node does not hear it a second time
+     */
+    private static void testOutboxCommittedDelivery() throws Exception {
+        ChangeEventBus nodeA = new ChangeEventBus("outbox-a", new OutboxTransport());
+        ChangeEventBus nodeB = new ChangeEventBus("outbox-b", new OutboxTransport());
+        List<ChangeEvent> heardByA = listen(nodeA);
+        List<ChangeEvent> heardByB = listen(nodeB);
+        
+        try {
+            ChangeEvent event;
+            try (Connection conn = DBConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    event = nodeA.stage(conn, ChangeEvent.EntityType.BOOK,
+                                        ChangeEvent.Operation.UPDATE, 1001, 0);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+            nodeA.publishCommitted(event);
+            
+            check(waitFor(heardByB, 1), "other node hears the committed event through the outbox");
+            ChangeEvent received = heardByB.get(0);
+            check(received.getEntityType() == ChangeEvent.EntityType.BOOK, "entity type survives the outbox");
+            check(received.getEntityId() == 1001, "entity id survives the outbox");
+            check("outbox-a".equals(received.getOriginNode()), "origin node survives the outbox");
+            
+            // Give node A a few polls to make sure it skips its own row
+            Thread.sleep(1500);
+            check(heardByA.size() == 1, "origin node hears its own event once, heard " + heardByA.size());
+            check(heardByB.size() == 1, "other node hears the event once, heard " + heardByB.size());
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+        System.out.println("PASS outbox committed delivery");
+    }
+    
+    /**
+     * An event staged in a transaction that rolls back never reaches the other node
+     */
+    private static void testOutboxRolledBackEvent() throws Exception {
+        ChangeEventBus nodeA = new ChangeEventBus("outbox-a", new OutboxTransport());
+        ChangeEventBus nodeB = new ChangeEventBus("outbox-b", new OutboxTransport());
+        List<ChangeEvent> heardByB = listen(nodeB);
+        
+        try {
+            try (Connection conn = DBConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    nodeA.stage(conn, ChangeEvent.EntityType.BOOK, ChangeEvent.Operation.DELETE, 1002, 0);
+                    conn.rollback();
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+            
+            check(!waitFor(heardByB, 1), "rolled back event is not delivered, heard " + heardByB.size());
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+        System.out.println("PASS outbox rolled back event");
+    }
+    
+    /**
+     * Record every event a node hears
+     * 
+     * @param bus Node
+     * @return Live list of received events
+     */
+    private static List<ChangeEvent> listen(ChangeEventBus bus) {
+        List<ChangeEvent> heard = new CopyOnWriteArrayList<>();
+        bus.addListener(heard::add);
+        return heard;
+    }
+    
+    /**
+     * Wait until a node has heard at least some number of events
+     * 
+     * @param heard List filled by {@link #listen}
+     * @param count Number of events expected
+     * @return true if they arrived within OUTBOX_WAIT_MS
+     */
+    private static boolean waitFor(List<ChangeEvent> heard, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + OUTBOX_WAIT_MS;
+        while (heard.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        return heard.size() >= count;
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError("FAIL " + message);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.library.test;
+
+import com.library.trace.InMemorySpanExporter;
+import com.library.trace.Span;
+import com.library.trace.Tracer;
+import com.library.util.LibraryConfig;
+
+import java.util.List;
+
+/**
+ * Span Capture Checks
+ * Turns tracing on with the memory exporter and checks which spans reach it.
+ * Needs no database.
+ * Run with: java com.library.test.TestTracing
+ */
+public class TestTracing {
+    
+    private static final String REMOTE_TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final String REMOTE_PARENT_ID = "00f067aa0ba902b7";
+    
+    public static void main(String[] args) {
+        configure("1");
+        Tracer tracer = Tracer.getInstance();
+        check(tracer.isEnabled(), "tracing is enabled");
+        check(tracer.getExporter() instanceof InMemorySpanExporter, "memory exporter is selected");
+        InMemorySpanExporter exporter = (InMemorySpanExporter) tracer.getExporter();
+        
+        testNestedSpans(tracer, exporter);
+        testRemoteParent(tracer, exporter);
+        testUnsampledParent(tracer, exporter);
+        
+        configure("0");
+        testSampledOut(tracer, exporter);
+        
+        tracer.shutdown();
+        System.out.println("All span capture checks passed");
+    }
+    
+    /**
+     * A child span shares its parent's trace, points at it, keeps its
+     * attributes, and is exported before the parent
+     */
+    private static void testNestedSpans(Tracer tracer, InMemorySpanExporter exporter) {
+        exporter.reset();
+        String traceId;
+        String parentId;
+        try (Span parent = tracer.startSpan("TestTracing.parent")) {
+            traceId = parent.getTraceId();
+            parentId = parent.getSpanId();
+            try (Span child = tracer.startSpan("TestTracing.child")) {
+                child.setAttribute("book.id", 42);
+                check(tracer.currentSpan() == child, "child is current while open");
+            }
+            check(tracer.currentSpan() == parent, "parent is current again after the child ends");
+        }
+        check(!tracer.currentSpan().isSampled(), "no span is current after the parent ends");
+        tracer.flush();
+        
+        List<Span> trace = exporter.getTrace(traceId);
+        check(trace.size() == 2, "both spans are exported, got " + trace.size());
+        Span child = trace.get(0);
+        Span parent = trace.get(1);
+        check("TestTracing.child".equals(child.getName()), "child ends and is exported first");
+        check("TestTracing.parent".equals(parent.getName()), "parent is exported second");
+        check(parentId.equals(child.getParentSpanId()), "child points at its parent");
+        check(parent.getParentSpanId() == null, "parent is the root of the trace");
+        check(Integer.valueOf(42).equals(child.getAttributes().get("book.id")), "attribute is kept");
+        check(child.getEndEpochNanos() >= child.getStartEpochNanos(), "child has an end time");
+        System.out.println("PASS nested spans");
+    }
+    
+    /**
+     * A sampled W3C traceparent is continued: same trace id, remote span as parent
+     */
+    private static void testRemoteParent(Tracer tracer, InMemorySpanExporter exporter) {
+        exporter.reset();
+        String header = "00-" + REMOTE_TRACE_ID + "-" + REMOTE_PARENT_ID + "-01";
+        try (Span span = tracer.startSpan("TestTracing.server", Span.KIND_SERVER, header)) {
+            check(REMOTE_TRACE_ID.equals(span.getTraceId()), "remote trace id is continued");
+        }
+        tracer.flush();
+        
+        List<Span> trace = exporter.getTrace(REMOTE_TRACE_ID);
+        check(trace.size() == 1, "server span is exported, got " + trace.size());
+        check(REMOTE_PARENT_ID.equals(trace.get(0).getParentSpanId()), "remote span is the parent");
+        check(Span.KIND_SERVER.equals(trace.get(0).getKind()), "span kind is kept");
+        System.out.println("PASS remote parent");
+    }
+    
+    /**
+     * A traceparent whose caller did not sample is respected, children included
+     */
+    private static void testUnsampledParent(Tracer tracer, InMemorySpanExporter exporter) {
+        exporter.reset();
+        String header = "00-" + REMOTE_TRACE_ID + "-" + REMOTE_PARENT_ID + "-00";
+        try (Span span = tracer.startSpan("TestTracing.server", Span.KIND_SERVER, header)) {
+            check(!span.isSampled(), "unsampled caller yields an unsampled span");
+            try (Span child = tracer.startSpan("TestTracing.child")) {
+                check(!child.isSampled(), "children of an unsampled span are unsampled");
+            }
+        }
+        tracer.flush();
+        
+        check(exporter.getFinishedSpans().isEmpty(), "nothing is exported for an unsampled trace");
+        try (Span span = tracer.startSpan("TestTracing.after")) {
+            check(span.isSampled(), "the next trace on the thread is sampled again");
+        }
+        tracer.flush();
+        System.out.println("PASS unsampled parent");
+    }
+    
+    /**
+     * With a sample ratio of 0 new traces are not recorded
+     */
+    private static void testSampledOut(Tracer tracer, InMemorySpanExporter exporter) {
+        exporter.reset();
+        try (Span span = tracer.startSpan("TestTracing.dropped")) {
+            check(!span.isSampled(), "span is not sampled at ratio 0");
+            check(!tracer.isRecording(), "tracer is not recording inside an unsampled trace");
+        }
+        tracer.flush();
+        
+        check(exporter.getFinishedSpans().isEmpty(), "nothing is exported at ratio 0");
+        System.out.println("PASS sampled out");
+    }
+    
+    /**
+     * Enable tracing to the memory exporter with the given sample ratio
+     * 
+     * @param sampleRatio Value for trace.sample.ratio
+     */
+    private static void configure(String sampleRatio) {
+        System.setProperty("library.trace.enabled", "true");
+        System.setProperty("library.trace.exporter", "memory");
+        System.setProperty("library.trace.sample.ratio", sampleRatio);
+        LibraryConfig.reload();
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError("FAIL " + message);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+package com.library.trace;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File Span Exporter
+ * Appends finished spans to a file, one JSON object per line, using the
+ * OpenTelemetry field names (traceId, spanId, parentSpanId, startTimeUnixNano,
+ * endTimeUnixNano, attributes, status) so the file can be shipped to a collector
+ * or grepped by trace id. The file is flushed after every batch, not forced to disk.
+ */
+public class FileSpanExporter implements SpanExporter {
+    
+    private final Path path;
+    private Writer writer;
+    
+    public FileSpanExporter(Path path) {
+        this.path = path;
+    }
+    
+    @Override
+    public void export(List<Span> spans) {
+        try {
+            if (writer == null) {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            for (Span span : spans) {
+                writer.write(toJson(span));
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write spans to " + path + ": " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void shutdown() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Error closing span file: " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    /**
+     * Render one span as a single JSON line
+     * 
+     * @param span Finished span
+     * @return JSON text without a line break
+     * @throws IOException never; JsonWriter declares it
+     */
+    static String toJson(Span span) throws IOException {
+        StringWriter out = new StringWriter(256);
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("traceId").value(span.getTraceId());
+        json.name("spanId").value(span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            json.name("parentSpanId").value(span.getParentSpanId());
+        }
+        json.name("name").value(span.getName());
+        json.name("kind").value(span.getKind());
+        json.name("startTimeUnixNano").value(span.getStartEpochNanos());
+        json.name("endTimeUnixNano").value(span.getEndEpochNanos());
+        json.name("durationMicros").value(span.getDurationMicros());
+        json.name("attributes").beginObject();
+        for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+            json.name(attribute.getKey());
+            Object value = attribute.getValue();
+            if (value instanceof Number) {
+                json.value((Number) value);
+            } else if (value instanceof Boolean) {
+                json.value((Boolean) value);
+            } else {
+                json.value(value.toString());
+            }
+        }
+        json.endObject();
+        json.name("status").beginObject();
+        json.name("code").value(span.getStatus());
+        if (span.getStatusMessage() != null) {
+            json.name("message").value(span.getStatusMessage());
+        }
+        json.endObject();
+        json.endObject();
+        json.flush();
+        return out.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.library.trace;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * In-Memory Span Exporter
+ * Keeps the most recent finished spans in memory so tests and debugging sessions
+ * can inspect them (trace.exporter=memory). Call {@link Tracer#flush()} first to
+ * move queued spans here.
+ */
+public class InMemorySpanExporter implements SpanExporter {
+    
+    private static final int MAX_SPANS = 10_000;
+    
+    private final Deque<Span> spans = new ArrayDeque<>();
+    
+    @Override
+    public synchronized void export(List<Span> batch) {
+        for (Span span : batch) {
+            if (spans.size() >= MAX_SPANS) {
+                spans.pollFirst();
+            }
+            spans.addLast(span);
+        }
+    }
+    
+    @Override
+    public synchronized void shutdown() {
+        spans.clear();
+    }
+    
+    /**
+     * Spans exported so far, oldest first
+     * 
+     * @return Copy of the retained spans
+     */
+    public synchronized List<Span> getFinishedSpans() {
+        return new ArrayList<>(spans);
+    }
+    
+    /**
+     * Spans of one trace, oldest first
+     * 
+     * @param traceId Trace id
+     * @return Matching spans
+     */
+    public synchronized List<Span> getTrace(String traceId) {
+        List<Span> trace = new ArrayList<>();
+        for (Span span : spans) {
+            if (span.getTraceId().equals(traceId)) {
+                trace.add(span);
+            }
+        }
+        return trace;
+    }
+    
+    public synchronized void reset() {
+        spans.clear();
+    }
+}
\ No newline at end of file
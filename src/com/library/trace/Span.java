@@ -0,0 +1,192 @@
+package com.library.trace;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Span
+ * One timed operation in a trace, shaped like an OpenTelemetry span: W3C trace
+ * and span ids, a parent, a kind, attributes and an OK/ERROR status.
+ * Spans from {@link Tracer#startSpan} are the thread's current span until
+ * closed, so use them with try-with-resources on the thread that opened them.
+ * Unsampled operations get a shared no-op span, so instrumented code never
+ * checks whether it is being traced.
+ */
+public class Span implements AutoCloseable {
+    
+    public static final String KIND_INTERNAL = "INTERNAL";
+    public static final String KIND_SERVER = "SERVER";
+    public static final String KIND_CLIENT = "CLIENT";
+    
+    public static final String STATUS_UNSET = "UNSET";
+    public static final String STATUS_OK = "OK";
+    public static final String STATUS_ERROR = "ERROR";
+    
+    // Returned while tracing is off; does nothing
+    static final Span NOOP = new Span(null, null, null, null, null, null, null, 0);
+    // Returned inside an unsampled trace; closing it leaves the unsampled scope
+    static final Span UNSAMPLED = new Span(null, null, null, null, null, null, null, 0);
+    
+    private final Tracer tracer;
+    private final Span parent;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final String kind;
+    private final long startEpochNanos;
+    private long endEpochNanos;
+    private final Map<String, Object> attributes;
+    private String status = STATUS_UNSET;
+    private String statusMessage;
+    
+    Span(Tracer tracer, Span parent, String traceId, String spanId, String parentSpanId,
+         String name, String kind, long startEpochNanos) {
+        this.tracer = tracer;
+        this.parent = parent;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.startEpochNanos = startEpochNanos;
+        this.attributes = tracer != null ? new LinkedHashMap<>() : Collections.emptyMap();
+    }
+    
+    /**
+     * Attach an attribute; strings, numbers and booleans export as such,
+     * anything else as its toString()
+     * 
+     * @param key Attribute name, e.g. db.rows_affected
+     * @param value Attribute value; null is ignored
+     * @return This span
+     */
+    public Span setAttribute(String key, Object value) {
+        if (tracer != null && value != null && endEpochNanos == 0) {
+            attributes.put(key, value);
+        }
+        return this;
+    }
+    
+    /**
+     * Mark the span failed with a message
+     * 
+     * @param message What went wrong
+     * @return This span
+     */
+    public Span setError(String message) {
+        if (tracer != null) {
+            status = STATUS_ERROR;
+            statusMessage = message;
+        }
+        return this;
+    }
+    
+    /**
+     * Mark the span failed by an exception, recording its type
+     * 
+     * @param error Exception thrown
+     * @return This span
+     */
+    public Span recordException(Throwable error) {
+        setAttribute("exception.type", error.getClass().getName());
+        return setError(error.getMessage());
+    }
+    
+    /**
+     * End the span and make its parent current again
+     */
+    public void end() {
+        if (this == UNSAMPLED) {
+            Tracer.getInstance().exitUnsampled();
+            return;
+        }
+        if (tracer == null || endEpochNanos != 0) {
+            return;
+        }
+        endEpochNanos = Tracer.epochNanos();
+        tracer.finish(this);
+    }
+    
+    @Override
+    public void close() {
+        end();
+    }
+    
+    /**
+     * Check whether this span is recorded and exported
+     * 
+     * @return false for the no-op span handed out when not sampling
+     */
+    public boolean isSampled() {
+        return tracer != null;
+    }
+    
+    /**
+     * W3C traceparent header value for calls made inside this span
+     * 
+     * @return Header value, or null when not sampled
+     */
+    public String getTraceParent() {
+        return tracer != null ? "00-" + traceId + "-" + spanId + "-01" : null;
+    }
+    
+    Span getParent() {
+        return parent;
+    }
+    
+    public String getTraceId() {
+        return traceId;
+    }
+    
+    public String getSpanId() {
+        return spanId;
+    }
+    
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getKind() {
+        return kind;
+    }
+    
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+    
+    public long getEndEpochNanos() {
+        return endEpochNanos;
+    }
+    
+    /**
+     * Duration of an ended span
+     * 
+     * @return Duration in microseconds
+     */
+    public long getDurationMicros() {
+        return (endEpochNanos - startEpochNanos) / 1000;
+    }
+    
+    public Map<String, Object> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+    
+    @Override
+    public String toString() {
+        return name + "{traceId=" + traceId + ", spanId=" + spanId + ", status=" + status + "}";
+    }
+}
\ No newline at end of file
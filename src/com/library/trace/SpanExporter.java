@@ -0,0 +1,23 @@
+package com.library.trace;
+
+import java.util.List;
+
+/**
+ * Span Exporter
+ * Pluggable destination for finished spans, fed in batches by {@link Tracer}
+ * from its exporter thread
+ */
+public interface SpanExporter {
+    
+    /**
+     * Write a batch of finished spans
+     * 
+     * @param spans Spans in the order they ended
+     */
+    void export(List<Span> spans);
+    
+    /**
+     * Flush and release resources; no export calls follow
+     */
+    void shutdown();
+}
\ No newline at end of file
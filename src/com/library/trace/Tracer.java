@@ -0,0 +1,414 @@
+package com.library.trace;
+
+import com.library.util.LibraryConfig;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracer
+ * Request tracing across the servlet, service and DAO layers. A trace starts at
+ * {@link com.library.servlet.TraceFilter} (continuing an incoming W3C traceparent
+ * when there is one); services open child spans with {@link #startSpan}, and every
+ * SQL statement and connection borrow is recorded by {@link com.library.util.DBConnection}.
+ * 
+ * Overhead is kept down by head sampling: the decision is made once per trace,
+ * by trace id ratio (trace.sample.ratio) or by the caller's sampled flag, and an
+ * unsampled trace costs a thread-local lookup per span. Finished spans are queued
+ * and exported in batches by one background thread; when the queue is full spans
+ * are dropped rather than slowing requests down.
+ * Exporters: file (one JSON span per line), memory (for tests) or none.
+ * Implements Singleton pattern; configured with the trace.* keys.
+ */
+public class Tracer {
+    
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int MAX_BATCH = 512;
+    private static final double DEFAULT_SAMPLE_RATIO = 0.01;
+    private static final long EXPORT_INTERVAL_MS = 1000;
+    
+    // Offset turning System.nanoTime() into nanoseconds since the epoch
+    private static final long EPOCH_OFFSET_NANOS =
+            System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+    
+    private static final Tracer INSTANCE = new Tracer();
+    
+    private final ThreadLocal<Scope> scopes = ThreadLocal.withInitial(Scope::new);
+    private final BlockingQueue<Span> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean enabled;
+    private volatile double sampleRatio = DEFAULT_SAMPLE_RATIO;
+    private volatile boolean respectParent = true;
+    private volatile boolean recordStatements = true;
+    private volatile String exporterName;
+    private volatile SpanExporter exporter;
+    private Thread worker;
+    
+    /**
+     * Spans open on one thread: the current span, or how deep we are inside an unsampled trace
+     */
+    private static class Scope {
+        Span current;
+        int unsampledDepth;
+    }
+    
+    private Tracer() {
+        LibraryConfig.addListener(this::applyConfig);
+    }
+    
+    public static Tracer getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Start a child of the current span, or a new trace if there is none
+     * 
+     * @param name Span name, e.g. IssueBookService.issueBook
+     * @return Span, now current; close it to end it
+     */
+    public Span startSpan(String name) {
+        return startSpan(name, Span.KIND_INTERNAL, null);
+    }
+    
+    /**
+     * Start a span, continuing a remote trace when a traceparent header is given
+     * 
+     * @param name Span name
+     * @param kind Span kind, one of the Span.KIND_* constants
+     * @param traceParent Incoming W3C traceparent header, or null
+     * @return Span, now current; close it to end it
+     */
+    public Span startSpan(String name, String kind, String traceParent) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        Scope scope = scopes.get();
+        if (scope.unsampledDepth > 0) {
+            scope.unsampledDepth++;
+            return Span.UNSAMPLED;
+        }
+        
+        Span parent = scope.current;
+        String traceId;
+        String parentSpanId;
+        if (parent != null) {
+            traceId = parent.getTraceId();
+            parentSpanId = parent.getSpanId();
+        } else {
+            String[] remote = parseTraceParent(traceParent);
+            if (remote != null && respectParent) {
+                if (!"01".equals(remote[2])) {
+                    scope.unsampledDepth = 1;
+                    return Span.UNSAMPLED;
+                }
+                traceId = remote[0];
+                parentSpanId = remote[1];
+            } else {
+                long high = ThreadLocalRandom.current().nextLong();
+                long low = ThreadLocalRandom.current().nextLong();
+                if (!sample(low)) {
+                    scope.unsampledDepth = 1;
+                    return Span.UNSAMPLED;
+                }
+                traceId = hex(high) + hex(low);
+                parentSpanId = null;
+            }
+        }
+        
+        Span span = new Span(this, parent, traceId, hex(ThreadLocalRandom.current().nextLong()),
+                parentSpanId, name, kind, epochNanos());
+        scope.current = span;
+        return span;
+    }
+    
+    /**
+     * Check whether this thread is inside a sampled trace, so callers can skip
+     * building span names and attributes that would be thrown away
+     * 
+     * @return true if {@link #recordSpan} would record
+     */
+    public boolean isRecording() {
+        if (!enabled) {
+            return false;
+        }
+        Scope scope = scopes.get();
+        return scope.current != null && scope.unsampledDepth == 0;
+    }
+    
+    /**
+     * Record an operation that has just finished as a child of the current span,
+     * e.g. a statement reported after it ran; skipped outside a sampled trace.
+     * The span is not made current: set its attributes, then end it.
+     * 
+     * @param name Span name
+     * @param kind Span kind
+     * @param elapsedNanos How long the operation took, ending now
+     * @return Span backdated by elapsedNanos, or null when not recording
+     */
+    public Span recordSpan(String name, String kind, long elapsedNanos) {
+        if (!isRecording()) {
+            return null;
+        }
+        Span parent = scopes.get().current;
+        long end = epochNanos();
+        return new Span(this, parent, parent.getTraceId(), hex(ThreadLocalRandom.current().nextLong()),
+                parent.getSpanId(), name, kind, end - elapsedNanos);
+    }
+    
+    /**
+     * The span current on this thread
+     * 
+     * @return Current span, or the no-op span when not tracing
+     */
+    public Span currentSpan() {
+        Span current = enabled ? scopes.get().current : null;
+        return current != null ? current : Span.NOOP;
+    }
+    
+    /**
+     * Check whether SQL text should be attached to statement spans (trace.sql.statement)
+     * 
+     * @return true to record db.statement
+     */
+    public boolean isRecordingStatements() {
+        return recordStatements;
+    }
+    
+    /**
+     * Forget any span left open on this thread, e.g. at the end of a request
+     * whose code did not close everything it started
+     */
+    public void clearScope() {
+        scopes.remove();
+    }
+    
+    /**
+     * Export everything queued so far on the calling thread
+     * Used by tests with the memory exporter
+     */
+    public void flush() {
+        List<Span> batch = new ArrayList<>(MAX_BATCH);
+        while (queue.drainTo(batch, MAX_BATCH) > 0) {
+            export(batch);
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Get the active exporter
+     * 
+     * @return Exporter, or null when spans are discarded
+     */
+    public SpanExporter getExporter() {
+        return exporter;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public long getExportedCount() {
+        return exported.get();
+    }
+    
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    /**
+     * Called when a sampled span ends: restore its parent and queue it
+     * 
+     * @param span Ended span
+     */
+    void finish(Span span) {
+        Scope scope = scopes.get();
+        if (scope.current == span) {
+            scope.current = span.getParent();
+        }
+        queue(span);
+    }
+    
+    /**
+     * Queue an ended span for export, dropping it if the queue is full
+     * 
+     * @param span Ended span
+     */
+    void queue(Span span) {
+        if (exporter == null) {
+            return;
+        }
+        if (!queue.offer(span)) {
+            dropped.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Called when an unsampled span ends
+     */
+    void exitUnsampled() {
+        Scope scope = scopes.get();
+        if (scope.unsampledDepth > 0) {
+            scope.unsampledDepth--;
+        }
+    }
+    
+    /**
+     * Ratio sampler: keeps the trace when the random part of its id falls
+     * below the ratio, so every node decides the same for the same trace
+     * 
+     * @param traceIdLow Low 64 bits of the trace id
+     * @return true to sample
+     */
+    private boolean sample(long traceIdLow) {
+        double ratio = sampleRatio;
+        if (ratio >= 1) {
+            return true;
+        }
+        return (traceIdLow >>> 1) < (long) (ratio * Long.MAX_VALUE);
+    }
+    
+    /**
+     * Parse a W3C traceparent header: 00-{32 hex trace id}-{16 hex parent id}-{2 hex flags}
+     * 
+     * @param header Header value, may be null
+     * @return trace id, parent span id and flags, or null if absent or malformed
+     */
+    private static String[] parseTraceParent(String header) {
+        if (header == null || header.length() != 55) {
+            return null;
+        }
+        String[] parts = header.toLowerCase().split("-");
+        if (parts.length != 4 || parts[1].length() != 32 || parts[2].length() != 16 || parts[3].length() != 2
+                || !isHex(parts[1]) || !isHex(parts[2]) || !isHex(parts[3])
+                || parts[1].matches("0+") || parts[2].matches("0+")) {
+            return null;
+        }
+        String flags = (Integer.parseInt(parts[3], 16) & 1) == 1 ? "01" : "00";
+        return new String[] {parts[1], parts[2], flags};
+    }
+    
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static String hex(long value) {
+        String digits = Long.toHexString(value);
+        return "0000000000000000".substring(digits.length()) + digits;
+    }
+    
+    static long epochNanos() {
+        return System.nanoTime() + EPOCH_OFFSET_NANOS;
+    }
+    
+    private synchronized void applyConfig(LibraryConfig config) {
+        sampleRatio = Math.max(0, Math.min(1, config.getDouble("trace.sample.ratio", DEFAULT_SAMPLE_RATIO)));
+        respectParent = config.getBoolean("trace.respect.parent", true);
+        recordStatements = config.getBoolean("trace.sql.statement", true);
+        
+        boolean nowEnabled = config.getBoolean("trace.enabled", false);
+        String name = nowEnabled ? config.getString("trace.exporter", "file") : "none";
+        if (!name.equals(exporterName)) {
+            SpanExporter old = exporter;
+            exporter = createExporter(name, config);
+            exporterName = name;
+            if (old != null) {
+                flush();
+                old.shutdown();
+            }
+            System.out.println("Tracing " + (exporter != null ? "exporting to " + name : "off"));
+        }
+        if (exporter != null && worker == null) {
+            worker = new Thread(this::exportLoop, "trace-exporter");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        enabled = nowEnabled && exporter != null;
+    }
+    
+    /**
+     * Stop tracing, export what is queued and release the exporter
+     */
+    public synchronized void shutdown() {
+        enabled = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+        flush();
+        if (exporter != null) {
+            exporter.shutdown();
+            exporter = null;
+        }
+        exporterName = "none";
+    }
+    
+    private static SpanExporter createExporter(String name, LibraryConfig config) {
+        if ("file".equals(name)) {
+            String defaultDir = System.getProperty("catalina.base") != null
+                    ? Paths.get(System.getProperty("catalina.base"), "logs").toString()
+                    : ".";
+            Path path = Paths.get(config.getString("trace.file.path",
+                    Paths.get(defaultDir, "traces.ndjson").toString())).toAbsolutePath();
+            return new FileSpanExporter(path);
+        }
+        if ("memory".equals(name)) {
+            return new InMemorySpanExporter();
+        }
+        return null;
+    }
+    
+    /**
+     * Exporter loop: wait for a span, drain a batch, hand it to the exporter
+     */
+    private void exportLoop() {
+        List<Span> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                Span first = queue.poll(EXPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+            export(batch);
+            batch.clear();
+        }
+    }
+    
+    private void export(List<Span> batch) {
+        SpanExporter current = exporter;
+        if (current == null) {
+            return;
+        }
+        try {
+            synchronized (current) {
+                current.export(batch);
+            }
+            exported.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            dropped.addAndGet(batch.size());
+            System.err.println("Span export failed: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
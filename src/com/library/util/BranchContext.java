@@ -0,0 +1,128 @@
+package com.library.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Branch Context
+ * The campus library (branch) the current thread works for. Request threads get
+ * it from {@link com.library.servlet.BranchFilter}; DAOs read it to scope their
+ * queries and {@link DBConnection} to pick the branch's database.
+ * Background jobs run without a branch and see the whole shared database.
+ * Branches are listed in branch.ids; branch.default serves requests that name none.
+ */
+public final class BranchContext {
+
+    public static final int NONE = 0;
+    private static final int DEFAULT_BRANCH = 1;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private BranchContext() {
+    }
+
+    /**
+     * Branch set on this thread
+     *
+     * @return Branch ID, or {@link #NONE} outside a request
+     */
+    public static int get() {
+        Integer branchId = CURRENT.get();
+        return branchId != null ? branchId : NONE;
+    }
+
+    /**
+     * Branch to work for: the one set on this thread, else the default branch
+     *
+     * @return Branch ID
+     */
+    public static int current() {
+        Integer branchId = CURRENT.get();
+        return branchId != null ? branchId : getDefaultBranch();
+    }
+
+    public static void set(int branchId) {
+        if (branchId == NONE) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(branchId);
+        }
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Run an action for another branch, restoring this thread's branch afterwards
+     *
+     * @param branchId Branch ID, or {@link #NONE} for the shared database
+     * @param action Action
+     * @return Action result
+     */
+    public static <T> T callAs(int branchId, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        set(branchId);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public static void runAs(int branchId, Runnable action) {
+        callAs(branchId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public static int getDefaultBranch() {
+        return LibraryConfig.current().getInt("branch.default", DEFAULT_BRANCH);
+    }
+
+    /**
+     * Branches this deployment serves, from branch.ids (comma-separated)
+     *
+     * @return Branch IDs in configured order; just the default branch if none are listed
+     */
+    public static List<Integer> getBranchIds() {
+        return getBranchIds(LibraryConfig.current());
+    }
+
+    /**
+     * Branches listed in a configuration snapshot
+     *
+     * @param config Configuration snapshot
+     * @return Branch IDs in configured order; just the default branch if none are listed
+     */
+    public static List<Integer> getBranchIds(LibraryConfig config) {
+        int defaultBranch = config.getInt("branch.default", DEFAULT_BRANCH);
+        String ids = config.getString("branch.ids", null);
+        if (ids == null || ids.trim().isEmpty()) {
+            return Collections.singletonList(defaultBranch);
+        }
+        List<Integer> branchIds = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            try {
+                int branchId = Integer.parseInt(id.trim());
+                if (branchId > 0 && !branchIds.contains(branchId)) {
+                    branchIds.add(branchId);
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid branch ID in branch.ids: " + id);
+            }
+        }
+        return branchIds.isEmpty() ? Collections.singletonList(defaultBranch) : branchIds;
+    }
+
+    public static boolean isKnown(int branchId) {
+        return getBranchIds().contains(branchId);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.library.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit Breaker
+ * Tracks the outcome and latency of the last calls to a database and stops
+ * sending work to it once too many of them fail or run slow. After a cool-down
+ * a few probe borrows are let through; each is settled once, when the pool hands
+ * over a validated connection or fails to, and if they succeed the circuit closes again.
+ * Thresholds come from db.breaker.* in {@link LibraryConfig}.
+ */
+public class CircuitBreaker {
+    
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    /**
+     * Outcome of {@link #acquirePermit()}; a PROBE holds one of the half-open slots
+     */
+    public enum Permit {
+        DENIED, CALL, PROBE
+    }
+    
+    // Defaults; override with db.breaker.* keys
+    private static final int DEFAULT_WINDOW = 20; // Calls considered for the failure and slow rates
+    private static final int DEFAULT_MIN_CALLS = 10; // Calls needed in the window before it can trip
+    private static final double DEFAULT_FAILURE_RATE = 0.5;
+    private static final long DEFAULT_SLOW_CALL_MS = 2000;
+    private static final double DEFAULT_SLOW_RATE = 0.8;
+    private static final long DEFAULT_OPEN_MS = 5000; // Cool-down before probing
+    private static final int DEFAULT_HALF_OPEN_PROBES = 3;
+    
+    private final String name;
+    private volatile State state = State.CLOSED;
+    
+    // Ring buffer of recent outcomes, guarded by this
+    private boolean[] failed = new boolean[DEFAULT_WINDOW];
+    private boolean[] slow = new boolean[DEFAULT_WINDOW];
+    private int next;
+    private int recorded;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+    
+    private volatile int minCalls = DEFAULT_MIN_CALLS;
+    private volatile double failureRateThreshold = DEFAULT_FAILURE_RATE;
+    private volatile long slowCallMs = DEFAULT_SLOW_CALL_MS;
+    private volatile double slowRateThreshold = DEFAULT_SLOW_RATE;
+    private volatile long openMs = DEFAULT_OPEN_MS;
+    private volatile int halfOpenProbes = DEFAULT_HALF_OPEN_PROBES;
+    
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timesOpened = new AtomicLong();
+    
+    public CircuitBreaker(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Apply thresholds from a configuration snapshot
+     * A changed window size starts a fresh window
+     * 
+     * @param config Configuration snapshot
+     */
+    public synchronized void applyConfig(LibraryConfig config) {
+        int window = Math.max(1, config.getInt("db.breaker.window", DEFAULT_WINDOW));
+        if (window != failed.length) {
+            failed = new boolean[window];
+            slow = new boolean[window];
+            next = 0;
+            recorded = 0;
+        }
+        minCalls = config.getInt("db.breaker.min.calls", DEFAULT_MIN_CALLS);
+        failureRateThreshold = config.getDouble("db.breaker.failure.rate", DEFAULT_FAILURE_RATE);
+        slowCallMs = config.getLong("db.breaker.slow.call.ms", DEFAULT_SLOW_CALL_MS);
+        slowRateThreshold = config.getDouble("db.breaker.slow.rate", DEFAULT_SLOW_RATE);
+        openMs = config.getLong("db.breaker.open.ms", DEFAULT_OPEN_MS);
+        halfOpenProbes = Math.max(1, config.getInt("db.breaker.half.open.probes", DEFAULT_HALF_OPEN_PROBES));
+    }
+    
+    /**
+     * Ask whether a connection may be borrowed from the database
+     * Moves an open circuit to half-open once the cool-down has passed.
+     * A PROBE must be settled exactly once, with {@link #settleProbe(long)} when
+     * the borrow succeeds or {@link #recordFailure(long)} when it fails.
+     * 
+     * @return CALL or PROBE if the borrow may proceed, DENIED if it must fail fast
+     */
+    public synchronized Permit acquirePermit() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMs) {
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+            System.out.println("Circuit '" + name + "' half-open, probing");
+        }
+        if (state == State.CLOSED) {
+            return Permit.CALL;
+        }
+        if (state == State.HALF_OPEN && probesInFlight < halfOpenProbes) {
+            probesInFlight++;
+            return Permit.PROBE;
+        }
+        rejected.incrementAndGet();
+        return Permit.DENIED;
+    }
+    
+    /**
+     * Settle a probe whose borrow returned a connection
+     * The pool only hands out connections it has just opened or checked with
+     * isValid, so the database answered; a slow answer still trips the circuit
+     * 
+     * @param elapsedMs Borrow duration
+     */
+    public synchronized void settleProbe(long elapsedMs) {
+        if (state != State.HALF_OPEN || probesInFlight == 0) {
+            // The circuit tripped, or a new probing round started, while this borrow ran
+            return;
+        }
+        probesInFlight--;
+        if (elapsedMs >= slowCallMs) {
+            trip();
+        } else if (++probeSuccesses >= halfOpenProbes) {
+            state = State.CLOSED;
+            next = 0;
+            recorded = 0;
+            System.out.println("Circuit '" + name + "' closed");
+        }
+    }
+    
+    /**
+     * Record a call that got an answer from the database
+     * While half-open this changes nothing; probes are settled per borrow
+     * 
+     * @param elapsedMs Call duration
+     */
+    public void recordSuccess(long elapsedMs) {
+        record(false, elapsedMs >= slowCallMs);
+    }
+    
+    /**
+     * Record a call that failed to reach the database or timed out
+     * 
+     * @param elapsedMs Call duration
+     */
+    public void recordFailure(long elapsedMs) {
+        record(true, elapsedMs >= slowCallMs);
+    }
+    
+    private synchronized void record(boolean callFailed, boolean callSlow) {
+        switch (state) {
+            case HALF_OPEN:
+                // Any failed or slow call while probing reopens the circuit
+                if (callFailed || callSlow) {
+                    trip();
+                }
+                break;
+            case CLOSED:
+                failed[next] = callFailed;
+                slow[next] = callSlow;
+                next = (next + 1) % failed.length;
+                recorded = Math.min(recorded + 1, failed.length);
+                if (recorded >= Math.min(minCalls, failed.length)) {
+                    int failures = 0;
+                    int slowCalls = 0;
+                    for (int i = 0; i < recorded; i++) {
+                        if (failed[i]) {
+                            failures++;
+                        }
+                        if (slow[i]) {
+                            slowCalls++;
+                        }
+                    }
+                    if (failures >= failureRateThreshold * recorded || slowCalls >= slowRateThreshold * recorded) {
+                        trip();
+                    }
+                }
+                break;
+            default:
+                // Late results of calls started before the circuit opened
+                break;
+        }
+    }
+    
+    private void trip() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        timesOpened.incrementAndGet();
+        System.err.println("Circuit '" + name + "' opened; failing fast for " + openMs + " ms");
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+    
+    public long getTimesOpened() {
+        return timesOpened.get();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,393 @@
+package com.library.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection Pool
+ * Bounded pool of physical JDBC connections to a single database URL.
+ * Borrowed connections are proxies whose close() hands the physical
+ * connection back to the pool, so DAOs keep using try-with-resources.
+ * Statements created through them carry the pool's query timeout and report
+ * each execution to an optional {@link StatementListener}.
+ */
+public class ConnectionPool {
+    
+    private final String name;
+    private final String url;
+    private final String username;
+    private final String password;
+    private volatile int maxSize;
+    private volatile long borrowTimeoutMs;
+    private volatile int connectTimeoutMs;
+    private volatile int socketTimeoutMs;
+    private volatile int queryTimeoutSeconds;
+    private volatile StatementListener statementListener;
+    
+    private final BlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+    private final ResizableSemaphore permits;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private volatile boolean shutdown;
+    
+    public ConnectionPool(String name, String url, String username, String password,
+                          int maxSize, long borrowTimeoutMs) {
+        this.name = name;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.permits = new ResizableSemaphore(maxSize);
+    }
+    
+    /**
+     * Change the pool bound at runtime
+     * Shrinking takes effect as borrowed connections come back; surplus idle ones are closed
+     * 
+     * @param newMaxSize New maximum number of connections
+     */
+    public synchronized void resize(int newMaxSize) {
+        if (newMaxSize < 1 || newMaxSize == maxSize) {
+            return;
+        }
+        int delta = newMaxSize - maxSize;
+        maxSize = newMaxSize;
+        if (delta > 0) {
+            permits.release(delta);
+        } else {
+            permits.reducePermits(-delta);
+            Connection surplus;
+            while (idle.size() > newMaxSize && (surplus = idle.pollLast()) != null) {
+                closeQuietly(surplus);
+                created.decrementAndGet();
+            }
+        }
+        System.out.println("Connection pool '" + name + "' resized to " + newMaxSize);
+    }
+    
+    public void setBorrowTimeoutMs(long borrowTimeoutMs) {
+        this.borrowTimeoutMs = borrowTimeoutMs;
+    }
+    
+    /**
+     * Bound the time spent waiting on the database
+     * Connect and socket timeouts apply to connections opened from now on;
+     * the query timeout applies to every statement created from now on
+     * 
+     * @param connectTimeoutMs TCP connect timeout, 0 for none
+     * @param socketTimeoutMs Socket read timeout, 0 for none; keep it above the query timeout
+     * @param queryTimeoutSeconds Statement timeout, 0 for none
+     */
+    public void setTimeouts(int connectTimeoutMs, int socketTimeoutMs, int queryTimeoutSeconds) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.socketTimeoutMs = socketTimeoutMs;
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+    }
+    
+    public void setStatementListener(StatementListener statementListener) {
+        this.statementListener = statementListener;
+    }
+    
+    /**
+     * Borrow a connection, waiting up to the borrow timeout if the pool is exhausted
+     * 
+     * @return Pooled connection; closing it returns it to the pool
+     * @throws SQLException if the pool is exhausted or a connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool '" + name + "' is shut down");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("Connection pool '" + name + "' exhausted (max " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection");
+        }
+        
+        try {
+            Connection physical = takeIdle();
+            if (physical == null) {
+                physical = openPhysical();
+                created.incrementAndGet();
+            }
+            active.incrementAndGet();
+            return wrap(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Open connections until the pool holds at least the given number of idle ones
+     * 
+     * @param count Number of connections to pre-open
+     * @return Number of connections actually opened
+     */
+    public int prefill(int count) {
+        int opened = 0;
+        while (idle.size() < Math.min(count, maxSize) && created.get() < maxSize) {
+            try {
+                idle.offerLast(openPhysical());
+                created.incrementAndGet();
+                opened++;
+            } catch (SQLException e) {
+                System.err.println("Error pre-opening connection for pool '" + name + "': " + e.getMessage());
+                break;
+            }
+        }
+        return opened;
+    }
+    
+    /**
+     * Close all idle connections and reject further borrows
+     */
+    public void shutdown() {
+        shutdown = true;
+        Connection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            closeQuietly(conn);
+        }
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    public int getActiveCount() {
+        return active.get();
+    }
+    
+    public int getIdleCount() {
+        return idle.size();
+    }
+    
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+    
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.get();
+    }
+    
+    /**
+     * Open a physical connection with the current timeouts
+     * 
+     * @return New connection
+     * @throws SQLException if the database cannot be reached
+     */
+    private Connection openPhysical() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", username);
+        props.setProperty("password", password);
+        if (connectTimeoutMs > 0) {
+            props.setProperty("connectTimeout", String.valueOf(connectTimeoutMs));
+        }
+        if (socketTimeoutMs > 0) {
+            props.setProperty("socketTimeout", String.valueOf(socketTimeoutMs));
+        }
+        return DriverManager.getConnection(url, props);
+    }
+    
+    /**
+     * Take a live idle connection, discarding dead ones
+     * 
+     * @return Idle connection or null if none is available
+     */
+    private Connection takeIdle() {
+        Connection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            try {
+                if (conn.isValid(1)) {
+                    return conn;
+                }
+            } catch (SQLException e) {
+                // fall through and discard
+            }
+            closeQuietly(conn);
+            created.decrementAndGet();
+        }
+        return null;
+    }
+    
+    /**
+     * Return a physical connection to the pool
+     * 
+     * @param physical Physical connection
+     */
+    private void release(Connection physical) {
+        active.decrementAndGet();
+        try {
+            if (shutdown || physical.isClosed()) {
+                closeQuietly(physical);
+                created.decrementAndGet();
+            } else {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                idle.offerFirst(physical);
+            }
+        } catch (SQLException e) {
+            closeQuietly(physical);
+            created.decrementAndGet();
+        } finally {
+            permits.release();
+        }
+    }
+    
+    private Connection wrap(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new PooledConnectionHandler(physical));
+    }
+    
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+    
+    /**
+     * Receives the duration and outcome of every statement execution
+     */
+    public interface StatementListener {
+        /**
+         * Called after a statement execute method returns or throws
+         * 
+         * @param sql Statement text, null if unknown
+         * @param elapsedNanos Execution time
+         * @param result Value returned by the execute method (update count, counts, result set), null on failure
+         * @param error Exception thrown, or null on success
+         */
+        void onExecute(String sql, long elapsedNanos, Object result, SQLException error);
+    }
+    
+    /**
+     * Semaphore whose permit count can be lowered while permits are held
+     */
+    private static class ResizableSemaphore extends Semaphore {
+        private ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+        
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+    
+    /**
+     * Forwards calls to the physical connection; close() releases it to the pool once
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+        private boolean closed;
+        
+        private PooledConnectionHandler(Connection physical) {
+            this.physical = physical;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("close".equals(methodName)) {
+                if (!closed) {
+                    closed = true;
+                    release(physical);
+                }
+                return null;
+            }
+            if ("isClosed".equals(methodName)) {
+                return closed || physical.isClosed();
+            }
+            if (closed) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            try {
+                Object result = method.invoke(physical, args);
+                if (result instanceof Statement && method.getReturnType().isInterface()) {
+                    // prepareStatement/prepareCall take the SQL first; createStatement gets it at execute
+                    String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                    return wrapStatement((Statement) result, method.getReturnType(), sql);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        
+        private Object wrapStatement(Statement statement, Class<?> type, String sql) throws SQLException {
+            if (queryTimeoutSeconds > 0) {
+                statement.setQueryTimeout(queryTimeoutSeconds);
+            }
+            return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { type }, new StatementHandler(statement, sql));
+        }
+    }
+    
+    /**
+     * Times execute calls and reports them to the statement listener
+     */
+    private class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+        
+        private StatementHandler(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            StatementListener listener = statementListener;
+            if (listener == null || !method.getName().startsWith("execute")) {
+                try {
+                    return method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            
+            String text = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            long start = System.nanoTime();
+            try {
+                Object result = method.invoke(statement, args);
+                listener.onExecute(text, System.nanoTime() - start, result, null);
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                listener.onExecute(text, System.nanoTime() - start, null,
+                        cause instanceof SQLException ? (SQLException) cause : new SQLException(cause));
+                throw cause;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,24 +1,103 @@
 package com.library.util;
 
+import com.library.trace.Span;
+import com.library.trace.Tracer;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 
 /**
  * Database Connection Utility Class
- * Provides connection to MySQL database using JDBC
- * Implements Singleton pattern for efficient connection management
+ * Provides pooled connections to MySQL database using JDBC
+ * Routes writes to the primary and read-only DAO queries to an optional replica
+ * Settings come from {@link LibraryConfig} (db.* keys) and are re-applied on reload
+ * Every pool has connect, socket and query timeouts and sits behind a
+ * {@link CircuitBreaker}, so a stalled database fails calls fast instead of piling up threads
+ * A branch may be routed to a schema or database of its own with branch.<id>.db.url;
+ * requests of that branch (see {@link BranchContext}) then use its pool for reads and writes.
+ * Routed databases must hand out IDs that never collide with the shared database's,
+ * e.g. auto_increment_offset set to the branch ID with a common auto_increment_increment,
+ * since caches and change events key rows by ID alone
  */
 public class DBConnection {
 
-    // Database credentials - MODIFY THESE ACCORDING TO YOUR SETUP
-    private static final String URL = "jdbc:mysql://localhost:3306/library_db";
-    private static final String USERNAME = "root";
-    private static final String PASSWORD = "K2004@19d";
+    // Default database credentials - override with db.url, db.username and db.password
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/library_db";
+    private static final String DEFAULT_USERNAME = "root";
+    private static final String DEFAULT_PASSWORD = "K2004@19d";
     private static final String DRIVER = "com.mysql.cj.jdbc.Driver";
 
-    // Singleton instance
-    private static Connection connection = null;
+    // Default pool and routing settings
+    private static final int DEFAULT_PRIMARY_POOL_SIZE = 10;
+    private static final int DEFAULT_REPLICA_POOL_SIZE = 20;
+    private static final int DEFAULT_BRANCH_POOL_SIZE = 5;
+    private static final long DEFAULT_BORROW_TIMEOUT_MS = 5000;
+    private static final long DEFAULT_MAX_REPLICA_LAG_MS = 2000;
+    private static final long LAG_CHECK_INTERVAL_MS = 1000;
+    // Seconds_Behind_Source is whole seconds, so a reported lag may be 999 ms short,
+    // and the reading may be one check old
+    private static final long READ_YOUR_WRITES_MARGIN_MS = 1000 + LAG_CHECK_INTERVAL_MS;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 3000;
+    private static final int DEFAULT_SOCKET_TIMEOUT_MS = 15000;
+    private static final int DEFAULT_QUERY_TIMEOUT_SECONDS = 10;
+    private static final int DEFAULT_VALIDATION_TIMEOUT_SECONDS = 2;
+
+    // Settings currently in effect
+    private static String url;
+    private static String username;
+    private static String password;
+    private static String replicaUrl; // optional read replica (db.replica.url)
+    private static volatile long maxReplicaLagMs = DEFAULT_MAX_REPLICA_LAG_MS;
+
+    // Read scopes used for read-your-writes tracking
+    public static final String CATALOG_SCOPE = "catalog";
+    public static final String LOANS_SCOPE = "loans";
+
+    private static ConnectionPool primaryPool = null;
+    private static ConnectionPool replicaPool = null;
+    private static ScheduledExecutorService lagMonitor = null;
+
+    // Routed branches: {url, username, password} by branch ID, and their pools, opened on first use
+    private static volatile Map<Integer, String[]> branchSettings = Collections.emptyMap();
+    private static final Map<Integer, ConnectionPool> branchPools = new HashMap<>();
+    private static final Map<Integer, CircuitBreaker> BRANCH_BREAKERS = new ConcurrentHashMap<>();
+
+    // Trip on connection failures, timeouts or slow calls; one per pool
+    private static final CircuitBreaker PRIMARY_BREAKER = new CircuitBreaker("primary");
+    private static final CircuitBreaker REPLICA_BREAKER = new CircuitBreaker("replica");
+
+    // Last measured replica lag; Long.MAX_VALUE when unknown or replication is broken
+    private static volatile long replicaLagMs = Long.MAX_VALUE;
+
+    // Time of the last write per read scope, so a scope reads from the primary until the replica caught up;
+    // entries older than the lag bound plus margin no longer matter and are pruned by the lag monitor
+    private static final Map<String, Long> LAST_WRITE = new ConcurrentHashMap<>();
+    // Whether the configured replica reported no replication status at the last check
+    private static volatile boolean replicaStatusMissing;
+    // Client of the current request, whose last write may have been made on another node
+    private static final ThreadLocal<ClientWrites> CLIENT_WRITES = new ThreadLocal<>();
+
+    static {
+        LibraryConfig.addListener(DBConnection::applyConfig);
+    }
 
     /**
      * Private constructor to prevent instantiation
@@ -28,42 +107,249 @@ public class DBConnection {
     }
 
     /**
-     * Get database connection instance
-     * Creates new connection if not exists or if closed
+     * Get a connection to the primary database
+     * Used for all writes and for reads that must see the latest data.
+     * Requests of a routed branch get a connection to the branch's own database.
      * 
-     * @return Connection object
+     * @return Connection object; close it to return it to the pool
      * @throws SQLException if connection fails
      */
     public static Connection getConnection() throws SQLException {
+        int branchId = BranchContext.get();
+        if (isRouted(branchId)) {
+            return getBranchConnection(branchId);
+        }
+        return getSharedConnection();
+    }
+
+    /**
+     * Get a connection to the shared primary database whatever the current branch
+     *
+     * @return Connection object; close it to return it to the pool
+     * @throws SQLException if connection fails
+     */
+    public static Connection getSharedConnection() throws SQLException {
+        CircuitBreaker.Permit permit = PRIMARY_BREAKER.acquirePermit();
+        if (permit == CircuitBreaker.Permit.DENIED) {
+            throw new SQLTransientConnectionException("Database temporarily unavailable (circuit open)");
+        }
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         try {
-            // Load MySQL JDBC Driver
-            if (connection == null || connection.isClosed()) {
-                Class.forName(DRIVER);
-                connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
-                System.out.println("Database connected successfully!");
-            }
-        } catch (ClassNotFoundException e) {
-            System.err.println("MySQL JDBC Driver not found!");
-            throw new SQLException("Driver not found: " + e.getMessage());
+            ConnectionPool pool = getPrimaryPool();
+            Connection conn = pool.getConnection();
+            traceBorrow(pool, startNanos, null);
+            settleBorrow(PRIMARY_BREAKER, permit, start);
+            return conn;
         } catch (SQLException e) {
+            traceBorrow(primaryPool, startNanos, e);
+            PRIMARY_BREAKER.recordFailure(System.currentTimeMillis() - start);
             System.err.println("Database connection failed!");
-            throw new SQLException("Connection error: " + e.getMessage());
+            throw new SQLException("Connection error: " + e.getMessage(), e.getSQLState(), e);
+        }
+    }
+
+    /**
+     * Get a connection for a read-only query in the given scope
+     * Uses the replica when one is configured, its lag is within bounds and
+     * the scope has not been written recently; otherwise uses the primary.
+     * Routed branches have no replica and always read their own database.
+     * 
+     * @param scope Read scope, e.g. {@link #CATALOG_SCOPE} or {@link #userScope(int)}
+     * @return Connection object; close it to return it to the pool
+     * @throws SQLException if connection fails
+     */
+    public static Connection getReadConnection(String scope) throws SQLException {
+        if (isRouted(BranchContext.get())) {
+            return getConnection();
+        }
+        ConnectionPool replica = getReplicaPool();
+        CircuitBreaker.Permit permit = replica != null && replicaIsFreshFor(scope)
+                ? REPLICA_BREAKER.acquirePermit() : CircuitBreaker.Permit.DENIED;
+        if (permit != CircuitBreaker.Permit.DENIED) {
+            long start = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            try {
+                Connection conn = replica.getConnection();
+                traceBorrow(replica, startNanos, null);
+                settleBorrow(REPLICA_BREAKER, permit, start);
+                return conn;
+            } catch (SQLException e) {
+                traceBorrow(replica, startNanos, e);
+                REPLICA_BREAKER.recordFailure(System.currentTimeMillis() - start);
+                System.err.println("Replica unavailable, reading from primary: " + e.getMessage());
+            }
+        }
+        return getConnection();
+    }
+
+    /**
+     * Check whether a read in the given scope can currently reach a database
+     * False while the primary circuit is open and the replica cannot serve the scope;
+     * callers with a cache should then serve what they have rather than query
+     * 
+     * @param scope Read scope
+     * @return true if a read would be attempted
+     */
+    public static boolean isReadable(String scope) {
+        int branchId = BranchContext.get();
+        if (isRouted(branchId)) {
+            return branchBreaker(branchId).getState() != CircuitBreaker.State.OPEN;
+        }
+        if (PRIMARY_BREAKER.getState() != CircuitBreaker.State.OPEN) {
+            return true;
+        }
+        return replicaUrl != null && REPLICA_BREAKER.getState() != CircuitBreaker.State.OPEN
+                && replicaIsFreshFor(scope);
+    }
+
+    public static CircuitBreaker getPrimaryBreaker() {
+        return PRIMARY_BREAKER;
+    }
+
+    public static CircuitBreaker getReplicaBreaker() {
+        return REPLICA_BREAKER;
+    }
+
+    /**
+     * Get every circuit breaker, for diagnostics
+     *
+     * @return Primary and replica breakers, then one per routed branch
+     */
+    public static List<CircuitBreaker> getBreakers() {
+        List<CircuitBreaker> breakers = new ArrayList<>();
+        breakers.add(PRIMARY_BREAKER);
+        breakers.add(REPLICA_BREAKER);
+        for (int branchId : getRoutedBranches()) {
+            breakers.add(branchBreaker(branchId));
+        }
+        return breakers;
+    }
+
+    /**
+     * Check whether a branch has a database of its own
+     *
+     * @param branchId Branch ID
+     * @return true if branch.<id>.db.url is set
+     */
+    public static boolean isRouted(int branchId) {
+        return branchId != BranchContext.NONE && branchSettings.containsKey(branchId);
+    }
+
+    /**
+     * Branches with a database of their own; background jobs visit each of
+     * them after the shared database
+     *
+     * @return Branch IDs in ascending order
+     */
+    public static List<Integer> getRoutedBranches() {
+        List<Integer> branchIds = new ArrayList<>(branchSettings.keySet());
+        Collections.sort(branchIds);
+        return branchIds;
+    }
+
+    /**
+     * Databases to visit for work spanning every branch
+     *
+     * @return {@link BranchContext#NONE} for the shared database, then each routed branch ID
+     */
+    public static List<Integer> getDatabases() {
+        List<Integer> databases = new ArrayList<>();
+        databases.add(BranchContext.NONE);
+        databases.addAll(getRoutedBranches());
+        return databases;
+    }
+
+    /**
+     * Record a write so later reads in the same scope see it
+     * 
+     * @param scope Read scope that was written
+     */
+    public static void recordWrite(String scope) {
+        long now = System.currentTimeMillis();
+        if (replicaUrl != null) {
+            // Without a replica every read goes to the primary; nothing to remember
+            LAST_WRITE.put(scope, now);
+        }
+        ClientWrites client = CLIENT_WRITES.get();
+        if (client != null) {
+            client.lastWrite = now;
+            client.onWrite.accept(now);
         }
-        return connection;
     }
 
     /**
-     * Close database connection
+     * Bind the client of the current request, which carries its last write from node to node
+     * Until that write is older than the replica lag plus a margin, every read of
+     * the request goes to the primary, whichever node made the write. Node clocks
+     * must be kept in sync (NTP); the margin absorbs small skew.
+     *
+     * @param lastWrite Epoch milliseconds of the client's last write, 0 if none
+     * @param onWrite Told the time of each write the request makes, to hand back to the client
      */
-    public static void closeConnection() {
+    public static void bindClient(long lastWrite, LongConsumer onWrite) {
+        CLIENT_WRITES.set(new ClientWrites(lastWrite, onWrite));
+    }
+
+    public static void unbindClient() {
+        CLIENT_WRITES.remove();
+    }
+
+    /**
+     * Read scope for a single user's loans and history
+     * 
+     * @param userId User ID
+     * @return Scope name
+     */
+    public static String userScope(int userId) {
+        return "user:" + userId;
+    }
+
+    /**
+     * Close all pooled connections
+     */
+    public static synchronized void closeConnection() {
+        if (lagMonitor != null) {
+            lagMonitor.shutdownNow();
+            lagMonitor = null;
+        }
+        if (primaryPool != null) {
+            primaryPool.shutdown();
+            primaryPool = null;
+        }
+        if (replicaPool != null) {
+            replicaPool.shutdown();
+            replicaPool = null;
+        }
+        for (ConnectionPool pool : branchPools.values()) {
+            pool.shutdown();
+        }
+        branchPools.clear();
+        System.out.println("Database connections closed.");
+    }
+
+    /**
+     * Open connections ahead of traffic, e.g. during warm-up, so the first
+     * requests do not pay for the driver load and TCP/TLS handshakes
+     * 
+     * @param perPool Idle connections wanted in each pool
+     * @return Number of connections opened
+     */
+    public static int prefill(int perPool) {
+        int opened = 0;
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("Database connection closed.");
+            opened += getPrimaryPool().prefill(perPool);
+            ConnectionPool replica = getReplicaPool();
+            if (replica != null) {
+                opened += replica.prefill(perPool);
+            }
+            for (int branchId : getRoutedBranches()) {
+                opened += getBranchPool(branchId).prefill(perPool);
             }
         } catch (SQLException e) {
-            System.err.println("Error closing connection: " + e.getMessage());
+            System.err.println("Error pre-opening connections: " + e.getMessage());
         }
+        return opened;
     }
 
     /**
@@ -72,12 +358,460 @@ public class DBConnection {
      * @return true if connection successful, false otherwise
      */
     public static boolean testConnection() {
-        try {
-            Connection conn = getConnection();
-            return conn != null && !conn.isClosed();
+        try (Connection conn = getConnection()) {
+            // isValid round-trips to the server; a pooled connection can be open but dead
+            return conn != null && conn.isValid(DEFAULT_VALIDATION_TIMEOUT_SECONDS);
         } catch (SQLException e) {
             System.err.println("Connection test failed: " + e.getMessage());
             return false;
         }
     }
+
+    /**
+     * Get the pools opened so far, for diagnostics; does not open any
+     *
+     * @return Primary pool, then the replica pool if one is in use, then routed branch pools
+     */
+    public static synchronized List<ConnectionPool> getPools() {
+        List<ConnectionPool> pools = new ArrayList<>(2 + branchPools.size());
+        if (primaryPool != null) {
+            pools.add(primaryPool);
+        }
+        if (replicaPool != null) {
+            pools.add(replicaPool);
+        }
+        pools.addAll(branchPools.values());
+        return pools;
+    }
+
+    /**
+     * Get last measured replica lag
+     * 
+     * @return Lag in milliseconds, -1 if there is no replica, Long.MAX_VALUE if unknown
+     */
+    public static long getReplicaLagMs() {
+        return replicaUrl == null ? -1 : replicaLagMs;
+    }
+
+    /**
+     * Apply a configuration snapshot
+     * Pool sizes and timeouts are changed in place; a changed URL or credential
+     * retires the old pool, whose connections are closed as they are returned
+     * 
+     * @param config Configuration snapshot
+     */
+    private static synchronized void applyConfig(LibraryConfig config) {
+        String newUrl = config.getString("db.url", DEFAULT_URL);
+        String newUsername = config.getString("db.username", DEFAULT_USERNAME);
+        String newPassword = config.getString("db.password", DEFAULT_PASSWORD);
+        String newReplicaUrl = config.getString("db.replica.url", null);
+
+        boolean primaryChanged = !newUrl.equals(url) || !newUsername.equals(username)
+                || !newPassword.equals(password);
+        boolean replicaChanged = primaryChanged || !Objects.equals(newReplicaUrl, replicaUrl);
+
+        url = newUrl;
+        username = newUsername;
+        password = newPassword;
+        replicaUrl = newReplicaUrl;
+        maxReplicaLagMs = config.getLong("db.replica.max.lag.ms", DEFAULT_MAX_REPLICA_LAG_MS);
+
+        if (primaryPool != null && primaryChanged) {
+            primaryPool.shutdown();
+            primaryPool = null;
+        }
+        if (replicaChanged) {
+            if (lagMonitor != null) {
+                lagMonitor.shutdownNow();
+                lagMonitor = null;
+            }
+            if (replicaPool != null) {
+                replicaPool.shutdown();
+                replicaPool = null;
+            }
+            replicaLagMs = Long.MAX_VALUE;
+            replicaStatusMissing = false;
+            if (replicaUrl == null) {
+                LAST_WRITE.clear();
+            }
+        }
+
+        applyBranchConfig(config, newUsername, newPassword);
+
+        PRIMARY_BREAKER.applyConfig(config);
+        REPLICA_BREAKER.applyConfig(config);
+        for (CircuitBreaker breaker : BRANCH_BREAKERS.values()) {
+            breaker.applyConfig(config);
+        }
+
+        long borrowTimeout = config.getLong("db.pool.borrow.timeout.ms", DEFAULT_BORROW_TIMEOUT_MS);
+        if (primaryPool != null) {
+            primaryPool.resize(config.getInt("db.pool.primary.size", DEFAULT_PRIMARY_POOL_SIZE));
+            primaryPool.setBorrowTimeoutMs(borrowTimeout);
+            applyTimeouts(primaryPool, config);
+        }
+        if (replicaPool != null) {
+            replicaPool.resize(config.getInt("db.pool.replica.size", DEFAULT_REPLICA_POOL_SIZE));
+            replicaPool.setBorrowTimeoutMs(borrowTimeout);
+            applyTimeouts(replicaPool, config);
+        }
+        for (ConnectionPool pool : branchPools.values()) {
+            pool.resize(config.getInt("db.pool.branch.size", DEFAULT_BRANCH_POOL_SIZE));
+            pool.setBorrowTimeoutMs(borrowTimeout);
+            applyTimeouts(pool, config);
+        }
+    }
+
+    /**
+     * Read branch.<id>.db.url (and optional .username and .password) for every
+     * branch in branch.ids; a branch whose settings changed or were removed has
+     * its pool retired
+     *
+     * @param config Configuration snapshot
+     * @param sharedUsername Username of the shared database, the default
+     * @param sharedPassword Password of the shared database, the default
+     */
+    private static void applyBranchConfig(LibraryConfig config, String sharedUsername, String sharedPassword) {
+        Map<Integer, String[]> settings = new HashMap<>();
+        for (int branchId : BranchContext.getBranchIds(config)) {
+            String prefix = "branch." + branchId + ".db.";
+            String branchUrl = config.getString(prefix + "url", null);
+            if (branchUrl != null && !branchUrl.trim().isEmpty()) {
+                settings.put(branchId, new String[] {branchUrl.trim(),
+                        config.getString(prefix + "username", sharedUsername),
+                        config.getString(prefix + "password", sharedPassword)});
+                branchBreaker(branchId);
+            }
+        }
+
+        Map<Integer, String[]> previous = branchSettings;
+        branchSettings = Collections.unmodifiableMap(settings);
+        for (Map.Entry<Integer, String[]> entry : previous.entrySet()) {
+            if (!Arrays.equals(entry.getValue(), settings.get(entry.getKey()))) {
+                ConnectionPool pool = branchPools.remove(entry.getKey());
+                if (pool != null) {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply connect, socket and query timeouts to a pool
+     * 
+     * @param pool Connection pool
+     * @param config Configuration snapshot
+     */
+    private static void applyTimeouts(ConnectionPool pool, LibraryConfig config) {
+        pool.setTimeouts(config.getInt("db.connect.timeout.ms", DEFAULT_CONNECT_TIMEOUT_MS),
+                         config.getInt("db.socket.timeout.ms", DEFAULT_SOCKET_TIMEOUT_MS),
+                         config.getInt("db.query.timeout.seconds", DEFAULT_QUERY_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * Feed statement outcomes into a circuit breaker and the tracer
+     * Only failures to reach the database count against the breaker; errors the
+     * database answered with, such as a duplicate key, show it is up
+     * 
+     * @param breaker Circuit breaker
+     * @return Statement listener
+     */
+    private static ConnectionPool.StatementListener statementListener(CircuitBreaker breaker) {
+        return (sql, elapsedNanos, result, error) -> {
+            long elapsedMs = elapsedNanos / 1_000_000;
+            if (error != null && isConnectivityFailure(error)) {
+                breaker.recordFailure(elapsedMs);
+            } else {
+                breaker.recordSuccess(elapsedMs);
+            }
+            traceStatement(breaker.getName(), sql, elapsedNanos, result, error);
+        };
+    }
+
+    /**
+     * Record a statement as a span of the current trace, with its update counts
+     * 
+     * @param pool Pool name
+     * @param sql Statement text, may be null
+     * @param elapsedNanos Execution time
+     * @param result Execute result
+     * @param error Exception thrown, or null
+     */
+    private static void traceStatement(String pool, String sql, long elapsedNanos, Object result, SQLException error) {
+        Tracer tracer = Tracer.getInstance();
+        if (!tracer.isRecording()) {
+            return;
+        }
+        String operation = sql != null ? sql.trim().split("\\s+", 2)[0].toUpperCase() : "EXECUTE";
+        Span span = tracer.recordSpan("SQL " + operation, Span.KIND_CLIENT, elapsedNanos);
+        span.setAttribute("db.system", "mysql");
+        span.setAttribute("db.pool", pool);
+        span.setAttribute("db.operation", operation);
+        if (sql != null && tracer.isRecordingStatements()) {
+            span.setAttribute("db.statement", sql);
+        }
+        if (result instanceof Integer || result instanceof Long) {
+            span.setAttribute("db.rows_affected", result);
+        } else if (result instanceof int[]) {
+            int rows = 0;
+            for (int count : (int[]) result) {
+                rows += Math.max(count, 0);
+            }
+            span.setAttribute("db.batch_size", ((int[]) result).length);
+            span.setAttribute("db.rows_affected", rows);
+        }
+        if (error != null) {
+            span.recordException(error);
+        }
+        span.end();
+    }
+
+    /**
+     * Record a connection borrow as a span, so pool waits and new connections show up in traces
+     * 
+     * @param pool Pool borrowed from, may be null if it could not be created
+     * @param startNanos System.nanoTime() before the borrow
+     * @param error Exception thrown, or null
+     */
+    private static void traceBorrow(ConnectionPool pool, long startNanos, SQLException error) {
+        Tracer tracer = Tracer.getInstance();
+        if (!tracer.isRecording()) {
+            return;
+        }
+        Span span = tracer.recordSpan("db.connection", Span.KIND_INTERNAL, System.nanoTime() - startNanos);
+        if (pool != null) {
+            span.setAttribute("db.pool", pool.getName());
+            span.setAttribute("db.pool.active", pool.getActiveCount());
+            span.setAttribute("db.pool.idle", pool.getIdleCount());
+            span.setAttribute("db.pool.waiting", pool.getWaitingCount());
+        }
+        if (error != null) {
+            span.recordException(error);
+        }
+        span.end();
+    }
+
+    /**
+     * Check whether an exception means the database could not be reached in time
+     * 
+     * @param e Exception
+     * @return true for timeouts and connection failures
+     */
+    private static boolean isConnectivityFailure(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTimeoutException
+                || e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException
+                || (state != null && state.startsWith("08"));
+    }
+
+    /**
+     * Check whether the replica can serve a read in the given scope
+     * The replica must be within the lag bound, and any write to the scope on
+     * this node, or by the request's client on any node, must be older than the
+     * current lag plus a safety margin
+     * 
+     * @param scope Read scope
+     * @return true if the replica may be used
+     */
+    private static boolean replicaIsFreshFor(String scope) {
+        long lag = replicaLagMs;
+        if (lag > maxReplicaLagMs) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        ClientWrites client = CLIENT_WRITES.get();
+        if (client != null && now - client.lastWrite <= lag + READ_YOUR_WRITES_MARGIN_MS) {
+            return false;
+        }
+        Long lastWrite = LAST_WRITE.get(scope);
+        return lastWrite == null || now - lastWrite > lag + READ_YOUR_WRITES_MARGIN_MS;
+    }
+
+    private static synchronized ConnectionPool getPrimaryPool() throws SQLException {
+        if (primaryPool == null) {
+            loadDriver();
+            LibraryConfig config = LibraryConfig.current();
+            primaryPool = new ConnectionPool("primary", url, username, password,
+                    config.getInt("db.pool.primary.size", DEFAULT_PRIMARY_POOL_SIZE),
+                    config.getLong("db.pool.borrow.timeout.ms", DEFAULT_BORROW_TIMEOUT_MS));
+            applyTimeouts(primaryPool, config);
+            primaryPool.setStatementListener(statementListener(PRIMARY_BREAKER));
+            System.out.println("Database connected successfully!");
+        }
+        return primaryPool;
+    }
+
+    /**
+     * Get a connection to a routed branch's database
+     *
+     * @param branchId Branch ID
+     * @return Connection object; close it to return it to the pool
+     * @throws SQLException if connection fails
+     */
+    private static Connection getBranchConnection(int branchId) throws SQLException {
+        CircuitBreaker breaker = branchBreaker(branchId);
+        CircuitBreaker.Permit permit = breaker.acquirePermit();
+        if (permit == CircuitBreaker.Permit.DENIED) {
+            throw new SQLTransientConnectionException("Branch " + branchId
+                    + " database temporarily unavailable (circuit open)");
+        }
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        ConnectionPool pool = null;
+        try {
+            pool = getBranchPool(branchId);
+            Connection conn = pool.getConnection();
+            traceBorrow(pool, startNanos, null);
+            settleBorrow(breaker, permit, start);
+            return conn;
+        } catch (SQLException e) {
+            traceBorrow(pool, startNanos, e);
+            breaker.recordFailure(System.currentTimeMillis() - start);
+            System.err.println("Branch " + branchId + " database connection failed!");
+            throw new SQLException("Connection error: " + e.getMessage(), e.getSQLState(), e);
+        }
+    }
+
+    /**
+     * Settle a half-open probe once its borrow has returned a connection
+     * Statements run on the connection afterwards can still trip the circuit,
+     * but never take or give back a probe slot
+     * 
+     * @param breaker Circuit breaker the permit came from
+     * @param permit Permit taken for the borrow
+     * @param start Borrow start, epoch milliseconds
+     */
+    private static void settleBorrow(CircuitBreaker breaker, CircuitBreaker.Permit permit, long start) {
+        if (permit == CircuitBreaker.Permit.PROBE) {
+            breaker.settleProbe(System.currentTimeMillis() - start);
+        }
+    }
+
+    private static CircuitBreaker branchBreaker(int branchId) {
+        return BRANCH_BREAKERS.computeIfAbsent(branchId, id -> {
+            CircuitBreaker breaker = new CircuitBreaker("branch-" + id);
+            breaker.applyConfig(LibraryConfig.current());
+            return breaker;
+        });
+    }
+
+    private static synchronized ConnectionPool getBranchPool(int branchId) throws SQLException {
+        ConnectionPool pool = branchPools.get(branchId);
+        if (pool == null) {
+            String[] settings = branchSettings.get(branchId);
+            if (settings == null) {
+                throw new SQLException("Branch " + branchId + " has no database of its own");
+            }
+            loadDriver();
+            LibraryConfig config = LibraryConfig.current();
+            pool = new ConnectionPool("branch-" + branchId, settings[0], settings[1], settings[2],
+                    config.getInt("db.pool.branch.size", DEFAULT_BRANCH_POOL_SIZE),
+                    config.getLong("db.pool.borrow.timeout.ms", DEFAULT_BORROW_TIMEOUT_MS));
+            applyTimeouts(pool, config);
+            pool.setStatementListener(statementListener(branchBreaker(branchId)));
+            branchPools.put(branchId, pool);
+            System.out.println("Branch " + branchId + " database connected successfully!");
+        }
+        return pool;
+    }
+
+    private static synchronized ConnectionPool getReplicaPool() throws SQLException {
+        if (replicaUrl == null) {
+            return null;
+        }
+        if (replicaPool == null) {
+            loadDriver();
+            LibraryConfig config = LibraryConfig.current();
+            replicaPool = new ConnectionPool("replica", replicaUrl, username, password,
+                    config.getInt("db.pool.replica.size", DEFAULT_REPLICA_POOL_SIZE),
+                    config.getLong("db.pool.borrow.timeout.ms", DEFAULT_BORROW_TIMEOUT_MS));
+            applyTimeouts(replicaPool, config);
+            replicaPool.setStatementListener(statementListener(REPLICA_BREAKER));
+            startLagMonitor();
+        }
+        return replicaPool;
+    }
+
+    private static void loadDriver() throws SQLException {
+        try {
+            Class.forName(DRIVER);
+        } catch (ClassNotFoundException e) {
+            System.err.println("MySQL JDBC Driver not found!");
+            throw new SQLException("Driver not found: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Periodically measure replica lag from the replica's replication status
+     */
+    private static void startLagMonitor() {
+        lagMonitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-lag-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        lagMonitor.scheduleWithFixedDelay(() -> {
+            replicaLagMs = measureReplicaLag();
+            pruneLastWrites();
+        }, 0, LAG_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Forget scope writes too old to keep any read off the replica
+     * Past the lag bound plus margin a scope reads from the replica whatever its last write
+     */
+    private static void pruneLastWrites() {
+        long cutoff = System.currentTimeMillis() - maxReplicaLagMs - READ_YOUR_WRITES_MARGIN_MS;
+        LAST_WRITE.values().removeIf(lastWrite -> lastWrite < cutoff);
+    }
+
+    /**
+     * Read Seconds_Behind_Source from the replica
+     * 
+     * @return Lag in milliseconds, Long.MAX_VALUE if replication is stopped, the server is
+     *         not a replica or status cannot be read
+     */
+    private static long measureReplicaLag() {
+        ConnectionPool replica = replicaPool;
+        if (replica == null) {
+            return Long.MAX_VALUE;
+        }
+        try (Connection conn = replica.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SHOW REPLICA STATUS")) {
+
+            if (rs.next()) {
+                replicaStatusMissing = false;
+                long seconds = rs.getLong("Seconds_Behind_Source");
+                return rs.wasNull() ? Long.MAX_VALUE : seconds * 1000;
+            }
+            // Not a replica at all: db.replica.url may point at another primary or a stale
+            // copy, so nothing says it has our writes. Read from the primary instead
+            if (!replicaStatusMissing) {
+                replicaStatusMissing = true;
+                System.err.println("Replica reports no replication status; reading from the primary");
+            }
+            return Long.MAX_VALUE;
+
+        } catch (SQLException e) {
+            System.err.println("Error measuring replica lag: " + e.getMessage());
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Last write of one request's client
+     */
+    private static final class ClientWrites {
+
+        private long lastWrite;
+        private final LongConsumer onWrite;
+
+        private ClientWrites(long lastWrite, LongConsumer onWrite) {
+            this.lastWrite = lastWrite;
+            this.onWrite = onWrite;
+        }
+    }
 }
\ No newline at end of file
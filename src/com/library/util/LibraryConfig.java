@@ -0,0 +1,217 @@
+package com.library.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Library Configuration
+ * Immutable snapshot of runtime settings (database, pools, caches, timeouts, loan policy).
+ * 
+ * Settings are layered, later sources winning:
+ *   1. defaults passed by each caller to the typed getters
+ *   2. properties file named by -Dlibrary.config or LIBRARY_CONFIG
+ *   3. environment variables, e.g. LIBRARY_DB_URL for db.url
+ *   4. system properties, e.g. -Dlibrary.db.url
+ * 
+ * The file is watched; on change a new snapshot is built and swapped in atomically,
+ * then listeners are told so they can apply pool sizes, cache TTLs and the like.
+ * Callers should read {@link #current()} once per operation for a consistent view.
+ */
+public class LibraryConfig {
+    
+    private static final String ENV_PREFIX = "LIBRARY_";
+    private static final String PROPERTY_PREFIX = "library.";
+    
+    private static final Path CONFIG_FILE = resolveConfigFile();
+    private static final AtomicReference<LibraryConfig> CURRENT = new AtomicReference<>(load());
+    private static final List<Consumer<LibraryConfig>> LISTENERS = new CopyOnWriteArrayList<>();
+    
+    static {
+        if (CONFIG_FILE != null && CURRENT.get().getBoolean("config.watch", true)) {
+            startWatcher();
+        }
+    }
+    
+    private final Map<String, String> values;
+    
+    private LibraryConfig(Map<String, String> values) {
+        this.values = Collections.unmodifiableMap(values);
+    }
+    
+    /**
+     * Get the current configuration snapshot
+     * 
+     * @return LibraryConfig snapshot
+     */
+    public static LibraryConfig current() {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Register a listener called after every reload
+     * The listener is also called immediately with the current snapshot
+     * 
+     * @param listener Callback receiving the new snapshot
+     */
+    public static void addListener(Consumer<LibraryConfig> listener) {
+        LISTENERS.add(listener);
+        listener.accept(current());
+    }
+    
+    /**
+     * Re-read all sources and swap in the new snapshot
+     */
+    public static void reload() {
+        LibraryConfig updated = load();
+        CURRENT.set(updated);
+        System.out.println("Configuration reloaded" + (CONFIG_FILE != null ? " from " + CONFIG_FILE : ""));
+        for (Consumer<LibraryConfig> listener : LISTENERS) {
+            try {
+                listener.accept(updated);
+            } catch (RuntimeException e) {
+                System.err.println("Error applying configuration: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Get a string setting
+     * 
+     * @param key Setting key, e.g. db.url
+     * @param defaultValue Value used when no source sets the key
+     * @return Setting value
+     */
+    public String getString(String key, String defaultValue) {
+        String value = values.get(key);
+        return value != null ? value : defaultValue;
+    }
+    
+    public int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid integer for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+    
+    public long getLong(String key, long defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+    
+    public double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+    
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+    
+    /**
+     * Build a snapshot from the file, environment and system properties
+     * 
+     * @return New snapshot
+     */
+    private static LibraryConfig load() {
+        Map<String, String> values = new HashMap<>();
+        
+        if (CONFIG_FILE != null && Files.isRegularFile(CONFIG_FILE)) {
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(CONFIG_FILE)) {
+                props.load(in);
+                for (String name : props.stringPropertyNames()) {
+                    values.put(name, props.getProperty(name));
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading configuration file " + CONFIG_FILE + ": " + e.getMessage());
+            }
+        }
+        
+        for (Map.Entry<String, String> env : System.getenv().entrySet()) {
+            if (env.getKey().startsWith(ENV_PREFIX) && !"LIBRARY_CONFIG".equals(env.getKey())) {
+                String key = env.getKey().substring(ENV_PREFIX.length()).toLowerCase().replace('_', '.');
+                values.put(key, env.getValue());
+            }
+        }
+        
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PROPERTY_PREFIX) && !"library.config".equals(name)) {
+                values.put(name.substring(PROPERTY_PREFIX.length()), System.getProperty(name));
+            }
+        }
+        
+        return new LibraryConfig(values);
+    }
+    
+    private static Path resolveConfigFile() {
+        String location = System.getProperty("library.config", System.getenv("LIBRARY_CONFIG"));
+        return location != null ? Paths.get(location).toAbsolutePath() : null;
+    }
+    
+    /**
+     * Watch the configuration file's directory and reload when the file changes
+     */
+    private static void startWatcher() {
+        Thread watcher = new Thread(() -> {
+            Path dir = CONFIG_FILE.getParent();
+            try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                             StandardWatchEventKinds.ENTRY_MODIFY);
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey key = watchService.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object context = event.context();
+                        if (context instanceof Path && CONFIG_FILE.getFileName().equals(context)) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    if (changed) {
+                        // Editors often write in several steps; let the file settle
+                        Thread.sleep(200);
+                        reload();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Configuration watcher stopped: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+}
\ No newline at end of file
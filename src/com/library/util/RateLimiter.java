@@ -0,0 +1,196 @@
+package com.library.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate Limiter
+ * Token buckets per client key and rule, plus a global cap on in-flight requests.
+ * Rules are named ENDPOINT or ENDPOINT.ACTION (e.g. books.search) and read from
+ * {@link LibraryConfig}, most specific first:
+ * ratelimit.ENDPOINT.ACTION.rate / .burst, ratelimit.ENDPOINT.rate / .burst,
+ * ratelimit.default.rate / .burst. The in-flight cap is api.max.concurrent.
+ * Limits are read on every request, so hot reloads take effect at once.
+ */
+public class RateLimiter {
+    
+    private static final double DEFAULT_RATE = 10.0; // Requests per second per client
+    private static final int DEFAULT_BURST = 20; // Requests a client may send back to back
+    private static final int DEFAULT_MAX_CONCURRENT = 64; // Requests served at once across all clients
+    private static final long IDLE_EVICT_MS = 10 * 60 * 1000L; // Forget buckets idle this long
+    private static final int EVICT_CHECK_EVERY = 1024; // Sweep idle buckets every N acquisitions
+    
+    private static final RateLimiter INSTANCE = new RateLimiter();
+    
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong rejectedByRate = new AtomicLong();
+    private final AtomicLong rejectedByConcurrency = new AtomicLong();
+    
+    private RateLimiter() {
+    }
+    
+    public static RateLimiter getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Take one token for a client under a rule
+     * 
+     * @param clientKey Client identity, e.g. "ip:10.0.0.1" or "session:ABC"
+     * @param rule Rule name, e.g. "books.search"
+     * @return 0 if allowed, otherwise milliseconds until a token is available
+     */
+    public long tryAcquire(String clientKey, String rule) {
+        if (acquisitions.incrementAndGet() % EVICT_CHECK_EVERY == 0) {
+            evictIdle();
+        }
+        TokenBucket bucket = buckets.computeIfAbsent(clientKey + "|" + rule, key -> new TokenBucket());
+        long waitMs = bucket.tryTake(getRate(rule), getBurst(rule));
+        if (waitMs > 0) {
+            rejectedByRate.incrementAndGet();
+        }
+        return waitMs;
+    }
+    
+    /**
+     * Give back a token taken by {@link #tryAcquire(String, String)}
+     * Used when a later check refuses the request, so the client is not charged for it
+     * 
+     * @param clientKey Client identity
+     * @param rule Rule name
+     */
+    public void refund(String clientKey, String rule) {
+        TokenBucket bucket = buckets.get(clientKey + "|" + rule);
+        if (bucket != null) {
+            bucket.giveBack(getBurst(rule));
+        }
+    }
+    
+    /**
+     * Admit a request against the global concurrency cap
+     * Never blocks; a caller that is refused must not call {@link #exit()}
+     * 
+     * @return true if admitted
+     */
+    public boolean tryEnter() {
+        int limit = LibraryConfig.current().getInt("api.max.concurrent", DEFAULT_MAX_CONCURRENT);
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejectedByConcurrency.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Release a slot taken by {@link #tryEnter()}
+     */
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+    
+    /**
+     * Get configured refill rate for a rule
+     * 
+     * @param rule Rule name
+     * @return Tokens per second
+     */
+    public double getRate(String rule) {
+        LibraryConfig config = LibraryConfig.current();
+        double rate = config.getDouble("ratelimit.default.rate", DEFAULT_RATE);
+        int dot = rule.indexOf('.');
+        if (dot > 0) {
+            rate = config.getDouble("ratelimit." + rule.substring(0, dot) + ".rate", rate);
+        }
+        return config.getDouble("ratelimit." + rule + ".rate", rate);
+    }
+    
+    /**
+     * Get configured burst size for a rule
+     * 
+     * @param rule Rule name
+     * @return Bucket capacity
+     */
+    public int getBurst(String rule) {
+        LibraryConfig config = LibraryConfig.current();
+        int burst = config.getInt("ratelimit.default.burst", DEFAULT_BURST);
+        int dot = rule.indexOf('.');
+        if (dot > 0) {
+            burst = config.getInt("ratelimit." + rule.substring(0, dot) + ".burst", burst);
+        }
+        return config.getInt("ratelimit." + rule + ".burst", burst);
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    public long getRejectedByRate() {
+        return rejectedByRate.get();
+    }
+    
+    public long getRejectedByConcurrency() {
+        return rejectedByConcurrency.get();
+    }
+    
+    public int getBucketCount() {
+        return buckets.size();
+    }
+    
+    /**
+     * Drop buckets untouched for a while
+     */
+    private void evictIdle() {
+        long cutoff = System.nanoTime() - IDLE_EVICT_MS * 1_000_000L;
+        Iterator<TokenBucket> it = buckets.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().lastUsedNanos() < cutoff) {
+                it.remove();
+            }
+        }
+    }
+    
+    /**
+     * Lazily refilled token bucket; starts full
+     */
+    private static class TokenBucket {
+        private double tokens = -1;
+        private long lastRefillNanos = System.nanoTime();
+        
+        private synchronized long tryTake(double ratePerSecond, int burst) {
+            long now = System.nanoTime();
+            if (tokens < 0) {
+                tokens = burst;
+            } else {
+                tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * ratePerSecond);
+            }
+            lastRefillNanos = now;
+            
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            if (ratePerSecond <= 0) {
+                return 1000;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / ratePerSecond * 1000));
+        }
+        
+        private synchronized void giveBack(int burst) {
+            tokens = Math.min(burst, tokens + 1);
+        }
+        
+        private synchronized long lastUsedNanos() {
+            return lastRefillNanos;
+        }
+    }
+}
\ No newline at end of file